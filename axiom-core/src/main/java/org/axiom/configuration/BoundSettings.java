@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.configuration;
+
+import static org.apache.commons.lang.Validate.*;
+
+/**
+ * Holds the settings bound from the current configuration version. Settings are
+ * bound once per version, when a new snapshot is loaded, so consumers read plain
+ * fields on the hot path. Obtain instances from {@link ConfigurationManager#bind}.
+ * @param <T> The type of settings object.
+ */
+public class BoundSettings<T> {
+
+    private final ConfigurationBinding<T> binding;
+    private volatile T settings;
+    private volatile long version;
+    private T pending;
+
+    BoundSettings(final ConfigurationBinding<T> binding, final ConfigurationSnapshot snapshot) {
+        notNull(binding, "Binding cannot be null.");
+        this.binding = binding;
+        this.settings = binding.bind(snapshot);
+        this.version = snapshot.getVersion();
+    }
+
+    /**
+     * Gets the settings bound from the current configuration.
+     * @return The current settings.
+     */
+    public T get() {
+        return settings;
+    }
+
+    /**
+     * Gets the configuration version the current settings were bound from.
+     * @return A snapshot version number.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    void prepare(final ConfigurationSnapshot snapshot) {
+        pending = binding.bind(snapshot);
+    }
+
+    void commit(final long newVersion) {
+        settings = pending;
+        version = newVersion;
+        pending = null;
+    }
+
+    void rollback() {
+        pending = null;
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.configuration;
+
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.FileConfiguration;
+import org.apache.commons.configuration.event.ConfigurationEvent;
+import org.apache.commons.configuration.event.ConfigurationListener;
+import static org.apache.commons.lang.Validate.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Maintains the current {@link ConfigurationSnapshot}, rebuilding it on a
+ * background thread whenever one of the underlying properties files changes.
+ * New snapshots are swapped in atomically, so readers never block and never
+ * see a partially loaded configuration. Registered {@link ConfigurationChangeListener}s
+ * are told which keys changed, so they can re-apply them.
+ * <p>
+ * Typed settings registered via {@link ConfigurationManager#bind} are bound
+ * against each new snapshot before it is swapped in; a snapshot that any of
+ * them rejects is never applied, leaving the previous configuration in place.
+ * </p>
+ * <p>
+ * Changes are detected by polling the last modified time of each file backed
+ * configuration (typically the files listed in {@code axiom.configuration.externals})
+ * and comparing the system properties with those last snapshotted.
+ * </p>
+ * <p>
+ * When managing the registered (composite) configuration, anything added to it at
+ * runtime - whole configurations, or individual properties - is included in every
+ * snapshot, and is re-snapshotted as soon as it is added (see
+ * {@link ObservableCompositeConfiguration}).
+ * </p>
+ */
+public class ConfigurationManager {
+
+    /**
+     * The default interval between checks for modified files, in milliseconds.
+     */
+    public static final long DEFAULT_POLL_INTERVAL = 5000L;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ExternalConfigurationSourceFactory factory;
+    private final AtomicReference<ConfigurationSnapshot> current =
+        new AtomicReference<ConfigurationSnapshot>();
+    private final SnapshotConfiguration configuration = new SnapshotConfiguration(current);
+    private final List<ConfigurationChangeListener> listeners =
+        new CopyOnWriteArrayList<ConfigurationChangeListener>();
+    private final List<BoundSettings<?>> bindings = new CopyOnWriteArrayList<BoundSettings<?>>();
+
+    private final Configuration registered;
+    private final Map<Configuration, Boolean> initialParts = new IdentityHashMap<Configuration, Boolean>();
+
+    private volatile Map<File, Long> watchedFiles = Collections.emptyMap();
+    private volatile Map<Object, Object> systemProperties = Collections.emptyMap();
+    private List<Configuration> baseParts;
+    private long pollInterval = DEFAULT_POLL_INTERVAL;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Creates a manager for a configuration of its own, created by the supplied factory.
+     * @param factory The factory used to (re)create the configuration.
+     */
+    public ConfigurationManager(final ExternalConfigurationSourceFactory factory) {
+        this(factory, factory.createConfiguration());
+    }
+
+    /**
+     * Creates a manager which snapshots the supplied (typically registered) configuration.
+     * @param factory The factory used to recreate the file backed parts of the configuration when they change.
+     * @param registered The configuration to snapshot, which was created by {@code factory}.
+     */
+    public ConfigurationManager(final ExternalConfigurationSourceFactory factory, final Configuration registered) {
+        notNull(factory, "Configuration source factory cannot be null.");
+        notNull(registered, "Configuration cannot be null.");
+        this.factory = factory;
+        this.registered = registered;
+        baseParts = parts(registered);
+        for (final Configuration part : baseParts) {
+            initialParts.put(part, Boolean.TRUE);
+        }
+        final Configuration source = compose();
+        current.set(ConfigurationSnapshot.of(source, 1L));
+        watchedFiles = watch(baseParts);
+        systemProperties = copySystemProperties();
+        if (registered instanceof ObservableCompositeConfiguration) {
+            ((ObservableCompositeConfiguration) registered).addConfigurationListener(new ConfigurationListener() {
+                @Override public void configurationChanged(final ConfigurationEvent event) {
+                    if (!event.isBeforeUpdate()) {
+                        refresh();
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets the current snapshot. Callers wishing to read several related
+     * keys consistently should hold on to the snapshot whilst doing so.
+     * @return The current {@link ConfigurationSnapshot}.
+     */
+    public ConfigurationSnapshot getSnapshot() {
+        return current.get();
+    }
+
+    /**
+     * Gets a read only {@link Configuration} which always reflects the current snapshot.
+     * @return A live {@link SnapshotConfiguration}.
+     */
+    public SnapshotConfiguration getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Binds typed settings from the current snapshot, re-binding them whenever
+     * a new snapshot is loaded.
+     * @param binding The binding to apply.
+     * @param <T> The type of settings object.
+     * @return The bound settings, which always hold the current values.
+     * @throws ConfigurationBindingException if the current configuration is invalid.
+     */
+    public synchronized <T> BoundSettings<T> bind(final ConfigurationBinding<T> binding)
+        throws ConfigurationBindingException {
+        final BoundSettings<T> settings = new BoundSettings<T>(binding, current.get());
+        bindings.add(settings);
+        return settings;
+    }
+
+    public void addListener(final ConfigurationChangeListener listener) {
+        notNull(listener, "Listener cannot be null.");
+        listeners.add(listener);
+    }
+
+    public void removeListener(final ConfigurationChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void setListeners(final List<ConfigurationChangeListener> listeners) {
+        notNull(listeners, "Listeners cannot be null.");
+        this.listeners.clear();
+        this.listeners.addAll(listeners);
+    }
+
+    /**
+     * Sets the interval between checks for modified files.
+     * @param pollInterval The interval in milliseconds; zero disables polling.
+     */
+    public void setPollInterval(final long pollInterval) {
+        isTrue(pollInterval >= 0, "Poll interval cannot be negative.");
+        this.pollInterval = pollInterval;
+    }
+
+    /**
+     * Gets the files being watched for changes.
+     * @return An unmodifiable set of files.
+     */
+    public Set<File> getWatchedFiles() {
+        return Collections.unmodifiableSet(watchedFiles.keySet());
+    }
+
+    /**
+     * Starts polling for changes on a background (daemon) thread.
+     */
+    public synchronized void start() {
+        if (scheduler != null || pollInterval == 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "axiom-configuration-reloader");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override public void run() {
+                try {
+                    checkForChanges();
+                } catch (RuntimeException e) {
+                    log.warn("Unable to reload configuration: {}", e.getLocalizedMessage());
+                }
+            }
+        }, pollInterval, pollInterval, TimeUnit.MILLISECONDS);
+        log.info("Watching {} for changes every {}ms.", watchedFiles.keySet(), pollInterval);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Reloads the configuration if any watched file has been modified, or
+     * re-snapshots it if the system properties have changed.
+     * @return {@code true} if a new snapshot was swapped in, otherwise {@code false}.
+     */
+    public boolean checkForChanges() {
+        for (final Map.Entry<File, Long> watched : watchedFiles.entrySet()) {
+            if (watched.getKey().lastModified() != watched.getValue()) {
+                log.info("{} has been modified.", watched.getKey());
+                return reload();
+            }
+        }
+        if (!systemProperties.equals(System.getProperties())) {
+            log.info("System properties have been modified.");
+            return refresh();
+        }
+        return false;
+    }
+
+    /**
+     * Rebuilds the configuration from its sources and, if anything has
+     * changed and every registered binding accepts it, swaps in the new
+     * snapshot and notifies listeners.
+     * @return {@code true} if a new snapshot was swapped in, otherwise {@code false}.
+     */
+    public synchronized boolean reload() {
+        baseParts = parts(factory.createConfiguration());
+        watchedFiles = watch(baseParts);
+        return apply(compose());
+    }
+
+    /**
+     * Re-snapshots the configuration without reloading any files, picking up
+     * system properties and anything added to the configuration at runtime.
+     * @return {@code true} if a new snapshot was swapped in, otherwise {@code false}.
+     */
+    public synchronized boolean refresh() {
+        return apply(compose());
+    }
+
+    private boolean apply(final Configuration source) {
+        final ConfigurationSnapshot previous = current.get();
+        final ConfigurationSnapshot next =
+            ConfigurationSnapshot.of(source, previous.getVersion() + 1);
+        systemProperties = copySystemProperties();
+
+        final Set<String> changedKeys = next.changedKeys(previous);
+        if (changedKeys.isEmpty()) {
+            log.debug("Configuration reloaded without changes.");
+            return false;
+        }
+        if (!prepareBindings(next)) {
+            return false;
+        }
+        for (final BoundSettings<?> settings : bindings) {
+            settings.commit(next.getVersion());
+        }
+        current.set(next);
+        log.info("Configuration version {} applied ({} changed keys).", next.getVersion(), changedKeys.size());
+        final Set<String> unmodifiableKeys = Collections.unmodifiableSet(changedKeys);
+        for (final ConfigurationChangeListener listener : listeners) {
+            try {
+                listener.configurationChanged(previous, next, unmodifiableKeys);
+            } catch (RuntimeException e) {
+                log.warn("Configuration listener {} failed: {}", listener, e.getLocalizedMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Combines the (possibly reloaded) parts the configuration was created with and
+     * anything added to the registered configuration since, in the same order of
+     * precedence as the registered configuration itself.
+     */
+    private Configuration compose() {
+        final CompositeConfiguration composed = new CompositeConfiguration();
+        for (final Configuration part : baseParts) {
+            composed.addConfiguration(part);
+        }
+        if (registered instanceof CompositeConfiguration) {
+            final CompositeConfiguration composite = (CompositeConfiguration) registered;
+            for (final Configuration part : parts(composite)) {
+                if (!initialParts.containsKey(part)) {
+                    composed.addConfiguration(part);
+                }
+            }
+            composed.addConfiguration(composite.getInMemoryConfiguration());
+        }
+        return composed;
+    }
+
+    private static List<Configuration> parts(final Configuration source) {
+        final List<Configuration> parts = new ArrayList<Configuration>();
+        if (source instanceof CompositeConfiguration) {
+            final CompositeConfiguration composite = (CompositeConfiguration) source;
+            for (int i = 0; i < composite.getNumberOfConfigurations(); i++) {
+                final Configuration part = composite.getConfiguration(i);
+                if (part != composite.getInMemoryConfiguration()) {
+                    parts.add(part);
+                }
+            }
+        } else {
+            parts.add(source);
+        }
+        return parts;
+    }
+
+    private static Map<Object, Object> copySystemProperties() {
+        return new HashMap<Object, Object>(System.getProperties());
+    }
+
+    private boolean prepareBindings(final ConfigurationSnapshot next) {
+        try {
+            for (final BoundSettings<?> settings : bindings) {
+                settings.prepare(next);
+            }
+            return true;
+        } catch (RuntimeException e) {
+            for (final BoundSettings<?> settings : bindings) {
+                settings.rollback();
+            }
+            log.error("Rejected configuration version {}, keeping version {}: {}",
+                new Object[] { next.getVersion(), current.get().getVersion(), e.getLocalizedMessage() });
+            return false;
+        }
+    }
+
+    private Map<File, Long> watch(final List<Configuration> parts) {
+        final Map<File, Long> files = new HashMap<File, Long>();
+        for (final Configuration part : parts) {
+            if (part instanceof FileConfiguration) {
+                final File file = ((FileConfiguration) part).getFile();
+                if (file != null && file.isFile()) {
+                    files.put(file, file.lastModified());
+                }
+            }
+        }
+        return files;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.configuration;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.PropertyConverter;
+import static org.apache.commons.lang.Validate.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * An immutable, flattened copy of a {@link Configuration} in which every
+ * {@code ${...}} expression has already been interpolated. Lookups are a
+ * single hash map access, which makes snapshots suitable for reading
+ * configuration on a per-exchange basis.
+ * <p>
+ * Multi-valued properties are held as lists; {@link ConfigurationSnapshot#getString(String)}
+ * returns the first value, as commons-configuration does.
+ * </p>
+ */
+public final class ConfigurationSnapshot {
+
+    private final Map<String, Object> values;
+    private final long version;
+    private final long timestamp;
+
+    private ConfigurationSnapshot(final Map<String, Object> values, final long version) {
+        this.values = values;
+        this.version = version;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * Takes a snapshot of the supplied configuration.
+     * @param source The configuration to copy.
+     * @param version The version number of the new snapshot.
+     * @return A new {@link ConfigurationSnapshot}.
+     */
+    public static ConfigurationSnapshot of(final Configuration source, final long version) {
+        notNull(source, "Configuration cannot be null.");
+        final Map<String, Object> values = new HashMap<String, Object>();
+        for (final Iterator keys = source.getKeys(); keys.hasNext();) {
+            final String key = (String) keys.next();
+            if (values.containsKey(key)) {
+                continue;
+            }
+            final String[] array = source.getStringArray(key);
+            if (array.length > 1) {
+                values.put(key, Collections.unmodifiableList(Arrays.asList(array)));
+            } else if (array.length == 1) {
+                values.put(key, array[0]);
+            } else {
+                final String value = source.getString(key);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+        }
+        return new ConfigurationSnapshot(values, version);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the time at which this snapshot was taken.
+     * @return A timestamp in milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public boolean containsKey(final String key) {
+        return values.containsKey(key);
+    }
+
+    public Set<String> getKeys() {
+        return Collections.unmodifiableSet(values.keySet());
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    /**
+     * Gets the raw value of a property.
+     * @param key The property key.
+     * @return A {@link String}, a {@link List} of {@link String}s, or {@code null} if the key is absent.
+     */
+    public Object getProperty(final String key) {
+        return values.get(key);
+    }
+
+    public String getString(final String key) {
+        return getString(key, null);
+    }
+
+    public String getString(final String key, final String defaultValue) {
+        final Object value = values.get(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value instanceof List) {
+            return (String) ((List) value).get(0);
+        }
+        return (String) value;
+    }
+
+    public String[] getStringArray(final String key) {
+        final Object value = values.get(key);
+        if (value == null) {
+            return new String[0];
+        }
+        if (value instanceof List) {
+            final List list = (List) value;
+            return (String[]) list.toArray(new String[list.size()]);
+        }
+        return new String[] { (String) value };
+    }
+
+    public boolean getBoolean(final String key, final boolean defaultValue) {
+        final String value = getString(key);
+        return value == null ? defaultValue : PropertyConverter.toBoolean(value);
+    }
+
+    public int getInt(final String key, final int defaultValue) {
+        final String value = getString(key);
+        return value == null ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    public long getLong(final String key, final long defaultValue) {
+        final String value = getString(key);
+        return value == null ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    /**
+     * Works out which keys differ between this snapshot and an earlier one.
+     * @param previous The earlier snapshot.
+     * @return The keys which were added, removed or changed.
+     */
+    public Set<String> changedKeys(final ConfigurationSnapshot previous) {
+        notNull(previous, "Previous snapshot cannot be null.");
+        final Set<String> changed = new HashSet<String>();
+        for (final Map.Entry<String, Object> entry : values.entrySet()) {
+            if (!entry.getValue().equals(previous.values.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (final String key : previous.values.keySet()) {
+            if (!values.containsKey(key)) {
+                changed.add(key);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Presents this snapshot as a read only {@link Configuration}, for
+     * components that consume the commons-configuration API.
+     * @return A new {@link SnapshotConfiguration} fixed to this snapshot.
+     */
+    public Configuration asConfiguration() {
+        return new SnapshotConfiguration(new AtomicReference<ConfigurationSnapshot>(this));
+    }
+
+    @Override public String toString() {
+        return String.format("ConfigurationSnapshot[version=%d, keys=%d]", version, values.size());
+    }
+}
@@ -100,7 +100,7 @@ public class ExternalConfigurationSourceFactory {
      */
     public Configuration createConfiguration() {
         try {
-            CompositeConfiguration config = new CompositeConfiguration();
+            CompositeConfiguration config = new ObservableCompositeConfiguration();
             log.info("Configuring system properties.");
             config.addConfiguration(new SystemConfiguration());
             configureAdditionalExternalProperties(config);
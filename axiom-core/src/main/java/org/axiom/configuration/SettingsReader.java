@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.configuration;
+
+import org.apache.commons.configuration.PropertyConverter;
+import static org.apache.commons.lang.StringUtils.*;
+import static org.apache.commons.lang.Validate.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads typed values out of a {@link ConfigurationSnapshot} on behalf of a
+ * {@link ConfigurationBinding}. Rather than failing on the first bad value,
+ * problems are collected (and a harmless default returned) so that
+ * {@link SettingsReader#validate()} can report everything wrong at once.
+ */
+public class SettingsReader {
+
+    private final ConfigurationSnapshot snapshot;
+    private final String namespace;
+    private final List<String> problems = new ArrayList<String>();
+
+    public SettingsReader(final ConfigurationSnapshot snapshot, final String namespace) {
+        notNull(snapshot, "Snapshot cannot be null.");
+        this.snapshot = snapshot;
+        this.namespace = namespace;
+    }
+
+    /**
+     * Reads a mandatory, non-blank string.
+     * @param key The configuration key.
+     * @return The value, or {@code null} if it is missing.
+     */
+    public String getString(final String key) {
+        final String value = snapshot.getString(key);
+        if (isBlank(value)) {
+            problems.add(key + " is required");
+            return null;
+        }
+        return value;
+    }
+
+    public String getString(final String key, final String defaultValue) {
+        return snapshot.getString(key, defaultValue);
+    }
+
+    public String[] getStringArray(final String key) {
+        return snapshot.getStringArray(key);
+    }
+
+    /**
+     * Reads a mandatory boolean (true/false, yes/no or on/off).
+     * @param key The configuration key.
+     * @return The value, or {@code false} if it is missing or invalid.
+     */
+    public boolean getBoolean(final String key) {
+        final String value = getString(key);
+        if (value == null) {
+            return false;
+        }
+        try {
+            return PropertyConverter.toBoolean(value.trim());
+        } catch (RuntimeException e) {
+            problems.add(String.format("%s=%s is not a boolean", key, value));
+            return false;
+        }
+    }
+
+    public int getInt(final String key, final int defaultValue) {
+        final String value = snapshot.getString(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            problems.add(String.format("%s=%s is not an integer", key, value));
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Reads a mandatory enum constant, ignoring case.
+     * @param key The configuration key.
+     * @param type The enum type.
+     * @param <E> The enum type.
+     * @return The constant, or {@code null} if it is missing or invalid.
+     */
+    public <E extends Enum<E>> E getEnum(final String key, final Class<E> type) {
+        final String value = getString(key);
+        if (value == null) {
+            return null;
+        }
+        for (final E constant : type.getEnumConstants()) {
+            if (constant.name().equalsIgnoreCase(value.trim())) {
+                return constant;
+            }
+        }
+        problems.add(String.format("%s=%s is not one of %s", key, value,
+            join(type.getEnumConstants(), ", ")));
+        return null;
+    }
+
+    /**
+     * Reads a mandatory directory path, which need not exist yet but
+     * must not name an existing file.
+     * @param key The configuration key.
+     * @return The directory, or {@code null} if it is missing or invalid.
+     */
+    public File getDirectory(final String key) {
+        final String value = getString(key);
+        return value == null ? null : directory(key, value);
+    }
+
+    /**
+     * Reads a list of directory paths separated by the platform path separator.
+     * @param key The configuration key.
+     * @return The directories, which may be empty.
+     */
+    public List<File> getDirectories(final String key) {
+        final List<File> directories = new ArrayList<File>();
+        final String value = snapshot.getString(key);
+        if (value != null) {
+            for (final String path : split(value, File.pathSeparator)) {
+                if (isNotBlank(path)) {
+                    final File directory = directory(key, path.trim());
+                    if (directory != null) {
+                        directories.add(directory);
+                    }
+                }
+            }
+        }
+        return directories;
+    }
+
+    /**
+     * Gets the problems found so far.
+     * @return A list of problem descriptions.
+     */
+    public List<String> getProblems() {
+        return problems;
+    }
+
+    /**
+     * Throws if any problems were found whilst reading.
+     * @throws ConfigurationBindingException listing all the problems found.
+     */
+    public void validate() throws ConfigurationBindingException {
+        if (!problems.isEmpty()) {
+            throw new ConfigurationBindingException(namespace, problems);
+        }
+    }
+
+    private File directory(final String key, final String path) {
+        final File file = new File(path);
+        if (file.exists() && !file.isDirectory()) {
+            problems.add(String.format("%s=%s is not a directory", key, path));
+            return null;
+        }
+        return file;
+    }
+}
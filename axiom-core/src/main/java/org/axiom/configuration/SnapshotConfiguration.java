@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.configuration;
+
+import org.apache.commons.configuration.AbstractConfiguration;
+import static org.apache.commons.lang.Validate.*;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A read only {@link org.apache.commons.configuration.Configuration} backed
+ * by a {@link ConfigurationSnapshot}. String lookups go straight to the
+ * snapshot without being re-interpolated. When obtained from a
+ * {@link ConfigurationManager}, the view always reads the most recently
+ * loaded snapshot.
+ */
+public class SnapshotConfiguration extends AbstractConfiguration {
+
+    private final AtomicReference<ConfigurationSnapshot> source;
+
+    SnapshotConfiguration(final AtomicReference<ConfigurationSnapshot> source) {
+        notNull(source, "Snapshot source cannot be null.");
+        this.source = source;
+        setDelimiterParsingDisabled(true);
+    }
+
+    /**
+     * Gets the snapshot this view is currently reading from.
+     * @return The current {@link ConfigurationSnapshot}.
+     */
+    public ConfigurationSnapshot getSnapshot() {
+        return source.get();
+    }
+
+    @Override public Object getProperty(final String key) {
+        return source.get().getProperty(key);
+    }
+
+    @Override public String getString(final String key) {
+        return source.get().getString(key);
+    }
+
+    @Override public String getString(final String key, final String defaultValue) {
+        return source.get().getString(key, defaultValue);
+    }
+
+    @Override public String[] getStringArray(final String key) {
+        return source.get().getStringArray(key);
+    }
+
+    @Override public boolean containsKey(final String key) {
+        return source.get().containsKey(key);
+    }
+
+    @Override public Iterator getKeys() {
+        return source.get().getKeys().iterator();
+    }
+
+    @Override public boolean isEmpty() {
+        return source.get().size() == 0;
+    }
+
+    @Override protected void addPropertyDirect(final String key, final Object value) {
+        throw new UnsupportedOperationException("Configuration snapshots are read only.");
+    }
+
+    @Override protected void clearPropertyDirect(final String key) {
+        throw new UnsupportedOperationException("Configuration snapshots are read only.");
+    }
+}
@@ -32,7 +32,6 @@ import org.apache.camel.CamelContext;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.io.FileUtils;
 import static org.apache.commons.io.FileUtils.*;
-import org.apache.commons.lang.StringUtils;
 import org.axiom.integration.camel.AxiomComponent;
 import org.axiom.service.ControlChannel;
 import org.springframework.context.ApplicationContext;
@@ -123,6 +122,12 @@ public class Environment {
      */
     public static final String DEFAULT_PROCESSOR = "axiom.processors.default.id";
 
+    /**
+     * The bean id of the scripted (jruby) {@code ContextProcessingNode}, which
+     * can be registered as {@link Environment#DEFAULT_PROCESSOR} in its place.
+     */
+    public static final String SCRIPTED_PROCESSOR = "axiom.processors.scripted.id";
+
     /**
      * The bean id of the registered composite configuration instance
      * for the host context (Spring, JNDI, etc). This is the key under which
@@ -131,6 +136,12 @@ public class Environment {
      */
     public static final String CONFIG_BEAN = "axiom.configuration";
 
+    /**
+     * The bean id of the {@code ConfigurationManager}, which maintains a
+     * hot reloaded snapshot of the configuration registered under {@link Environment#CONFIG_BEAN}.
+     */
+    public static final String CONFIG_MANAGER_BEAN = "axiom.configuration.manager";
+
     /**
      * The uri on which the (camel) control channel resides within
      * the host/managed camel context.
@@ -196,6 +207,59 @@ public class Environment {
      */
     public static final String SHUTDOWN_CHANNEL_ID = "axiom.shutdown.channel.id";
 
+    /**
+     * The bean id of the {@code TraceStore} as registered with the host
+     * {@link CamelContext}s {@link Registry}.
+     */
+    public static final String TRACE_STORE_ID = "axiom.trace.store.id";
+
+    /**
+     * The bean id of the {@code TraceSettings} bound by the configuration manager,
+     * as registered with the host {@link CamelContext}s {@link Registry}.
+     */
+    public static final String TRACE_SETTINGS_ID = "axiom.trace.settings.id";
+
+    /**
+     * The bean id of the {@code EnvironmentSettings} bound by the configuration manager,
+     * as registered with the host {@link CamelContext}s {@link Registry}.
+     */
+    public static final String ENVIRONMENT_SETTINGS_ID = "axiom.environment.settings.id";
+
+    /**
+     * The uri on which the trace store can be queried. The body of the exchange
+     * should contain the key to look up, and the {@code trace-query} header the
+     * type of lookup (i.e. {@code exchange}, {@code correlation} or {@code route}).
+     */
+    public static final String TRACE_QUERY_CHANNEL = "direct:axiomTraceQueryChannel";
+
+    /**
+     * The trace query type header tag.
+     */
+    public static final String TRACE_QUERY = "trace-query";
+
+    /**
+     * The bean id of the {@code MetricsRegistry} as registered with the host
+     * {@link CamelContext}s {@link Registry}.
+     */
+    public static final String METRICS_REGISTRY_ID = "axiom.metrics.registry.id";
+
+    /**
+     * The bean id of the {@code SlaMonitor} which checks the service levels declared
+     * in route scripts, as registered with the host {@link CamelContext}s {@link Registry}.
+     */
+    public static final String SLA_MONITOR_ID = "axiom.sla.monitor.id";
+
+    /**
+     * The bean id of the {@code LifecycleCoordinator} used to start and stop
+     * managed contexts, as registered with the host {@link CamelContext}s {@link Registry}.
+     */
+    public static final String LIFECYCLE_COORDINATOR_ID = "axiom.lifecycle.coordinator.id";
+
+    /**
+     * The header carrying the time (in milliseconds) at which a metrics snapshot was taken.
+     */
+    public static final String METRICS_TIMESTAMP = "metrics-timestamp";
+
     /**
      * The property name used to identify the service id (JNDI uri or Spring Bean name)
      * for the default registered instance (or prototype) or this type.
@@ -241,16 +305,19 @@ public class Environment {
      * @param config The configuration settings to use.
      */
     public static void prepareFileSystem(final Configuration config) {
-        final File axiomHome = new File(config.getString(AXIOM_HOME));
-        final File routeScriptsDir = new File(config.getString(SCRIPT_REPOSITORY_URI));
-        final String endorsedPlugins = config.getString(ENDORSED_PLUGINS);
-
-        ensureDirectory(axiomHome);
-        ensureDirectory(routeScriptsDir);
-        for (final String path : endorsedPlugins.split(File.pathSeparator)) {
-            if (StringUtils.isNotEmpty(path)) {
-                ensureDirectory(new File(path));
-            }
+        prepareFileSystem(EnvironmentSettings.from(config));
+    }
+
+    /**
+     * Ensures that the directories named by the supplied settings exist. Prefer
+     * the settings bound under {@code ENVIRONMENT_SETTINGS_ID} where they are available.
+     * @param settings The environment settings to use.
+     */
+    public static void prepareFileSystem(final EnvironmentSettings settings) {
+        ensureDirectory(settings.getAxiomHome());
+        ensureDirectory(settings.getScriptRepository());
+        for (final File endorsedPlugin : settings.getEndorsedPlugins()) {
+            ensureDirectory(endorsedPlugin);
         }
     }
 
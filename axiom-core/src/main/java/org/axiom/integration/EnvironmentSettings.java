@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.integration;
+
+import org.apache.commons.configuration.Configuration;
+import static org.apache.commons.lang.StringUtils.*;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.configuration.ConfigurationBinding;
+import org.axiom.configuration.ConfigurationBindingException;
+import org.axiom.configuration.ConfigurationSnapshot;
+import org.axiom.configuration.SettingsReader;
+
+import static org.axiom.integration.Environment.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable, typed view of the file system settings
+ * ({@code axiom.home}, the script repository and so on).
+ */
+public final class EnvironmentSettings {
+
+    private final File axiomHome;
+    private final File scriptRepository;
+    private final List<File> endorsedPlugins;
+    private final String[] scriptFileExtensions;
+
+    private EnvironmentSettings(final File axiomHome, final File scriptRepository,
+        final List<File> endorsedPlugins, final String[] scriptFileExtensions) {
+        this.axiomHome = axiomHome;
+        this.scriptRepository = scriptRepository;
+        this.endorsedPlugins = Collections.unmodifiableList(endorsedPlugins);
+        this.scriptFileExtensions = scriptFileExtensions;
+    }
+
+    /**
+     * Binds and validates the environment settings held in {@code snapshot}.
+     * @param snapshot The configuration to read.
+     * @return The bound settings.
+     * @throws ConfigurationBindingException if a path is missing or names an existing file.
+     */
+    public static EnvironmentSettings bind(final ConfigurationSnapshot snapshot)
+        throws ConfigurationBindingException {
+        final SettingsReader reader = new SettingsReader(snapshot, "environment");
+        final EnvironmentSettings settings = new EnvironmentSettings(
+            reader.getDirectory(AXIOM_HOME),
+            reader.getDirectory(SCRIPT_REPOSITORY_URI),
+            reader.getDirectories(ENDORSED_PLUGINS),
+            reader.getStringArray(SCRIPT_FILE_EXTENSIONS));
+        reader.validate();
+        return settings;
+    }
+
+    /**
+     * Reads the environment settings directly from a {@link Configuration}.
+     * @param config The configuration to read.
+     * @return The settings.
+     */
+    public static EnvironmentSettings from(final Configuration config) {
+        notNull(config, "Configuration cannot be null.");
+        final List<File> endorsedPlugins = new ArrayList<File>();
+        final String endorsedPaths = config.getString(ENDORSED_PLUGINS);
+        if (endorsedPaths != null) {
+            for (final String path : endorsedPaths.split(File.pathSeparator)) {
+                if (isNotEmpty(path)) {
+                    endorsedPlugins.add(new File(path));
+                }
+            }
+        }
+        return new EnvironmentSettings(
+            new File(config.getString(AXIOM_HOME)),
+            new File(config.getString(SCRIPT_REPOSITORY_URI)),
+            endorsedPlugins,
+            config.getStringArray(SCRIPT_FILE_EXTENSIONS));
+    }
+
+    public File getAxiomHome() {
+        return axiomHome;
+    }
+
+    public File getScriptRepository() {
+        return scriptRepository;
+    }
+
+    public List<File> getEndorsedPlugins() {
+        return endorsedPlugins;
+    }
+
+    public String[] getScriptFileExtensions() {
+        return scriptFileExtensions.clone();
+    }
+
+    /**
+     * A {@link ConfigurationBinding} for environment settings.
+     */
+    public static class Binding implements ConfigurationBinding<EnvironmentSettings> {
+
+        @Override public EnvironmentSettings bind(final ConfigurationSnapshot snapshot) {
+            return EnvironmentSettings.bind(snapshot);
+        }
+    }
+}
@@ -34,21 +34,74 @@ import org.apache.camel.CamelContext;
 import org.apache.camel.Exchange;
 import org.apache.camel.impl.DefaultComponent;
 import org.apache.camel.impl.ProcessorEndpoint;
+import org.apache.camel.impl.ServiceSupport;
 import org.apache.commons.configuration.Configuration;
 import static org.apache.commons.lang.StringUtils.equalsIgnoreCase;
 import org.axiom.integration.Environment;
+import org.axiom.service.LifecycleCoordinator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.ContextRefreshedEvent;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-public class AxiomComponent extends DefaultComponent<Exchange> {
+/**
+ * Creates endpoints that pass processing instructions to a named {@link CamelContext}
+ * (or the host context, via {@link Environment#AXIOM_HOST_URI}).
+ * <p>
+ * Endpoints are cached by target context name, and a single {@link ContextProcessingNode}
+ * is shared by all the endpoints addressing the same context, so routes that build
+ * {@code axiom:} uris dynamically don't pay for a registry lookup (and a new scripted
+ * processing node) on every exchange. A cached endpoint is dropped once its target
+ * context has been stopped, and the whole cache is cleared whenever the spring
+ * application context is refreshed or closed, or on demand via {@link #invalidate}.
+ * </p>
+ * <p>
+ * When the target is a {@link ShardedContext}, the logical context and each shard get
+ * their own processing node, and signals are distributed between them by a
+ * {@link ShardedProcessingNode}.
+ * </p>
+ * <p>
+ * If a {@link HibernationPolicy} is set, the processing nodes of managed (i.e., non-host)
+ * contexts are wrapped so the policy can stop them when idle and restart them on demand.
+ * If a {@link LifecycleCoordinator} is set, managed contexts are registered with it as
+ * their endpoints are created.
+ * </p>
+ */
+public class AxiomComponent extends DefaultComponent<Exchange> implements ApplicationListener {
 
     protected static final String NO_REGISTERED_CONTEXT =
         "No org.apache.camel.CamelContext registered under the name %s";
 
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ConcurrentMap<String, CachedEndpoint> endpoints =
+        new ConcurrentHashMap<String, CachedEndpoint>();
+    private final ConcurrentMap<CamelContext, ContextProcessingNode> nodes =
+        new ConcurrentHashMap<CamelContext, ContextProcessingNode>();
+
     private Configuration config;
+    private HibernationPolicy hibernationPolicy;
+    private LifecycleCoordinator lifecycleCoordinator;
 
     @Override
     protected ProcessorEndpoint createEndpoint(String uri, String remaining, Map parameters) throws Exception {
+        final String key = cacheKey(uri, remaining);
+        final CachedEndpoint cached = endpoints.get(key);
+        if (cached != null) {
+            if (isLive(cached.target)) {
+                return cached.endpoint;
+            }
+            log.debug("Target of {} has stopped: evicting cached endpoint.", key);
+            evict(key, cached);
+        }
+
         final CamelContext targetContext;
         if (equalsIgnoreCase(uri, Environment.AXIOM_HOST_URI)) {
             targetContext = getCamelContext();
@@ -56,18 +109,100 @@ public class AxiomComponent extends DefaultComponent<Exchange> {
             targetContext = lookup(remaining, CamelContext.class);
             if (targetContext == null) {
                 throw new IllegalArgumentException(
-                    String.format(NO_REGISTERED_CONTEXT, targetContext));
+                    String.format(NO_REGISTERED_CONTEXT, remaining));
+            }
+            if (lifecycleCoordinator != null) {
+                lifecycleCoordinator.manage(key, targetContext);
             }
         }
-        final ContextProcessingNode processor = lookupProcessingNode();
-        processor.setContext(targetContext);
-        return new ProcessorEndpoint(uri, this, processor);
+        final ProcessorEndpoint endpoint =
+            new ProcessorEndpoint(uri, this, processingNodeFor(targetContext));
+        final CachedEndpoint raced = endpoints.putIfAbsent(key, new CachedEndpoint(targetContext, endpoint));
+        return raced == null ? endpoint : raced.endpoint;
+    }
+
+    /**
+     * Removes the cached endpoint (and processing node) for the named context, so
+     * the next endpoint created for it will look the context up again.
+     * @param contextName The registered name of the target context.
+     */
+    public void invalidate(final String contextName) {
+        final String key = contextName == null ? null : contextName.trim();
+        final CachedEndpoint cached = key == null ? null : endpoints.get(key);
+        if (cached != null) {
+            evict(key, cached);
+        }
+    }
+
+    /**
+     * Removes all cached endpoints and processing nodes.
+     */
+    public void invalidateAll() {
+        endpoints.clear();
+        nodes.clear();
+    }
+
+    /**
+     * Clears the endpoint cache whenever the application context is refreshed
+     * or closed, as either may add, replace or remove registered contexts.
+     * @param event The spring application event.
+     */
+    @Override public void onApplicationEvent(final ApplicationEvent event) {
+        if (event instanceof ContextRefreshedEvent || event instanceof ContextClosedEvent) {
+            log.debug("Clearing cached axiom endpoints following {}.", event);
+            invalidateAll();
+        }
+    }
+
+    private ContextProcessingNode processingNodeFor(final CamelContext targetContext) {
+        final ContextProcessingNode existing = nodes.get(targetContext);
+        if (existing != null) {
+            return existing;
+        }
+        final ContextProcessingNode processor;
+        if (targetContext instanceof ShardedContext) {
+            final ShardedContext sharded = (ShardedContext) targetContext;
+            final List<ContextProcessingNode> shardNodes = new ArrayList<ContextProcessingNode>();
+            for (int i = 0; i < sharded.getShards().size(); i++) {
+                shardNodes.add(lookupProcessingNode());
+            }
+            processor = new ShardedProcessingNode(sharded, lookupProcessingNode(), shardNodes);
+        } else {
+            final ContextProcessingNode node = lookupProcessingNode();
+            node.setContext(targetContext);
+            processor = node;
+        }
+        final ContextProcessingNode managed = hibernationPolicy == null || targetContext == getCamelContext() ?
+            processor : hibernationPolicy.wrap(processor);
+        final ContextProcessingNode raced = nodes.putIfAbsent(targetContext, managed);
+        return raced == null ? managed : raced;
     }
 
     private ContextProcessingNode lookupProcessingNode() {
         return lookup(Environment.DEFAULT_PROCESSOR, ContextProcessingNode.class);
     }
 
+    private void evict(final String key, final CachedEndpoint cached) {
+        endpoints.remove(key, cached);
+        nodes.remove(cached.target);
+    }
+
+    private String cacheKey(final String uri, final String remaining) {
+        return equalsIgnoreCase(uri, Environment.AXIOM_HOST_URI) ?
+            Environment.AXIOM_HOST_URI : remaining.trim();
+    }
+
+    private boolean isLive(final CamelContext context) {
+        if (hibernationPolicy != null && hibernationPolicy.isHibernating(context)) {
+            return true;
+        }
+        if (context instanceof ServiceSupport) {
+            final ServiceSupport service = (ServiceSupport) context;
+            return !(service.isStopping() || service.isStopped());
+        }
+        return true;
+    }
+
     public Configuration getConfiguration() {
         return config;
     }
@@ -75,4 +210,32 @@ public class AxiomComponent extends DefaultComponent<Exchange> {
     public void setConfiguration(Configuration config) {
         this.config = config;
     }
-}
\ No newline at end of file
+
+    /**
+     * Sets the policy used to stop (and later restart) idle managed contexts.
+     * @param hibernationPolicy The policy, or {@code null} to keep contexts running.
+     */
+    public void setHibernationPolicy(final HibernationPolicy hibernationPolicy) {
+        this.hibernationPolicy = hibernationPolicy;
+    }
+
+    /**
+     * Sets the coordinator with which the contexts addressed by this component's
+     * endpoints are registered, so they are started and stopped along with the host.
+     * @param lifecycleCoordinator The coordinator, or {@code null} to leave contexts unmanaged.
+     */
+    public void setLifecycleCoordinator(final LifecycleCoordinator lifecycleCoordinator) {
+        this.lifecycleCoordinator = lifecycleCoordinator;
+    }
+
+    private static final class CachedEndpoint {
+
+        private final CamelContext target;
+        private final ProcessorEndpoint endpoint;
+
+        CachedEndpoint(final CamelContext target, final ProcessorEndpoint endpoint) {
+            this.target = target;
+            this.endpoint = endpoint;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.integration.camel;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Routes;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.integration.Environment;
+import org.axiom.service.metrics.ConfigureProfiler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implements the default processing strategy for the axiom control channel,
+ * allowing start/stop/configuration of the other <i>managed</i> camel contexts.
+ * Messages carrying any other {@link Environment#SIGNAL} header are ignored.
+ * <p>
+ * This is the java equivalent of {@code axiom/core/default_processing_node.rb},
+ * which remains available as {@link Environment#SCRIPTED_PROCESSOR}.
+ * </p>
+ */
+public class DefaultContextProcessingNode implements ContextProcessingNode {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private volatile CamelContext context;
+
+    public DefaultContextProcessingNode() {
+    }
+
+    public DefaultContextProcessingNode(final CamelContext context) {
+        this.context = context;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void process(final Exchange exchange) throws Exception {
+        final Message in = exchange.getIn();
+        final Signal signal = Signal.of(in.getHeader(Environment.SIGNAL));
+        log.debug("Signal header set to [{}].", signal);
+        if (signal == null) {
+            return;
+        }
+        final CamelContext target = context;
+        notNull(target, "Target context cannot be null.");
+
+        final ConfigureProfiler.Operation operation = ConfigureProfiler.begin(signal.label);
+        try {
+            final ConfigureProfiler.Span span = ConfigureProfiler.span(signal.stage);
+            try {
+                signal.apply(target, in);
+            } finally {
+                span.stop();
+            }
+            operation.succeeded();
+        } catch (Exception e) {
+            log.error("Unable to process {} signal: {}", signal, e.getLocalizedMessage());
+            throw e;
+        } finally {
+            operation.end();
+        }
+    }
+
+    @Override public void setContext(final CamelContext context) {
+        this.context = context;
+    }
+
+    @Override public CamelContext getContext() {
+        return context;
+    }
+
+    /**
+     * The signals understood by the processing node.
+     */
+    private enum Signal {
+        START("start", "context.start") {
+            @Override void apply(final CamelContext target, final Message in) throws Exception {
+                target.start();
+            }
+        },
+        STOP("stop", "context.stop") {
+            @Override void apply(final CamelContext target, final Message in) throws Exception {
+                target.stop();
+            }
+        },
+        CONFIGURE(Environment.SIG_CONFIGURE, "routes.add") {
+            @Override void apply(final CamelContext target, final Message in) throws Exception {
+                final Object body = in.getBody();
+                isTrue(body instanceof Routes, "Configure signal requires a route builder payload.");
+                // camel builds and starts the new routes inside addRoutes
+                target.addRoutes((Routes) body);
+            }
+        };
+
+        private final String label;
+        private final String stage;
+
+        Signal(final String label, final String stage) {
+            this.label = label;
+            this.stage = stage;
+        }
+
+        abstract void apply(CamelContext target, Message in) throws Exception;
+
+        static Signal of(final Object header) {
+            if (header != null) {
+                for (final Signal signal : values()) {
+                    if (signal.label.equals(header.toString())) {
+                        return signal;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override public String toString() {
+            return label;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.integration.camel;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.impl.ServiceSupport;
+import org.apache.camel.model.ProcessorType;
+import org.apache.camel.processor.DelegateProcessor;
+import org.apache.camel.spi.InterceptStrategy;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.integration.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decorates the {@link ContextProcessingNode} of a managed context, so that a
+ * {@link HibernationPolicy} can stop the context once it has been idle for a while.
+ * The next exchange routed through the node transparently restarts the context.
+ * <p>
+ * Activity is tracked by an {@link InterceptStrategy} installed on the managed context
+ * itself, so exchanges flowing through the context's own routes (and not just the
+ * control signals sent through this node) keep it awake. A context is never stopped
+ * whilst exchanges are in flight, nor whilst it has routes that were started before
+ * the strategy was installed (and whose activity therefore can't be seen). A context
+ * that is already stopped (e.g. by an explicit {@code stop} signal) is left alone, so
+ * it is not restarted by the next signal.
+ * </p>
+ */
+public class HibernatingProcessingNode implements ContextProcessingNode {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ContextProcessingNode delegate;
+    private final HibernationPolicy policy;
+    private final AtomicInteger inflight = new AtomicInteger();
+    private final InterceptStrategy activityTracker = new ActivityTracker();
+
+    private volatile long lastActivity = System.nanoTime();
+    private volatile boolean observing;
+    private volatile boolean hibernating;
+
+    public HibernatingProcessingNode(final ContextProcessingNode delegate, final HibernationPolicy policy) {
+        notNull(delegate, "Processing node cannot be null.");
+        notNull(policy, "Hibernation policy cannot be null.");
+        this.delegate = delegate;
+        this.policy = policy;
+        track(delegate.getContext());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void process(final Exchange exchange) throws Exception {
+        lastActivity = System.nanoTime();
+        if (hibernating) {
+            final Object signal = exchange.getIn().getHeader(Environment.SIGNAL);
+            if ("stop".equals(signal)) {
+                // an explicit stop leaves the context down, so there's nothing to wake
+                release();
+            } else {
+                wake();
+            }
+        }
+        delegate.process(exchange);
+    }
+
+    /**
+     * Stops the target context if it is running, nothing has been processed for
+     * {@code idleNanos} and no exchanges are in flight.
+     * @param now The current {@link System#nanoTime()}.
+     * @param idleNanos The idle period, in nanoseconds.
+     * @return {@code true} if the context was stopped, otherwise {@code false}.
+     * @throws Exception if the context fails to stop.
+     */
+    synchronized boolean hibernateIfIdle(final long now, final long idleNanos) throws Exception {
+        if (hibernating || inflight.get() > 0 || now - lastActivity < idleNanos) {
+            return false;
+        }
+        final CamelContext context = getContext();
+        if (context instanceof ServiceSupport && !((ServiceSupport) context).isStarted()) {
+            return false;
+        }
+        if (!observing && !context.getRoutes().isEmpty()) {
+            log.debug("Not hibernating {}: its routes were started before activity was tracked.",
+                context.getName());
+            return false;
+        }
+        log.info("Hibernating idle context {}.", context.getName());
+        context.stop();
+        hibernating = true;
+        return true;
+    }
+
+    /**
+     * Gets the number of exchanges currently being processed by the managed context.
+     */
+    public int getInflightCount() {
+        return inflight.get();
+    }
+
+    public boolean isHibernating() {
+        return hibernating;
+    }
+
+    @Override public void setContext(final CamelContext context) {
+        final CamelContext previous = delegate.getContext();
+        delegate.setContext(context);
+        if (previous != context) {
+            untrack(previous);
+            track(context);
+        }
+    }
+
+    /**
+     * Removes the activity tracking installed on the managed context.
+     */
+    void detach() {
+        untrack(getContext());
+    }
+
+    @Override public CamelContext getContext() {
+        return delegate.getContext();
+    }
+
+    private synchronized void release() {
+        if (hibernating) {
+            hibernating = false;
+            policy.woken(this, -1L);
+        }
+    }
+
+    private synchronized void wake() throws Exception {
+        if (!hibernating) {
+            return;
+        }
+        final long start = System.nanoTime();
+        final CamelContext context = getContext();
+        log.info("Restarting hibernated context {}.", context.getName());
+        context.start();
+        hibernating = false;
+        policy.woken(this, System.nanoTime() - start);
+    }
+
+    private void track(final CamelContext context) {
+        if (context != null) {
+            observing = false;
+            context.addInterceptStrategy(activityTracker);
+        }
+    }
+
+    private void untrack(final CamelContext context) {
+        if (context != null) {
+            context.getInterceptStrategies().remove(activityTracker);
+        }
+    }
+
+    /**
+     * Records the activity of every processing node in the managed context.
+     */
+    private final class ActivityTracker implements InterceptStrategy {
+
+        @Override public Processor wrapProcessorInInterceptors(final ProcessorType processorType,
+            final Processor target) throws Exception {
+            observing = true;
+            return new DelegateProcessor(target) {
+                @Override public void process(final Exchange exchange) throws Exception {
+                    inflight.incrementAndGet();
+                    lastActivity = System.nanoTime();
+                    try {
+                        processNext(exchange);
+                    } finally {
+                        lastActivity = System.nanoTime();
+                        inflight.decrementAndGet();
+                    }
+                }
+            };
+        }
+    }
+}
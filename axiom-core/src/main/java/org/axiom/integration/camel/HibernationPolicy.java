@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.integration.camel;
+
+import org.apache.camel.CamelContext;
+import org.apache.commons.configuration.Configuration;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.service.metrics.Gauge;
+import org.axiom.service.metrics.MetricsRegistry;
+import org.axiom.service.metrics.StripedCounter;
+import org.axiom.service.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Stops managed contexts that have been idle (i.e., have had no exchanges through
+ * their routes, nor signals through their {@code axiom:} endpoint) for longer than a
+ * configured period, restarting them on the next exchange routed through their
+ * {@code axiom:} endpoint.
+ * The {@link AxiomComponent} wraps the processing node of each managed context
+ * (but never the host context) via {@link HibernationPolicy#wrap}.
+ * <p>
+ * The number of hibernating contexts, the number of hibernations and the restart
+ * latency are published to the {@link MetricsRegistry} (when one is supplied) as
+ * {@code axiom.hibernation.hibernating}, {@code axiom.hibernation.count} and
+ * {@code axiom.hibernation.restart}.
+ * </p>
+ */
+public class HibernationPolicy {
+
+    protected static final String IDLE_TIMEOUT = "axiom.hibernation.idle.timeout";
+    protected static final String CHECK_INTERVAL = "axiom.hibernation.check.interval";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ConcurrentMap<CamelContext, HibernatingProcessingNode> nodes =
+        new ConcurrentHashMap<CamelContext, HibernatingProcessingNode>();
+    private final AtomicInteger hibernating = new AtomicInteger();
+
+    private long idleTimeout;
+    private long checkInterval;
+    private StripedCounter hibernations = new StripedCounter();
+    private Timer restarts = new Timer("axiom.hibernation.restart");
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Applies the {@code axiom.hibernation.*} settings from the supplied configuration.
+     * @param config The axiom configuration.
+     */
+    public void setConfiguration(final Configuration config) {
+        notNull(config, "Configuration cannot be null.");
+        setIdleTimeout(config.getLong(IDLE_TIMEOUT, 0L));
+        setCheckInterval(config.getLong(CHECK_INTERVAL, 0L));
+    }
+
+    /**
+     * Sets how long a context may sit idle before it is stopped.
+     * @param idleTimeout The idle period in milliseconds; zero disables hibernation.
+     */
+    public void setIdleTimeout(final long idleTimeout) {
+        isTrue(idleTimeout >= 0, "Idle timeout cannot be negative.");
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Sets how often contexts are checked for idleness.
+     * @param checkInterval The interval in milliseconds; zero means a quarter of the idle timeout.
+     */
+    public void setCheckInterval(final long checkInterval) {
+        isTrue(checkInterval >= 0, "Check interval cannot be negative.");
+        this.checkInterval = checkInterval;
+    }
+
+    /**
+     * Publishes hibernation metrics to the supplied registry.
+     * @param registry The metrics registry.
+     */
+    public void setMetricsRegistry(final MetricsRegistry registry) {
+        notNull(registry, "Metrics registry cannot be null.");
+        hibernations = registry.counter("axiom.hibernation.count");
+        restarts = registry.timer("axiom.hibernation.restart");
+        registry.gauge("axiom.hibernation.hibernating", new Gauge() {
+            @Override public Object getValue() {
+                return hibernating.get();
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return idleTimeout > 0;
+    }
+
+    /**
+     * Wraps the processing node of a managed context, if hibernation is enabled.
+     * @param node The node to wrap.
+     * @return A {@link HibernatingProcessingNode}, or {@code node} itself if hibernation is disabled.
+     */
+    public ContextProcessingNode wrap(final ContextProcessingNode node) {
+        if (!isEnabled()) {
+            return node;
+        }
+        final HibernatingProcessingNode wrapped = new HibernatingProcessingNode(node, this);
+        final HibernatingProcessingNode replaced = nodes.put(node.getContext(), wrapped);
+        if (replaced != null) {
+            replaced.detach();
+            if (replaced.isHibernating()) {
+                hibernating.decrementAndGet();
+            }
+        }
+        return wrapped;
+    }
+
+    /**
+     * Checks whether the supplied context has been stopped by this policy.
+     * @param context A managed context.
+     * @return {@code true} if the context is hibernating, otherwise {@code false}.
+     */
+    public boolean isHibernating(final CamelContext context) {
+        final HibernatingProcessingNode node = nodes.get(context);
+        return node != null && node.isHibernating();
+    }
+
+    public int getHibernatingCount() {
+        return hibernating.get();
+    }
+
+    public Timer getRestartStatistics() {
+        return restarts;
+    }
+
+    /**
+     * Stops every managed context that has been idle for longer than the idle timeout.
+     * @return The number of contexts stopped.
+     */
+    public int hibernateIdleContexts() {
+        final long now = System.nanoTime();
+        final long idleNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+        int stopped = 0;
+        for (final Map.Entry<CamelContext, HibernatingProcessingNode> entry : nodes.entrySet()) {
+            try {
+                if (entry.getValue().hibernateIfIdle(now, idleNanos)) {
+                    hibernating.incrementAndGet();
+                    hibernations.increment();
+                    stopped++;
+                }
+            } catch (Exception e) {
+                log.warn("Unable to hibernate {}: {}", entry.getKey().getName(), e.getLocalizedMessage());
+            }
+        }
+        return stopped;
+    }
+
+    public synchronized void start() {
+        if (scheduler != null || !isEnabled()) {
+            return;
+        }
+        final long interval = checkInterval > 0 ? checkInterval : Math.max(1L, idleTimeout / 4);
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "axiom-hibernation");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override public void run() {
+                hibernateIdleContexts();
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Hibernating contexts idle for more than {}ms.", idleTimeout);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Called by a node when its context leaves hibernation.
+     * @param node The node.
+     * @param restartNanos The time taken to restart the context, or a negative
+     * value if it was explicitly stopped rather than restarted.
+     */
+    void woken(final HibernatingProcessingNode node, final long restartNanos) {
+        hibernating.decrementAndGet();
+        if (restartNanos >= 0) {
+            restarts.update(restartNanos);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.integration.camel;
+
+import org.apache.camel.model.FromType;
+import org.apache.camel.model.ProcessorType;
+import org.apache.camel.model.RouteType;
+
+import static java.lang.String.format;
+
+/**
+ * Helpers for identifying routes and processing nodes in the camel
+ * model, which (in camel 1.x) are not given stable ids of their own.
+ */
+public class RouteSupport {
+
+    /**
+     * The key used when a node cannot be traced back to its route.
+     */
+    public static final String UNKNOWN_ROUTE = "unknown";
+
+    /**
+     * Walks up the model from {@code processorType} to the enclosing route.
+     * @param processorType A node in the route model.
+     * @return The enclosing {@link RouteType}, or {@code null} if there isn't one.
+     */
+    public static RouteType findRoute(final ProcessorType processorType) {
+        ProcessorType node = processorType;
+        while (node != null && !(node instanceof RouteType)) {
+            node = node.getParent();
+        }
+        return (RouteType) node;
+    }
+
+    /**
+     * Describes a route by its input uri(s), which is how camel 1.x identifies routes.
+     * @param route The route to describe.
+     * @return A comma separated list of input uris (or refs).
+     */
+    public static String describeRoute(final RouteType route) {
+        if (route == null || route.getInputs() == null || route.getInputs().isEmpty()) {
+            return UNKNOWN_ROUTE;
+        }
+        final StringBuilder buffer = new StringBuilder();
+        for (final Object input : route.getInputs()) {
+            final FromType from = (FromType) input;
+            if (buffer.length() > 0) {
+                buffer.append(',');
+            }
+            buffer.append(from.getUri() != null ? from.getUri() : "ref:" + from.getRef());
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Describes a processing node the same way camel's trace formatter does.
+     * @param processorType The node to describe.
+     * @return The node's short name and label.
+     */
+    public static String describeNode(final ProcessorType processorType) {
+        return format("%s(%s)", processorType.getShortName(), processorType.getLabel());
+    }
+
+    /**
+     * Determines whether {@code processorType} is a direct child of {@code route}.
+     * @param route The route.
+     * @param processorType The node.
+     * @return {@code true} if the node is one of the route's top level outputs.
+     */
+    public static boolean isTopLevel(final RouteType route, final ProcessorType processorType) {
+        return route != null && processorType.getParent() == route;
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.integration.camel;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.Routes;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.service.RouteLoader;
+import org.axiom.util.ConsistentHashRing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A logical {@link CamelContext} backed by a number of shard contexts, each with its
+ * own thread pools and lifecycle. Routes added to the logical context run there, so
+ * their consumers (e.g., a jetty port) exist exactly once; routes that send to
+ * {@link #DISPATCH_URI} hand each exchange to the shard selected by a consistent hash
+ * of its {@link ShardedContext#getShardHeader() shard header}, where it is delivered
+ * to the {@link #getShardUri() shard endpoint}. Exchanges without a shard header are
+ * spread between the shards by exchange id.
+ * <p>
+ * The routes consuming from each shard endpoint are supplied by a {@link RouteLoader}
+ * via {@link #addShardRoutes(RouteLoader)}, which must build a new set of routes for
+ * every shard. Starting the logical context starts every shard before the logical
+ * routes begin consuming, and stopping it stops the logical routes first.
+ * </p>
+ */
+public class ShardedContext extends DefaultCamelContext {
+
+    /**
+     * The default header used to select a shard.
+     */
+    public static final String DEFAULT_SHARD_HEADER = "axiom-shard-key";
+
+    /**
+     * The endpoint, in the logical context, through which exchanges are handed to the shards.
+     */
+    public static final String DISPATCH_URI = "direct:axiom-shards";
+
+    /**
+     * The default endpoint, in each shard, at which dispatched exchanges are delivered.
+     */
+    public static final String DEFAULT_SHARD_URI = "direct:axiom-shard";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final AtomicBoolean dispatching = new AtomicBoolean();
+    private final ConcurrentMap<CamelContext, ProducerTemplate<Exchange>> producers =
+        new ConcurrentHashMap<CamelContext, ProducerTemplate<Exchange>>();
+
+    private int shardCount = Runtime.getRuntime().availableProcessors();
+    private int virtualNodes = ConsistentHashRing.DEFAULT_VIRTUAL_NODES;
+    private String shardHeader = DEFAULT_SHARD_HEADER;
+    private String shardUri = DEFAULT_SHARD_URI;
+    private volatile ConsistentHashRing<CamelContext> ring;
+
+    public ShardedContext() {
+    }
+
+    public ShardedContext(final int shardCount) {
+        setShardCount(shardCount);
+    }
+
+    /**
+     * Gets the shard contexts, creating them on first use.
+     * @return An unmodifiable list of shards.
+     */
+    public List<CamelContext> getShards() {
+        return getRing().getMembers();
+    }
+
+    /**
+     * Selects the shard that owns the supplied key.
+     * @param key The shard key (e.g., the value of the shard header).
+     * @return The owning shard.
+     */
+    public CamelContext shardFor(final Object key) {
+        return getRing().get(key);
+    }
+
+    /**
+     * Selects the shard for an exchange, based on its shard header.
+     * @param exchange The exchange.
+     * @return The owning shard, or {@code null} if the exchange has no shard header.
+     */
+    public CamelContext shardFor(final Exchange exchange) {
+        final Object key = exchange.getIn().getHeader(shardHeader);
+        return key == null ? null : shardFor(key);
+    }
+
+    /**
+     * Adds the supplied routes to the logical context, installing the
+     * {@link #DISPATCH_URI dispatch route} alongside the first routes added.
+     * @param builder The routes to add.
+     * @throws Exception if the routes cannot be added.
+     */
+    @Override public void addRoutes(final Routes builder) throws Exception {
+        if (dispatching.compareAndSet(false, true)) {
+            super.addRoutes(new DispatchRoute());
+        }
+        super.addRoutes(builder);
+    }
+
+    /**
+     * Adds a new set of routes, loaded from the supplied {@link RouteLoader}, to every shard.
+     * @param loader Loads the routes for one shard; called once per shard.
+     * @throws Exception if any shard fails to add its routes.
+     */
+    public void addShardRoutes(final RouteLoader loader) throws Exception {
+        notNull(loader, "Route loader cannot be null.");
+        RouteBuilder previous = null;
+        for (final CamelContext shard : getShards()) {
+            final RouteBuilder builder = loader.load();
+            notNull(builder, "Route loader returned no routes.");
+            isTrue(builder != previous, "Route loader must create a new route builder for each shard.");
+            shard.addRoutes(builder);
+            previous = builder;
+        }
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public void setShardCount(final int shardCount) {
+        isTrue(shardCount > 0, "Shard count must be positive.");
+        isTrue(ring == null, "Shard count cannot be changed once the shards exist.");
+        this.shardCount = shardCount;
+    }
+
+    public void setVirtualNodes(final int virtualNodes) {
+        isTrue(virtualNodes > 0, "Virtual nodes must be positive.");
+        isTrue(ring == null, "Virtual nodes cannot be changed once the shards exist.");
+        this.virtualNodes = virtualNodes;
+    }
+
+    public String getShardHeader() {
+        return shardHeader;
+    }
+
+    public void setShardHeader(final String shardHeader) {
+        notNull(shardHeader, "Shard header cannot be null.");
+        this.shardHeader = shardHeader;
+    }
+
+    /**
+     * Gets the endpoint, in each shard, at which dispatched exchanges are delivered.
+     * A {@code direct:} endpoint processes the exchange on the dispatching thread (so
+     * request/reply exchanges see their response); a {@code seda:} endpoint hands it
+     * to the shard's own threads.
+     */
+    public String getShardUri() {
+        return shardUri;
+    }
+
+    public void setShardUri(final String shardUri) {
+        notNull(shardUri, "Shard uri cannot be null.");
+        this.shardUri = shardUri;
+    }
+
+    @Override protected void doStart() throws Exception {
+        for (final CamelContext shard : getShards()) {
+            shard.start();
+        }
+        super.doStart();
+        log.info("Started {} shards of {}.", shardCount, getName());
+    }
+
+    @Override protected void doStop() throws Exception {
+        try {
+            super.doStop();
+        } finally {
+            for (final CamelContext shard : getShards()) {
+                shard.stop();
+            }
+            producers.clear();
+        }
+    }
+
+    /**
+     * Hands an exchange to the shard endpoint of the shard that owns it.
+     * @param exchange The exchange to dispatch.
+     */
+    void dispatch(final Exchange exchange) {
+        CamelContext shard = shardFor(exchange);
+        if (shard == null) {
+            shard = shardFor(exchange.getExchangeId());
+        }
+        producerFor(shard).send(shardUri, exchange);
+    }
+
+    @SuppressWarnings({"unchecked"})
+    private ProducerTemplate<Exchange> producerFor(final CamelContext shard) {
+        final ProducerTemplate<Exchange> existing = producers.get(shard);
+        if (existing != null) {
+            return existing;
+        }
+        final ProducerTemplate<Exchange> producer = shard.createProducerTemplate();
+        final ProducerTemplate<Exchange> raced = producers.putIfAbsent(shard, producer);
+        return raced == null ? producer : raced;
+    }
+
+    private ConsistentHashRing<CamelContext> getRing() {
+        ConsistentHashRing<CamelContext> current = ring;
+        if (current == null) {
+            synchronized (this) {
+                current = ring;
+                if (current == null) {
+                    current = ring = new ConsistentHashRing<CamelContext>(createShards(), virtualNodes);
+                }
+            }
+        }
+        return current;
+    }
+
+    private List<CamelContext> createShards() {
+        final List<CamelContext> shards = new ArrayList<CamelContext>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            final DefaultCamelContext shard = new DefaultCamelContext(getRegistry());
+            shard.setName(String.format("%s-shard-%d", getName(), i));
+            shards.add(shard);
+        }
+        return Collections.unmodifiableList(shards);
+    }
+
+    private class DispatchRoute extends RouteBuilder {
+
+        @Override public void configure() throws Exception {
+            from(DISPATCH_URI).process(new Processor() {
+                @Override public void process(final Exchange exchange) throws Exception {
+                    dispatch(exchange);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.integration.camel;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.integration.Environment;
+import org.axiom.service.RouteLoader;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link ContextProcessingNode} for a {@link ShardedContext}. Signals carrying a
+ * shard header are handed to the processing node of the selected shard; all others
+ * (e.g., a {@code start} signal, or the routes whose consumers front the shards) are
+ * handed to the processing node of the logical context. A {@code configure} signal
+ * whose payload is a {@link RouteLoader} gives every shard its own set of routes,
+ * via {@link ShardedContext#addShardRoutes(RouteLoader)}.
+ * <p>
+ * Data exchanges never pass through this node; they are distributed by the
+ * logical context's {@link ShardedContext#DISPATCH_URI dispatch route}.
+ * </p>
+ */
+public class ShardedProcessingNode implements ContextProcessingNode {
+
+    private final ContextProcessingNode contextNode;
+    private final ContextProcessingNode[] shardNodes;
+    private volatile ShardedContext context;
+    private volatile Map<CamelContext, ContextProcessingNode> nodes;
+
+    public ShardedProcessingNode(final ShardedContext context, final ContextProcessingNode contextNode,
+        final List<ContextProcessingNode> shardNodes) {
+        notNull(contextNode, "Context processing node cannot be null.");
+        notNull(shardNodes, "Shard processing nodes cannot be null.");
+        this.contextNode = contextNode;
+        this.shardNodes = shardNodes.toArray(new ContextProcessingNode[shardNodes.size()]);
+        setContext(context);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void process(final Exchange exchange) throws Exception {
+        final CamelContext shard = context.shardFor(exchange);
+        if (shard != null) {
+            nodes.get(shard).process(exchange);
+            return;
+        }
+        final Message in = exchange.getIn();
+        if (Environment.SIG_CONFIGURE.equals(in.getHeader(Environment.SIGNAL)) &&
+            in.getBody() instanceof RouteLoader) {
+            context.addShardRoutes((RouteLoader) in.getBody());
+            return;
+        }
+        contextNode.process(exchange);
+    }
+
+    /**
+     * Re-targets this node (and the processing nodes of the logical context
+     * and each shard) at another {@link ShardedContext} with the same number of shards.
+     * @param context The sharded context to target.
+     */
+    @Override public void setContext(final CamelContext context) {
+        isTrue(context instanceof ShardedContext, "Sharded processing nodes require a sharded context.");
+        final ShardedContext sharded = (ShardedContext) context;
+        final List<CamelContext> shards = sharded.getShards();
+        isTrue(shardNodes.length == shards.size(), "One processing node is required per shard.");
+        final Map<CamelContext, ContextProcessingNode> targets =
+            new IdentityHashMap<CamelContext, ContextProcessingNode>();
+        for (int i = 0; i < shardNodes.length; i++) {
+            shardNodes[i].setContext(shards.get(i));
+            targets.put(shards.get(i), shardNodes[i]);
+        }
+        contextNode.setContext(sharded);
+        this.nodes = targets;
+        this.context = sharded;
+    }
+
+    @Override public CamelContext getContext() {
+        return context;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.plugins;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.service.journal.JournalWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records each exchange passing through a route into a journal, which can later be replayed
+ * with a {@link org.axiom.service.journal.Replayer}. Recorders for the same file share a single
+ * {@link JournalWriter}. A failure to write the journal is logged and does not fail the exchange.
+ */
+public class ExchangeRecorder implements Processor {
+
+    private static final Map<File, JournalWriter> writers = new HashMap<File, JournalWriter>();
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final JournalWriter writer;
+    private volatile boolean warned;
+
+    public ExchangeRecorder(final String pathToJournal) throws IOException {
+        this(writerFor(new File(pathToJournal)));
+    }
+
+    public ExchangeRecorder(final JournalWriter writer) {
+        notNull(writer, "Journal writer cannot be null.");
+        this.writer = writer;
+    }
+
+    private static JournalWriter writerFor(final File file) throws IOException {
+        final File key = file.getCanonicalFile();
+        synchronized (writers) {
+            JournalWriter writer = writers.get(key);
+            if (writer == null) {
+                writer = new JournalWriter(key);
+                writers.put(key, writer);
+            }
+            return writer;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void process(final Exchange exchange) throws Exception {
+        try {
+            writer.append(exchange);
+        } catch (IOException e) {
+            if (!warned) {
+                warned = true;
+                log.warn("Unable to record exchanges to " + writer.getFile() + ".", e);
+            }
+        }
+    }
+
+    public JournalWriter getWriter() {
+        return writer;
+    }
+}
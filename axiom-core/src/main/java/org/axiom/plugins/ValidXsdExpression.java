@@ -32,11 +32,15 @@ import org.apache.camel.*;
 import org.apache.commons.io.IOUtils;
 import static org.apache.commons.lang.Validate.*;
 import org.axiom.integration.Environment;
+import org.axiom.service.events.EventKind;
+import org.axiom.service.events.EventProbe;
+import org.axiom.service.events.FlightEvents;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.*;
 
 import javax.xml.XMLConstants;
+import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.*;
 import java.io.File;
@@ -52,18 +56,24 @@ public class ValidXsdExpression implements Expression, Predicate<Exchange> {
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
     private final Schema schema;
+    private final String description;
 
     public ValidXsdExpression(final String pathToXsd) throws SAXException {
-        this(factory.newSchema(new File(pathToXsd)));
+        this(compile(new StreamSource(new File(pathToXsd)), pathToXsd), pathToXsd);
     }
 
     public ValidXsdExpression(final URL url) throws SAXException {
-        this(factory.newSchema(url));
+        this(compile(new StreamSource(url.toExternalForm()), url.toExternalForm()), url.toExternalForm());
     }
 
     public ValidXsdExpression(final Schema schema) {
+        this(schema, "schema");
+    }
+
+    private ValidXsdExpression(final Schema schema, final String description) {
         notNull(schema, "Schema cannot be null.");
         this.schema = schema;
+        this.description = description;
     }
 
     /**
@@ -74,8 +84,20 @@ public class ValidXsdExpression implements Expression, Predicate<Exchange> {
      */
     public static ValidXsdExpression forSchema(final String schemaXml) throws SAXException {
         final Schema schema =
-            factory.newSchema(new StreamSource(IOUtils.toInputStream(schemaXml)));
-        return new ValidXsdExpression(schema);
+            compile(new StreamSource(IOUtils.toInputStream(schemaXml)), "inline");
+        return new ValidXsdExpression(schema, "inline");
+    }
+
+    private static Schema compile(final Source source, final String description) throws SAXException {
+        final EventProbe event = FlightEvents.begin(EventKind.SCHEMA_COMPILATION, description);
+        boolean failed = true;
+        try {
+            final Schema schema = factory.newSchema(source);
+            failed = false;
+            return schema;
+        } finally {
+            event.commit(null, failed);
+        }
     }
 
     /**
@@ -90,6 +112,7 @@ public class ValidXsdExpression implements Expression, Predicate<Exchange> {
         if (body == null ) {
             throw new InvalidPayloadRuntimeException(exchange, String.class);
         }
+        final EventProbe event = FlightEvents.begin(EventKind.SCHEMA_VALIDATION, description);
         try {
             final Validator validator = schema.newValidator();
             validator.setErrorHandler(
@@ -113,6 +136,8 @@ public class ValidXsdExpression implements Expression, Predicate<Exchange> {
             errors.add(e);
         } catch (IOException e) {
             errors.add(e);
+        } finally {
+            event.commit(errors.isEmpty() ? null : errors.size() + " error(s)", !errors.isEmpty());
         }
         final Message outputChannel = exchange.getOut();
         outputChannel.setBody(body, String.class);
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.Predicate;
+import static org.apache.commons.lang.Validate.*;
+
+import java.util.regex.Pattern;
+
+/**
+ * A {@link Predicate} comparing the value of an {@link Expression} (such as
+ * {@code header("foo")} or {@code body()}) against a constant. Unlike the opaque
+ * predicates produced by camel's {@code PredicateBuilder}, these expose their
+ * parts, which allows a {@link PredicateCompiler} to evaluate each expression
+ * once for many predicates.
+ * <p>
+ * Before comparison, the expression value is converted to the type of the constant
+ * using the exchange's type converter (when available).
+ * </p>
+ * Example:
+ * <pre>
+ *      new PredicateExpectation&lt;Exchange&gt;("routed to billing",
+ *          ComparisonPredicate.isEqualTo(header("destination"), "billing"));
+ * </pre>
+ */
+public final class ComparisonPredicate<E extends Exchange> implements Predicate<E> {
+
+    /**
+     * The comparison to apply.
+     */
+    public enum Operator {
+        EQUAL("=="),
+        NOT_EQUAL("!="),
+        GREATER_THAN(">"),
+        GREATER_OR_EQUAL(">="),
+        LESS_THAN("<"),
+        LESS_OR_EQUAL("<="),
+        CONTAINS("contains"),
+        REGEX("matches");
+
+        private final String symbol;
+
+        Operator(final String symbol) {
+            this.symbol = symbol;
+        }
+
+        public String getSymbol() {
+            return symbol;
+        }
+    }
+
+    private final Expression<E> expression;
+    private final String key;
+    private final boolean keyed;
+    private final Operator operator;
+    private final Object constant;
+    private final Pattern pattern;
+
+    /**
+     * Creates a comparison. The expression is shared only with comparisons built on
+     * the same expression instance; its string form is used solely for description.
+     * @param expression The expression to evaluate.
+     * @param operator The comparison to apply.
+     * @param constant The value to compare against.
+     */
+    public ComparisonPredicate(final Expression<E> expression, final Operator operator, final Object constant) {
+        this(String.valueOf(expression), false, expression, operator, constant);
+    }
+
+    /**
+     * Creates a comparison, identifying the expression by the supplied key. Comparisons
+     * with the same key share one evaluation of the first such expression, so the key
+     * must identify what the expression evaluates.
+     * @param key The key under which the expression value is shared.
+     * @param expression The expression to evaluate.
+     * @param operator The comparison to apply.
+     * @param constant The value to compare against.
+     */
+    public ComparisonPredicate(final String key, final Expression<E> expression,
+        final Operator operator, final Object constant) {
+        this(key, true, expression, operator, constant);
+    }
+
+    private ComparisonPredicate(final String key, final boolean keyed, final Expression<E> expression,
+        final Operator operator, final Object constant) {
+        notEmpty(key, "Expression key cannot be null or empty.");
+        notNull(expression, "Expression cannot be null.");
+        notNull(operator, "Operator cannot be null.");
+        notNull(constant, "Constant cannot be null.");
+        this.key = key;
+        this.keyed = keyed;
+        this.expression = expression;
+        this.operator = operator;
+        this.constant = constant;
+        this.pattern = operator == Operator.REGEX ? Pattern.compile(String.valueOf(constant)) : null;
+    }
+
+    public static <E extends Exchange> ComparisonPredicate<E> isEqualTo(final Expression<E> expression, final Object value) {
+        return new ComparisonPredicate<E>(expression, Operator.EQUAL, value);
+    }
+
+    public static <E extends Exchange> ComparisonPredicate<E> isNotEqualTo(final Expression<E> expression, final Object value) {
+        return new ComparisonPredicate<E>(expression, Operator.NOT_EQUAL, value);
+    }
+
+    public static <E extends Exchange> ComparisonPredicate<E> isGreaterThan(final Expression<E> expression, final Object value) {
+        return new ComparisonPredicate<E>(expression, Operator.GREATER_THAN, value);
+    }
+
+    public static <E extends Exchange> ComparisonPredicate<E> isGreaterThanOrEqualTo(final Expression<E> expression, final Object value) {
+        return new ComparisonPredicate<E>(expression, Operator.GREATER_OR_EQUAL, value);
+    }
+
+    public static <E extends Exchange> ComparisonPredicate<E> isLessThan(final Expression<E> expression, final Object value) {
+        return new ComparisonPredicate<E>(expression, Operator.LESS_THAN, value);
+    }
+
+    public static <E extends Exchange> ComparisonPredicate<E> isLessThanOrEqualTo(final Expression<E> expression, final Object value) {
+        return new ComparisonPredicate<E>(expression, Operator.LESS_OR_EQUAL, value);
+    }
+
+    public static <E extends Exchange> ComparisonPredicate<E> contains(final Expression<E> expression, final Object value) {
+        return new ComparisonPredicate<E>(expression, Operator.CONTAINS, value);
+    }
+
+    public static <E extends Exchange> ComparisonPredicate<E> regex(final Expression<E> expression, final String regex) {
+        return new ComparisonPredicate<E>(expression, Operator.REGEX, regex);
+    }
+
+    public Expression<E> getExpression() {
+        return expression;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Determines whether the expression was identified by an explicitly supplied key,
+     * rather than by its instance.
+     */
+    public boolean isKeyed() {
+        return keyed;
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    public Object getConstant() {
+        return constant;
+    }
+
+    @Override public boolean matches(final E exchange) {
+        return matchesValue(exchange, expression.evaluate(exchange));
+    }
+
+    @Override public void assertMatches(final String text, final E exchange) {
+        final Object value = expression.evaluate(exchange);
+        if (!matchesValue(exchange, value)) {
+            throw new AssertionError(failureMessage(text, value));
+        }
+    }
+
+    /**
+     * Applies the comparison to a value which has already been evaluated.
+     * @param exchange The exchange from which the value was taken.
+     * @param value The value of the expression.
+     * @return {@code true} if the value satisfies the comparison.
+     */
+    @SuppressWarnings({"unchecked"})
+    boolean matchesValue(final E exchange, final Object value) {
+        if (value == null) {
+            return operator == Operator.NOT_EQUAL;
+        }
+        switch (operator) {
+            case EQUAL:
+                return constant.equals(convert(exchange, value, constant.getClass()));
+            case NOT_EQUAL:
+                return !constant.equals(convert(exchange, value, constant.getClass()));
+            case CONTAINS:
+                return String.valueOf(value).contains(String.valueOf(constant));
+            case REGEX:
+                return pattern.matcher(String.valueOf(value)).matches();
+            default:
+                final Object converted = convert(exchange, value, constant.getClass());
+                if (!(converted instanceof Comparable) || !constant.getClass().isInstance(converted)) {
+                    return false;
+                }
+                final int comparison = ((Comparable<Object>) converted).compareTo(constant);
+                switch (operator) {
+                    case GREATER_THAN:
+                        return comparison > 0;
+                    case GREATER_OR_EQUAL:
+                        return comparison >= 0;
+                    case LESS_THAN:
+                        return comparison < 0;
+                    default:
+                        return comparison <= 0;
+                }
+        }
+    }
+
+    String failureMessage(final String text, final Object value) {
+        return String.format("%s: expected %s but was %s", text, this, value);
+    }
+
+    @Override public String toString() {
+        return key + " " + operator.getSymbol() + " " + constant;
+    }
+
+    static Object convert(final Exchange exchange, final Object value, final Class<?> type) {
+        if (type.isInstance(value)) {
+            return value;
+        }
+        final CamelContext context = exchange.getContext();
+        if (context == null) {
+            return value;
+        }
+        final Object converted = context.getTypeConverter().convertTo(type, value);
+        return converted == null ? value : converted;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of expectations compiled by a {@link PredicateCompiler}. Each distinct
+ * expression is evaluated once per exchange, and the results shared by every
+ * comparison made against it. The time recorded against each compiled expectation
+ * is the time taken by its expression group as a whole.
+ */
+public final class CompiledExpectations<E extends Exchange> implements Expectation<E> {
+
+    private final List<Expectation<E>> expectations;
+    private final List<Branch<E>> branches;
+    private final List<Integer> opaque;
+
+    CompiledExpectations(final List<Expectation<E>> expectations,
+        final List<Branch<E>> branches, final List<Integer> opaque) {
+        this.expectations = Collections.unmodifiableList(expectations);
+        this.branches = branches;
+        this.opaque = opaque;
+    }
+
+    /**
+     * Evaluates every expectation against the supplied exchange.
+     * @param exchange The exchange to verify.
+     * @return A {@link Verdict}, with results in the order the expectations were compiled.
+     */
+    public Verdict evaluate(final E exchange) {
+        final long start = System.nanoTime();
+        final Verdict.Result[] results = new Verdict.Result[expectations.size()];
+        for (final Branch<E> branch : branches) {
+            branch.evaluate(exchange, expectations, results);
+        }
+        for (final Integer index : opaque) {
+            results[index] = ExpectationEngine.verify(expectations.get(index), exchange);
+        }
+        final List<Verdict.Result> ordered = new ArrayList<Verdict.Result>(results.length);
+        Collections.addAll(ordered, results);
+        return new Verdict(ordered, System.nanoTime() - start);
+    }
+
+    /**
+     * Verifies every expectation, throwing the first failure.
+     * @param exchange The exchange to verify.
+     * @throws VerificationFailureException if any expectation is not met.
+     */
+    @Override public void verify(final E exchange) throws VerificationFailureException {
+        evaluate(exchange).assertPassed();
+    }
+
+    public List<Expectation<E>> getExpectations() {
+        return expectations;
+    }
+
+    /**
+     * Gets the number of distinct expressions evaluated for each exchange.
+     * @return The number of shared expression groups.
+     */
+    public int getExpressionCount() {
+        return branches.size();
+    }
+
+    /**
+     * A single expression and the comparisons made against its value.
+     */
+    static final class Branch<E extends Exchange> {
+
+        private final Expression<E> expression;
+        private final List<Slot<E>> slots = new ArrayList<Slot<E>>();
+        private final Map<Class<?>, Map<Object, List<Slot<E>>>> equalityTables =
+            new LinkedHashMap<Class<?>, Map<Object, List<Slot<E>>>>();
+
+        Branch(final Expression<E> expression) {
+            this.expression = expression;
+        }
+
+        void add(final int index, final String description, final ComparisonPredicate<E> comparison) {
+            final Slot<E> slot = new Slot<E>(index, slots.size(), description, comparison);
+            slots.add(slot);
+            final ComparisonPredicate.Operator operator = comparison.getOperator();
+            if (operator == ComparisonPredicate.Operator.EQUAL || operator == ComparisonPredicate.Operator.NOT_EQUAL) {
+                final Class<?> type = comparison.getConstant().getClass();
+                Map<Object, List<Slot<E>>> table = equalityTables.get(type);
+                if (table == null) {
+                    table = new HashMap<Object, List<Slot<E>>>();
+                    equalityTables.put(type, table);
+                }
+                List<Slot<E>> matching = table.get(comparison.getConstant());
+                if (matching == null) {
+                    matching = new ArrayList<Slot<E>>();
+                    table.put(comparison.getConstant(), matching);
+                }
+                matching.add(slot);
+            }
+        }
+
+        void evaluate(final E exchange, final List<Expectation<E>> expectations, final Verdict.Result[] results) {
+            final long start = System.nanoTime();
+            final Object value;
+            try {
+                value = expression.evaluate(exchange);
+            } catch (RuntimeException e) {
+                final long elapsed = System.nanoTime() - start;
+                for (final Slot<E> slot : slots) {
+                    results[slot.index] = new Verdict.Result(expectations.get(slot.index), Verdict.Status.ERROR,
+                        VerificationFailureException.stackless(exchange, e.getLocalizedMessage(), e), elapsed);
+                }
+                return;
+            }
+
+            final boolean[] equal = new boolean[slots.size()];
+            if (value != null) {
+                for (final Map.Entry<Class<?>, Map<Object, List<Slot<E>>>> table : equalityTables.entrySet()) {
+                    final List<Slot<E>> matched = table.getValue().get(
+                        ComparisonPredicate.convert(exchange, value, table.getKey()));
+                    if (matched != null) {
+                        for (final Slot<E> slot : matched) {
+                            equal[slot.position] = true;
+                        }
+                    }
+                }
+            }
+            final long elapsed = System.nanoTime() - start;
+            for (final Slot<E> slot : slots) {
+                final boolean passed;
+                switch (slot.comparison.getOperator()) {
+                    case EQUAL:
+                        passed = equal[slot.position];
+                        break;
+                    case NOT_EQUAL:
+                        passed = !equal[slot.position];
+                        break;
+                    default:
+                        passed = slot.comparison.matchesValue(exchange, value);
+                }
+                results[slot.index] = passed ?
+                    new Verdict.Result(expectations.get(slot.index), Verdict.Status.PASSED, null, elapsed) :
+                    new Verdict.Result(expectations.get(slot.index), Verdict.Status.FAILED,
+                        VerificationFailureException.stackless(exchange,
+                            slot.comparison.failureMessage(slot.description, value)), elapsed);
+            }
+        }
+    }
+
+    private static final class Slot<E extends Exchange> {
+
+        private final int index;
+        private final int position;
+        private final String description;
+        private final ComparisonPredicate<E> comparison;
+
+        Slot(final int index, final int position, final String description,
+            final ComparisonPredicate<E> comparison) {
+            this.index = index;
+            this.position = position;
+            this.description = description;
+            this.comparison = comparison;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import org.apache.camel.Exchange;
+import static org.apache.commons.lang.Validate.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates a set of {@link Expectation}s against an exchange concurrently,
+ * returning a {@link Verdict} rather than stopping at the first exception.
+ * <p>
+ * In {@link Mode#FAIL_FAST} mode the first failure cancels any expectations that
+ * have not yet finished, and these are reported as {@link Verdict.Status#SKIPPED};
+ * in {@link Mode#COLLECT_ALL} mode every expectation is evaluated.
+ * </p>
+ * <p>
+ * Since expectations run at the same time, they must not modify the exchange
+ * they are verifying. A single expectation is simply evaluated on the calling thread.
+ * </p>
+ * Example:
+ * <pre>
+ *      final ExpectationEngine engine = new ExpectationEngine();
+ *      final Verdict verdict = engine.evaluate(exchange, expectations, ExpectationEngine.Mode.COLLECT_ALL);
+ *      if (!verdict.isPassed()) {
+ *          for (final VerificationFailureException failure : verdict.getFailures()) {
+ *              ...
+ *          }
+ *      }
+ * </pre>
+ */
+public class ExpectationEngine {
+
+    /**
+     * How the engine responds to a failed expectation.
+     */
+    public enum Mode {
+        /** Stop evaluating at the first failure. */
+        FAIL_FAST,
+        /** Evaluate every expectation, whatever happens. */
+        COLLECT_ALL
+    }
+
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private volatile ReportSink reportSink;
+
+    /**
+     * Creates an engine with one worker thread per available processor.
+     */
+    public ExpectationEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates an engine with a pool of {@code threads} worker threads.
+     * @param threads The number of worker threads.
+     */
+    public ExpectationEngine(final int threads) {
+        isTrue(threads > 0, "Thread count must be positive.");
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                @Override public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable,
+                        "axiom-expectations-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        ownsExecutor = true;
+    }
+
+    /**
+     * Creates an engine which evaluates expectations using the supplied executor,
+     * which remains the caller's responsibility to shut down.
+     * @param executor The executor on which to evaluate expectations.
+     */
+    public ExpectationEngine(final ExecutorService executor) {
+        notNull(executor, "Executor cannot be null.");
+        this.executor = executor;
+        ownsExecutor = false;
+    }
+
+    /**
+     * Evaluates every expectation against the supplied exchange.
+     * @param exchange The exchange to verify.
+     * @param expectations The expectations to evaluate.
+     * @param mode Whether to stop at the first failure or collect them all.
+     * @param <E> The exchange type.
+     * @return A {@link Verdict} describing the outcome of each expectation.
+     */
+    public <E extends Exchange> Verdict evaluate(final E exchange,
+        final Collection<? extends Expectation<? super E>> expectations, final Mode mode) {
+        notNull(expectations, "Expectations cannot be null.");
+        notNull(mode, "Mode cannot be null.");
+        final long start = System.nanoTime();
+        final List<Expectation<? super E>> pending = new ArrayList<Expectation<? super E>>(expectations);
+        final Verdict.Result[] results = new Verdict.Result[pending.size()];
+
+        if (pending.size() == 1) {
+            results[0] = verify(pending.get(0), exchange);
+        } else if (!pending.isEmpty()) {
+            evaluateConcurrently(exchange, pending, mode, results);
+        }
+        final List<Verdict.Result> ordered = new ArrayList<Verdict.Result>(results.length);
+        for (int i = 0; i < results.length; i++) {
+            ordered.add(results[i] == null ?
+                new Verdict.Result(pending.get(i), Verdict.Status.SKIPPED, null, 0L) : results[i]);
+        }
+        final Verdict verdict = new Verdict(ordered, System.nanoTime() - start);
+        final ReportSink sink = reportSink;
+        if (sink != null) {
+            sink.report(verdict);
+        }
+        return verdict;
+    }
+
+    /**
+     * Sets a sink to which every verdict is reported as soon as it is reached.
+     * @param reportSink The sink, or {@code null} to stop reporting.
+     */
+    public void setReportSink(final ReportSink reportSink) {
+        this.reportSink = reportSink;
+    }
+
+    /**
+     * Shuts down the worker threads, if this engine created them.
+     */
+    public void shutdown() {
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    private <E extends Exchange> void evaluateConcurrently(final E exchange,
+        final List<Expectation<? super E>> pending, final Mode mode, final Verdict.Result[] results) {
+        final CompletionService<Indexed> completion = new ExecutorCompletionService<Indexed>(executor);
+        final List<Future<Indexed>> futures = new ArrayList<Future<Indexed>>(pending.size());
+        for (int i = 0; i < pending.size(); i++) {
+            final int index = i;
+            final Expectation<? super E> expectation = pending.get(i);
+            futures.add(completion.submit(new Callable<Indexed>() {
+                @Override public Indexed call() {
+                    return new Indexed(index, verify(expectation, exchange));
+                }
+            }));
+        }
+        try {
+            for (int remaining = futures.size(); remaining > 0; remaining--) {
+                final Indexed completed = completion.take().get();
+                results[completed.index] = completed.result;
+                if (mode == Mode.FAIL_FAST && completed.result.getStatus() != Verdict.Status.PASSED) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause().getLocalizedMessage(), e.getCause());
+        } finally {
+            for (final Future<Indexed> future : futures) {
+                if (!future.cancel(true)) {
+                    collect(future, results);
+                }
+            }
+        }
+    }
+
+    private static void collect(final Future<Indexed> future, final Verdict.Result[] results) {
+        try {
+            final Indexed completed = future.get();
+            if (results[completed.index] == null) {
+                results[completed.index] = completed.result;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ignored) {
+            // verify() never throws, so there is nothing to record
+        }
+    }
+
+    /**
+     * Verifies a single expectation, turning whatever it throws (or, for a
+     * {@link VerifiableExpectation}, returns) into a result.
+     */
+    static <E extends Exchange> Verdict.Result verify(
+        final Expectation<? super E> expectation, final E exchange) {
+        final long start = System.nanoTime();
+        if (expectation instanceof VerifiableExpectation) {
+            return check((VerifiableExpectation<? super E>) expectation, exchange, start);
+        }
+        try {
+            expectation.verify(exchange);
+            return new Verdict.Result(expectation, Verdict.Status.PASSED, null, System.nanoTime() - start);
+        } catch (VerificationFailureException e) {
+            return new Verdict.Result(expectation, Verdict.Status.FAILED, e, System.nanoTime() - start);
+        } catch (AssertionError e) {
+            return new Verdict.Result(expectation, Verdict.Status.FAILED,
+                VerificationFailureException.stackless(exchange, e.getMessage(), e), System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            return new Verdict.Result(expectation, Verdict.Status.ERROR,
+                VerificationFailureException.stackless(exchange, e.getLocalizedMessage(), e), System.nanoTime() - start);
+        }
+    }
+
+    private static <E extends Exchange> Verdict.Result check(final VerifiableExpectation<? super E> expectation,
+        final E exchange, final long start) {
+        try {
+            final VerificationResult result = expectation.check(exchange);
+            if (result.isPassed()) {
+                return new Verdict.Result(expectation, Verdict.Status.PASSED, null, System.nanoTime() - start);
+            }
+            return new Verdict.Result(expectation, Verdict.Status.FAILED,
+                VerificationFailureException.stackless(exchange, result.getMessage()), System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            return new Verdict.Result(expectation, Verdict.Status.ERROR,
+                VerificationFailureException.stackless(exchange, e.getLocalizedMessage(), e), System.nanoTime() - start);
+        }
+    }
+
+    private static final class Indexed {
+
+        private final int index;
+        private final Verdict.Result result;
+
+        Indexed(final int index, final Verdict.Result result) {
+            this.index = index;
+            this.result = result;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.service.metrics.Histogram;
+import org.axiom.service.metrics.ScheduledSender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drives exchanges into an endpoint and measures how long each one takes.
+ * <p>
+ * In the open models ({@link Model#FIXED_RATE} and {@link Model#POISSON}) each exchange
+ * has an intended send time taken from the schedule, and its latency is measured from
+ * that time rather than from when it was actually sent. When the endpoint stalls and
+ * all {@code concurrency} senders are busy, the exchanges that should have been sent in
+ * the meantime are charged for the wait, so a stall shows up in the latency percentiles
+ * instead of quietly lowering the offered load (i.e. the results are free of
+ * <em>coordinated omission</em>). The time spent inside the endpoint alone is reported
+ * separately as the service time. Sending and measurement are handled by a
+ * {@link ScheduledSender}.
+ * </p>
+ * <p>
+ * In the {@link Model#CLOSED} model, {@code concurrency} users each send an exchange,
+ * wait for it, pause for the think time, then send the next one.
+ * </p>
+ * <pre>
+ *      final LoadGenerator generator = new LoadGenerator(context, "direct:orders");
+ *      generator.setRate(500);
+ *      generator.setDuration(10000);
+ *      generator.setBody("&lt;order/&gt;");
+ *      generator.run().verifyLatency(99.0, 20000);
+ * </pre>
+ */
+public class LoadGenerator {
+
+    /**
+     * The load model used to decide when exchanges are sent.
+     */
+    public enum Model {
+        /**
+         * Sends at evenly spaced intervals at the configured rate (open model).
+         */
+        FIXED_RATE,
+        /**
+         * Sends with exponentially distributed gaps averaging the configured rate (open model).
+         */
+        POISSON,
+        /**
+         * Each of {@code concurrency} users sends, waits for the reply, then thinks (closed model).
+         */
+        CLOSED
+    }
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final CamelContext context;
+    private final String endpointUri;
+    private Model model = Model.FIXED_RATE;
+    private double rate;
+    private int concurrency = 1;
+    private long count;
+    private long duration;
+    private long thinkTime;
+    private long seed = System.nanoTime();
+    private Processor populator = body(null);
+    private Histogram latency;
+
+    public LoadGenerator(final CamelContext context, final String endpointUri) {
+        notNull(context, "Camel context cannot be null.");
+        notEmpty(endpointUri, "Endpoint uri cannot be null or empty.");
+        this.context = context;
+        this.endpointUri = endpointUri;
+    }
+
+    public void setModel(final Model model) {
+        notNull(model, "Model cannot be null.");
+        this.model = model;
+    }
+
+    /**
+     * Sets the target rate for the open models.
+     * @param rate The number of exchanges to send per second.
+     */
+    public void setRate(final double rate) {
+        isTrue(rate > 0, "Rate must be greater than zero.");
+        this.rate = rate;
+    }
+
+    /**
+     * Sets the number of concurrent senders in the open models (i.e. the maximum number
+     * of exchanges in flight), or the number of users in the closed model. Defaults to 1.
+     * @param concurrency The number of senders.
+     */
+    public void setConcurrency(final int concurrency) {
+        isTrue(concurrency > 0, "Concurrency must be greater than zero.");
+        this.concurrency = concurrency;
+    }
+
+    /**
+     * Sets the number of exchanges to send; a run stops when either this or the
+     * duration is reached.
+     * @param count The total number of exchanges, or 0 for no limit.
+     */
+    public void setCount(final long count) {
+        isTrue(count >= 0, "Count cannot be negative.");
+        this.count = count;
+    }
+
+    /**
+     * Sets how long to generate load for.
+     * @param duration The duration in milliseconds, or 0 for no limit.
+     */
+    public void setDuration(final long duration) {
+        isTrue(duration >= 0, "Duration cannot be negative.");
+        this.duration = duration;
+    }
+
+    /**
+     * Sets the pause between a reply and the next send for each user in the closed model.
+     * @param thinkTime The think time in milliseconds.
+     */
+    public void setThinkTime(final long thinkTime) {
+        isTrue(thinkTime >= 0, "Think time cannot be negative.");
+        this.thinkTime = thinkTime;
+    }
+
+    /**
+     * Sets the seed for the arrival times of the {@link Model#POISSON} model, so that
+     * runs can be repeated.
+     * @param seed The random seed.
+     */
+    public void setSeed(final long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the body of every generated exchange.
+     * @param body The message body.
+     */
+    public void setBody(final Object body) {
+        this.populator = body(body);
+    }
+
+    /**
+     * Sets a processor used to fill in each generated exchange, in place of a fixed body.
+     * @param populator The processor to apply to each exchange before it is sent.
+     */
+    public void setPopulator(final Processor populator) {
+        notNull(populator, "Populator cannot be null.");
+        this.populator = populator;
+    }
+
+    /**
+     * Records latencies into the supplied histogram (e.g. one obtained from the
+     * {@code MetricsRegistry}) as well as into the report.
+     * @param latency The histogram to record latencies (in microseconds) into.
+     */
+    public void setLatencyHistogram(final Histogram latency) {
+        this.latency = latency;
+    }
+
+    /**
+     * Generates load until the configured count or duration is reached, returning
+     * once every exchange has completed. If the calling thread is interrupted,
+     * generation stops and the report covers the exchanges sent so far.
+     * @return A report of the run.
+     */
+    @SuppressWarnings({"unchecked"})
+    public LoadReport run() {
+        isTrue(count > 0 || duration > 0, "A count or duration must be set.");
+        isTrue(model == Model.CLOSED || rate > 0, "A rate must be set for the open models.");
+        final ProducerTemplate<Exchange> producer = context.createProducerTemplate();
+        final ScheduledSender senders = new ScheduledSender("load", concurrency);
+        senders.setLatencyHistogram(latency);
+        final ScheduledSender.Send send = new ScheduledSender.Send() {
+            @Override public Exchange send() {
+                return producer.send(endpointUri, populator);
+            }
+        };
+        final long deadline = senders.getStart() + TimeUnit.MILLISECONDS.toNanos(duration);
+        try {
+            if (model == Model.CLOSED) {
+                runClosed(senders, send, deadline);
+            } else {
+                runOpen(senders, send, deadline);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Load generation against {} interrupted.", endpointUri);
+        } finally {
+            senders.shutdown();
+        }
+        final LoadReport report = new LoadReport(model, senders.getSent(), senders.getFailed(),
+            System.nanoTime() - senders.getStart(), senders.getLatency(), senders.getServiceTime());
+        log.info("Generated load against {}: {}", endpointUri, report);
+        return report;
+    }
+
+    private void runOpen(final ScheduledSender senders, final ScheduledSender.Send send,
+        final long deadline) throws InterruptedException {
+        final Random random = new Random(seed);
+        final double periodNanos = 1e9 / rate;
+        double offset = 0;
+        for (long i = 0; count == 0 || i < count; i++) {
+            final long due = senders.getStart() + (long) offset;
+            if (isExpired(due, deadline) || !senders.dispatch(due, send)) {
+                break;
+            }
+            offset = model == Model.POISSON
+                ? offset - Math.log(1.0 - random.nextDouble()) * periodNanos
+                : (i + 1) * periodNanos;
+        }
+        senders.awaitCompletion();
+    }
+
+    private void runClosed(final ScheduledSender senders, final ScheduledSender.Send send,
+        final long deadline) throws InterruptedException {
+        final AtomicLong claimed = new AtomicLong();
+        final CountDownLatch finished = new CountDownLatch(concurrency);
+        final long thinkNanos = TimeUnit.MILLISECONDS.toNanos(thinkTime);
+        for (int user = 0; user < concurrency; user++) {
+            senders.execute(new Runnable() {
+                @Override public void run() {
+                    try {
+                        long due = System.nanoTime();
+                        while ((count == 0 || claimed.incrementAndGet() <= count)
+                            && !isExpired(due, deadline) && ScheduledSender.awaitDue(due)) {
+                            senders.send(due, send);
+                            due = System.nanoTime() + thinkNanos;
+                        }
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            });
+        }
+        finished.await();
+    }
+
+    private boolean isExpired(final long due, final long deadline) {
+        return duration > 0 && due - deadline >= 0;
+    }
+
+    private static Processor body(final Object body) {
+        return new Processor() {
+            @Override public void process(final Exchange exchange) throws Exception {
+                exchange.getIn().setBody(body);
+            }
+        };
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import org.axiom.service.metrics.HistogramSnapshot;
+
+/**
+ * The outcome of a {@link LoadGenerator} run. Latency is measured from each exchange's
+ * intended send time, service time from when it was actually sent; both are in microseconds.
+ * The {@code check} methods return a {@link VerificationResult}, and the {@code verify}
+ * methods throw it, so a run can be asserted on like any other scenario expectation.
+ */
+public final class LoadReport {
+
+    private final LoadGenerator.Model model;
+    private final long sent;
+    private final long failed;
+    private final long elapsedNanos;
+    private final HistogramSnapshot latency;
+    private final HistogramSnapshot serviceTime;
+
+    LoadReport(final LoadGenerator.Model model, final long sent, final long failed, final long elapsedNanos,
+        final HistogramSnapshot latency, final HistogramSnapshot serviceTime) {
+        this.model = model;
+        this.sent = sent;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+        this.latency = latency;
+        this.serviceTime = serviceTime;
+    }
+
+    public LoadGenerator.Model getModel() {
+        return model;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1000000L;
+    }
+
+    /**
+     * Gets the rate at which exchanges were completed.
+     * @return The achieved throughput, in exchanges per second.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : sent / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Gets the latency of each exchange, measured from its intended send time.
+     * @return A snapshot of the latency histogram.
+     */
+    public HistogramSnapshot getLatency() {
+        return latency;
+    }
+
+    /**
+     * Gets the time each exchange spent in the endpoint, measured from its actual send time.
+     * @return A snapshot of the service time histogram.
+     */
+    public HistogramSnapshot getServiceTime() {
+        return serviceTime;
+    }
+
+    /**
+     * Checks that a latency percentile is within a limit.
+     * @param percentile The percentile (e.g. {@code 99.9}).
+     * @param limitMicros The highest acceptable latency, in microseconds.
+     * @return The result of the check.
+     */
+    public VerificationResult checkLatency(final double percentile, final long limitMicros) {
+        final long observed = latency.getValueAtPercentile(percentile);
+        return observed <= limitMicros ? VerificationResult.PASSED : VerificationResult.failed(
+            String.format("p%s latency of %dus exceeded %dus", percentile, observed, limitMicros));
+    }
+
+    /**
+     * Checks that no more than {@code limit} exchanges failed.
+     * @param limit The highest acceptable number of failures.
+     * @return The result of the check.
+     */
+    public VerificationResult checkFailures(final long limit) {
+        return failed <= limit ? VerificationResult.PASSED : VerificationResult.failed(
+            String.format("%d exchanges failed, more than the %d allowed", failed, limit));
+    }
+
+    /**
+     * As {@link LoadReport#checkLatency(double, long)}, throwing on failure.
+     * @param percentile The percentile (e.g. {@code 99.9}).
+     * @param limitMicros The highest acceptable latency, in microseconds.
+     * @throws VerificationFailureException if the percentile exceeds the limit.
+     */
+    public void verifyLatency(final double percentile, final long limitMicros) throws VerificationFailureException {
+        checkLatency(percentile, limitMicros).assertPassed(this);
+    }
+
+    /**
+     * As {@link LoadReport#checkFailures(long)}, throwing on failure.
+     * @param limit The highest acceptable number of failures.
+     * @throws VerificationFailureException if too many exchanges failed.
+     */
+    public void verifyFailures(final long limit) throws VerificationFailureException {
+        checkFailures(limit).assertPassed(this);
+    }
+
+    @Override public String toString() {
+        return String.format("model=%s, sent=%d, failed=%d, elapsed=%dms, throughput=%.0f/s, "
+            + "latency p50=%dus p99=%dus max=%dus, service p50=%dus p99=%dus",
+            model, sent, failed, getElapsedMillis(), getThroughput(),
+            latency.getValueAtPercentile(50.0), latency.getValueAtPercentile(99.0), latency.getMax(),
+            serviceTime.getValueAtPercentile(50.0), serviceTime.getValueAtPercentile(99.0));
+    }
+}
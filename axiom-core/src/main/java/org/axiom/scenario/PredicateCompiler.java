@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.Predicate;
+import static org.apache.commons.lang.Validate.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles a set of {@link Expectation}s into a {@link CompiledExpectations}, which
+ * evaluates each shared sub-expression once per exchange rather than once per expectation.
+ * <p>
+ * {@link PredicateExpectation}s whose predicate is a {@link ComparisonPredicate} are grouped
+ * by expression instance, or by key where one was supplied. Within each group, equality tests
+ * become a dispatch table keyed on the constant, so a hundred {@code header("type") == ...}
+ * expectations sharing one expression cost one header lookup and one hash lookup. Any other expectation is kept as it is and verified on its own.
+ * </p>
+ * Example:
+ * <pre>
+ *      final CompiledExpectations&lt;Exchange&gt; compiled =
+ *          new PredicateCompiler&lt;Exchange&gt;().compile(expectations);
+ *      final Verdict verdict = compiled.evaluate(exchange);
+ * </pre>
+ */
+public class PredicateCompiler<E extends Exchange> {
+
+    /**
+     * Compiles the supplied expectations.
+     * @param expectations The expectations to compile.
+     * @return A {@link CompiledExpectations} that reports results in the order supplied.
+     */
+    public CompiledExpectations<E> compile(final List<? extends Expectation<E>> expectations) {
+        notNull(expectations, "Expectations cannot be null.");
+        final Map<String, CompiledExpectations.Branch<E>> keyed =
+            new HashMap<String, CompiledExpectations.Branch<E>>();
+        final Map<Expression<E>, CompiledExpectations.Branch<E>> unkeyed =
+            new IdentityHashMap<Expression<E>, CompiledExpectations.Branch<E>>();
+        final List<CompiledExpectations.Branch<E>> branches = new ArrayList<CompiledExpectations.Branch<E>>();
+        final List<Integer> opaque = new ArrayList<Integer>();
+        for (int index = 0; index < expectations.size(); index++) {
+            final ComparisonPredicate<E> comparison = comparisonOf(expectations.get(index));
+            if (comparison == null) {
+                opaque.add(index);
+                continue;
+            }
+            CompiledExpectations.Branch<E> branch = comparison.isKeyed()
+                ? keyed.get(comparison.getKey()) : unkeyed.get(comparison.getExpression());
+            if (branch == null) {
+                branch = new CompiledExpectations.Branch<E>(comparison.getExpression());
+                branches.add(branch);
+                if (comparison.isKeyed()) {
+                    keyed.put(comparison.getKey(), branch);
+                } else {
+                    unkeyed.put(comparison.getExpression(), branch);
+                }
+            }
+            final String description = ((PredicateExpectation<E>) expectations.get(index)).getDescription();
+            branch.add(index, description, comparison);
+        }
+        return new CompiledExpectations<E>(new ArrayList<Expectation<E>>(expectations), branches, opaque);
+    }
+
+    private ComparisonPredicate<E> comparisonOf(final Expectation<E> expectation) {
+        if (expectation instanceof PredicateExpectation) {
+            final Predicate<E> predicate = ((PredicateExpectation<E>) expectation).getPredicate();
+            if (predicate instanceof ComparisonPredicate) {
+                return (ComparisonPredicate<E>) predicate;
+            }
+        }
+        return null;
+    }
+}
@@ -34,12 +34,16 @@ import static org.apache.commons.lang.Validate.notNull;
 
 /**
  * Defines an {@link Expectation} predicated upon an instance of
- * <i>camel's</i> {@link Predicate} interface.
+ * <i>camel's</i> {@link Predicate} interface. {@link PredicateExpectation#check(Exchange)}
+ * only asks whether the predicate matches, and returns the same preallocated
+ * failure each time it doesn't, whereas {@link PredicateExpectation#verify(Exchange)}
+ * lets the predicate raise its own (more detailed, but more expensive) assertion.
  */
-public class PredicateExpectation<E extends Exchange> implements Expectation<E> {
+public class PredicateExpectation<E extends Exchange> implements VerifiableExpectation<E> {
 
     private final Predicate<E> predicate;
     private final String description;
+    private final VerificationResult failure;
 
     public PredicateExpectation(final Predicate<E> predicate) {
         this(String.valueOf(predicate), predicate);
@@ -49,9 +53,26 @@ public class PredicateExpectation<E extends Exchange> implements Expectation<E>
         notNull(predicate, "predicate cannot be null");
         this.predicate = predicate;
         this.description = description;
+        this.failure = VerificationResult.failed(description);
+    }
+
+    public Predicate<E> getPredicate() {
+        return predicate;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override public String toString() {
+        return description;
     }
 
     @Override public void verify(final E exchange) throws VerificationFailureException {
         predicate.assertMatches(description, exchange);
     }
+
+    @Override public VerificationResult check(final E exchange) {
+        return predicate.matches(exchange) ? VerificationResult.PASSED : failure;
+    }
 }
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import org.apache.camel.Exchange;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.service.metrics.Histogram;
+import org.axiom.service.metrics.HistogramSnapshot;
+
+/**
+ * A latency or throughput requirement, checked over consecutive (tumbling) windows
+ * of a {@link Histogram} of latencies in microseconds, such as a route's latency
+ * statistics. Because it reads from a histogram that is being recorded anyway, a
+ * service level adds nothing to the cost of processing an exchange.
+ * <p>
+ * Service levels are usually checked periodically by a {@link SlaMonitor}. When
+ * used as an {@link Expectation}, the exchange is ignored and the window is checked
+ * as of the current time. A breached window raises a {@link VerificationFailureException}
+ * whose target is a {@link WindowReport} carrying the distribution observed in it.
+ * </p>
+ */
+public abstract class ServiceLevel implements Expectation<Exchange> {
+
+    private final String description;
+    private final Histogram histogram;
+    private final long windowMillis;
+    private long windowStart = -1;
+    private HistogramSnapshot baseline;
+
+    protected ServiceLevel(final String description, final Histogram histogram, final long windowMillis) {
+        notNull(description, "Description cannot be null.");
+        notNull(histogram, "Histogram cannot be null.");
+        isTrue(windowMillis > 0, "Window must be greater than zero.");
+        this.description = description;
+        this.histogram = histogram;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Expects the given percentile latency to be at most {@code limitMicros} in each window.
+     * Windows in which nothing was recorded are not judged.
+     * @param description What is being measured.
+     * @param histogram The latencies, in microseconds.
+     * @param percentile The percentile to check (e.g. {@code 99.0}).
+     * @param limitMicros The highest latency allowed at that percentile, in microseconds.
+     * @param windowMillis The window length in milliseconds.
+     * @return A new service level.
+     */
+    public static ServiceLevel latency(final String description, final Histogram histogram,
+        final double percentile, final long limitMicros, final long windowMillis) {
+        isTrue(percentile > 0 && percentile <= 100, "Percentile must be between 0 and 100.");
+        return new ServiceLevel(description, histogram, windowMillis) {
+            @Override protected WindowReport judge(final HistogramSnapshot window, final long start, final long end) {
+                if (window.getCount() == 0) {
+                    return null;
+                }
+                final long observed = window.getValueAtPercentile(percentile);
+                return observed <= limitMicros ? null : new WindowReport(getDescription(), start, end,
+                    window.getCount(), "p" + percentile + " latency (ms)", observed / 1000.0,
+                    limitMicros / 1000.0 + "ms", window);
+            }
+        };
+    }
+
+    /**
+     * Expects at least {@code minPerSecond} exchanges to be recorded per second, on average over each window.
+     * @param description What is being measured.
+     * @param histogram The latencies, which are counted.
+     * @param minPerSecond The lowest throughput allowed.
+     * @param windowMillis The window length in milliseconds.
+     * @return A new service level.
+     */
+    public static ServiceLevel throughput(final String description, final Histogram histogram,
+        final double minPerSecond, final long windowMillis) {
+        isTrue(minPerSecond >= 0, "Throughput cannot be negative.");
+        return new ServiceLevel(description, histogram, windowMillis) {
+            @Override protected WindowReport judge(final HistogramSnapshot window, final long start, final long end) {
+                final double observed = window.getCount() / ((end - start) / 1000.0);
+                return observed >= minPerSecond ? null : new WindowReport(getDescription(), start, end,
+                    window.getCount(), "throughput (/s)", observed, minPerSecond + "/s", window);
+            }
+        };
+    }
+
+    /**
+     * Checks the current window as of now.
+     * @param exchange Ignored.
+     * @throws VerificationFailureException if the window has closed, and breached the service level.
+     */
+    @Override public void verify(final Exchange exchange) throws VerificationFailureException {
+        final Verdict.Result result = check(System.currentTimeMillis());
+        if (result != null && result.getFailure() != null) {
+            throw result.getFailure();
+        }
+    }
+
+    /**
+     * Checks the current window, judging it if it has closed and opening the next one.
+     * The first check opens the first window.
+     * @param now The current time, in milliseconds since the epoch.
+     * @return The outcome for the window that closed, or {@code null} if it is still open.
+     */
+    public synchronized Verdict.Result check(final long now) {
+        if (windowStart < 0) {
+            windowStart = now;
+            baseline = histogram.snapshot();
+            return null;
+        }
+        if (now - windowStart < windowMillis) {
+            return null;
+        }
+        final long start = System.nanoTime();
+        final HistogramSnapshot current = histogram.snapshot();
+        final WindowReport breach = judge(current.minus(baseline), windowStart, now);
+        windowStart = now;
+        baseline = current;
+        return breach == null
+            ? new Verdict.Result(this, Verdict.Status.PASSED, null, System.nanoTime() - start)
+            : new Verdict.Result(this, Verdict.Status.FAILED,
+                VerificationFailureException.stackless(breach, breach.toString()), System.nanoTime() - start);
+    }
+
+    /**
+     * Judges a closed window.
+     * @param window The values recorded during the window.
+     * @param start When the window opened, in milliseconds since the epoch.
+     * @param end When the window closed, in milliseconds since the epoch.
+     * @return A report of the breach, or {@code null} if the service level was met.
+     */
+    protected abstract WindowReport judge(HistogramSnapshot window, long start, long end);
+
+    public String getDescription() {
+        return description;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    @Override public String toString() {
+        return description;
+    }
+}
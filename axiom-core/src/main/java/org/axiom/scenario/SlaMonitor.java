@@ -0,0 +1,264 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.spi.InterceptStrategy;
+import org.apache.commons.configuration.Configuration;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.service.metrics.Histogram;
+import org.axiom.service.metrics.LatencyMonitor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks a set of {@link ServiceLevel}s continuously (every {@code axiom.sla.check.interval}
+ * milliseconds) whilst routes run, keeping the most recent breaches so that a scenario
+ * can be failed with the distribution that breached it. Each round of checks is passed to
+ * the {@link ReportSink}, if there is one.
+ * <p>
+ * Route scripts declare service levels with {@code expect_latency} and {@code expect_throughput},
+ * which are bound to the route's latency statistics (see {@link SlaMonitor#routeLatency}).
+ * Binding a route again (e.g. when it is reconfigured) replaces the service levels bound to it.
+ * </p>
+ */
+public class SlaMonitor {
+
+    /**
+     * The number of breaches retained for reporting; older breaches are still counted.
+     */
+    public static final int RETAINED_BREACHES = 100;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final List<ServiceLevel> serviceLevels = new CopyOnWriteArrayList<ServiceLevel>();
+    private final Map<String, List<ServiceLevel>> routeServiceLevels = new HashMap<String, List<ServiceLevel>>();
+    private final LinkedList<VerificationFailureException> breaches = new LinkedList<VerificationFailureException>();
+    private final AtomicLong breachCount = new AtomicLong();
+    private volatile ReportSink reportSink;
+    private long checkInterval = 1000L;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Gets the latency histogram of a route in the supplied context, as recorded by the
+     * {@link LatencyMonitor} installed on it. The control channel installs one on the host
+     * context; any other context gets one the first time it is asked for, which must
+     * happen before its routes are built (e.g. whilst they are being configured).
+     * @param context The context hosting the route.
+     * @param routeKey The input uri(s) of the route.
+     * @return The route's latency histogram, in microseconds.
+     * @throws IllegalStateException if a latency monitor cannot be installed on the context.
+     */
+    public static Histogram routeLatency(final CamelContext context, final String routeKey) {
+        notNull(context, "Camel context cannot be null.");
+        if (!(context instanceof DefaultCamelContext)) {
+            throw new IllegalStateException("Cannot monitor the latency of routes in " + context.getName() + ".");
+        }
+        return latencyMonitorFor((DefaultCamelContext) context).routeStatistics(routeKey).getHistogram();
+    }
+
+    private static LatencyMonitor latencyMonitorFor(final DefaultCamelContext context) {
+        synchronized (context) {
+            for (final InterceptStrategy strategy : context.getInterceptStrategies()) {
+                if (strategy instanceof LatencyMonitor) {
+                    return (LatencyMonitor) strategy;
+                }
+            }
+            final LatencyMonitor latencyMonitor = new LatencyMonitor();
+            context.addInterceptStrategy(latencyMonitor);
+            return latencyMonitor;
+        }
+    }
+
+    public void add(final ServiceLevel serviceLevel) {
+        notNull(serviceLevel, "Service level cannot be null.");
+        serviceLevels.add(serviceLevel);
+    }
+
+    /**
+     * Binds service levels to a route, replacing any previously bound to it.
+     * @param routeKey The input uri(s) of the route.
+     * @param levels The service levels for the route.
+     */
+    public synchronized void bind(final String routeKey, final List<ServiceLevel> levels) {
+        notNull(routeKey, "Route key cannot be null.");
+        notNull(levels, "Service levels cannot be null.");
+        final List<ServiceLevel> replacements = new ArrayList<ServiceLevel>(levels);
+        final List<ServiceLevel> previous = routeServiceLevels.put(routeKey, replacements);
+        if (previous != null) {
+            serviceLevels.removeAll(previous);
+        }
+        serviceLevels.addAll(replacements);
+    }
+
+    public List<ServiceLevel> getServiceLevels() {
+        return Collections.unmodifiableList(serviceLevels);
+    }
+
+    public void setConfiguration(final Configuration config) {
+        setCheckInterval(config.getLong("axiom.sla.check.interval", checkInterval));
+    }
+
+    /**
+     * Sets how often the service levels are checked (defaults to one second).
+     * @param checkInterval The interval in milliseconds.
+     */
+    public void setCheckInterval(final long checkInterval) {
+        isTrue(checkInterval > 0, "Check interval must be greater than zero.");
+        this.checkInterval = checkInterval;
+    }
+
+    public void setReportSink(final ReportSink reportSink) {
+        this.reportSink = reportSink;
+    }
+
+    /**
+     * Starts checking the service levels in the background.
+     */
+    public synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "axiom-sla-monitor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override public void run() {
+                try {
+                    check();
+                } catch (RuntimeException e) {
+                    log.warn("Service level check failed.", e);
+                }
+            }
+        }, checkInterval, checkInterval, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Checks every service level now.
+     * @return A verdict for the service levels whose windows closed.
+     */
+    public Verdict check() {
+        return check(System.currentTimeMillis());
+    }
+
+    /**
+     * Checks every service level as of the supplied time.
+     * @param now The current time, in milliseconds since the epoch.
+     * @return A verdict for the service levels whose windows closed.
+     */
+    public Verdict check(final long now) {
+        final long start = System.nanoTime();
+        final List<Verdict.Result> results = new ArrayList<Verdict.Result>();
+        for (final ServiceLevel serviceLevel : serviceLevels) {
+            final Verdict.Result result = serviceLevel.check(now);
+            if (result == null) {
+                continue;
+            }
+            results.add(result);
+            if (result.getFailure() != null) {
+                breached(result.getFailure());
+            }
+        }
+        final Verdict verdict = new Verdict(results, System.nanoTime() - start);
+        final ReportSink sink = reportSink;
+        if (sink != null && !results.isEmpty()) {
+            sink.report(verdict);
+        }
+        return verdict;
+    }
+
+    /**
+     * Checks whether every service level has been met so far.
+     * @return {@code true} if no window has breached its service level.
+     */
+    public boolean isPassed() {
+        return breachCount.get() == 0;
+    }
+
+    public long getBreachCount() {
+        return breachCount.get();
+    }
+
+    /**
+     * Gets the most recent breaches, oldest first.
+     * @return Up to {@link SlaMonitor#RETAINED_BREACHES} breaches.
+     */
+    public List<VerificationFailureException> getBreaches() {
+        synchronized (breaches) {
+            return new ArrayList<VerificationFailureException>(breaches);
+        }
+    }
+
+    /**
+     * Fails a scenario if any service level has been breached.
+     * @throws VerificationFailureException the earliest retained breach, if there was one.
+     */
+    public void assertPassed() throws VerificationFailureException {
+        synchronized (breaches) {
+            if (!breaches.isEmpty()) {
+                throw breaches.getFirst();
+            }
+        }
+    }
+
+    private void breached(final VerificationFailureException breach) {
+        log.warn("Service level breached: {}", breach.getMessage());
+        breachCount.incrementAndGet();
+        synchronized (breaches) {
+            breaches.addLast(breach);
+            if (breaches.size() > RETAINED_BREACHES) {
+                breaches.removeFirst();
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import static org.apache.commons.lang.StringEscapeUtils.*;
+import org.apache.commons.lang.StringUtils;
+import static org.apache.commons.lang.Validate.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A {@link ReportSink} which writes a surefire compatible xml report incrementally, so
+ * that a long running scenario can report millions of verifications in bounded memory.
+ * <p>
+ * Test cases are buffered and appended to the file whenever the buffer fills or the
+ * flush interval has passed. Each flush also rewrites the (space padded, fixed width)
+ * {@code testsuite} totals at the start of the file and the closing tags at the end, so
+ * the report is well formed after every flush, not just once it has been closed.
+ * </p>
+ * <p>
+ * A failure which repeats an earlier one (the same expectation with the same message)
+ * is written in full only the first {@code maxRepeats} times. After that it is still
+ * counted in the totals, and a summary of how often it recurred is written to the
+ * suite's {@code system-out}. Up to {@code maxDistinctFailures} distinct failures are
+ * tracked; any beyond that are always written in full.
+ * </p>
+ */
+public class SurefireReportSink implements ReportSink {
+
+    private static final String CHARSET = "UTF-8";
+    private static final String DECLARATION = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final File file;
+    private final String suiteName;
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final int headerWidth;
+    private final StringBuilder buffer = new StringBuilder();
+    private final Map<String, Repeat> repeats = new HashMap<String, Repeat>();
+    private final long started = System.currentTimeMillis();
+    private long bodyEnd;
+    private long lastFlush = System.currentTimeMillis();
+    private long tests;
+    private long failures;
+    private long errors;
+    private long skipped;
+    private long rolledUp;
+    private int bufferSize = 64 * 1024;
+    private long flushInterval = 5000L;
+    private int maxRepeats = 1;
+    private int maxDistinctFailures = 1000;
+    private boolean closed;
+    private boolean broken;
+
+    /**
+     * Creates a sink writing to the supplied file, which is overwritten if it exists.
+     * @param file The report file (e.g. {@code target/surefire-reports/TEST-soak.xml}).
+     * @param suiteName The name of the test suite, also used as the class name of each test case.
+     * @throws IOException if the file cannot be opened.
+     */
+    public SurefireReportSink(final File file, final String suiteName) throws IOException {
+        notNull(file, "Report file cannot be null.");
+        notEmpty(suiteName, "Suite name cannot be null or empty.");
+        this.file = file;
+        this.suiteName = suiteName;
+        headerWidth = header(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE)
+            .getBytes(CHARSET).length;
+        raf = new RandomAccessFile(file, "rw");
+        raf.setLength(0);
+        channel = raf.getChannel();
+        bodyEnd = headerWidth;
+        write();
+    }
+
+    /**
+     * Sets the number of characters buffered before they are written out (defaults to 64k).
+     * @param bufferSize The buffer size.
+     */
+    public void setBufferSize(final int bufferSize) {
+        isTrue(bufferSize > 0, "Buffer size must be greater than zero.");
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Sets the longest time results are buffered before being written out (defaults to 5 seconds).
+     * @param flushInterval The flush interval in milliseconds.
+     */
+    public void setFlushInterval(final long flushInterval) {
+        isTrue(flushInterval >= 0, "Flush interval cannot be negative.");
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Sets how many times an identical failure is written in full before being rolled up (defaults to 1).
+     * @param maxRepeats The number of full reports per distinct failure.
+     */
+    public void setMaxRepeats(final int maxRepeats) {
+        isTrue(maxRepeats > 0, "Max repeats must be greater than zero.");
+        this.maxRepeats = maxRepeats;
+    }
+
+    /**
+     * Sets how many distinct failures are tracked for roll up (defaults to 1000).
+     * @param maxDistinctFailures The maximum number of distinct failures to track.
+     */
+    public void setMaxDistinctFailures(final int maxDistinctFailures) {
+        isTrue(maxDistinctFailures >= 0, "Max distinct failures cannot be negative.");
+        this.maxDistinctFailures = maxDistinctFailures;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public synchronized void report(final Verdict verdict) {
+        notNull(verdict, "Verdict cannot be null.");
+        if (closed) {
+            return;
+        }
+        for (final Verdict.Result result : verdict.getResults()) {
+            append(result);
+        }
+        if (buffer.length() >= bufferSize || System.currentTimeMillis() - lastFlush >= flushInterval) {
+            try {
+                write();
+            } catch (IOException e) {
+                if (!broken) {
+                    broken = true;
+                    log.warn("Unable to write report " + file + ".", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the number of failures (and errors) that were counted but not written in full.
+     * @return The number of rolled up failures.
+     */
+    public synchronized long getRolledUp() {
+        return rolledUp;
+    }
+
+    @Override public synchronized void flush() throws IOException {
+        if (!closed) {
+            write();
+        }
+    }
+
+    @Override public synchronized void close() throws IOException {
+        if (!closed) {
+            try {
+                write();
+            } finally {
+                closed = true;
+                raf.close();
+            }
+        }
+    }
+
+    private void append(final Verdict.Result result) {
+        tests++;
+        final Verdict.Status status = result.getStatus();
+        final String name = String.valueOf(result.getExpectation());
+        if (status == Verdict.Status.FAILED || status == Verdict.Status.ERROR) {
+            if (status == Verdict.Status.FAILED) {
+                failures++;
+            } else {
+                errors++;
+            }
+            final VerificationFailureException failure = result.getFailure();
+            final String message = failure == null ? null : failure.getMessage();
+            if (isRepeat(status, name, message)) {
+                rolledUp++;
+                return;
+            }
+            final Throwable cause = failure == null ? null : failure.getCause();
+            final Class<?> type = cause == null ? VerificationFailureException.class : cause.getClass();
+            final String element = status == Verdict.Status.FAILED ? "failure" : "error";
+            openTestCase(name, result.getElapsedNanos());
+            buffer.append("    <").append(element)
+                .append(" message=\"").append(escapeXml(StringUtils.defaultString(message)))
+                .append("\" type=\"").append(type.getName()).append("\"/>\n")
+                .append("  </testcase>\n");
+        } else if (status == Verdict.Status.SKIPPED) {
+            skipped++;
+            openTestCase(name, 0L);
+            buffer.append("    <skipped/>\n  </testcase>\n");
+        } else {
+            buffer.append("  <testcase classname=\"").append(escapeXml(suiteName))
+                .append("\" name=\"").append(escapeXml(name))
+                .append("\" time=\"").append(seconds(result.getElapsedNanos())).append("\"/>\n");
+        }
+    }
+
+    private boolean isRepeat(final Verdict.Status status, final String name, final String message) {
+        final String key = status + "\u0000" + name + "\u0000" + message;
+        Repeat repeat = repeats.get(key);
+        if (repeat == null) {
+            if (repeats.size() < maxDistinctFailures) {
+                repeats.put(key, new Repeat(name, message));
+            }
+            return false;
+        }
+        return ++repeat.count > maxRepeats;
+    }
+
+    private void openTestCase(final String name, final long elapsedNanos) {
+        buffer.append("  <testcase classname=\"").append(escapeXml(suiteName))
+            .append("\" name=\"").append(escapeXml(name))
+            .append("\" time=\"").append(seconds(elapsedNanos)).append("\">\n");
+    }
+
+    private void write() throws IOException {
+        final byte[] body = buffer.toString().getBytes(CHARSET);
+        buffer.setLength(0);
+        channel.write(ByteBuffer.wrap(body), bodyEnd);
+        bodyEnd += body.length;
+        final byte[] footer = footer().getBytes(CHARSET);
+        channel.write(ByteBuffer.wrap(footer), bodyEnd);
+        channel.truncate(bodyEnd + footer.length);
+        channel.write(ByteBuffer.wrap(
+            header(tests, failures, errors, skipped, System.currentTimeMillis() - started).getBytes(CHARSET)), 0);
+        lastFlush = System.currentTimeMillis();
+    }
+
+    private String header(final long tests, final long failures, final long errors,
+        final long skipped, final long elapsedMillis) throws IOException {
+        final String header = DECLARATION + String.format(Locale.ENGLISH,
+            "<testsuite name=\"%s\" tests=\"%d\" failures=\"%d\" errors=\"%d\" skipped=\"%d\" time=\"%.3f\"",
+            escapeXml(suiteName), tests, failures, errors, skipped, elapsedMillis / 1000.0);
+        final int padding = headerWidth - header.getBytes(CHARSET).length - 2;
+        return header + StringUtils.repeat(" ", Math.max(0, padding)) + ">\n";
+    }
+
+    private String footer() {
+        final StringBuilder footer = new StringBuilder();
+        if (rolledUp > 0) {
+            footer.append("  <system-out><![CDATA[");
+            for (final Repeat repeat : repeats.values()) {
+                if (repeat.count > maxRepeats) {
+                    footer.append(cdata(repeat.name)).append(": ").append(cdata(repeat.message))
+                        .append(" (repeated ").append(repeat.count - maxRepeats).append(" more times)\n");
+                }
+            }
+            footer.append("]]></system-out>\n");
+        }
+        return footer.append("</testsuite>\n").toString();
+    }
+
+    private static String cdata(final String text) {
+        return StringUtils.replace(text, "]]>", "]]]]><![CDATA[>");
+    }
+
+    private static String seconds(final long nanos) {
+        return String.format(Locale.ENGLISH, "%.3f", nanos / 1e9);
+    }
+
+    /**
+     * A distinct failure, and the number of times it has occurred.
+     */
+    private static final class Repeat {
+        private final String name;
+        private final String message;
+        private long count = 1;
+
+        private Repeat(final String name, final String message) {
+            this.name = name;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of evaluating a set of {@link Expectation}s against an exchange
+ * (see {@link ExpectationEngine}). Results are held in the order the expectations
+ * were supplied, regardless of the order in which they were evaluated.
+ */
+public final class Verdict {
+
+    /**
+     * The outcome of a single expectation.
+     */
+    public enum Status {
+        /** The expectation was met. */
+        PASSED,
+        /** The expectation was not met. */
+        FAILED,
+        /** The expectation could not be evaluated, because it threw an unexpected exception. */
+        ERROR,
+        /** The expectation was not evaluated, because an earlier failure short-circuited the verdict. */
+        SKIPPED
+    }
+
+    private final List<Result> results;
+    private final long elapsedNanos;
+
+    Verdict(final List<Result> results, final long elapsedNanos) {
+        this.results = Collections.unmodifiableList(new ArrayList<Result>(results));
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Checks whether every expectation was met.
+     * @return {@code true} if every expectation passed.
+     */
+    public boolean isPassed() {
+        for (final Result result : results) {
+            if (result.getStatus() != Status.PASSED) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    /**
+     * Gets the failure raised by each expectation that was not met (or could not be
+     * evaluated), in the order the expectations were supplied.
+     * @return The failures, which will be empty if the verdict passed.
+     */
+    public List<VerificationFailureException> getFailures() {
+        final List<VerificationFailureException> failures = new ArrayList<VerificationFailureException>();
+        for (final Result result : results) {
+            if (result.getFailure() != null) {
+                failures.add(result.getFailure());
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Gets the number of expectations with the supplied status.
+     * @param status The status to count.
+     * @return The count.
+     */
+    public int count(final Status status) {
+        int count = 0;
+        for (final Result result : results) {
+            if (result.getStatus() == status) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Rethrows the first failure, so a verdict can be used wherever a single
+     * {@link Expectation} would be.
+     * @throws VerificationFailureException if any expectation was not met.
+     */
+    public void assertPassed() throws VerificationFailureException {
+        final List<VerificationFailureException> failures = getFailures();
+        if (!failures.isEmpty()) {
+            throw failures.get(0);
+        }
+    }
+
+    @Override public String toString() {
+        return String.format("passed=%d, failed=%d, error=%d, skipped=%d, elapsed=%.3fms",
+            count(Status.PASSED), count(Status.FAILED), count(Status.ERROR),
+            count(Status.SKIPPED), elapsedNanos / 1e6);
+    }
+
+    /**
+     * The outcome of evaluating a single {@link Expectation}.
+     */
+    public static final class Result {
+
+        private final Expectation<?> expectation;
+        private final Status status;
+        private final VerificationFailureException failure;
+        private final long elapsedNanos;
+
+        Result(final Expectation<?> expectation, final Status status,
+            final VerificationFailureException failure, final long elapsedNanos) {
+            this.expectation = expectation;
+            this.status = status;
+            this.failure = failure;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public Expectation<?> getExpectation() {
+            return expectation;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * Gets the failure raised by the expectation.
+         * @return The failure, or {@code null} if the expectation passed or was skipped.
+         */
+        public VerificationFailureException getFailure() {
+            return failure;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+    }
+}
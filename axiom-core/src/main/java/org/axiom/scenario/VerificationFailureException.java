@@ -52,6 +52,29 @@ public class VerificationFailureException extends Exception {
         this.target = target;
     }
 
+    /**
+     * Creates an exception without a stack trace, which is far cheaper to construct
+     * when most verifications in a run are expected to fail.
+     * @param target The object (usually the exchange) that failed verification.
+     * @param message A description of the failure.
+     * @return A new, stackless, exception.
+     */
+    public static VerificationFailureException stackless(final Object target, final String message) {
+        return new Stackless(target, message, null);
+    }
+
+    /**
+     * Creates an exception without a stack trace of its own, wrapping the supplied cause.
+     * @param target The object (usually the exchange) that failed verification.
+     * @param message A description of the failure.
+     * @param cause The underlying failure.
+     * @return A new, stackless, exception.
+     */
+    public static VerificationFailureException stackless(final Object target,
+        final String message, final Throwable cause) {
+        return new Stackless(target, message, cause);
+    }
+
     public Object getTarget() {
         return target;
     }
@@ -63,4 +86,15 @@ public class VerificationFailureException extends Exception {
         }
         return null;
     }
+
+    private static final class Stackless extends VerificationFailureException {
+
+        Stackless(final Object target, final String message, final Throwable cause) {
+            super(target, message, cause);
+        }
+
+        @Override public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
 }
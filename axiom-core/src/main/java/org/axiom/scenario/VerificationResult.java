@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+/**
+ * The outcome of checking a {@link VerifiableExpectation}, returned rather than thrown.
+ * Results are immutable and carry no reference to the exchange, so an expectation can
+ * allocate its failure result once and hand it back every time it is not met.
+ */
+public final class VerificationResult {
+
+    /**
+     * The result of every check that passes.
+     */
+    public static final VerificationResult PASSED = new VerificationResult(true, null);
+
+    private final boolean passed;
+    private final String message;
+
+    private VerificationResult(final boolean passed, final String message) {
+        this.passed = passed;
+        this.message = message;
+    }
+
+    /**
+     * Creates a failed result.
+     * @param message A description of the expectation that was not met.
+     * @return A new failed result.
+     */
+    public static VerificationResult failed(final String message) {
+        return new VerificationResult(false, message);
+    }
+
+    public boolean isPassed() {
+        return passed;
+    }
+
+    /**
+     * Gets the failure message.
+     * @return A description of the expectation that was not met, or {@code null} if it passed.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Converts a failed result into a (stackless) {@link VerificationFailureException},
+     * for callers of the exception based API.
+     * @param target The object (usually the exchange) that failed verification.
+     * @throws VerificationFailureException if this result is a failure.
+     */
+    public void assertPassed(final Object target) throws VerificationFailureException {
+        if (!passed) {
+            throw VerificationFailureException.stackless(target, message);
+        }
+    }
+
+    @Override public String toString() {
+        return passed ? "passed" : "failed: " + message;
+    }
+}
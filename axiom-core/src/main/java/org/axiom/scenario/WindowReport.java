@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import org.axiom.service.metrics.HistogramSnapshot;
+
+import java.util.Date;
+
+/**
+ * Describes a window in which a {@link WindowedExpectation} or {@link ServiceLevel} was
+ * not met. This is the target of the {@link VerificationFailureException} raised for the violation.
+ */
+public final class WindowReport {
+
+    private final String description;
+    private final long windowStart;
+    private final long windowEnd;
+    private final long samples;
+    private final String measure;
+    private final double observed;
+    private final String limit;
+    private final HistogramSnapshot distribution;
+
+    WindowReport(final String description, final long windowStart, final long windowEnd,
+        final long samples, final String measure, final double observed, final String limit) {
+        this(description, windowStart, windowEnd, samples, measure, observed, limit, null);
+    }
+
+    WindowReport(final String description, final long windowStart, final long windowEnd, final long samples,
+        final String measure, final double observed, final String limit, final HistogramSnapshot distribution) {
+        this.description = description;
+        this.windowStart = windowStart;
+        this.windowEnd = windowEnd;
+        this.samples = samples;
+        this.measure = measure;
+        this.observed = observed;
+        this.limit = limit;
+        this.distribution = distribution;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Gets the time at which the window opened.
+     * @return The start of the window, in milliseconds since the epoch.
+     */
+    public long getWindowStart() {
+        return windowStart;
+    }
+
+    /**
+     * Gets the time at which the window closed (or, for a violation detected
+     * before the window closed, the time at which it was detected).
+     * @return The end of the window, in milliseconds since the epoch.
+     */
+    public long getWindowEnd() {
+        return windowEnd;
+    }
+
+    /**
+     * Gets the number of exchanges observed in the window.
+     * @return The sample count.
+     */
+    public long getSamples() {
+        return samples;
+    }
+
+    /**
+     * Gets what was measured (e.g. {@code count} or {@code p99.0}).
+     * @return The name of the measure.
+     */
+    public String getMeasure() {
+        return measure;
+    }
+
+    public double getObserved() {
+        return observed;
+    }
+
+    public String getLimit() {
+        return limit;
+    }
+
+    /**
+     * Gets the distribution observed in the window, where one was measured.
+     * @return A snapshot of the window's values, or {@code null}.
+     */
+    public HistogramSnapshot getDistribution() {
+        return distribution;
+    }
+
+    @Override public String toString() {
+        final String summary = String.format(
+            "%s: %s was %s (limit %s) over %d exchanges between %tT.%<tL and %tT.%<tL",
+            description, measure, format(observed), limit, samples,
+            new Date(windowStart), new Date(windowEnd));
+        return distribution == null ? summary : summary + " [" + distribution + "]";
+    }
+
+    private static String format(final double value) {
+        return value == Math.rint(value) ? String.valueOf((long) value) : String.format("%.4f", value);
+    }
+}
@@ -0,0 +1,445 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.Predicate;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.service.metrics.Histogram;
+import org.axiom.service.metrics.HistogramSnapshot;
+
+/**
+ * An {@link Expectation} about the traffic flowing through a route as a whole, rather
+ * than any single exchange: for example, "no more than 5 rejections per minute" or
+ * "99% of orders are acknowledged within 200ms".
+ * <p>
+ * Exchanges are grouped into consecutive (tumbling) windows of a fixed length. Each
+ * expectation keeps a constant amount of state per window (counters, or a fixed size
+ * {@link Histogram} for percentiles), and judges a window when the first exchange
+ * beyond its end arrives, or when {@link WindowedExpectation#close()} is called at the
+ * end of a stream. Limits that can only be exceeded (such as a maximum count) are
+ * reported as soon as they are. When an observation (or the end of the stream) skips
+ * over one or more windows in which nothing arrived, those windows are judged together
+ * as a single empty window, so a minimum count or ratio is reported when traffic stops;
+ * other expectations ignore them.
+ * </p>
+ * <p>
+ * Violations are raised as a {@link VerificationFailureException} whose target is a
+ * {@link WindowReport}, from the call that observed (or closed) the window. A window
+ * is reported at most once.
+ * </p>
+ * Example:
+ * <pre>
+ *      final WindowedExpectation&lt;Exchange&gt; rejections = WindowedExpectation.atMost(
+ *          "rejections per minute", 60000, header("status").isEqualTo("rejected"), 5);
+ *      final WindowedExpectation&lt;Exchange&gt; acknowledged = WindowedExpectation.percentile(
+ *          "acknowledgement latency", 60000, header("ack-millis"), 99.0, 200);
+ * </pre>
+ */
+public abstract class WindowedExpectation<E extends Exchange> implements Expectation<E> {
+
+    private final String description;
+    private final long windowMillis;
+    private long windowStart = -1;
+    private long samples;
+    private boolean reported;
+
+    protected WindowedExpectation(final String description, final long windowMillis) {
+        notNull(description, "Description cannot be null.");
+        isTrue(windowMillis > 0, "Window length must be positive.");
+        this.description = description;
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Expects at most {@code max} matching exchanges in each window.
+     * @param description What is being measured.
+     * @param windowMillis The window length in milliseconds.
+     * @param matching The exchanges to count, or {@code null} to count every exchange.
+     * @param max The most matching exchanges allowed per window.
+     * @return A new expectation.
+     */
+    public static <E extends Exchange> WindowedExpectation<E> atMost(final String description,
+        final long windowMillis, final Predicate<E> matching, final long max) {
+        return new CountWindow<E>(description, windowMillis, matching, 0, max);
+    }
+
+    /**
+     * Expects at least {@code min} matching exchanges in each window.
+     * @param description What is being measured.
+     * @param windowMillis The window length in milliseconds.
+     * @param matching The exchanges to count, or {@code null} to count every exchange.
+     * @param min The fewest matching exchanges allowed per window.
+     * @return A new expectation.
+     */
+    public static <E extends Exchange> WindowedExpectation<E> atLeast(final String description,
+        final long windowMillis, final Predicate<E> matching, final long min) {
+        return new CountWindow<E>(description, windowMillis, matching, min, Long.MAX_VALUE);
+    }
+
+    /**
+     * Expects matching exchanges to arrive no faster than {@code perSecond}, on average over each window.
+     * @param description What is being measured.
+     * @param windowMillis The window length in milliseconds.
+     * @param matching The exchanges to count, or {@code null} to count every exchange.
+     * @param perSecond The highest rate allowed.
+     * @return A new expectation.
+     */
+    public static <E extends Exchange> WindowedExpectation<E> maxRate(final String description,
+        final long windowMillis, final Predicate<E> matching, final double perSecond) {
+        return atMost(description, windowMillis, matching, (long) Math.floor(perSecond * windowMillis / 1000.0));
+    }
+
+    /**
+     * Expects the matching proportion of exchanges in each window to lie between the supplied bounds.
+     * @param description What is being measured.
+     * @param windowMillis The window length in milliseconds.
+     * @param matching The exchanges making up the proportion.
+     * @param minRatio The smallest proportion allowed (0 to 1).
+     * @param maxRatio The largest proportion allowed (0 to 1).
+     * @return A new expectation.
+     */
+    public static <E extends Exchange> WindowedExpectation<E> ratio(final String description,
+        final long windowMillis, final Predicate<E> matching, final double minRatio, final double maxRatio) {
+        return new RatioWindow<E>(description, windowMillis, matching, minRatio, maxRatio);
+    }
+
+    /**
+     * Expects the given percentile of a measured value (typically a latency) to be at most {@code max}
+     * in each window. Exchanges for which the expression yields nothing are not counted.
+     * @param description What is being measured.
+     * @param windowMillis The window length in milliseconds.
+     * @param value An expression yielding the value to measure, as a whole number.
+     * @param percentile The percentile to check (e.g. {@code 99.0}).
+     * @param max The highest value allowed at that percentile.
+     * @return A new expectation.
+     */
+    public static <E extends Exchange> WindowedExpectation<E> percentile(final String description,
+        final long windowMillis, final Expression<E> value, final double percentile, final long max) {
+        return new PercentileWindow<E>(description, windowMillis, value, percentile, max);
+    }
+
+    /**
+     * Observes an exchange as it passes, using the current time.
+     * @param exchange The exchange to observe.
+     * @throws VerificationFailureException if a window is found to violate the expectation.
+     */
+    @Override public void verify(final E exchange) throws VerificationFailureException {
+        observe(exchange, System.currentTimeMillis());
+    }
+
+    /**
+     * Observes an exchange that passed at the supplied time.
+     * @param exchange The exchange to observe.
+     * @param timestamp When the exchange passed, in milliseconds since the epoch.
+     * @throws VerificationFailureException if a window is found to violate the expectation.
+     */
+    public synchronized void observe(final E exchange, final long timestamp) throws VerificationFailureException {
+        WindowReport violation = null;
+        if (windowStart < 0) {
+            windowStart = timestamp;
+        } else if (timestamp >= windowStart + windowMillis) {
+            final long closedEnd = windowStart + windowMillis;
+            violation = closeWindow(closedEnd);
+            windowStart += ((timestamp - windowStart) / windowMillis) * windowMillis;
+            if (violation == null && windowStart > closedEnd) {
+                violation = judgeEmpty(closedEnd, windowStart);
+            }
+        }
+        samples++;
+        record(exchange);
+        if (violation == null && !reported) {
+            violation = judgeEarly(windowStart, timestamp, samples);
+            reported = violation != null;
+        }
+        if (violation != null) {
+            throw new VerificationFailureException(violation, violation.toString());
+        }
+    }
+
+    /**
+     * Judges the current window as it stands, then starts afresh. Call this at the end of a stream.
+     * @throws VerificationFailureException if the current window violates the expectation.
+     */
+    public void close() throws VerificationFailureException {
+        close(System.currentTimeMillis());
+    }
+
+    /**
+     * Judges the current window as of the supplied time, along with any whole windows
+     * in which nothing arrived since, then starts afresh. A window cut short by the end
+     * of the stream is not held to minimums that only a whole window could meet.
+     * @param timestamp When the stream ended, in milliseconds since the epoch.
+     * @throws VerificationFailureException if a window violates the expectation.
+     */
+    public synchronized void close(final long timestamp) throws VerificationFailureException {
+        if (windowStart < 0) {
+            return;
+        }
+        final long end = windowStart + windowMillis;
+        WindowReport violation;
+        if (timestamp < end) {
+            violation = !reported && samples > 0 ? judgePartial(windowStart, timestamp, samples) : null;
+            resetWindow();
+        } else {
+            violation = closeWindow(end);
+            final long skippedEnd = windowStart + ((timestamp - windowStart) / windowMillis) * windowMillis;
+            if (violation == null && skippedEnd > end) {
+                violation = judgeEmpty(end, skippedEnd);
+            }
+        }
+        windowStart = -1;
+        if (violation != null) {
+            throw new VerificationFailureException(violation, violation.toString());
+        }
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    @Override public String toString() {
+        return description;
+    }
+
+    public long getWindowMillis() {
+        return windowMillis;
+    }
+
+    /**
+     * Records an exchange in the current window.
+     * @param exchange The exchange to record.
+     */
+    protected abstract void record(E exchange);
+
+    /**
+     * Judges a complete window.
+     * @param start The start of the window.
+     * @param end The end of the window.
+     * @param observed The number of exchanges observed in it.
+     * @return A {@link WindowReport} if the window violates the expectation, otherwise {@code null}.
+     */
+    protected abstract WindowReport judge(long start, long end, long observed);
+
+    /**
+     * Judges a window which is still open, for limits that cannot be recovered from
+     * before the window closes. By default, nothing is judged early.
+     * @param start The start of the window.
+     * @param now The time of the latest observation.
+     * @param observed The number of exchanges observed so far.
+     * @return A {@link WindowReport} if the window already violates the expectation, otherwise {@code null}.
+     */
+    protected WindowReport judgeEarly(final long start, final long now, final long observed) {
+        return null;
+    }
+
+    /**
+     * Judges a window cut short by the end of the stream. By default, it is judged as
+     * though it were complete.
+     * @param start The start of the window.
+     * @param end The end of the stream.
+     * @param observed The number of exchanges observed in it.
+     * @return A {@link WindowReport} if the window violates the expectation, otherwise {@code null}.
+     */
+    protected WindowReport judgePartial(final long start, final long end, final long observed) {
+        return judge(start, end, observed);
+    }
+
+    /**
+     * Judges a stretch of one or more consecutive windows in which nothing was observed.
+     * By default, empty windows satisfy the expectation.
+     * @param start The start of the first empty window.
+     * @param end The end of the last empty window.
+     * @return A {@link WindowReport} if an empty window violates the expectation, otherwise {@code null}.
+     */
+    protected WindowReport judgeEmpty(final long start, final long end) {
+        return null;
+    }
+
+    /**
+     * Clears the state recorded for the current window.
+     */
+    protected abstract void reset();
+
+    protected WindowReport report(final long start, final long end, final long observed,
+        final String measure, final double value, final String limit) {
+        return new WindowReport(description, start, end, observed, measure, value, limit);
+    }
+
+    private WindowReport closeWindow(final long end) {
+        final WindowReport violation = !reported && samples > 0 ? judge(windowStart, end, samples) : null;
+        resetWindow();
+        return violation;
+    }
+
+    private void resetWindow() {
+        reset();
+        samples = 0;
+        reported = false;
+    }
+
+    private static <E extends Exchange> boolean matches(final Predicate<E> predicate, final E exchange) {
+        return predicate == null || predicate.matches(exchange);
+    }
+
+    private static final class CountWindow<E extends Exchange> extends WindowedExpectation<E> {
+
+        private final Predicate<E> matching;
+        private final long min;
+        private final long max;
+        private long count;
+
+        CountWindow(final String description, final long windowMillis,
+            final Predicate<E> matching, final long min, final long max) {
+            super(description, windowMillis);
+            isTrue(min >= 0 && min <= max, "Count bounds must satisfy 0 <= min <= max.");
+            this.matching = matching;
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override protected void record(final E exchange) {
+            if (matches(matching, exchange)) {
+                count++;
+            }
+        }
+
+        @Override protected WindowReport judgeEarly(final long start, final long now, final long observed) {
+            return count > max ? report(start, now, observed, "count", count, "<= " + max) : null;
+        }
+
+        @Override protected WindowReport judge(final long start, final long end, final long observed) {
+            if (count < min) {
+                return report(start, end, observed, "count", count, ">= " + min);
+            }
+            return judgeEarly(start, end, observed);
+        }
+
+        @Override protected WindowReport judgePartial(final long start, final long end, final long observed) {
+            return judgeEarly(start, end, observed);
+        }
+
+        @Override protected WindowReport judgeEmpty(final long start, final long end) {
+            return min > 0 ? report(start, end, 0, "count", 0, ">= " + min) : null;
+        }
+
+        @Override protected void reset() {
+            count = 0;
+        }
+    }
+
+    private static final class RatioWindow<E extends Exchange> extends WindowedExpectation<E> {
+
+        private final Predicate<E> matching;
+        private final double minRatio;
+        private final double maxRatio;
+        private long count;
+
+        RatioWindow(final String description, final long windowMillis,
+            final Predicate<E> matching, final double minRatio, final double maxRatio) {
+            super(description, windowMillis);
+            notNull(matching, "Predicate cannot be null.");
+            isTrue(minRatio >= 0 && minRatio <= maxRatio && maxRatio <= 1,
+                "Ratio bounds must satisfy 0 <= min <= max <= 1.");
+            this.matching = matching;
+            this.minRatio = minRatio;
+            this.maxRatio = maxRatio;
+        }
+
+        @Override protected void record(final E exchange) {
+            if (matching.matches(exchange)) {
+                count++;
+            }
+        }
+
+        @Override protected WindowReport judge(final long start, final long end, final long observed) {
+            final double ratio = (double) count / observed;
+            if (ratio < minRatio || ratio > maxRatio) {
+                return report(start, end, observed, "ratio", ratio, limit());
+            }
+            return null;
+        }
+
+        @Override protected WindowReport judgeEmpty(final long start, final long end) {
+            return minRatio > 0 ? report(start, end, 0, "ratio", 0, limit()) : null;
+        }
+
+        private String limit() {
+            return String.format("%.4f..%.4f", minRatio, maxRatio);
+        }
+
+        @Override protected void reset() {
+            count = 0;
+        }
+    }
+
+    private static final class PercentileWindow<E extends Exchange> extends WindowedExpectation<E> {
+
+        private final Expression<E> value;
+        private final double percentile;
+        private final long max;
+        private final Histogram histogram = new Histogram();
+
+        PercentileWindow(final String description, final long windowMillis,
+            final Expression<E> value, final double percentile, final long max) {
+            super(description, windowMillis);
+            notNull(value, "Value expression cannot be null.");
+            isTrue(percentile > 0 && percentile <= 100, "Percentile must be between 0 and 100.");
+            this.value = value;
+            this.percentile = percentile;
+            this.max = max;
+        }
+
+        @Override protected void record(final E exchange) {
+            final Object measured = value.evaluate(exchange);
+            if (measured == null) {
+                return;
+            }
+            final Object converted = ComparisonPredicate.convert(exchange, measured, Long.class);
+            if (converted instanceof Number) {
+                histogram.record(((Number) converted).longValue());
+            }
+        }
+
+        @Override protected WindowReport judge(final long start, final long end, final long observed) {
+            final HistogramSnapshot snapshot = histogram.snapshot();
+            if (snapshot.getCount() == 0) {
+                return null;
+            }
+            final long actual = snapshot.getValueAtPercentile(percentile);
+            return actual > max ? report(start, end, snapshot.getCount(),
+                "p" + percentile, actual, "<= " + max) : null;
+        }
+
+        @Override protected void reset() {
+            histogram.reset();
+        }
+    }
+}
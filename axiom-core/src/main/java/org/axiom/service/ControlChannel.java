@@ -33,13 +33,28 @@ import org.apache.camel.builder.RouteBuilder;
 import org.apache.camel.processor.interceptor.Tracer;
 import org.apache.commons.configuration.Configuration;
 import static org.apache.commons.lang.Validate.*;
+import org.axiom.configuration.BoundSettings;
 import static org.axiom.configuration.ExternalConfigurationSourceFactory.*;
 import org.axiom.integration.Environment;
+import org.axiom.integration.EnvironmentSettings;
 import org.axiom.integration.camel.RouteConfigurationScriptEvaluator;
+import org.axiom.scenario.VerificationFailureException;
+import org.axiom.service.events.EventKind;
+import org.axiom.service.events.EventProbe;
+import org.axiom.service.events.FlightEvents;
+import org.axiom.service.metrics.ConfigureBreakdown;
+import org.axiom.service.metrics.ConfigureProfiler;
+import org.axiom.service.metrics.LatencyMonitor;
+import org.axiom.service.metrics.MetricsRegistry;
+import org.axiom.service.trace.ExchangeTrace;
+import org.axiom.service.trace.TraceRecorder;
+import org.axiom.service.trace.TraceStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.rmi.registry.Registry;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * Provides a managed message channel that can be used to
@@ -82,12 +97,19 @@ import java.rmi.registry.Registry;
  * the {@link ControlChannel#waitShutdown} method provides this polling facility (with a variation
  * that times out without further action). Before the {@link ControlChannel#waitShutdown} method
  * returns, {@link ControlChannel#destroy()} will be called, effectively terminating the channel.
+ * If the {@link ShutdownChannel} is configured to drain, exchanges already in flight are given
+ * the chance to complete first (see {@link ControlChannel#getDrainReport()}).
  * </p>
  * <p>
  * To explicitly send the 'shutdown' signal yourself, call the {@link ControlChannel#sendShutdownSignal()}
  * method, and to optionally combine this with the {@link ControlChannel#waitShutdown} call, the
  * {@link ControlChannel#sendShutdownSignalAndWait} method can be used. 
  * </p>
+ * <p>
+ * Signals sent through the channel (configuration updates and shutdown) are delivered on
+ * a dedicated {@link ControlLane}, so they don't compete with data traffic for threads, and
+ * a shutdown signal overtakes any configuration updates still waiting to be delivered.
+ * </p>
  * Example:
  * <pre>
  *
@@ -116,9 +138,13 @@ import java.rmi.registry.Registry;
  */
 public class ControlChannel {
 
+    private static final String HOST_CONTEXT_EVENT_NAME = "host";
+
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final CamelContext hostContext;
     private final Tracer tracer;
+    private final LatencyMonitor latencyMonitor = new LatencyMonitor();
+    private volatile ControlLane controlLane = new ControlLane();
 
     private Configuration config;
     private ShutdownChannel shutdownChannel;
@@ -158,11 +184,25 @@ public class ControlChannel {
      */
     public void load(final RouteLoader loader) {
         notNull(loader, "Route loader cannot be null.");
+        final ConfigureProfiler.Operation operation = ConfigureProfiler.begin("load " + loader);
+        final EventProbe event = FlightEvents.begin(EventKind.ROUTE_CONFIGURE, String.valueOf(loader));
+        boolean failed = true;
         try {
             log.debug("Adding routes to context {}.", hostContext.getName());
-            hostContext.addRoutes(loader.load());
+            final RouteBuilder builder = loader.load();
+            final ConfigureProfiler.Span span = ConfigureProfiler.span("routes.add");
+            try {
+                hostContext.addRoutes(builder);
+            } finally {
+                span.stop();
+            }
+            operation.succeeded();
+            failed = false;
         } catch (Exception e) {
             throw new LifecycleException(e.getLocalizedMessage(), e);
+        } finally {
+            operation.end();
+            event.commit("load", failed);
         }
     }
                             
@@ -173,8 +213,14 @@ public class ControlChannel {
      * @param builder The builder containing the configuration you wish to apply
      */
     public void configure(final RouteBuilder builder) {
-        sendBodyAndHeader(Environment.CONTROL_CHANNEL,
-            builder, "signal", "configure");
+        final ConfigureProfiler.Operation operation = ConfigureProfiler.begin("configure " + builder);
+        try {
+            sendBodyAndHeader(Environment.CONTROL_CHANNEL,
+                builder, "signal", "configure");
+            operation.succeeded();
+        } finally {
+            operation.end();
+        }
     }
 
     /**
@@ -184,19 +230,51 @@ public class ControlChannel {
      * @param routeLoader An object which can load the configuration you wish to apply
      */
     public void configure(final RouteLoader routeLoader) {
-        configure(routeLoader.load());
+        final ConfigureProfiler.Operation operation = ConfigureProfiler.begin("configure " + routeLoader);
+        final EventProbe event = FlightEvents.begin(EventKind.ROUTE_CONFIGURE, String.valueOf(routeLoader));
+        boolean failed = true;
+        try {
+            configure(routeLoader.load());
+            operation.succeeded();
+            failed = false;
+        } finally {
+            operation.end();
+            event.commit("configure", failed);
+        }
     }
 
     private void sendBodyAndHeader(final String channelUri, final Object payload,
         final String header, final String headerValue) {
-        final ProducerTemplate<Exchange> producer = getContext().createProducerTemplate();
-        producer.sendBodyAndHeader(channelUri, payload, header, headerValue);
+        final EventProbe event = FlightEvents.begin(EventKind.CONTROL_SIGNAL, headerValue);
+        final ConfigureBreakdown operation = ConfigureProfiler.capture();
+        boolean failed = true;
+        try {
+            controlLane.execute(headerValue, new Callable<Object>() {
+                @Override public Object call() {
+                    // stages timed on the lane belong to the caller's operation
+                    final ConfigureBreakdown previous = ConfigureProfiler.attach(operation);
+                    try {
+                        final ProducerTemplate<Exchange> producer = getContext().createProducerTemplate();
+                        producer.sendBodyAndHeader(channelUri, payload, header, headerValue);
+                    } finally {
+                        ConfigureProfiler.attach(previous);
+                    }
+                    return null;
+                }
+            });
+            failed = false;
+        } finally {
+            event.commit(channelUri, failed);
+        }
     }
 
     /**
      * Activates the control channel, which will from now on behave in
      * accordance with the routes you set up in your bootstrap script(s).
      *
+     * Once the host context has started, the managed contexts registered with
+     * the {@link LifecycleCoordinator} (if there is one) are started in parallel.
+     *
      * See {@link ControlChannel#waitShutdown} and {@link ControlChannel#sendShutdownSignal()}
      * for instructions on shutting down an activated channel. 
      */
@@ -206,26 +284,89 @@ public class ControlChannel {
             final CamelContext context = getContext();
 
             log.info("Configuring trace interceptor for {}.", context.getName());
-            TraceBuilder builder = new TraceBuilder(getConfig(), tracer);
+            TraceBuilder builder = new TraceBuilder(getTraceSettings(), tracer);
             context.addInterceptStrategy(builder.build());
+            // installed whether or not tracing is enabled yet: the recorder checks the
+            // tracer on every exchange, so tracing can be switched on at runtime
+            final TraceStore traceStore = getTraceStore();
+            if (traceStore != null) {
+                log.info("Recording traces for {} in the trace store.", context.getName());
+                context.addInterceptStrategy(new TraceRecorder(tracer, traceStore));
+            }
+
+            log.info("Configuring latency monitor for {}.", context.getName());
+            context.addInterceptStrategy(latencyMonitor);
+            latencyMonitor.export(context);
 
             log.debug("Starting underlying camel context.");
-            context.start();
+            final EventProbe event = FlightEvents.begin(EventKind.CONTEXT_START, HOST_CONTEXT_EVENT_NAME);
+            boolean failed = true;
+            try {
+                context.start();
+                failed = false;
+            } finally {
+                event.commit(null, failed);
+            }
+
+            final LifecycleCoordinator coordinator = getLifecycleCoordinator();
+            if (coordinator != null) {
+                log.debug("Starting managed contexts.");
+                coordinator.startAll();
+            }
+        } catch (LifecycleException e) {
+            throw e;
         } catch (Exception e) {
             throw new LifecycleException(e.getLocalizedMessage(), e);
         }
     }
 
     /**
-     * Stops all the underlying services, jobs and worker threads.
+     * Stops all the underlying services, jobs and worker threads. Managed contexts
+     * registered with the {@link LifecycleCoordinator} are stopped (in parallel)
+     * before the host context.
      * @throws LifecycleException in the face of termination failure(s).
      */
     public void destroy() {
         log.info("Destroying control channel.");
+        // managed contexts that fail to stop shouldn't keep the host running
+        LifecycleException managedFailure = null;
+        final LifecycleCoordinator coordinator = getLifecycleCoordinator();
+        if (coordinator != null) {
+            log.debug("Stopping managed contexts.");
+            try {
+                coordinator.stopAll();
+            } catch (LifecycleException e) {
+                managedFailure = e;
+            }
+        }
+        destroyHost();
+        if (managedFailure != null) {
+            throw managedFailure;
+        }
+    }
+
+    /**
+     * Stops the host context and the control lane, leaving the managed contexts
+     * alone: for the {@link ShutdownOrchestrator}, which stops those in a phase of their own.
+     * @throws LifecycleException if the host context fails to stop.
+     */
+    void destroyHost() {
+        final EventProbe event = FlightEvents.begin(EventKind.CONTEXT_STOP, HOST_CONTEXT_EVENT_NAME);
+        boolean failed = true;
         try {
+            latencyMonitor.unexport();
             getContext().stop();
+            // a fresh lane only starts its thread when the next signal is sent
+            final ControlLane stopped = controlLane;
+            controlLane = new ControlLane();
+            stopped.shutdown();
+            failed = false;
+        } catch (LifecycleException e) {
+            throw e;
         } catch (Exception e) {
             throw new LifecycleException(e.getLocalizedMessage(), e);
+        } finally {
+            event.commit(null, failed);
         }
     }
 
@@ -296,6 +437,35 @@ public class ControlChannel {
         return wasShutdown;
     }
 
+    /**
+     * Waits for the 'shutdown channel' to receive a 'shutdown' signal, without
+     * draining or destroying anything. This is for callers which orchestrate
+     * shutdown themselves (see {@link ShutdownOrchestrator}).
+     * @param timeout The number of milliseconds to wait.
+     * @exception LifecycleException Thrown if the calling thread is interrupted whilst waiting
+     * @return {@code true} if the signal arrived within the specified timeout, otherwise {@code false}.
+     */
+    public boolean awaitShutdownSignal(final long timeout) {
+        return getShutdownChannel().awaitSignal(timeout);
+    }
+
+    /**
+     * Waits indefinitely for the 'shutdown channel' to receive a 'shutdown' signal,
+     * without draining or destroying anything.
+     * @exception LifecycleException Thrown if the calling thread is interrupted whilst waiting
+     */
+    public void awaitShutdownSignal() {
+        getShutdownChannel().awaitSignal();
+    }
+
+    /**
+     * Gets the outcome of draining in flight exchanges during the last shutdown.
+     * @return The {@link DrainReport}, or {@code null} if no drain has taken place.
+     */
+    public DrainReport getDrainReport() {
+        return getShutdownChannel().getDrainReport();
+    }
+
     /**
      * Looks up a service in the registry underlying the backing {@link CamelContext},
      * returning the service or null if it could not be found.
@@ -347,6 +517,99 @@ public class ControlChannel {
         return tracer;
     }
 
+    /**
+     * Gets the {@link TraceStore} registered with the underlying {@link CamelContext}.
+     * The store is fed by the tracer, provided tracing was enabled when the channel
+     * was activated.
+     * @return The registered {@link TraceStore}, or {@code null} if there isn't one.
+     */
+    public TraceStore getTraceStore() {
+        return lookup(Environment.TRACE_STORE_ID, TraceStore.class);
+    }
+
+    /**
+     * Gets the {@link TraceSettings} bound from the current configuration version. If the
+     * host registry holds no bound settings, they are read from the configuration instead.
+     * @return The trace settings to apply.
+     */
+    public TraceSettings getTraceSettings() {
+        final BoundSettings<?> settings = lookup(Environment.TRACE_SETTINGS_ID, BoundSettings.class);
+        return settings == null ? TraceSettings.from(getConfig()) : (TraceSettings) settings.get();
+    }
+
+    /**
+     * Gets the {@link EnvironmentSettings} bound from the current configuration version. If the
+     * host registry holds no bound settings, they are read from the configuration instead.
+     * @return The environment settings to apply.
+     */
+    public EnvironmentSettings getEnvironmentSettings() {
+        final BoundSettings<?> settings = lookup(Environment.ENVIRONMENT_SETTINGS_ID, BoundSettings.class);
+        return settings == null ? EnvironmentSettings.from(getConfig()) : (EnvironmentSettings) settings.get();
+    }
+
+    /**
+     * Gets the full path taken by an exchange, as recorded in the {@link TraceStore}.
+     * @param exchangeId The id of the exchange.
+     * @return The trace, or {@code null} if no trace is available.
+     */
+    public ExchangeTrace findTrace(final String exchangeId) {
+        final TraceStore traceStore = getTraceStore();
+        return traceStore == null ? null : traceStore.findByExchangeId(exchangeId);
+    }
+
+    /**
+     * Gets the full path taken by the exchange that failed verification.
+     * @param failure The failure raised by an {@code Expectation}.
+     * @return The trace, or {@code null} if no trace is available.
+     */
+    public ExchangeTrace findTrace(final VerificationFailureException failure) {
+        final TraceStore traceStore = getTraceStore();
+        return traceStore == null ? null : traceStore.findByFailure(failure);
+    }
+
+    /**
+     * Gets a breakdown of where the time went in recent configure operations
+     * (script reading and evaluation, plugin lookups, adding and starting routes).
+     * @return The most recently completed configure operations, newest first.
+     */
+    public List<ConfigureBreakdown> getConfigureBreakdowns() {
+        return ConfigureProfiler.getRecentBreakdowns();
+    }
+
+    /**
+     * Gets the {@link MetricsRegistry} registered with the underlying {@link CamelContext}.
+     * @return The registered {@link MetricsRegistry}, or {@code null} if there isn't one.
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return lookup(Environment.METRICS_REGISTRY_ID, MetricsRegistry.class);
+    }
+
+    /**
+     * Gets the {@link LifecycleCoordinator} registered with the underlying {@link CamelContext}.
+     * @return The registered {@link LifecycleCoordinator}, or {@code null} if there isn't one.
+     */
+    public LifecycleCoordinator getLifecycleCoordinator() {
+        return lookup(Environment.LIFECYCLE_COORDINATOR_ID, LifecycleCoordinator.class);
+    }
+
+    /**
+     * Gets the {@link ControlLane} on which this channel delivers control signals.
+     * @return The {@link ControlLane} instance associated with this control channel.
+     */
+    public ControlLane getControlLane() {
+        return controlLane;
+    }
+
+    /**
+     * Gets the {@link LatencyMonitor} attached to the underlying
+     * {@link CamelContext}, which can be used to query per-route and
+     * per-node latency percentiles, exchange and failure counts.
+     * @return The {@link LatencyMonitor} instance associated with this control channel.
+     */
+    public LatencyMonitor getLatencyMonitor() {
+        return latencyMonitor;
+    }
+
     /**
      * Gets the {@link Configuration} instance associated with this.
      * @return
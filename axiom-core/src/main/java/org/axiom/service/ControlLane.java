@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service;
+
+import static org.apache.commons.lang.StringUtils.*;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.integration.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A dedicated, high priority thread on which control signals ({@code configure},
+ * {@code start}, {@code stop}, {@code terminate}) are delivered, so that they never
+ * queue behind data traffic on shared threads.
+ * <p>
+ * Signals are handled one at a time, in the order they were submitted, except that
+ * a {@code terminate} signal overtakes any signals still waiting in the queue.
+ * A signal submitted from the lane itself (e.g. by a processor handling another
+ * signal) runs straight away on the calling thread rather than deadlocking.
+ * </p>
+ */
+public class ControlLane {
+
+    private static final int URGENT = 0;
+    private static final int NORMAL = 1;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadPoolExecutor executor;
+    private volatile Thread laneThread;
+
+    public ControlLane() {
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "axiom-control-lane");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MAX_PRIORITY);
+                    laneThread = thread;
+                    return thread;
+                }
+            });
+    }
+
+    /**
+     * Queues a control signal for delivery on the lane.
+     * @param signal The signal being delivered, which determines its priority.
+     * @param task The work required to deliver it.
+     * @param <T> The result type of the task.
+     * @return A {@link Future} representing the pending delivery.
+     * @exception LifecycleException thrown if the lane has been shut down
+     */
+    public <T> Future<T> submit(final String signal, final Callable<T> task) {
+        notNull(task, "Control task cannot be null.");
+        final SignalTask<T> signalTask = new SignalTask<T>(task, priorityOf(signal), sequence.getAndIncrement());
+        if (isLaneThread()) {
+            signalTask.run();
+            return signalTask;
+        }
+        try {
+            executor.execute(signalTask);
+        } catch (RejectedExecutionException e) {
+            throw new LifecycleException("Control lane has been shut down.", e);
+        }
+        return signalTask;
+    }
+
+    /**
+     * Delivers a control signal on the lane, blocking until it has been handled.
+     * @param signal The signal being delivered, which determines its priority.
+     * @param task The work required to deliver it.
+     * @param <T> The result type of the task.
+     * @return The result of {@code task}.
+     * @exception LifecycleException thrown if the lane has been shut down, the calling
+     * thread is interrupted whilst waiting, or the task throws a checked exception
+     */
+    public <T> T execute(final String signal, final Callable<T> task) {
+        final Future<T> future = submit(signal, task);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LifecycleException(e.getLocalizedMessage(), e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new LifecycleException(cause.getLocalizedMessage(), cause);
+        }
+    }
+
+    /**
+     * Gets the number of signals waiting to be delivered.
+     * @return The queue depth.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    /**
+     * Stops the lane once the signals already queued have been delivered.
+     */
+    public void shutdown() {
+        log.debug("Shutting down control lane ({} signals queued).", getQueueDepth());
+        executor.shutdown();
+    }
+
+    private boolean isLaneThread() {
+        return Thread.currentThread() == laneThread;
+    }
+
+    private static int priorityOf(final String signal) {
+        return equalsIgnoreCase(Environment.SIG_TERMINATE, signal) ? URGENT : NORMAL;
+    }
+
+    /**
+     * A queued signal, ordered by priority and then by submission.
+     */
+    private static final class SignalTask<T> extends FutureTask<T> implements Comparable<SignalTask<?>> {
+
+        private final int priority;
+        private final long sequence;
+
+        SignalTask(final Callable<T> task, final int priority, final long sequence) {
+            super(task);
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+
+        @Override public int compareTo(final SignalTask<?> other) {
+            if (priority != other.priority) {
+                return priority < other.priority ? -1 : 1;
+            }
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service;
+
+/**
+ * The outcome of draining in flight exchanges during shutdown.
+ */
+public final class DrainReport {
+
+    private final long drained;
+    private final long abandoned;
+    private final long rejected;
+    private final long elapsedMillis;
+
+    public DrainReport(final long drained, final long abandoned,
+        final long rejected, final long elapsedMillis) {
+        this.drained = drained;
+        this.abandoned = abandoned;
+        this.rejected = rejected;
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Gets the number of in flight exchanges that completed whilst draining.
+     * @return The drained count.
+     */
+    public long getDrained() {
+        return drained;
+    }
+
+    /**
+     * Gets the number of exchanges still in flight when the drain timed out.
+     * @return The abandoned count.
+     */
+    public long getAbandoned() {
+        return abandoned;
+    }
+
+    /**
+     * Gets the number of new exchanges turned away whilst draining.
+     * @return The rejected count.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public boolean isComplete() {
+        return abandoned == 0;
+    }
+
+    @Override public String toString() {
+        return String.format("drained=%d, abandoned=%d, rejected=%d, elapsed=%dms",
+            drained, abandoned, rejected, elapsedMillis);
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.model.ProcessorType;
+import org.apache.camel.model.RouteType;
+import org.apache.camel.processor.DelegateProcessor;
+import org.apache.camel.spi.InterceptStrategy;
+import static org.apache.commons.lang.Validate.*;
+import static org.axiom.integration.camel.RouteSupport.*;
+import org.axiom.service.metrics.StripedCounter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An {@link InterceptStrategy} that counts the exchanges currently passing through
+ * the routes of a {@link CamelContext}, so that shutdown can wait for them to finish
+ * (see {@link InflightTracker#drain(long)}) rather than dropping them.
+ * <p>
+ * An exchange is in flight from the point it enters the first top level node of a
+ * route until it leaves the last one (or fails part way). Once draining has begun,
+ * new exchanges arriving at the start of a route are failed with a
+ * {@link RejectedExecutionException} instead of being processed; exchanges already
+ * in flight in another route (e.g. crossing a {@code direct:} hop) are let through.
+ * </p>
+ */
+public class InflightTracker implements InterceptStrategy {
+
+    /**
+     * The prefix of the exchange property used to mark exchanges as in flight.
+     */
+    protected static final String INFLIGHT_PROPERTY = "axiom.inflight.";
+
+    private static final long POLL_INTERVAL_MILLIS = 10L;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final StripedCounter inflight = new StripedCounter();
+    private final StripedCounter rejected = new StripedCounter();
+
+    private volatile boolean draining;
+
+    /**
+     * Installs this tracker into the supplied context. This must happen before
+     * the context's routes are started.
+     * @param context The context to track.
+     */
+    public void setCamelContext(final CamelContext context) {
+        notNull(context, "Camel context cannot be null.");
+        context.addInterceptStrategy(this);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Processor wrapProcessorInInterceptors(final ProcessorType processorType,
+        final Processor target) throws Exception {
+        final RouteType route = findRoute(processorType);
+        if (!isTopLevel(route, processorType)) {
+            return target;
+        }
+        final List outputs = route.getOutputs();
+        final int index = outputs.indexOf(processorType);
+        return new InflightInterceptor(target, INFLIGHT_PROPERTY + describeRoute(route),
+            index == 0, index == outputs.size() - 1);
+    }
+
+    /**
+     * Gets the number of exchanges currently in flight.
+     * @return The in flight count.
+     */
+    public long getInflightCount() {
+        return inflight.getCount();
+    }
+
+    /**
+     * Gets the number of exchanges turned away since draining began.
+     * @return The rejected count.
+     */
+    public long getRejectedCount() {
+        return rejected.getCount();
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Accepts new exchanges again and clears the rejected count, so
+     * the tracker can be reused after an earlier drain.
+     */
+    public void reset() {
+        if (draining) {
+            draining = false;
+            log.info("Draining ended: new exchanges will be accepted.");
+        }
+        rejected.reset();
+    }
+
+    /**
+     * Stops new exchanges from entering any route, without waiting for
+     * those already in flight.
+     */
+    public void beginDrain() {
+        if (!draining) {
+            draining = true;
+            log.info("Draining: no new exchanges will be accepted ({} in flight).", inflight.getCount());
+        }
+    }
+
+    /**
+     * Stops new exchanges from entering any route and waits for those
+     * already in flight to complete, or for the timeout to pass.
+     * If the calling thread is interrupted, waiting stops early (leaving the thread's
+     * interrupted status set) and the exchanges still in flight are reported as abandoned.
+     * @param timeout The longest time to wait, in milliseconds.
+     * @return A {@link DrainReport} describing the outcome.
+     */
+    public DrainReport drain(final long timeout) {
+        beginDrain();
+        final long start = System.nanoTime();
+        final long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeout);
+        final long initial = inflight.getCount();
+        long remaining = initial;
+        try {
+            while (remaining > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+                remaining = inflight.getCount();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            remaining = inflight.getCount();
+            log.warn("Interrupted whilst draining.");
+        }
+        final DrainReport report = new DrainReport(Math.max(0, initial - remaining),
+            Math.max(0, remaining), rejected.getCount(),
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        if (remaining > 0) {
+            log.warn("Drain timed out: {}.", report);
+        } else {
+            log.info("Drain complete: {}.", report);
+        }
+        return report;
+    }
+
+    /**
+     * Counts exchanges in and out of a route, turning them away once draining has begun.
+     */
+    private class InflightInterceptor extends DelegateProcessor {
+
+        private final String property;
+        private final boolean firstInRoute;
+        private final boolean lastInRoute;
+
+        InflightInterceptor(final Processor target, final String property,
+            final boolean firstInRoute, final boolean lastInRoute) {
+            super(target);
+            this.property = property;
+            this.firstInRoute = firstInRoute;
+            this.lastInRoute = lastInRoute;
+        }
+
+        @Override public void process(final Exchange exchange) throws Exception {
+            if (firstInRoute) {
+                if (draining && !isTracked(exchange)) {
+                    rejected.increment();
+                    exchange.setException(new RejectedExecutionException("Shutting down: exchange rejected."));
+                    return;
+                }
+                exchange.setProperty(property, Boolean.TRUE);
+                inflight.increment();
+            }
+            boolean failed = true;
+            try {
+                processNext(exchange);
+                failed = exchange.isFailed();
+            } finally {
+                if ((lastInRoute || failed) && exchange.getProperty(property) != null) {
+                    exchange.removeProperty(property);
+                    inflight.decrement();
+                }
+            }
+        }
+
+        private boolean isTracked(final Exchange exchange) {
+            for (final String name : exchange.getProperties().keySet()) {
+                if (name.startsWith(INFLIGHT_PROPERTY)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override public String toString() {
+            return "InflightInterceptor[" + property + "]";
+        }
+    }
+}
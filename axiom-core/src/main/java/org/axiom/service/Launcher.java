@@ -2,9 +2,8 @@ package org.axiom.service;
 
 import org.apache.camel.CamelContext;
 import static org.apache.commons.collections.CollectionUtils.typedCollection;
-import org.apache.commons.configuration.Configuration;
 import static org.apache.commons.io.FileUtils.*;
-import org.axiom.integration.Environment;
+import org.axiom.integration.EnvironmentSettings;
 import static org.axiom.util.CollectionUtils.*;
 import org.axiom.util.Operation;
 import org.slf4j.Logger;
@@ -64,9 +63,9 @@ public class Launcher {
      */
     @SuppressWarnings({"unchecked"})
     private void reconfigureExistingRoutes(final ControlChannel channel) {
-        Configuration config = channel.getConfig();
+        final EnvironmentSettings settings = channel.getEnvironmentSettings();
         //NB: This unchecked operation is actually quite safe in practise
-        map(typedCollection(locateRouteScripts(config), File.class),
+        map(typedCollection(locateRouteScripts(settings), File.class),
             new Operation<File>() {
                 @Override public void apply(final File input) {
                     final String script = input.getAbsolutePath();
@@ -77,12 +76,10 @@ public class Launcher {
             });
     }
 
-    private Collection locateRouteScripts(final Configuration config) {
-        final String scriptPath = config.getString(Environment.SCRIPT_REPOSITORY_URI);
-        logger.info("Restoring existing routes from '{}'.", scriptPath);
-        final String[] extensions =
-            config.getStringArray(Environment.SCRIPT_FILE_EXTENSIONS);
-        final File directory = new File(scriptPath);
+    private Collection locateRouteScripts(final EnvironmentSettings settings) {
+        final File directory = settings.getScriptRepository();
+        logger.info("Restoring existing routes from '{}'.", directory);
+        final String[] extensions = settings.getScriptFileExtensions();
         if (directory.isDirectory()) {
             return listFiles(directory, extensions, false);
         } else {
@@ -0,0 +1,450 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service;
+
+import org.apache.camel.CamelContext;
+import org.apache.commons.configuration.Configuration;
+import static org.apache.commons.lang.StringUtils.*;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.integration.Environment;
+import org.axiom.service.events.EventKind;
+import org.axiom.service.events.EventProbe;
+import org.axiom.service.events.FlightEvents;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts and stops a set of named {@link CamelContext}s in parallel, on a bounded
+ * pool of threads, whilst honouring the dependencies declared between them. A
+ * context is started only once everything it depends on has started, and is
+ * stopped only once everything that depends on it has stopped.
+ * <p>
+ * Managed contexts are registered as they are created: every {@link CamelContext}
+ * bean (other than the host context) is picked up as the application context creates
+ * it, and the {@code AxiomComponent} registers the contexts its endpoints address.
+ * The dependencies of a context named {@code foo} are declared (as a comma separated
+ * list of context names) under the {@code axiom.lifecycle.dependencies.foo} key.
+ * </p>
+ * <p>
+ * The time taken to start and stop each context is recorded (in milliseconds),
+ * and made available via {@link LifecycleCoordinator#getStartTimings()} and
+ * {@link LifecycleCoordinator#getStopTimings()}.
+ * </p>
+ */
+public class LifecycleCoordinator implements BeanPostProcessor {
+
+    /**
+     * The prefix of the keys under which the dependencies of each context are declared.
+     */
+    public static final String DEPENDENCIES_PREFIX = "axiom.lifecycle.dependencies";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final Map<String, CamelContext> contexts = new LinkedHashMap<String, CamelContext>();
+    private final Map<String, Set<String>> dependencies = new HashMap<String, Set<String>>();
+
+    private int poolSize = Runtime.getRuntime().availableProcessors();
+    private Configuration configuration;
+    private volatile Map<String, Long> startTimings = Collections.emptyMap();
+    private volatile Map<String, Long> stopTimings = Collections.emptyMap();
+
+    /**
+     * Registers a context, along with the names of the contexts it depends on.
+     * @param name The name of the context.
+     * @param context The context.
+     * @param dependsOn The names of contexts that must be started before this one.
+     */
+    public synchronized void register(final String name, final CamelContext context, final String... dependsOn) {
+        notNull(name, "Context name cannot be null.");
+        notNull(context, "Camel context cannot be null.");
+        contexts.put(name, context);
+        final Set<String> required = new HashSet<String>();
+        for (final String dependency : dependsOn) {
+            if (isNotBlank(dependency)) {
+                required.add(dependency.trim());
+            }
+        }
+        dependencies.put(name, required);
+    }
+
+    /**
+     * Registers a managed context, along with the dependencies declared for it in the
+     * configuration. Registering a context under a name that is already taken replaces
+     * the context previously registered.
+     * @param name The name of the context.
+     * @param context The context.
+     */
+    public void manage(final String name, final CamelContext context) {
+        notNull(name, "Context name cannot be null.");
+        final String[] dependsOn = configuration == null ? new String[0] :
+            configuration.getStringArray(DEPENDENCIES_PREFIX + "." + name.trim());
+        register(name.trim(), context, dependsOn);
+    }
+
+    /**
+     * Registers a number of contexts, without dependencies.
+     * @param contexts The contexts to register, keyed by name.
+     */
+    public void setContexts(final Map<String, CamelContext> contexts) {
+        for (final Map.Entry<String, CamelContext> entry : contexts.entrySet()) {
+            register(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Declares dependencies between registered contexts.
+     * @param dependencies Comma separated context names, keyed by the name of the dependent context.
+     */
+    public synchronized void setDependencies(final Map<String, String> dependencies) {
+        for (final Map.Entry<String, String> entry : dependencies.entrySet()) {
+            isTrue(contexts.containsKey(entry.getKey()), "No context registered as " + entry.getKey());
+            for (final String dependency : split(entry.getValue(), ',')) {
+                if (isNotBlank(dependency)) {
+                    this.dependencies.get(entry.getKey()).add(dependency.trim());
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the configuration in which the dependencies of managed contexts are declared.
+     * @param configuration The configuration.
+     */
+    public void setConfiguration(final Configuration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * Sets the maximum number of contexts that will be started or stopped at once.
+     * @param poolSize The number of threads to use.
+     */
+    public void setPoolSize(final int poolSize) {
+        isTrue(poolSize > 0, "Pool size must be positive.");
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Starts all registered contexts. If any context fails to start, no further
+     * contexts are started (though those already starting are allowed to finish).
+     * @throws LifecycleException if the dependencies are invalid or any context fails to start.
+     */
+    public void startAll() throws LifecycleException {
+        final Map<String, Long> timings = run(Phase.START, dependencyGraph(false));
+        startTimings = timings;
+    }
+
+    /**
+     * Stops all registered contexts. Failures are logged and do not prevent
+     * other contexts from being stopped.
+     * @throws LifecycleException if any context fails to stop.
+     */
+    public void stopAll() throws LifecycleException {
+        final Map<String, Long> timings = run(Phase.STOP, dependencyGraph(true));
+        stopTimings = timings;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Object postProcessBeforeInitialization(final Object bean, final String beanName)
+        throws BeansException {
+        return bean;
+    }
+
+    /**
+     * Registers each {@link CamelContext} bean, apart from the host context
+     * (which is started and stopped by the control channel), as it is created.
+     */
+    @Override public Object postProcessAfterInitialization(final Object bean, final String beanName)
+        throws BeansException {
+        if (bean instanceof CamelContext && !Environment.HOST_CONTEXT.equals(beanName)) {
+            log.debug("Registering managed context {}.", beanName);
+            manage(beanName, (CamelContext) bean);
+        }
+        return bean;
+    }
+
+    /**
+     * Gets the time taken to start each context during the last call to {@link #startAll()}.
+     * @return Timings in milliseconds, keyed by context name, in completion order.
+     */
+    public Map<String, Long> getStartTimings() {
+        return startTimings;
+    }
+
+    /**
+     * Gets the time taken to stop each context during the last call to {@link #stopAll()}.
+     * @return Timings in milliseconds, keyed by context name, in completion order.
+     */
+    public Map<String, Long> getStopTimings() {
+        return stopTimings;
+    }
+
+    /**
+     * Builds a map from each context to the contexts that must complete first,
+     * checking that every dependency is registered and that there are no cycles.
+     */
+    private synchronized Map<String, Set<String>> dependencyGraph(final boolean reversed) {
+        final Map<String, Set<String>> graph = new LinkedHashMap<String, Set<String>>();
+        for (final String name : contexts.keySet()) {
+            graph.put(name, new HashSet<String>());
+        }
+        for (final Map.Entry<String, Set<String>> entry : dependencies.entrySet()) {
+            for (final String dependency : entry.getValue()) {
+                if (!contexts.containsKey(dependency)) {
+                    throw new LifecycleException(String.format(
+                        "Context %s depends on %s, which is not registered.", entry.getKey(), dependency));
+                }
+                if (reversed) {
+                    graph.get(dependency).add(entry.getKey());
+                } else {
+                    graph.get(entry.getKey()).add(dependency);
+                }
+            }
+        }
+        checkForCycles(graph);
+        return graph;
+    }
+
+    private void checkForCycles(final Map<String, Set<String>> graph) {
+        final Map<String, Integer> remaining = new HashMap<String, Integer>();
+        final LinkedList<String> ready = new LinkedList<String>();
+        for (final Map.Entry<String, Set<String>> entry : graph.entrySet()) {
+            remaining.put(entry.getKey(), entry.getValue().size());
+            if (entry.getValue().isEmpty()) {
+                ready.add(entry.getKey());
+            }
+        }
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            final String name = ready.removeFirst();
+            visited++;
+            for (final String dependent : dependentsOf(graph, name)) {
+                final int count = remaining.get(dependent) - 1;
+                remaining.put(dependent, count);
+                if (count == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+        if (visited != graph.size()) {
+            final List<String> cyclic = new ArrayList<String>();
+            for (final Map.Entry<String, Integer> entry : remaining.entrySet()) {
+                if (entry.getValue() > 0) {
+                    cyclic.add(entry.getKey());
+                }
+            }
+            throw new LifecycleException("Cyclic dependencies between contexts " + cyclic);
+        }
+    }
+
+    private Map<String, Long> run(final Phase phase, final Map<String, Set<String>> graph) {
+        final Map<String, Long> timings = Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+        if (graph.isEmpty()) {
+            return timings;
+        }
+        final ExecutorService pool = Executors.newFixedThreadPool(
+            Math.min(poolSize, graph.size()), new CoordinatorThreadFactory(phase));
+        final CompletionService<String> completion = new ExecutorCompletionService<String>(pool);
+        final Map<String, Set<String>> waiting = new HashMap<String, Set<String>>();
+        for (final Map.Entry<String, Set<String>> entry : graph.entrySet()) {
+            waiting.put(entry.getKey(), new HashSet<String>(entry.getValue()));
+        }
+
+        final List<String> failures = new ArrayList<String>();
+        Throwable firstFailure = null;
+        int outstanding = 0;
+        try {
+            for (final String name : graph.keySet()) {
+                if (waiting.get(name).isEmpty()) {
+                    completion.submit(task(phase, name, timings));
+                    outstanding++;
+                }
+            }
+            while (outstanding > 0) {
+                final String done;
+                try {
+                    done = completion.take().get();
+                    outstanding--;
+                } catch (ExecutionException e) {
+                    outstanding--;
+                    final ContextFailure failure = (ContextFailure) e.getCause();
+                    failures.add(failure.name);
+                    firstFailure = firstFailure == null ? failure.getCause() : firstFailure;
+                    log.error("Unable to {} context {}: {}", new Object[] {
+                        phase.label, failure.name, failure.getCause().getLocalizedMessage() });
+                    if (phase == Phase.STOP) {
+                        // a context that failed to stop is as down as it will get, so carry on regardless
+                        outstanding += release(phase, failure.name, graph, waiting, completion, timings);
+                    }
+                    continue;
+                }
+                if (phase == Phase.STOP || failures.isEmpty()) {
+                    outstanding += release(phase, done, graph, waiting, completion, timings);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LifecycleException("Interrupted whilst waiting for contexts to " + phase.label, e);
+        } finally {
+            pool.shutdownNow();
+        }
+        if (!failures.isEmpty()) {
+            throw new LifecycleException(String.format("Unable to %s contexts %s.",
+                phase.label, failures), firstFailure);
+        }
+        log.info("{} {} contexts: {}", new Object[] { phase.done, graph.size(), timings });
+        return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(timings));
+    }
+
+    private int release(final Phase phase, final String completed, final Map<String, Set<String>> graph,
+        final Map<String, Set<String>> waiting, final CompletionService<String> completion,
+        final Map<String, Long> timings) {
+        int submitted = 0;
+        for (final String dependent : dependentsOf(graph, completed)) {
+            final Set<String> pending = waiting.get(dependent);
+            pending.remove(completed);
+            if (pending.isEmpty()) {
+                completion.submit(task(phase, dependent, timings));
+                submitted++;
+            }
+        }
+        return submitted;
+    }
+
+    private List<String> dependentsOf(final Map<String, Set<String>> graph, final String name) {
+        final List<String> dependents = new ArrayList<String>();
+        for (final Map.Entry<String, Set<String>> entry : graph.entrySet()) {
+            if (entry.getValue().contains(name)) {
+                dependents.add(entry.getKey());
+            }
+        }
+        return dependents;
+    }
+
+    private Callable<String> task(final Phase phase, final String name, final Map<String, Long> timings) {
+        final CamelContext context;
+        synchronized (this) {
+            context = contexts.get(name);
+        }
+        return new Callable<String>() {
+            @Override public String call() throws ContextFailure {
+                final EventProbe event = FlightEvents.begin(phase.event, name);
+                final long start = System.nanoTime();
+                boolean failed = true;
+                try {
+                    phase.apply(context);
+                    failed = false;
+                } catch (Exception e) {
+                    throw new ContextFailure(name, e);
+                } finally {
+                    event.commit(phase.label, failed);
+                }
+                final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                timings.put(name, elapsed);
+                log.debug("{} context {} in {}ms.", new Object[] { phase.done, name, elapsed });
+                return name;
+            }
+        };
+    }
+
+    private enum Phase {
+        START("start", "Started", EventKind.CONTEXT_START) {
+            @Override void apply(final CamelContext context) throws Exception {
+                context.start();
+            }
+        },
+        STOP("stop", "Stopped", EventKind.CONTEXT_STOP) {
+            @Override void apply(final CamelContext context) throws Exception {
+                context.stop();
+            }
+        };
+
+        private final String label;
+        private final String done;
+        private final EventKind event;
+
+        Phase(final String label, final String done, final EventKind event) {
+            this.label = label;
+            this.done = done;
+            this.event = event;
+        }
+
+        abstract void apply(CamelContext context) throws Exception;
+    }
+
+    private static final class ContextFailure extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+
+        ContextFailure(final String name, final Throwable cause) {
+            super(cause);
+            this.name = name;
+        }
+    }
+
+    private static final class CoordinatorThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private final Phase phase;
+
+        CoordinatorThreadFactory(final Phase phase) {
+            this.phase = phase;
+        }
+
+        @Override public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable,
+                String.format("axiom-lifecycle-%s-%d", phase.label, count.incrementAndGet()));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -35,6 +35,10 @@ import static org.apache.commons.lang.StringUtils.*;
 import static org.apache.commons.lang.Validate.*;
 import org.axiom.integration.Environment;
 import org.axiom.integration.camel.RouteConfigurationScriptEvaluator;
+import org.axiom.service.events.EventKind;
+import org.axiom.service.events.EventProbe;
+import org.axiom.service.events.FlightEvents;
+import org.axiom.service.metrics.ConfigureProfiler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.core.io.*;
@@ -64,9 +68,17 @@ public class RouteScriptLoader implements RouteLoader {
      * {@inheritDoc}
      */
     @Override public RouteBuilder load() {
+        final EventProbe event = FlightEvents.begin(EventKind.SCRIPT_EVALUATION, pathToScript);
+        boolean failed = true;
         try {
             final Resource script = getScript();
-            final String bootstrapCode = IOUtils.toString(script.getInputStream());
+            final ConfigureProfiler.Span read = ConfigureProfiler.span("script.read");
+            final String bootstrapCode;
+            try {
+                bootstrapCode = IOUtils.toString(script.getInputStream());
+            } finally {
+                read.stop();
+            }
             log.debug("Applying {}:{}{}",
                 new Object[] {
                     script.getURI(),
@@ -74,9 +86,18 @@ public class RouteScriptLoader implements RouteLoader {
                     bootstrapCode
                 }
             );
-            return scriptEvaluator.configure(bootstrapCode);
+            final ConfigureProfiler.Span evaluate = ConfigureProfiler.span("script.evaluate");
+            try {
+                final RouteBuilder builder = scriptEvaluator.configure(bootstrapCode);
+                failed = false;
+                return builder;
+            } finally {
+                evaluate.stop();
+            }
         } catch (IOException e) {
             throw new LifecycleException(e.getLocalizedMessage(), e);
+        } finally {
+            event.commit(null, failed);
         }
     }
 
@@ -88,6 +109,10 @@ public class RouteScriptLoader implements RouteLoader {
         return getScriptResource(pathToScript);
     }
 
+    @Override public String toString() {
+        return "RouteScriptLoader[" + pathToScript + "]";
+    }
+
     private Resource getScriptResource(final String uri) {
         try {
             if (startsWithIgnoreCase(uri, "classpath:")) {
@@ -2,8 +2,12 @@ package org.axiom.service;
 
 import org.apache.camel.Consume;
 import org.apache.camel.Header;
+import org.apache.commons.configuration.Configuration;
 import static org.apache.commons.lang.StringUtils.*;
 import org.axiom.integration.Environment;
+import org.axiom.service.events.EventKind;
+import org.axiom.service.events.EventProbe;
+import org.axiom.service.events.FlightEvents;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -18,13 +22,24 @@ import java.util.concurrent.TimeUnit;
  * of a {@link ControlChannel}, the lifecycle of which is bound to
  * the termination channel exposed via this object.
  * </p>
+ * <p>
+ * When an {@link InflightTracker} and a drain timeout are supplied, the channel
+ * drains on {@code terminate}: new exchanges are turned away as soon as the signal
+ * arrives, and the {@code waitShutdown} methods don't return until the exchanges
+ * already in flight have completed (or the drain timeout has passed). The outcome
+ * is available from {@link ShutdownChannel#getDrainReport()}.
+ * </p>
  */
 public class ShutdownChannel {
 
     private static final int INITIAL_COUNT = 1;
+    protected static final String DRAIN_TIMEOUT = "axiom.shutdown.drain.timeout";
 
     private final Logger log = LoggerFactory.getLogger(getClass());
     private final CountDownLatch latch;
+    private InflightTracker inflightTracker;
+    private long drainTimeout;
+    private DrainReport drainReport;
 
     public ShutdownChannel() {
         this(new CountDownLatch(INITIAL_COUNT));
@@ -42,7 +57,11 @@ public class ShutdownChannel {
     @Consume(uri= Environment.TERMINATION_CHANNEL)
     public void onShutdown(@Header(name=Environment.SIGNAL) final String signal) {
         log.debug("Received {} signal.", signal);
+        FlightEvents.emit(EventKind.SHUTDOWN_PHASE, "signal", signal);
         if (equalsIgnoreCase(Environment.SIG_TERMINATE, signal)) {
+            if (inflightTracker != null && drainTimeout > 0) {
+                inflightTracker.beginDrain();
+            }
             latch.countDown();
         }
     }
@@ -52,7 +71,11 @@ public class ShutdownChannel {
      * @return {@code true} if shutdown has already completed, otherwise {@code false}.
      */
     public boolean isShutdown() {
-        return waitShutdown(0l);
+        try {
+            return latch.await(0l, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            throw new LifecycleException(e.getLocalizedMessage(), e);
+        }
     }
 
     /**
@@ -64,15 +87,24 @@ public class ShutdownChannel {
      * @exception LifecycleException thrown if the calling thread is interrupted whilst waiting
      */
     public boolean waitShutdown(final long timeout) {
+        final EventProbe event = timeout > 0 ?
+            FlightEvents.begin(EventKind.SHUTDOWN_PHASE, "await") : EventProbe.DISABLED;
+        boolean failed = true;
         try {
             log.debug("Entering wait shutdown ({}ms timeout).", timeout);
             final boolean wasShutdown = latch.await(timeout, TimeUnit.MILLISECONDS);
             if (!wasShutdown) {
                 log.debug("Wait Shutdown timed out after {}ms.", timeout);
             }
+            failed = !wasShutdown;
+            if (wasShutdown) {
+                drain(drainTimeout);
+            }
             return wasShutdown;
         } catch (InterruptedException e) {
             throw new LifecycleException(e.getLocalizedMessage(), e);
+        } finally {
+            event.commit(timeout + "ms", failed);
         }
     }
 
@@ -81,11 +113,109 @@ public class ShutdownChannel {
      * @exception LifecycleException thrown if the calling thread is interrupted whilst waiting
      */
     public void waitShutdown() {
+        final EventProbe event = FlightEvents.begin(EventKind.SHUTDOWN_PHASE, "await");
+        boolean failed = true;
         try {
             log.debug("Entering wait shutdown.");
             latch.await();
+            drain(drainTimeout);
+            failed = false;
+        } catch (InterruptedException e) {
+            throw new LifecycleException(e.getLocalizedMessage(), e);
+        } finally {
+            event.commit(null, failed);
+        }
+    }
+
+    /**
+     * Sets the tracker used to drain in flight exchanges on termination, resetting
+     * it in case an earlier shutdown channel left it draining.
+     * @param inflightTracker The tracker installed in the host context.
+     */
+    public void setInflightTracker(final InflightTracker inflightTracker) {
+        this.inflightTracker = inflightTracker;
+        if (inflightTracker != null) {
+            inflightTracker.reset();
+        }
+    }
+
+    /**
+     * Sets how long to wait for in flight exchanges on termination.
+     * @param drainTimeout The timeout in milliseconds; zero disables draining.
+     */
+    public void setDrainTimeout(final long drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * Applies the {@code axiom.shutdown.*} settings from the supplied configuration.
+     * @param config The axiom configuration.
+     */
+    public void setConfiguration(final Configuration config) {
+        setDrainTimeout(config.getLong(DRAIN_TIMEOUT, 0L));
+    }
+
+    /**
+     * Gets the outcome of draining in flight exchanges.
+     * @return The {@link DrainReport}, or {@code null} if no drain has taken place.
+     */
+    public synchronized DrainReport getDrainReport() {
+        return drainReport;
+    }
+
+    /**
+     * Blocks until a {@code terminate} signal arrives or the timeout passes, without
+     * draining: for callers (such as the {@link ShutdownOrchestrator}) that drain separately.
+     * @param timeout The time to wait in milliseconds.
+     * @return {@code true} if the signal arrived, otherwise {@code false}.
+     * @exception LifecycleException thrown if the calling thread is interrupted whilst waiting
+     */
+    boolean awaitSignal(final long timeout) {
+        try {
+            return latch.await(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            throw new LifecycleException(e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * Blocks indefinitely until a {@code terminate} signal arrives, without draining.
+     * @exception LifecycleException thrown if the calling thread is interrupted whilst waiting
+     */
+    void awaitSignal() {
+        try {
+            latch.await();
         } catch (InterruptedException e) {
             throw new LifecycleException(e.getLocalizedMessage(), e);
         }
     }
+
+    /**
+     * Turns new exchanges away, without waiting for those already in flight.
+     */
+    void stopAccepting() {
+        if (inflightTracker != null) {
+            inflightTracker.beginDrain();
+        }
+    }
+
+    /**
+     * Waits (at most once) for in flight exchanges to complete.
+     * @param timeout The longest time to wait in milliseconds; zero skips the drain.
+     * @return The {@link DrainReport}, or {@code null} if there was nothing to drain with.
+     */
+    synchronized DrainReport drain(final long timeout) {
+        if (drainReport != null || inflightTracker == null || timeout <= 0) {
+            return drainReport;
+        }
+        final EventProbe event = FlightEvents.begin(EventKind.SHUTDOWN_PHASE, "drain");
+        boolean failed = true;
+        try {
+            drainReport = inflightTracker.drain(timeout);
+            failed = !drainReport.isComplete();
+        } finally {
+            event.commit(drainReport == null ? null : drainReport.toString(), failed);
+        }
+        return drainReport;
+    }
 }
@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service;
+
+/**
+ * Receives callbacks as a {@link ShutdownOrchestrator} works through its phases.
+ * Callbacks are made on the thread calling {@link ShutdownOrchestrator#shutdown()};
+ * exceptions thrown by a listener are logged and otherwise ignored.
+ */
+public interface ShutdownListener {
+
+    /**
+     * Called before a phase starts.
+     * @param phase The name of the phase.
+     * @param timeout The deadline for the phase, in milliseconds.
+     */
+    void phaseStarted(String phase, long timeout);
+
+    /**
+     * Called once a phase has completed, failed, timed out or been skipped.
+     * @param result The outcome of the phase.
+     */
+    void phaseCompleted(ShutdownReport.PhaseResult result);
+
+    /**
+     * Called once every phase has run.
+     * @param report The outcome of the whole shutdown.
+     */
+    void shutdownCompleted(ShutdownReport report);
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service;
+
+import org.apache.commons.configuration.Configuration;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.service.events.EventKind;
+import org.axiom.service.events.EventProbe;
+import org.axiom.service.events.FlightEvents;
+import org.axiom.service.journal.JournalWriter;
+import org.axiom.service.metrics.MetricsRegistry;
+import org.axiom.service.metrics.RunRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Flushable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * Shuts axiom down as a sequence of ordered phases, each with its own deadline,
+ * so that the time taken to shut down is bounded (by the sum of the deadlines)
+ * however busy the host is.
+ * <p>
+ * Each phase runs on its own daemon thread. A phase that overruns its deadline is
+ * interrupted and abandoned, a phase that fails is logged, and in both cases
+ * shutdown carries on with the next phase. A phase with a deadline of zero is skipped.
+ * {@link ShutdownListener}s are told as each phase starts and ends, and the outcome
+ * is returned as a {@link ShutdownReport}.
+ * </p>
+ * <p>
+ * {@link ShutdownOrchestrator#forChannel(ControlChannel)} creates the standard sequence
+ * for a control channel, with deadlines taken from {@code axiom.shutdown.phase.<name>.timeout}:
+ * </p>
+ * <ol>
+ *  <li>{@code consumers} - stop accepting new exchanges</li>
+ *  <li>{@code drain} - wait for in flight exchanges to complete</li>
+ *  <li>{@code flush} - flush the metrics registry, open exchange journals, the run record (if configured) and any other registered {@link Flushable}s</li>
+ *  <li>{@code contexts} - stop the managed contexts, in parallel (see {@link LifecycleCoordinator})</li>
+ *  <li>{@code host} - stop the host context</li>
+ * </ol>
+ * Example:
+ * <pre>
+ *      final ShutdownOrchestrator orchestrator = ShutdownOrchestrator.forChannel(channel);
+ *      channel.awaitShutdownSignal();
+ *      final ShutdownReport report = orchestrator.shutdown();
+ * </pre>
+ */
+public class ShutdownOrchestrator {
+
+    public static final String CONSUMERS = "consumers";
+    public static final String DRAIN = "drain";
+    public static final String FLUSH = "flush";
+    public static final String CONTEXTS = "contexts";
+    public static final String HOST = "host";
+
+    private static final String PHASE_TIMEOUT = "axiom.shutdown.phase.{0}.timeout";
+    private static final long DEFAULT_PHASE_TIMEOUT = 10000L;
+    private static final long DRAIN_REPORT_MARGIN = 250L;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final List<PhaseEntry> phases = new ArrayList<PhaseEntry>();
+    private final List<ShutdownListener> listeners = new CopyOnWriteArrayList<ShutdownListener>();
+    private final List<Flushable> flushables = new CopyOnWriteArrayList<Flushable>();
+    private ShutdownReport report;
+
+    /**
+     * Creates the standard phase sequence for a control channel.
+     * @param channel The channel to shut down.
+     * @return A new orchestrator.
+     */
+    public static ShutdownOrchestrator forChannel(final ControlChannel channel) {
+        notNull(channel, "Control channel cannot be null.");
+        final Configuration config = channel.getConfig();
+        final ShutdownOrchestrator orchestrator = new ShutdownOrchestrator();
+        final MetricsRegistry metricsRegistry = channel.getMetricsRegistry();
+        if (metricsRegistry != null) {
+            orchestrator.addFlushable(metricsRegistry);
+        }
+        orchestrator.addFlushable(JournalWriter.openJournals());
+        final RunRecorder runRecorder = RunRecorder.fromConfiguration(channel.getLatencyMonitor(), config);
+        if (runRecorder != null) {
+            orchestrator.addFlushable(runRecorder);
+        }
+        orchestrator.addPhase(CONSUMERS, phaseTimeout(config, CONSUMERS), new ShutdownPhase() {
+            @Override public void run(final long timeout) {
+                channel.getShutdownChannel().stopAccepting();
+            }
+        });
+        orchestrator.addPhase(DRAIN, phaseTimeout(config, DRAIN), new ShutdownPhase() {
+            @Override public void run(final long timeout) {
+                final DrainReport drainReport = channel.getShutdownChannel().drain(drainBudget(timeout));
+                if (drainReport != null && !drainReport.isComplete()) {
+                    throw new LifecycleException(format(
+                        "{0} exchanges were still in flight.", drainReport.getAbandoned()));
+                }
+            }
+        });
+        orchestrator.addPhase(FLUSH, phaseTimeout(config, FLUSH), new ShutdownPhase() {
+            @Override public void run(final long timeout) throws Exception {
+                orchestrator.flush();
+            }
+        });
+        orchestrator.addPhase(CONTEXTS, phaseTimeout(config, CONTEXTS), new ShutdownPhase() {
+            @Override public void run(final long timeout) {
+                final LifecycleCoordinator coordinator = channel.getLifecycleCoordinator();
+                if (coordinator != null) {
+                    coordinator.stopAll();
+                }
+            }
+        });
+        orchestrator.addPhase(HOST, phaseTimeout(config, HOST), new ShutdownPhase() {
+            @Override public void run(final long timeout) {
+                // the managed contexts were stopped by the previous phase
+                channel.destroyHost();
+            }
+        });
+        return orchestrator;
+    }
+
+    /**
+     * Appends a phase to the sequence.
+     * @param name The name of the phase.
+     * @param timeout The deadline for the phase, in milliseconds; zero skips it.
+     * @param phase The phase to run.
+     */
+    public synchronized void addPhase(final String name, final long timeout, final ShutdownPhase phase) {
+        notEmpty(name, "Phase name cannot be null or empty.");
+        notNull(phase, "Shutdown phase cannot be null.");
+        isTrue(timeout >= 0, "Phase timeout cannot be negative.");
+        phases.add(new PhaseEntry(name, timeout, phase));
+    }
+
+    public void addListener(final ShutdownListener listener) {
+        notNull(listener, "Shutdown listener cannot be null.");
+        listeners.add(listener);
+    }
+
+    /**
+     * Registers something to be flushed by the {@code flush} phase.
+     * @param flushable The sink to flush.
+     */
+    public void addFlushable(final Flushable flushable) {
+        notNull(flushable, "Flushable cannot be null.");
+        flushables.add(flushable);
+    }
+
+    /**
+     * Runs every phase in turn. Shutdown only happens once: subsequent
+     * calls return the report from the first.
+     * @return The {@link ShutdownReport}.
+     */
+    public synchronized ShutdownReport shutdown() {
+        if (report != null) {
+            return report;
+        }
+        log.info("Shutting down in {} phases.", phases.size());
+        final long start = System.nanoTime();
+        final List<ShutdownReport.PhaseResult> results = new ArrayList<ShutdownReport.PhaseResult>();
+        final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            @Override public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "axiom-shutdown");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            for (final PhaseEntry entry : phases) {
+                final ShutdownReport.PhaseResult result = run(entry, executor);
+                results.add(result);
+                for (final ShutdownListener listener : listeners) {
+                    try {
+                        listener.phaseCompleted(result);
+                    } catch (RuntimeException e) {
+                        log.warn("Shutdown listener failed: {}", e.getLocalizedMessage());
+                    }
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        report = new ShutdownReport(results, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("Shutdown finished: {}.", report);
+        for (final ShutdownListener listener : listeners) {
+            try {
+                listener.shutdownCompleted(report);
+            } catch (RuntimeException e) {
+                log.warn("Shutdown listener failed: {}", e.getLocalizedMessage());
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Gets the outcome of the shutdown.
+     * @return The {@link ShutdownReport}, or {@code null} if shutdown hasn't happened yet.
+     */
+    public synchronized ShutdownReport getReport() {
+        return report;
+    }
+
+    private ShutdownReport.PhaseResult run(final PhaseEntry entry, final ExecutorService executor) {
+        for (final ShutdownListener listener : listeners) {
+            try {
+                listener.phaseStarted(entry.name, entry.timeout);
+            } catch (RuntimeException e) {
+                log.warn("Shutdown listener failed: {}", e.getLocalizedMessage());
+            }
+        }
+        if (entry.timeout == 0) {
+            log.debug("Skipping shutdown phase {}.", entry.name);
+            return new ShutdownReport.PhaseResult(entry.name, ShutdownReport.Outcome.SKIPPED, 0, null);
+        }
+
+        log.debug("Entering shutdown phase {} ({}ms timeout).", entry.name, entry.timeout);
+        final EventProbe event = FlightEvents.begin(EventKind.SHUTDOWN_PHASE, entry.name);
+        final long start = System.nanoTime();
+        ShutdownReport.Outcome outcome = ShutdownReport.Outcome.FAILED;
+        Throwable cause = null;
+        final Future<Object> future = executor.submit(new Callable<Object>() {
+            @Override public Object call() throws Exception {
+                entry.phase.run(entry.timeout);
+                return null;
+            }
+        });
+        try {
+            future.get(entry.timeout, TimeUnit.MILLISECONDS);
+            outcome = ShutdownReport.Outcome.COMPLETED;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            outcome = ShutdownReport.Outcome.TIMED_OUT;
+            log.warn("Shutdown phase {} did not finish within {}ms.", entry.name, entry.timeout);
+        } catch (ExecutionException e) {
+            cause = e.getCause();
+            log.error("Shutdown phase " + entry.name + " failed.", cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            cause = e;
+            log.warn("Interrupted during shutdown phase {}.", entry.name);
+        }
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        event.commit(outcome.name(), outcome != ShutdownReport.Outcome.COMPLETED);
+        return new ShutdownReport.PhaseResult(entry.name, outcome, elapsed, cause);
+    }
+
+    /**
+     * Flushes every registered {@link Flushable}, carrying on past failures.
+     * @throws Exception the last failure, if any flush failed.
+     */
+    void flush() throws Exception {
+        Exception failure = null;
+        for (final Flushable flushable : flushables) {
+            try {
+                flushable.flush();
+            } catch (Exception e) {
+                log.warn("Unable to flush {}: {}", flushable, e.getLocalizedMessage());
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Leaves the drain phase some of its deadline in which to report, rather
+     * than being cancelled at the same moment the drain itself gives up.
+     */
+    static long drainBudget(final long timeout) {
+        return Math.max(1L, timeout - Math.min(timeout / 10, DRAIN_REPORT_MARGIN));
+    }
+
+    private static long phaseTimeout(final Configuration config, final String phase) {
+        if (config == null) {
+            return DEFAULT_PHASE_TIMEOUT;
+        }
+        return config.getLong(format(PHASE_TIMEOUT, phase), DEFAULT_PHASE_TIMEOUT);
+    }
+
+    private static final class PhaseEntry {
+
+        private final String name;
+        private final long timeout;
+        private final ShutdownPhase phase;
+
+        PhaseEntry(final String name, final long timeout, final ShutdownPhase phase) {
+            this.name = name;
+            this.timeout = timeout;
+            this.phase = phase;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of an orchestrated shutdown, phase by phase.
+ */
+public final class ShutdownReport {
+
+    /**
+     * How a single phase ended.
+     */
+    public enum Outcome {
+        COMPLETED, FAILED, TIMED_OUT, SKIPPED
+    }
+
+    private final List<PhaseResult> phases;
+    private final long elapsedMillis;
+
+    ShutdownReport(final List<PhaseResult> phases, final long elapsedMillis) {
+        this.phases = Collections.unmodifiableList(new ArrayList<PhaseResult>(phases));
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /**
+     * Gets the result of each phase, in the order they ran.
+     * @return The phase results.
+     */
+    public List<PhaseResult> getPhases() {
+        return phases;
+    }
+
+    /**
+     * Gets the result of the named phase.
+     * @param name The name of the phase.
+     * @return The {@link PhaseResult}, or {@code null} if no such phase ran.
+     */
+    public PhaseResult getPhase(final String name) {
+        for (final PhaseResult phase : phases) {
+            if (phase.getName().equals(name)) {
+                return phase;
+            }
+        }
+        return null;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    /**
+     * Checks whether every phase either completed or was skipped.
+     * @return {@code true} if no phase failed or timed out.
+     */
+    public boolean isComplete() {
+        for (final PhaseResult phase : phases) {
+            if (phase.getOutcome() == Outcome.FAILED || phase.getOutcome() == Outcome.TIMED_OUT) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        for (final PhaseResult phase : phases) {
+            buffer.append(phase).append(", ");
+        }
+        return buffer.append("elapsed=").append(elapsedMillis).append("ms").toString();
+    }
+
+    /**
+     * The outcome of a single shutdown phase.
+     */
+    public static final class PhaseResult {
+
+        private final String name;
+        private final Outcome outcome;
+        private final long elapsedMillis;
+        private final Throwable cause;
+
+        PhaseResult(final String name, final Outcome outcome,
+            final long elapsedMillis, final Throwable cause) {
+            this.name = name;
+            this.outcome = outcome;
+            this.elapsedMillis = elapsedMillis;
+            this.cause = cause;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * Gets the exception raised by a failed phase.
+         * @return The cause, or {@code null} unless the outcome is {@link Outcome#FAILED}.
+         */
+        public Throwable getCause() {
+            return cause;
+        }
+
+        @Override public String toString() {
+            return String.format("%s=%s(%dms)", name, outcome, elapsedMillis);
+        }
+    }
+}
@@ -28,7 +28,6 @@
 
 package org.axiom.service;
 
-import org.apache.camel.model.LoggingLevel;
 import org.apache.camel.processor.interceptor.TraceFormatter;
 import org.apache.camel.processor.interceptor.Tracer;
 import org.apache.commons.configuration.Configuration;
@@ -52,44 +51,60 @@ public class TraceBuilder {
     protected static final String TRACE_SHOW_EXCHANGE_BODY = format("{0}format.showBody", TRACE_CONFIG_ROOT);
 
     private final Configuration config;
+    private final TraceSettings settings;
     private final Tracer tracer;
 
     //TODO: move these out into a resource bundle
     protected static final String MISSING_CONFIG_MSG = "Configuration instance cannot be null.";
     protected static final String MISSING_TRACER_MSG = "Tracer instance cannot be null" ;
+    protected static final String MISSING_SETTINGS_MSG = "Trace settings cannot be null.";
 
     public TraceBuilder(final Configuration config, final Tracer tracer) {
         notNull(config, MISSING_CONFIG_MSG);
         notNull(tracer, MISSING_TRACER_MSG);
         this.config = config;
+        this.settings = null;
         this.tracer = tracer;
     }
 
+    public TraceBuilder(final TraceSettings settings, final Tracer tracer) {
+        notNull(settings, MISSING_SETTINGS_MSG);
+        notNull(tracer, MISSING_TRACER_MSG);
+        this.config = null;
+        this.settings = settings;
+        this.tracer = tracer;
+    }
+
+    /**
+     * Checks whether the supplied configuration key is one that
+     * influences the tracer built by this class.
+     * @param key A configuration key.
+     * @return {@code true} if the key is a trace setting, otherwise {@code false}.
+     */
+    public static boolean isTraceSetting(final String key) {
+        return key != null && key.startsWith(TRACE_CONFIG_ROOT);
+    }
+
     public Tracer build() {
-        tracer.setEnabled(config.getBoolean(TRACE_ENABLED));
+        final TraceSettings applied = settings != null ? settings : TraceSettings.from(config);
+        tracer.setEnabled(applied.isEnabled());
         if (tracer.isEnabled()) {
-            tracer.setLogLevel(getTraceLevel());
-            final String logName = config.getString(TRACE_NAME, null);
-            if (logName != null) {
-                tracer.setLogName(logName);
+            tracer.setLogLevel(applied.getLogLevel());
+            if (applied.getLogName() != null) {
+                tracer.setLogName(applied.getLogName());
             }
-            tracer.setTraceInterceptors(config.getBoolean(TRACE_INTERCEPTORS));
-            tracer.setTraceExceptions(config.getBoolean(TRACE_EXCEPTIONS));
-            configureTraceFormat(tracer.getFormatter());
+            tracer.setTraceInterceptors(applied.isTraceInterceptors());
+            tracer.setTraceExceptions(applied.isTraceExceptions());
+            configureTraceFormat(tracer.getFormatter(), applied);
         }
         return tracer;
     }
 
-    private void configureTraceFormat(final TraceFormatter formatter) {
-        formatter.setShowBreadCrumb(config.getBoolean(TRACE_SHOW_BREADCRUMBS));
-        formatter.setShowProperties(config.getBoolean(TRACE_SHOW_EXCHANGE_PROPS));
-        formatter.setShowHeaders(config.getBoolean(TRACE_SHOW_EXCHANGE_HDRS));
-        formatter.setShowBodyType(config.getBoolean(TRACE_SHOW_EXCHANGE_BODY_TYPE));
-        formatter.setShowBody(config.getBoolean(TRACE_SHOW_EXCHANGE_BODY));
-    }
-
-    private LoggingLevel getTraceLevel() {
-        final String level = config.getString(TRACE_LEVEL).toUpperCase();
-        return LoggingLevel.valueOf(level);
+    private void configureTraceFormat(final TraceFormatter formatter, final TraceSettings applied) {
+        formatter.setShowBreadCrumb(applied.isShowBreadCrumb());
+        formatter.setShowProperties(applied.isShowProperties());
+        formatter.setShowHeaders(applied.isShowHeaders());
+        formatter.setShowBodyType(applied.isShowBodyType());
+        formatter.setShowBody(applied.isShowBody());
     }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.processor.interceptor.Tracer;
+import org.apache.camel.spi.InterceptStrategy;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.configuration.BoundSettings;
+import org.axiom.configuration.ConfigurationChangeListener;
+import org.axiom.configuration.ConfigurationManager;
+import org.axiom.configuration.ConfigurationSnapshot;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+
+/**
+ * Re-applies trace settings to the {@link Tracer}(s) attached to a
+ * {@link CamelContext} whenever any {@code axiom.configuration.trace.*}
+ * key changes, using a {@link TraceBuilder}. The settings are bound (and
+ * validated) by the {@link ConfigurationManager}, so an invalid trace setting
+ * stops the new configuration from being applied at all.
+ */
+public class TraceConfigurationListener implements ConfigurationChangeListener {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final CamelContext context;
+    private final BoundSettings<TraceSettings> settings;
+
+    public TraceConfigurationListener(final CamelContext context, final ConfigurationManager manager) {
+        this(context, manager, manager.bind(new TraceSettings.Binding()));
+    }
+
+    /**
+     * Creates a listener that re-applies the supplied settings, which must have been
+     * bound by {@code manager}. This allows the settings to be shared with the
+     * {@link ControlChannel}, which uses them when it first installs the {@link Tracer}.
+     */
+    public TraceConfigurationListener(final CamelContext context, final ConfigurationManager manager,
+        final BoundSettings<TraceSettings> settings) {
+        notNull(context, "Camel context cannot be null.");
+        notNull(manager, "Configuration manager cannot be null.");
+        notNull(settings, "Trace settings cannot be null.");
+        this.context = context;
+        this.settings = settings;
+        manager.addListener(this);
+    }
+
+    /**
+     * Gets the trace settings bound from the current configuration.
+     * @return The current {@link TraceSettings}.
+     */
+    public TraceSettings getSettings() {
+        return settings.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void configurationChanged(final ConfigurationSnapshot previous,
+        final ConfigurationSnapshot current, final Set<String> changedKeys) {
+        if (!affectsTracing(changedKeys)) {
+            return;
+        }
+        for (final InterceptStrategy strategy : context.getInterceptStrategies()) {
+            if (strategy instanceof Tracer) {
+                log.info("Re-applying trace settings (version {}) to {}.",
+                    current.getVersion(), context.getName());
+                new TraceBuilder(settings.get(), (Tracer) strategy).build();
+            }
+        }
+    }
+
+    private boolean affectsTracing(final Set<String> changedKeys) {
+        for (final String key : changedKeys) {
+            if (TraceBuilder.isTraceSetting(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
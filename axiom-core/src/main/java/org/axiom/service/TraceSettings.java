@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service;
+
+import org.apache.camel.model.LoggingLevel;
+import org.apache.commons.configuration.Configuration;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.configuration.ConfigurationBinding;
+import org.axiom.configuration.ConfigurationBindingException;
+import org.axiom.configuration.ConfigurationSnapshot;
+import org.axiom.configuration.SettingsReader;
+
+import static org.axiom.service.TraceBuilder.*;
+
+/**
+ * Immutable, typed view of the {@code axiom.configuration.trace.*} settings
+ * applied by a {@link TraceBuilder}.
+ */
+public final class TraceSettings {
+
+    private static final TraceSettings DISABLED =
+        new TraceSettings(false, null, null, false, false, false, false, false, false, false);
+
+    private final boolean enabled;
+    private final LoggingLevel logLevel;
+    private final String logName;
+    private final boolean traceInterceptors;
+    private final boolean traceExceptions;
+    private final boolean showBreadCrumb;
+    private final boolean showProperties;
+    private final boolean showHeaders;
+    private final boolean showBodyType;
+    private final boolean showBody;
+
+    private TraceSettings(final boolean enabled, final LoggingLevel logLevel, final String logName,
+        final boolean traceInterceptors, final boolean traceExceptions, final boolean showBreadCrumb,
+        final boolean showProperties, final boolean showHeaders, final boolean showBodyType,
+        final boolean showBody) {
+        this.enabled = enabled;
+        this.logLevel = logLevel;
+        this.logName = logName;
+        this.traceInterceptors = traceInterceptors;
+        this.traceExceptions = traceExceptions;
+        this.showBreadCrumb = showBreadCrumb;
+        this.showProperties = showProperties;
+        this.showHeaders = showHeaders;
+        this.showBodyType = showBodyType;
+        this.showBody = showBody;
+    }
+
+    /**
+     * Binds and validates the trace settings held in {@code snapshot}. Every
+     * setting is checked, whether or not tracing is enabled, so that a bad
+     * value is reported when it is loaded rather than when tracing is switched on.
+     * @param snapshot The configuration to read.
+     * @return The bound settings.
+     * @throws ConfigurationBindingException if any setting is missing or invalid.
+     */
+    public static TraceSettings bind(final ConfigurationSnapshot snapshot)
+        throws ConfigurationBindingException {
+        final SettingsReader reader = new SettingsReader(snapshot, "trace");
+        final TraceSettings settings = new TraceSettings(
+            reader.getBoolean(TRACE_ENABLED),
+            reader.getEnum(TRACE_LEVEL, LoggingLevel.class),
+            reader.getString(TRACE_NAME, null),
+            reader.getBoolean(TRACE_INTERCEPTORS),
+            reader.getBoolean(TRACE_EXCEPTIONS),
+            reader.getBoolean(TRACE_SHOW_BREADCRUMBS),
+            reader.getBoolean(TRACE_SHOW_EXCHANGE_PROPS),
+            reader.getBoolean(TRACE_SHOW_EXCHANGE_HDRS),
+            reader.getBoolean(TRACE_SHOW_EXCHANGE_BODY_TYPE),
+            reader.getBoolean(TRACE_SHOW_EXCHANGE_BODY));
+        reader.validate();
+        return settings;
+    }
+
+    /**
+     * Reads the trace settings directly from a {@link Configuration}. The
+     * remaining settings are only read when tracing is enabled.
+     * @param config The configuration to read.
+     * @return The settings.
+     */
+    public static TraceSettings from(final Configuration config) {
+        notNull(config, MISSING_CONFIG_MSG);
+        if (!config.getBoolean(TRACE_ENABLED)) {
+            return DISABLED;
+        }
+        return new TraceSettings(
+            true,
+            LoggingLevel.valueOf(config.getString(TRACE_LEVEL).toUpperCase()),
+            config.getString(TRACE_NAME, null),
+            config.getBoolean(TRACE_INTERCEPTORS),
+            config.getBoolean(TRACE_EXCEPTIONS),
+            config.getBoolean(TRACE_SHOW_BREADCRUMBS),
+            config.getBoolean(TRACE_SHOW_EXCHANGE_PROPS),
+            config.getBoolean(TRACE_SHOW_EXCHANGE_HDRS),
+            config.getBoolean(TRACE_SHOW_EXCHANGE_BODY_TYPE),
+            config.getBoolean(TRACE_SHOW_EXCHANGE_BODY));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public LoggingLevel getLogLevel() {
+        return logLevel;
+    }
+
+    public String getLogName() {
+        return logName;
+    }
+
+    public boolean isTraceInterceptors() {
+        return traceInterceptors;
+    }
+
+    public boolean isTraceExceptions() {
+        return traceExceptions;
+    }
+
+    public boolean isShowBreadCrumb() {
+        return showBreadCrumb;
+    }
+
+    public boolean isShowProperties() {
+        return showProperties;
+    }
+
+    public boolean isShowHeaders() {
+        return showHeaders;
+    }
+
+    public boolean isShowBodyType() {
+        return showBodyType;
+    }
+
+    public boolean isShowBody() {
+        return showBody;
+    }
+
+    @Override public String toString() {
+        return String.format("TraceSettings[enabled=%s, logLevel=%s, logName=%s]",
+            enabled, logLevel, logName);
+    }
+
+    /**
+     * A {@link ConfigurationBinding} for trace settings.
+     */
+    public static class Binding implements ConfigurationBinding<TraceSettings> {
+
+        @Override public TraceSettings bind(final ConfigurationSnapshot snapshot) {
+            return TraceSettings.bind(snapshot);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.events;
+
+/**
+ * The kinds of event axiom emits for profiling tools such as
+ * Java Flight Recorder. Each kind carries the name, label and
+ * category under which it is registered with the recorder.
+ */
+public enum EventKind {
+
+    CONTROL_SIGNAL("ControlSignal", "Control Signal", "Control Channel",
+        "A signal sent to the control or termination channel."),
+    ROUTE_CONFIGURE("RouteConfigure", "Route Configure", "Routes",
+        "Routes being loaded into, or configured for, a camel context."),
+    CONTEXT_START("ContextStart", "Context Start", "Routes",
+        "A camel context (and its routes) being started."),
+    CONTEXT_STOP("ContextStop", "Context Stop", "Routes",
+        "A camel context (and its routes) being stopped."),
+    SCRIPT_EVALUATION("ScriptEvaluation", "Script Evaluation", "Scripting",
+        "A route configuration script being read and evaluated."),
+    SCHEMA_COMPILATION("SchemaCompilation", "Schema Compilation", "Validation",
+        "An xml schema being compiled."),
+    SCHEMA_VALIDATION("SchemaValidation", "Schema Validation", "Validation",
+        "An exchange body being validated against an xml schema."),
+    SHUTDOWN_PHASE("ShutdownPhase", "Shutdown Phase", "Control Channel",
+        "A phase of host shutdown.");
+
+    private final String name;
+    private final String label;
+    private final String category;
+    private final String description;
+
+    private EventKind(final String name, final String label,
+        final String category, final String description) {
+        this.name = "org.axiom." + name;
+        this.label = label;
+        this.category = category;
+        this.description = description;
+    }
+
+    public String getEventName() {
+        return name;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.events;
+
+import static org.apache.commons.lang.Validate.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Emits axiom lifecycle and exchange events to an {@link EventSink}. By default
+ * events go to Java Flight Recorder (see {@link JfrEventSink}) when the running
+ * JVM supports it, and nowhere otherwise.
+ * <p>
+ * When nothing is recording, emitting an event costs a volatile read and a
+ * call to {@link EventSink#isEnabled(EventKind)}; no objects are allocated.
+ * </p>
+ * Example:
+ * <pre>
+ *      final EventProbe probe = FlightEvents.begin(EventKind.CONTEXT_START, context.getName());
+ *      boolean failed = true;
+ *      try {
+ *          context.start();
+ *          failed = false;
+ *      } finally {
+ *          probe.commit(null, failed);
+ *      }
+ * </pre>
+ */
+public final class FlightEvents {
+
+    private static final Logger log = LoggerFactory.getLogger(FlightEvents.class);
+
+    /**
+     * A sink which records nothing.
+     */
+    public static final EventSink DISABLED = new EventSink() {
+        @Override public boolean isEnabled(final EventKind kind) {
+            return false;
+        }
+
+        @Override public EventProbe begin(final EventKind kind, final String subject) {
+            return EventProbe.DISABLED;
+        }
+    };
+
+    private static volatile EventSink sink = defaultSink();
+
+    private FlightEvents() {}
+
+    /**
+     * Begins timing an event, if events of this kind are being recorded.
+     * @param kind The kind of event.
+     * @param subject What the event concerns.
+     * @return A probe which should be committed when the operation completes.
+     */
+    public static EventProbe begin(final EventKind kind, final String subject) {
+        final EventSink current = sink;
+        if (!current.isEnabled(kind)) {
+            return EventProbe.DISABLED;
+        }
+        return current.begin(kind, subject);
+    }
+
+    /**
+     * Records an instantaneous event, such as the receipt of a signal.
+     * @param kind The kind of event.
+     * @param subject What the event concerns.
+     * @param detail Additional information, which may be {@code null}.
+     */
+    public static void emit(final EventKind kind, final String subject, final String detail) {
+        final EventSink current = sink;
+        if (current.isEnabled(kind)) {
+            current.begin(kind, subject).commit(detail, false);
+        }
+    }
+
+    public static EventSink getSink() {
+        return sink;
+    }
+
+    /**
+     * Replaces the sink events are emitted to.
+     * @param eventSink The new sink; use {@link FlightEvents#DISABLED} to turn events off.
+     */
+    public static void setSink(final EventSink eventSink) {
+        notNull(eventSink, "Event sink cannot be null.");
+        sink = eventSink;
+    }
+
+    private static EventSink defaultSink() {
+        final EventSink jfr = JfrEventSink.create();
+        if (jfr == null) {
+            log.debug("Flight recorder is not available: axiom events are disabled.");
+            return DISABLED;
+        }
+        return jfr;
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.events;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An {@link EventSink} that registers a Java Flight Recorder event type for
+ * each {@link EventKind} and commits events to it. Axiom is built for JVMs
+ * that predate the {@code jdk.jfr} API, so the recorder is driven reflectively
+ * via {@code jdk.jfr.EventFactory} and is simply absent on older runtimes.
+ * <p>
+ * A listener registered with the recorder tracks whether any recording is
+ * running, so that when nothing is recording {@link JfrEventSink#isEnabled(EventKind)}
+ * is a single volatile read.
+ * </p>
+ */
+public class JfrEventSink implements EventSink {
+
+    private static final Logger log = LoggerFactory.getLogger(JfrEventSink.class);
+
+    private static final int SUBJECT = 0;
+    private static final int DETAIL = 1;
+    private static final int FAILED = 2;
+
+    private final Object[] factories;
+    private final Object[] eventTypes;
+    private final Method newEvent;
+    private final Method isTypeEnabled;
+    private final Method begin;
+    private final Method end;
+    private final Method shouldCommit;
+    private final Method commit;
+    private final Method set;
+    private final Method isInitialized;
+    private final Method getFlightRecorder;
+    private final Method getRecordings;
+    private final Method getState;
+
+    private volatile boolean recording;
+
+    /**
+     * Creates a sink for the flight recorder in the running JVM.
+     * @return A new sink, or {@code null} if the flight recorder is not available.
+     */
+    public static EventSink create() {
+        try {
+            return new JfrEventSink();
+        } catch (Exception e) {
+            log.debug("Unable to register flight recorder events: {}", e.toString());
+            return null;
+        }
+    }
+
+    private JfrEventSink() throws Exception {
+        final Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+        final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+        final Class<?> eventTypeClass = Class.forName("jdk.jfr.EventType");
+        final Class<?> recorderClass = Class.forName("jdk.jfr.FlightRecorder");
+        final Class<?> listenerClass = Class.forName("jdk.jfr.FlightRecorderListener");
+
+        newEvent = factoryClass.getMethod("newEvent");
+        isTypeEnabled = eventTypeClass.getMethod("isEnabled");
+        begin = eventClass.getMethod("begin");
+        end = eventClass.getMethod("end");
+        shouldCommit = eventClass.getMethod("shouldCommit");
+        commit = eventClass.getMethod("commit");
+        set = eventClass.getMethod("set", int.class, Object.class);
+        isInitialized = recorderClass.getMethod("isInitialized");
+        getFlightRecorder = recorderClass.getMethod("getFlightRecorder");
+        getRecordings = recorderClass.getMethod("getRecordings");
+        getState = Class.forName("jdk.jfr.Recording").getMethod("getState");
+
+        final EventKind[] kinds = EventKind.values();
+        factories = new Object[kinds.length];
+        eventTypes = new Object[kinds.length];
+        final Method createFactory = factoryClass.getMethod("create", List.class, List.class);
+        final Method getEventType = factoryClass.getMethod("getEventType");
+        final Annotations annotations = new Annotations();
+        for (final EventKind kind : kinds) {
+            final List<Object> eventAnnotations = Arrays.asList(
+                annotations.create("Name", kind.getEventName()),
+                annotations.create("Label", kind.getLabel()),
+                annotations.create("Description", kind.getDescription()),
+                annotations.create("Category", new String[] { "Axiom", kind.getCategory() }));
+            final List<Object> fields = Arrays.asList(
+                annotations.field(String.class, "subject", "Subject"),
+                annotations.field(String.class, "detail", "Detail"),
+                annotations.field(boolean.class, "failed", "Failed"));
+            factories[kind.ordinal()] = createFactory.invoke(null, eventAnnotations, fields);
+            eventTypes[kind.ordinal()] = getEventType.invoke(factories[kind.ordinal()]);
+        }
+
+        final Object listener = Proxy.newProxyInstance(listenerClass.getClassLoader(),
+            new Class<?>[] { listenerClass }, new RecordingStateListener());
+        recorderClass.getMethod("addListener", listenerClass).invoke(null, listener);
+        refreshRecordingState();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public boolean isEnabled(final EventKind kind) {
+        if (!recording) {
+            return false;
+        }
+        try {
+            return (Boolean) isTypeEnabled.invoke(eventTypes[kind.ordinal()]);
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public EventProbe begin(final EventKind kind, final String subject) {
+        try {
+            final Object event = newEvent.invoke(factories[kind.ordinal()]);
+            set.invoke(event, SUBJECT, subject);
+            begin.invoke(event);
+            return new JfrEventProbe(event);
+        } catch (Exception e) {
+            log.debug("Unable to begin {} event: {}", kind, e.toString());
+            return EventProbe.DISABLED;
+        }
+    }
+
+    /**
+     * Indicates whether at least one flight recording is running.
+     * @return {@code true} if a recording is running, otherwise {@code false}.
+     */
+    public boolean isRecording() {
+        return recording;
+    }
+
+    private void refreshRecordingState() {
+        boolean running = false;
+        try {
+            if ((Boolean) isInitialized.invoke(null)) {
+                final Object recorder = getFlightRecorder.invoke(null);
+                for (final Object recording : (List<?>) getRecordings.invoke(recorder)) {
+                    if ("RUNNING".equals(String.valueOf(getState.invoke(recording)))) {
+                        running = true;
+                        break;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Unable to determine flight recorder state: {}", e.toString());
+        }
+        recording = running;
+    }
+
+    private class JfrEventProbe implements EventProbe {
+
+        private final Object event;
+
+        JfrEventProbe(final Object event) {
+            this.event = event;
+        }
+
+        @Override public void commit(final String detail, final boolean failed) {
+            try {
+                end.invoke(event);
+                if ((Boolean) shouldCommit.invoke(event)) {
+                    set.invoke(event, DETAIL, detail);
+                    set.invoke(event, FAILED, failed);
+                    commit.invoke(event);
+                }
+            } catch (Exception e) {
+                log.debug("Unable to commit event: {}", e.toString());
+            }
+        }
+    }
+
+    /**
+     * Stands in for {@code jdk.jfr.FlightRecorderListener}, refreshing the
+     * recording state whenever the recorder starts or a recording changes state.
+     */
+    private class RecordingStateListener implements InvocationHandler {
+
+        @Override public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            final String name = method.getName();
+            if ("equals".equals(name)) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            } else if ("toString".equals(name)) {
+                return "JfrEventSink$RecordingStateListener";
+            }
+            refreshRecordingState();
+            return null;
+        }
+    }
+
+    /**
+     * Builds the {@code jdk.jfr.AnnotationElement}s and {@code jdk.jfr.ValueDescriptor}s
+     * that describe each event type.
+     */
+    private static class Annotations {
+
+        private final Constructor<?> annotationElement;
+        private final Constructor<?> valueDescriptor;
+
+        Annotations() throws Exception {
+            annotationElement = Class.forName("jdk.jfr.AnnotationElement").
+                getConstructor(Class.class, Object.class);
+            valueDescriptor = Class.forName("jdk.jfr.ValueDescriptor").
+                getConstructor(Class.class, String.class, List.class);
+        }
+
+        Object create(final String annotation, final Object value) throws Exception {
+            return annotationElement.newInstance(Class.forName("jdk.jfr." + annotation), value);
+        }
+
+        Object field(final Class<?> type, final String name, final String label) throws Exception {
+            final List<Object> fieldAnnotations = new ArrayList<Object>(
+                Collections.singletonList(create("Label", label)));
+            return valueDescriptor.newInstance(type, name, fieldAnnotations);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.journal;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A single exchange read back from a journal.
+ */
+public final class JournalEntry {
+
+    private final long offsetMicros;
+    private final Object body;
+    private final Map<String, Object> headers;
+
+    JournalEntry(final long offsetMicros, final Object body, final Map<String, Object> headers) {
+        this.offsetMicros = offsetMicros;
+        this.body = body;
+        this.headers = Collections.unmodifiableMap(headers);
+    }
+
+    /**
+     * Gets the time at which the exchange was recorded, relative to the first
+     * exchange in the journal.
+     * @return The offset in microseconds.
+     */
+    public long getOffsetMicros() {
+        return offsetMicros;
+    }
+
+    public Object getBody() {
+        return body;
+    }
+
+    public Map<String, Object> getHeaders() {
+        return headers;
+    }
+
+    @Override public String toString() {
+        return String.format("+%dus %s %s", offsetMicros, headers, body);
+    }
+}
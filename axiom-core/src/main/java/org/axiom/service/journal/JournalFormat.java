@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.journal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The binary layout shared by {@link JournalWriter} and {@link JournalReader}.
+ * <p>
+ * A journal starts with a 4 byte magic number, followed by one record per exchange:
+ * a 4 byte length, the record itself, then a 4 byte CRC32 of the record. A record holds
+ * the time since the previous record (in microseconds), the body, then the headers, using
+ * variable length integers and tagged values throughout.
+ * </p>
+ */
+final class JournalFormat {
+
+    static final int MAGIC = 0x41584a31;
+
+    private static final int NULL = 0;
+    private static final int STRING = 1;
+    private static final int BYTES = 2;
+    private static final int LONG = 3;
+    private static final int INTEGER = 4;
+    private static final int BOOLEAN = 5;
+    private static final int DOUBLE = 6;
+    private static final String CHARSET = "UTF-8";
+
+    private JournalFormat() {}
+
+    static boolean isSupported(final Object value) {
+        return value == null || value instanceof String || value instanceof byte[] || value instanceof Long
+            || value instanceof Integer || value instanceof Boolean || value instanceof Double;
+    }
+
+    static void writeValue(final DataOutput out, final Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes(out, (byte[]) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            writeVarLong(out, (Long) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER);
+            writeVarLong(out, (Integer) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else {
+            out.writeByte(STRING);
+            writeString(out, String.valueOf(value));
+        }
+    }
+
+    static Object readValue(final DataInput in) throws IOException {
+        final int tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case BYTES:
+                return readBytes(in);
+            case LONG:
+                return readVarLong(in);
+            case INTEGER:
+                return (int) readVarLong(in);
+            case BOOLEAN:
+                return in.readBoolean();
+            case DOUBLE:
+                return in.readDouble();
+            default:
+                throw new IOException("Unknown value tag " + tag + ".");
+        }
+    }
+
+    static void writeString(final DataOutput out, final String value) throws IOException {
+        writeBytes(out, value.getBytes(CHARSET));
+    }
+
+    static String readString(final DataInput in) throws IOException {
+        return new String(readBytes(in), CHARSET);
+    }
+
+    /**
+     * Writes a zig-zag encoded variable length integer (1 byte for small values of either sign).
+     */
+    static void writeVarLong(final DataOutput out, final long value) throws IOException {
+        long encoded = (value << 1) ^ (value >> 63);
+        while ((encoded & ~0x7FL) != 0) {
+            out.writeByte((int) ((encoded & 0x7F) | 0x80));
+            encoded >>>= 7;
+        }
+        out.writeByte((int) encoded);
+    }
+
+    static long readVarLong(final DataInput in) throws IOException {
+        long encoded = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readByte();
+            encoded |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (encoded >>> 1) ^ -(encoded & 1);
+            }
+        }
+        throw new IOException("Malformed variable length integer.");
+    }
+
+    private static void writeBytes(final DataOutput out, final byte[] bytes) throws IOException {
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(final DataInput in) throws IOException {
+        final long length = readVarLong(in);
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Invalid length " + length + ".");
+        }
+        final byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return bytes;
+    }
+}
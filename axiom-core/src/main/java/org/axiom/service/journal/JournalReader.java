@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.journal;
+
+import static org.apache.commons.lang.Validate.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Reads back the exchanges recorded by a {@link JournalWriter}, in order. A record
+ * that was only partly written (e.g. because the process died whilst recording) marks
+ * the end of the journal.
+ */
+public class JournalReader implements Closeable {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final File file;
+    private final DataInputStream in;
+    private final CRC32 crc = new CRC32();
+    private long offsetMicros;
+    private boolean finished;
+
+    public JournalReader(final File file) throws IOException {
+        notNull(file, "Journal file cannot be null.");
+        this.file = file;
+        in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        final int magic;
+        try {
+            magic = in.readInt();
+        } catch (EOFException e) {
+            in.close();
+            throw new IOException(file + " is not an axiom journal.");
+        }
+        if (magic != JournalFormat.MAGIC) {
+            in.close();
+            throw new IOException(file + " is not an axiom journal.");
+        }
+    }
+
+    /**
+     * Reads the next exchange.
+     * @return The next {@link JournalEntry}, or {@code null} at the end of the journal.
+     * @throws IOException if the journal cannot be read.
+     */
+    public JournalEntry next() throws IOException {
+        if (finished) {
+            return null;
+        }
+        final byte[] bytes;
+        try {
+            final int length = in.readInt();
+            if (length < 0) {
+                return truncated("invalid record length");
+            }
+            bytes = new byte[length];
+            in.readFully(bytes);
+            crc.reset();
+            crc.update(bytes, 0, length);
+            if (in.readInt() != (int) crc.getValue()) {
+                return truncated("checksum mismatch");
+            }
+        } catch (EOFException e) {
+            finished = true;
+            return null;
+        }
+
+        final DataInputStream record = new DataInputStream(new ByteArrayInputStream(bytes));
+        offsetMicros += JournalFormat.readVarLong(record);
+        final Object body = JournalFormat.readValue(record);
+        final long headerCount = JournalFormat.readVarLong(record);
+        final Map<String, Object> headers = new LinkedHashMap<String, Object>();
+        for (long i = 0; i < headerCount; i++) {
+            final String name = JournalFormat.readString(record);
+            headers.put(name, JournalFormat.readValue(record));
+        }
+        return new JournalEntry(offsetMicros, body, headers);
+    }
+
+    @Override public void close() throws IOException {
+        in.close();
+    }
+
+    private JournalEntry truncated(final String reason) {
+        log.warn("Stopped reading {} at a damaged record ({}).", file, reason);
+        finished = true;
+        return null;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.journal;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import static org.apache.commons.lang.Validate.*;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Appends exchanges (body, headers and the time since the previous exchange) to a
+ * compact, append-only journal file, which can be replayed by a {@link Replayer}.
+ * Opening an existing journal appends to it; the first exchange of each session is
+ * recorded as following immediately on from the last one in the file.
+ * <p>
+ * Bodies and header values are stored as they are when they are strings, byte arrays,
+ * longs, integers, booleans or doubles, and as strings otherwise. Writes are buffered:
+ * {@link JournalWriter#openJournals()} gives a {@link Flushable} for every journal still
+ * open, for use during shutdown. This class is thread safe.
+ * </p>
+ */
+public class JournalWriter implements Flushable, Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Set<JournalWriter> OPEN =
+        Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<JournalWriter, Boolean>()));
+
+    private final File file;
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    private final DataOutputStream record = new DataOutputStream(buffer);
+    private final CRC32 crc = new CRC32();
+    private long lastNanos = -1;
+    private long count;
+    private boolean closed;
+
+    public JournalWriter(final File file) throws IOException {
+        notNull(file, "Journal file cannot be null.");
+        this.file = file;
+        final boolean fresh = !file.exists() || file.length() == 0;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true), BUFFER_SIZE));
+        if (fresh) {
+            out.writeInt(JournalFormat.MAGIC);
+        }
+        OPEN.add(this);
+    }
+
+    /**
+     * Gets a {@link Flushable} which flushes every journal that is currently open.
+     * @return A flushable over the open journals.
+     */
+    public static Flushable openJournals() {
+        return new Flushable() {
+            @Override public void flush() throws IOException {
+                final List<JournalWriter> writers;
+                synchronized (OPEN) {
+                    writers = new ArrayList<JournalWriter>(OPEN);
+                }
+                for (final JournalWriter writer : writers) {
+                    writer.flush();
+                }
+            }
+
+            @Override public String toString() {
+                return "open journals";
+            }
+        };
+    }
+
+    /**
+     * Appends the inbound message of an exchange, timestamped now.
+     * @param exchange The exchange to record.
+     * @throws IOException if the journal cannot be written.
+     */
+    public void append(final Exchange exchange) throws IOException {
+        final Message in = exchange.getIn();
+        final Object body = JournalFormat.isSupported(in.getBody()) ? in.getBody() : in.getBody(String.class);
+        append(body, in.getHeaders(), System.nanoTime());
+    }
+
+    /**
+     * Appends a message.
+     * @param body The message body.
+     * @param headers The message headers (may be {@code null}).
+     * @param timestampNanos When the message was seen, as given by {@link System#nanoTime()}.
+     * @throws IOException if the journal cannot be written.
+     */
+    public synchronized void append(final Object body, final Map<String, Object> headers,
+        final long timestampNanos) throws IOException {
+        if (closed) {
+            throw new IOException("Journal " + file + " is closed.");
+        }
+        final long delta = lastNanos < 0 ? 0 : Math.max(0, (timestampNanos - lastNanos) / 1000);
+        lastNanos = timestampNanos;
+
+        buffer.reset();
+        JournalFormat.writeVarLong(record, delta);
+        JournalFormat.writeValue(record, body);
+        JournalFormat.writeVarLong(record, headers == null ? 0 : headers.size());
+        if (headers != null) {
+            for (final Map.Entry<String, Object> header : headers.entrySet()) {
+                JournalFormat.writeString(record, header.getKey());
+                JournalFormat.writeValue(record, header.getValue());
+            }
+        }
+        record.flush();
+        crc.reset();
+        final byte[] bytes = buffer.toByteArray();
+        crc.update(bytes, 0, bytes.length);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeInt((int) crc.getValue());
+        count++;
+    }
+
+    /**
+     * Gets the number of exchanges appended by this writer.
+     * @return The count.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override public synchronized void flush() throws IOException {
+        if (!closed) {
+            out.flush();
+        }
+    }
+
+    @Override public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            OPEN.remove(this);
+            out.close();
+        }
+    }
+
+    @Override public String toString() {
+        return "journal " + file;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.journal;
+
+import org.axiom.service.metrics.HistogramSnapshot;
+
+/**
+ * The outcome of replaying a journal (see {@link Replayer}).
+ */
+public final class ReplayReport {
+
+    private final long sent;
+    private final long failed;
+    private final long elapsedNanos;
+    private final HistogramSnapshot latency;
+
+    ReplayReport(final long sent, final long failed, final long elapsedNanos, final HistogramSnapshot latency) {
+        this.sent = sent;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+        this.latency = latency;
+    }
+
+    /**
+     * Gets the number of exchanges sent to the endpoint.
+     * @return The sent count.
+     */
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * Gets the number of exchanges that failed.
+     * @return The failed count.
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1000000L;
+    }
+
+    /**
+     * Gets the rate at which exchanges were completed.
+     * @return The achieved throughput, in exchanges per second.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : sent / (elapsedNanos / 1e9);
+    }
+
+    /**
+     * Gets the latency of each exchange, measured in microseconds from the time it
+     * was due to be sent (so time spent waiting for a free sender is included).
+     * @return A snapshot of the latency histogram.
+     */
+    public HistogramSnapshot getLatency() {
+        return latency;
+    }
+
+    @Override public String toString() {
+        return String.format("sent=%d, failed=%d, elapsed=%dms, throughput=%.0f/s, p50=%dus, p99=%dus, max=%dus",
+            sent, failed, getElapsedMillis(), getThroughput(), latency.getValueAtPercentile(50.0),
+            latency.getValueAtPercentile(99.0), latency.getMax());
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.journal;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.service.metrics.ScheduledSender;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Replays a journal recorded by a {@link JournalWriter} (e.g. via the {@code record_to}
+ * plugin) against an endpoint, either at the recorded pace, a multiple of it, or as
+ * fast as the endpoint will accept exchanges.
+ * <p>
+ * Exchanges are released on schedule by a single dispatcher and sent by up to
+ * {@code concurrency} senders of a {@link ScheduledSender}. Latency is measured from when each exchange was
+ * <em>due</em> rather than when a sender picked it up, so a slow endpoint shows
+ * up in the report instead of silently stretching the schedule.
+ * </p>
+ */
+public class Replayer {
+
+    /**
+     * Replay as fast as possible, ignoring the recorded timings.
+     */
+    public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final CamelContext context;
+    private final String endpointUri;
+    private double speed = 1.0;
+    private int concurrency = 1;
+
+    public Replayer(final CamelContext context, final String endpointUri) {
+        notNull(context, "Camel context cannot be null.");
+        notEmpty(endpointUri, "Endpoint uri cannot be null or empty.");
+        this.context = context;
+        this.endpointUri = endpointUri;
+    }
+
+    /**
+     * Sets the replay speed as a multiple of the recorded pace; {@code 1.0} (the default)
+     * replays in real time and {@link Replayer#MAX_SPEED} ignores the recorded timings.
+     * @param speed The speed multiplier.
+     */
+    public void setSpeed(final double speed) {
+        isTrue(speed > 0, "Speed must be greater than zero.");
+        this.speed = speed;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Sets the maximum number of exchanges in flight at once (defaults to 1).
+     * @param concurrency The number of concurrent senders.
+     */
+    public void setConcurrency(final int concurrency) {
+        isTrue(concurrency > 0, "Concurrency must be greater than zero.");
+        this.concurrency = concurrency;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Replays every exchange in the supplied journal, returning once they have all completed.
+     * If the calling thread is interrupted, dispatch stops and the report covers the
+     * exchanges sent so far.
+     * @param journal The journal file to replay.
+     * @return A report of throughput and latency.
+     * @throws IOException if the journal cannot be read.
+     */
+    @SuppressWarnings({"unchecked"})
+    public ReplayReport replay(final File journal) throws IOException {
+        final ProducerTemplate<Exchange> producer = context.createProducerTemplate();
+        final ScheduledSender senders = new ScheduledSender("replay", concurrency);
+        final boolean paced = !Double.isInfinite(speed);
+        final JournalReader reader = new JournalReader(journal);
+        final long start = senders.getStart();
+        try {
+            JournalEntry entry;
+            while ((entry = reader.next()) != null) {
+                final long due = paced
+                    ? start + (long) (entry.getOffsetMicros() * 1000 / speed)
+                    : System.nanoTime();
+                final Processor populator = populate(entry);
+                final boolean dispatched = senders.dispatch(due, new ScheduledSender.Send() {
+                    @Override public Exchange send() {
+                        return producer.send(endpointUri, populator);
+                    }
+                });
+                if (!dispatched) {
+                    break;
+                }
+            }
+            senders.awaitCompletion();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("Replay of {} interrupted.", journal);
+        } finally {
+            reader.close();
+            senders.shutdown();
+        }
+        final ReplayReport report = new ReplayReport(senders.getSent(), senders.getFailed(),
+            System.nanoTime() - start, senders.getLatency());
+        log.info("Replayed {} to {}: {}", new Object[] { journal, endpointUri, report });
+        return report;
+    }
+
+    private static Processor populate(final JournalEntry entry) {
+        return new Processor() {
+            @Override public void process(final Exchange exchange) throws Exception {
+                final Message in = exchange.getIn();
+                for (final Map.Entry<String, Object> header : entry.getHeaders().entrySet()) {
+                    in.setHeader(header.getKey(), header.getValue());
+                }
+                in.setBody(entry.getBody());
+            }
+        };
+    }
+}
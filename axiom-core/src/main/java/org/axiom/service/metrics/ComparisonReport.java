@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * The result of comparing two runs (see {@link RunComparison}).
+ */
+public final class ComparisonReport {
+
+    private final RunRecord baseline;
+    private final RunRecord candidate;
+    private final double percentile;
+    private final List<RouteComparison> routes;
+
+    ComparisonReport(final RunRecord baseline, final RunRecord candidate,
+        final double percentile, final List<RouteComparison> routes) {
+        this.baseline = baseline;
+        this.candidate = candidate;
+        this.percentile = percentile;
+        this.routes = Collections.unmodifiableList(routes);
+    }
+
+    public RunRecord getBaseline() {
+        return baseline;
+    }
+
+    public RunRecord getCandidate() {
+        return candidate;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public List<RouteComparison> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * Gets the comparison of a single route.
+     * @param name The input uri(s) of the route.
+     * @return The comparison, or {@code null} if the route was not recorded in either run.
+     */
+    public RouteComparison getRoute(final String name) {
+        for (final RouteComparison route : routes) {
+            if (route.getName().equals(name)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the routes that have regressed.
+     * @return The regressed routes, in route order.
+     */
+    public List<RouteComparison> getRegressions() {
+        final List<RouteComparison> regressions = new ArrayList<RouteComparison>();
+        for (final RouteComparison route : routes) {
+            if (route.isRegressed()) {
+                regressions.add(route);
+            }
+        }
+        return regressions;
+    }
+
+    public boolean hasRegressions() {
+        return !getRegressions().isEmpty();
+    }
+
+    @Override public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append(format("baseline:  %s%ncandidate: %s%n", baseline, candidate));
+        for (final RouteComparison route : routes) {
+            buffer.append(format("%s%n", route));
+        }
+        buffer.append(format("%d of %d routes regressed.", getRegressions().size(), routes.size()));
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The time spent in each stage of a single configure operation (reading
+ * and evaluating route scripts, plugin lookups, adding and starting routes).
+ * Stages that occur more than once (e.g. plugin lookups) are accumulated.
+ */
+public class ConfigureBreakdown {
+
+    private final String label;
+    private final long startTime;
+    private final Map<String, long[]> stages = new LinkedHashMap<String, long[]>();
+    private final String threadName;
+    private long elapsedNanos = -1;
+    private boolean failed;
+
+    ConfigureBreakdown(final String label) {
+        this.label = label;
+        this.startTime = System.currentTimeMillis();
+        this.threadName = Thread.currentThread().getName();
+    }
+
+    synchronized void addSpan(final String stage, final long nanos) {
+        long[] totals = stages.get(stage);
+        if (totals == null) {
+            stages.put(stage, totals = new long[2]);
+        }
+        totals[0] += nanos;
+        totals[1]++;
+    }
+
+    synchronized void complete(final long elapsedNanos, final boolean failed) {
+        this.elapsedNanos = elapsedNanos;
+        this.failed = failed;
+    }
+
+    /**
+     * Gets the label describing the operation (e.g. the script being applied).
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Gets the wall clock time (in milliseconds) at which the operation began.
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * Gets the total duration of the operation in nanoseconds, or -1 if it is still running.
+     */
+    public synchronized long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public synchronized boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets the accumulated time spent in each stage, in nanoseconds, in the
+     * order the stages were first entered.
+     * @return A map of stage name to elapsed nanoseconds.
+     */
+    public synchronized Map<String, Long> getStageTimings() {
+        final Map<String, Long> timings = new LinkedHashMap<String, Long>();
+        for (final Map.Entry<String, long[]> entry : stages.entrySet()) {
+            timings.put(entry.getKey(), entry.getValue()[0]);
+        }
+        return Collections.unmodifiableMap(timings);
+    }
+
+    /**
+     * Gets the time spent outside any recorded stage, in nanoseconds.
+     */
+    public synchronized long getUnaccountedNanos() {
+        long accounted = 0;
+        for (final long[] totals : stages.values()) {
+            accounted += totals[0];
+        }
+        return Math.max(elapsedNanos - accounted, 0);
+    }
+
+    @Override public synchronized String toString() {
+        final List<String> parts = new ArrayList<String>();
+        for (final Map.Entry<String, long[]> entry : stages.entrySet()) {
+            final long[] totals = entry.getValue();
+            parts.add(String.format("%s=%.2fms%s", entry.getKey(), totals[0] / 1e6,
+                totals[1] > 1 ? "(x" + totals[1] + ")" : ""));
+        }
+        return String.format("Configure '%s' %s in %.2fms %s", label,
+            failed ? "failed" : "completed", elapsedNanos / 1e6, parts);
+    }
+}
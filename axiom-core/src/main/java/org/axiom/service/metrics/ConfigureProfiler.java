@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import static org.apache.commons.lang.Validate.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Records where the time goes when routes are (re)configured. A configure
+ * operation is opened with {@link ConfigureProfiler#begin(String)} and the
+ * components involved (route script loaders, the jruby evaluator, plugin
+ * lookups, the processing node adding/starting routes) time their own
+ * stages with {@link ConfigureProfiler#span(String)}. The current operation
+ * is held in a thread local; work handed to another thread (e.g. a signal
+ * delivered on the control lane) is attributed to it by passing the result of
+ * {@link ConfigureProfiler#capture()} to {@link ConfigureProfiler#attach}.
+ * <p>
+ * Completed operations are logged (at debug level) and kept in a fixed size ring buffer,
+ * which can be queried with {@link ConfigureProfiler#getRecentBreakdowns()}.
+ * When no operation is open, {@code span} returns a shared no-op instance.
+ * </p>
+ */
+public final class ConfigureProfiler {
+
+    /**
+     * The number of completed operations retained by default.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final Logger log = LoggerFactory.getLogger(ConfigureProfiler.class);
+    private static final ThreadLocal<ConfigureBreakdown> current = new ThreadLocal<ConfigureBreakdown>();
+    private static final AtomicLong sequence = new AtomicLong();
+    private static volatile AtomicReferenceArray<ConfigureBreakdown> recent =
+        new AtomicReferenceArray<ConfigureBreakdown>(DEFAULT_CAPACITY);
+
+    private static final Span NO_SPAN = new Span(null, null);
+    private static final Operation NESTED_OPERATION = new Operation(null);
+
+    private ConfigureProfiler() {}
+
+    /**
+     * Opens a configure operation on the current thread. If an operation is
+     * already open, the returned handle does nothing and the stages of the
+     * nested operation are attributed to the outer one.
+     * @param label A description of the operation.
+     * @return A handle which <b>must</b> be ended (in a {@code finally} block).
+     */
+    public static Operation begin(final String label) {
+        if (current.get() != null) {
+            return NESTED_OPERATION;
+        }
+        final ConfigureBreakdown breakdown = new ConfigureBreakdown(label);
+        current.set(breakdown);
+        return new Operation(breakdown);
+    }
+
+    /**
+     * Gets the operation open on the current thread, so that it can be
+     * attached to another thread doing work on its behalf.
+     * @return The open operation's breakdown, or {@code null} if none is open.
+     */
+    public static ConfigureBreakdown capture() {
+        return current.get();
+    }
+
+    /**
+     * Makes {@code breakdown} the operation open on the current thread, so the
+     * stages timed here are attributed to it and nested operations do not report
+     * on their own. Restore the previous value (in a {@code finally} block) when done.
+     * @param breakdown A breakdown obtained from {@link ConfigureProfiler#capture()}, or {@code null}.
+     * @return The operation that was open on the current thread beforehand, if any.
+     */
+    public static ConfigureBreakdown attach(final ConfigureBreakdown breakdown) {
+        final ConfigureBreakdown previous = current.get();
+        if (breakdown == null) {
+            current.remove();
+        } else {
+            current.set(breakdown);
+        }
+        return previous;
+    }
+
+    /**
+     * Starts timing a stage of the operation open on the current thread.
+     * @param stage The name of the stage.
+     * @return A span which should be stopped when the stage completes.
+     */
+    public static Span span(final String stage) {
+        final ConfigureBreakdown breakdown = current.get();
+        if (breakdown == null) {
+            return NO_SPAN;
+        }
+        return new Span(breakdown, stage);
+    }
+
+    /**
+     * Gets the most recently completed operations, newest first.
+     * @return A list of breakdowns.
+     */
+    public static List<ConfigureBreakdown> getRecentBreakdowns() {
+        final AtomicReferenceArray<ConfigureBreakdown> buffer = recent;
+        final List<ConfigureBreakdown> breakdowns = new ArrayList<ConfigureBreakdown>();
+        final long last = sequence.get();
+        for (long i = last - 1; i >= 0 && i >= last - buffer.length(); i--) {
+            final ConfigureBreakdown breakdown = buffer.get((int) (i % buffer.length()));
+            if (breakdown != null) {
+                breakdowns.add(breakdown);
+            }
+        }
+        return breakdowns;
+    }
+
+    /**
+     * Resizes (and clears) the ring buffer of completed operations.
+     * @param capacity The number of operations to retain.
+     */
+    public static void setCapacity(final int capacity) {
+        isTrue(capacity > 0, "Capacity must be positive.");
+        recent = new AtomicReferenceArray<ConfigureBreakdown>(capacity);
+        sequence.set(0);
+    }
+
+    private static void complete(final ConfigureBreakdown breakdown) {
+        current.remove();
+        final AtomicReferenceArray<ConfigureBreakdown> buffer = recent;
+        buffer.set((int) (sequence.getAndIncrement() % buffer.length()), breakdown);
+        log.debug("{}", breakdown);
+    }
+
+    /**
+     * A handle on an open configure operation.
+     */
+    public static final class Operation {
+
+        private final ConfigureBreakdown breakdown;
+        private final long start = System.nanoTime();
+        private boolean failed = true;
+
+        private Operation(final ConfigureBreakdown breakdown) {
+            this.breakdown = breakdown;
+        }
+
+        /**
+         * Marks the operation as successful; operations ended without
+         * calling this are reported as failed.
+         */
+        public void succeeded() {
+            failed = false;
+        }
+
+        public void end() {
+            if (breakdown != null) {
+                breakdown.complete(System.nanoTime() - start, failed);
+                complete(breakdown);
+            }
+        }
+
+        /**
+         * Gets the breakdown being recorded, which is {@code null} for nested operations.
+         */
+        public ConfigureBreakdown getBreakdown() {
+            return breakdown;
+        }
+    }
+
+    /**
+     * Times a single stage of a configure operation.
+     */
+    public static final class Span {
+
+        private final ConfigureBreakdown breakdown;
+        private final String stage;
+        private final long start;
+
+        private Span(final ConfigureBreakdown breakdown, final String stage) {
+            this.breakdown = breakdown;
+            this.stage = stage;
+            this.start = breakdown == null ? 0 : System.nanoTime();
+        }
+
+        public void stop() {
+            if (breakdown != null) {
+                breakdown.addSpan(stage, System.nanoTime() - start);
+            }
+        }
+    }
+}
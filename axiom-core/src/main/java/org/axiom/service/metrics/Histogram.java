@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import static org.apache.commons.lang.Validate.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed memory, lock free histogram of {@code long} values, using
+ * the log-linear bucketing scheme popularised by Gil Tene's HdrHistogram.
+ * Values are recorded with a configurable number of significant decimal
+ * digits of precision, up to a maximum trackable value (anything larger
+ * is clamped to the maximum).
+ * <p>
+ * All storage is allocated up front, so recording a value never allocates
+ * and never blocks: each bucket is an element in an {@link AtomicLongArray}.
+ * Readers take a {@link HistogramSnapshot} and query percentiles from that,
+ * which means a concurrently updated histogram can be reported on without
+ * stopping the writers.
+ * </p>
+ */
+public class Histogram {
+
+    /**
+     * The default upper bound for recorded values: one hour in microseconds.
+     */
+    public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = 3600L * 1000L * 1000L;
+
+    /**
+     * The default precision, in significant decimal digits.
+     */
+    public static final int DEFAULT_SIGNIFICANT_DIGITS = 3;
+
+    private final long highestTrackableValue;
+    private final int subBucketHalfCountMagnitude;
+    private final int subBucketHalfCount;
+    private final long subBucketMask;
+    private final int leadingZeroCountBase;
+    private final AtomicLongArray counts;
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    public Histogram() {
+        this(DEFAULT_HIGHEST_TRACKABLE_VALUE, DEFAULT_SIGNIFICANT_DIGITS);
+    }
+
+    public Histogram(final long highestTrackableValue, final int significantDigits) {
+        isTrue(highestTrackableValue >= 2, "Highest trackable value must be >= 2.");
+        isTrue(significantDigits >= 0 && significantDigits <= 5,
+            "Significant digits must be between 0 and 5.");
+        this.highestTrackableValue = highestTrackableValue;
+
+        final long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+        final int subBucketCountMagnitude =
+            (int) Math.ceil(Math.log(largestValueWithSingleUnitResolution) / Math.log(2));
+        subBucketHalfCountMagnitude = Math.max(subBucketCountMagnitude, 1) - 1;
+        final int subBucketCount = 1 << (subBucketHalfCountMagnitude + 1);
+        subBucketHalfCount = subBucketCount / 2;
+        subBucketMask = subBucketCount - 1;
+        leadingZeroCountBase = 64 - subBucketHalfCountMagnitude - 1;
+
+        long smallestUntrackableValue = subBucketCount;
+        int bucketCount = 1;
+        while (smallestUntrackableValue <= highestTrackableValue) {
+            if (smallestUntrackableValue > Long.MAX_VALUE / 2) {
+                bucketCount++;
+                break;
+            }
+            smallestUntrackableValue <<= 1;
+            bucketCount++;
+        }
+        counts = new AtomicLongArray((bucketCount + 1) * subBucketHalfCount);
+    }
+
+    /**
+     * Records a single occurrence of {@code value}. Negative values are
+     * recorded as zero, values above the highest trackable value are clamped.
+     * @param value The value to record.
+     */
+    public void record(final long value) {
+        record(value, 1);
+    }
+
+    /**
+     * Records {@code count} occurrences of {@code value}, e.g. when rebuilding
+     * a histogram from the buckets of a {@link HistogramSnapshot}.
+     * @param value The value to record.
+     * @param count The number of occurrences.
+     */
+    public void record(final long value, final long count) {
+        final long clamped = value < 0 ? 0 : Math.min(value, highestTrackableValue);
+        counts.addAndGet(indexOf(clamped), count);
+        totalCount.addAndGet(count);
+        long currentMax;
+        while (clamped > (currentMax = maxValue.get())) {
+            if (maxValue.compareAndSet(currentMax, clamped)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of values recorded so far.
+     * @return The total count.
+     */
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    /**
+     * Takes a point in time copy of the recorded values. The copy is not
+     * atomic with respect to concurrent writers, but every value recorded
+     * before the call is guaranteed to be present in it.
+     * @return A new {@link HistogramSnapshot}.
+     */
+    public HistogramSnapshot snapshot() {
+        final long[] copy = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new HistogramSnapshot(this, copy, total, maxValue.get());
+    }
+
+    /**
+     * Clears all recorded values. Values recorded concurrently with
+     * a reset may or may not survive it.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        maxValue.set(0);
+    }
+
+    public long getHighestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+    int indexOf(final long value) {
+        final int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+        final int subBucketIndex = (int) (value >>> bucketIndex);
+        return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+    }
+
+    /**
+     * Gets the highest value that would be recorded into the bucket at {@code index}.
+     */
+    long highestEquivalentValueAt(final int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if (bucketIndex < 0) {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+        final long lowest = ((long) subBucketIndex) << bucketIndex;
+        return lowest + (1L << bucketIndex) - 1;
+    }
+}
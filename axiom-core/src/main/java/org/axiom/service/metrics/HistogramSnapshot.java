@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import static org.apache.commons.lang.Validate.*;
+
+import static java.lang.String.format;
+
+/**
+ * An immutable copy of the counts held by a {@link Histogram}, against
+ * which percentiles and other statistics can be queried.
+ */
+public class HistogramSnapshot {
+
+    /**
+     * The percentiles reported by {@link HistogramSnapshot#toString()}.
+     */
+    public static final double[] REPORTED_PERCENTILES = { 50.0, 90.0, 99.0, 99.9, 99.99 };
+
+    private final Histogram layout;
+    private final long[] counts;
+    private final long totalCount;
+    private final long maxValue;
+
+    HistogramSnapshot(final Histogram layout, final long[] counts,
+        final long totalCount, final long maxValue) {
+        this.layout = layout;
+        this.counts = counts;
+        this.totalCount = totalCount;
+        this.maxValue = maxValue;
+    }
+
+    public long getCount() {
+        return totalCount;
+    }
+
+    public long getMax() {
+        return maxValue;
+    }
+
+    /**
+     * Gets the value at or below which {@code percentile} percent of all
+     * recorded values fall, to the precision of the underlying histogram.
+     * @param percentile A percentile in the range [0, 100].
+     * @return The value at the given percentile, or zero if nothing was recorded.
+     */
+    public long getValueAtPercentile(final double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        final double requested = Math.min(Math.max(percentile, 0.0), 100.0);
+        final long countAtPercentile =
+            Math.max(1, (long) Math.ceil((requested / 100.0) * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= countAtPercentile) {
+                return Math.min(layout.highestEquivalentValueAt(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    /**
+     * Gets the number of recorded values less than or equal to {@code value}.
+     * @param value The (inclusive) upper bound.
+     * @return A count of values.
+     */
+    public long getCountAtOrBelow(final long value) {
+        if (value >= layout.getHighestTrackableValue()) {
+            return totalCount;
+        }
+        final int limit = layout.indexOf(Math.max(value, 0));
+        long seen = 0;
+        for (int i = 0; i <= limit && i < counts.length; i++) {
+            seen += counts[i];
+        }
+        return seen;
+    }
+
+    public double getMean() {
+        if (totalCount == 0) {
+            return 0.0;
+        }
+        double total = 0.0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                total += counts[i] * (double) layout.highestEquivalentValueAt(i);
+            }
+        }
+        return total / totalCount;
+    }
+
+    /**
+     * Produces a snapshot containing only the values recorded between
+     * {@code earlier} and this snapshot, which is how interval (windowed)
+     * statistics are derived from a histogram that is never reset.
+     * @param earlier A snapshot taken from the same {@link Histogram} prior to this one.
+     * @return The difference between the two snapshots.
+     */
+    public HistogramSnapshot minus(final HistogramSnapshot earlier) {
+        notNull(earlier, "Earlier snapshot cannot be null.");
+        isTrue(earlier.layout == layout, "Snapshots must be taken from the same histogram.");
+        final long[] delta = new long[counts.length];
+        long total = 0;
+        long max = 0;
+        for (int i = 0; i < counts.length; i++) {
+            delta[i] = Math.max(counts[i] - earlier.counts[i], 0);
+            if (delta[i] != 0) {
+                total += delta[i];
+                max = layout.highestEquivalentValueAt(i);
+            }
+        }
+        return new HistogramSnapshot(layout, delta, total, Math.min(max, maxValue));
+    }
+
+    /**
+     * Gets the raw bucket counts and the highest value each bucket
+     * represents, for consumers that wish to export the full distribution.
+     * @return A two element array of {bucket upper bounds, counts}
+     * containing only non-empty buckets.
+     */
+    public long[][] getBuckets() {
+        int used = 0;
+        for (final long count : counts) {
+            if (count != 0) used++;
+        }
+        final long[][] buckets = new long[][] { new long[used], new long[used] };
+        int next = 0;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                buckets[0][next] = layout.highestEquivalentValueAt(i);
+                buckets[1][next++] = counts[i];
+            }
+        }
+        return buckets;
+    }
+
+    @Override public String toString() {
+        final StringBuilder buffer = new StringBuilder();
+        buffer.append(format("count=%d, mean=%.2f", totalCount, getMean()));
+        for (final double percentile : REPORTED_PERCENTILES) {
+            buffer.append(format(", p%s=%d", String.valueOf(percentile).replaceAll("\\.0$", ""),
+                getValueAtPercentile(percentile)));
+        }
+        buffer.append(format(", max=%d", maxValue));
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.model.ProcessorType;
+import org.apache.camel.model.RouteType;
+import org.apache.camel.processor.DelegateProcessor;
+import org.apache.camel.spi.InterceptStrategy;
+import static org.axiom.integration.camel.RouteSupport.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An {@link InterceptStrategy} that records per-route and per-node latency
+ * into {@link Histogram}s. Statistics are created once, when camel asks for
+ * a processor to be wrapped, so the per-exchange cost is two calls to
+ * {@link System#nanoTime()} and a handful of atomic increments.
+ * <p>
+ * Route latency is measured from the point an exchange enters the first
+ * top level node of a route until it leaves the last one (or fails part way).
+ * Node latency includes the time spent in any nested nodes.
+ * </p>
+ */
+public class LatencyMonitor implements InterceptStrategy {
+
+    /**
+     * The prefix of the exchange property used to carry route entry times.
+     */
+    protected static final String ROUTE_START_PROPERTY = "axiom.latency.route.start.";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ConcurrentMap<String, LatencyStatistics> routes =
+        new ConcurrentHashMap<String, LatencyStatistics>();
+    private final ConcurrentMap<String, LatencyStatistics> nodes =
+        new ConcurrentHashMap<String, LatencyStatistics>();
+
+    private volatile MBeanServer mbeanServer;
+    private volatile String contextName;
+    private volatile long startedAt = System.currentTimeMillis();
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Processor wrapProcessorInInterceptors(final ProcessorType processorType,
+        final Processor target) throws Exception {
+        final RouteType route = findRoute(processorType);
+        final String routeKey = describeRoute(route);
+        final String nodeKey = routeKey + "/" + describeNode(processorType);
+        log.debug("Monitoring latency for {}.", nodeKey);
+
+        final LatencyStatistics nodeStats = statisticsFor(nodes, nodeKey, "nodeLatency");
+        if (!isTopLevel(route, processorType)) {
+            return new LatencyInterceptor(target, nodeStats, null, null, false, false);
+        }
+        final List outputs = route.getOutputs();
+        return new LatencyInterceptor(target, nodeStats,
+            statisticsFor(routes, routeKey, "routeLatency"),
+            ROUTE_START_PROPERTY + routeKey,
+            outputs.indexOf(processorType) == 0,
+            outputs.indexOf(processorType) == outputs.size() - 1);
+    }
+
+    /**
+     * Gets the latency statistics for each monitored route, keyed by the route's input uri(s).
+     * @return An unmodifiable view of the route statistics.
+     */
+    public Map<String, LatencyStatistics> getRouteStatistics() {
+        return Collections.unmodifiableMap(routes);
+    }
+
+    /**
+     * Gets the latency statistics for each monitored processing node, keyed by route and node.
+     * @return An unmodifiable view of the node statistics.
+     */
+    public Map<String, LatencyStatistics> getNodeStatistics() {
+        return Collections.unmodifiableMap(nodes);
+    }
+
+    /**
+     * Gets the latency statistics for a single route.
+     * @param routeKey The input uri(s) of the route.
+     * @return The statistics, or {@code null} if the route is not being monitored.
+     */
+    public LatencyStatistics getRouteStatistics(final String routeKey) {
+        return routes.get(routeKey);
+    }
+
+    /**
+     * Gets the latency statistics for a route, creating them if the route has not been
+     * wrapped yet, so that they can be bound to before the route is started.
+     * @param routeKey The input uri(s) of the route.
+     * @return The statistics for the route.
+     */
+    public LatencyStatistics routeStatistics(final String routeKey) {
+        return statisticsFor(routes, routeKey, "routeLatency");
+    }
+
+    /**
+     * Exports all current and future statistics as management beans, provided
+     * the supplied context has camel's JMX instrumentation turned on.
+     * @param context The context whose routes are being monitored.
+     */
+    public void export(final CamelContext context) {
+        if (!ManagementSupport.isJmxEnabled(context)) {
+            log.debug("JMX is disabled for {}: latency statistics will not be exported.",
+                context.getName());
+            return;
+        }
+        contextName = context.getName();
+        mbeanServer = ManagementSupport.getMBeanServer();
+        for (final LatencyStatistics stats : routes.values()) {
+            exportBean(stats, "routeLatency");
+        }
+        for (final LatencyStatistics stats : nodes.values()) {
+            exportBean(stats, "nodeLatency");
+        }
+    }
+
+    /**
+     * Removes any exported management beans.
+     */
+    public void unexport() {
+        final MBeanServer server = mbeanServer;
+        mbeanServer = null;
+        if (server == null) {
+            return;
+        }
+        for (final LatencyStatistics stats : routes.values()) {
+            ManagementSupport.unregister(server,
+                ManagementSupport.objectName(contextName, "routeLatency", stats.getName()));
+        }
+        for (final LatencyStatistics stats : nodes.values()) {
+            ManagementSupport.unregister(server,
+                ManagementSupport.objectName(contextName, "nodeLatency", stats.getName()));
+        }
+    }
+
+    /**
+     * Gets the time from which the current statistics have been recorded.
+     * @return The time (in milliseconds) at which this monitor was created or last reset.
+     */
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * Clears all recorded values, whilst leaving the statistics in place.
+     */
+    public void reset() {
+        startedAt = System.currentTimeMillis();
+        for (final LatencyStatistics stats : routes.values()) {
+            stats.reset();
+        }
+        for (final LatencyStatistics stats : nodes.values()) {
+            stats.reset();
+        }
+    }
+
+    private LatencyStatistics statisticsFor(final ConcurrentMap<String, LatencyStatistics> map,
+        final String key, final String type) {
+        final LatencyStatistics existing = map.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        final LatencyStatistics created = new LatencyStatistics(key);
+        final LatencyStatistics raced = map.putIfAbsent(key, created);
+        if (raced != null) {
+            return raced;
+        }
+        exportBean(created, type);
+        return created;
+    }
+
+    private void exportBean(final LatencyStatistics stats, final String type) {
+        final MBeanServer server = mbeanServer;
+        if (server != null) {
+            ManagementSupport.register(server, stats,
+                ManagementSupport.objectName(contextName, type, stats.getName()));
+        }
+    }
+
+    /**
+     * Times a single processing node and, for top level nodes,
+     * contributes to the timing of the enclosing route.
+     */
+    private static class LatencyInterceptor extends DelegateProcessor {
+
+        private final LatencyStatistics nodeStats;
+        private final LatencyStatistics routeStats;
+        private final String routeStartProperty;
+        private final boolean firstInRoute;
+        private final boolean lastInRoute;
+
+        LatencyInterceptor(final Processor target, final LatencyStatistics nodeStats,
+            final LatencyStatistics routeStats, final String routeStartProperty,
+            final boolean firstInRoute, final boolean lastInRoute) {
+            super(target);
+            this.nodeStats = nodeStats;
+            this.routeStats = routeStats;
+            this.routeStartProperty = routeStartProperty;
+            this.firstInRoute = firstInRoute;
+            this.lastInRoute = lastInRoute;
+        }
+
+        @Override public void process(final Exchange exchange) throws Exception {
+            final long start = System.nanoTime();
+            if (firstInRoute) {
+                exchange.setProperty(routeStartProperty, start);
+            }
+            boolean failed = true;
+            try {
+                processNext(exchange);
+                failed = exchange.isFailed();
+            } finally {
+                final long end = System.nanoTime();
+                nodeStats.record(end - start, failed);
+                if (routeStats != null && (lastInRoute || failed)) {
+                    final Object routeStart = exchange.getProperty(routeStartProperty);
+                    if (routeStart instanceof Long) {
+                        exchange.removeProperty(routeStartProperty);
+                        routeStats.record(end - (Long) routeStart, failed);
+                    }
+                }
+            }
+        }
+
+        @Override public String toString() {
+            return "LatencyInterceptor[" + nodeStats.getName() + "]";
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency distribution (in microseconds) together with exchange
+ * and failure counts, for a single route or processing node.
+ */
+public class LatencyStatistics implements LatencyStatisticsMBean {
+
+    private final String name;
+    private final Histogram histogram;
+    private final AtomicLong failures = new AtomicLong();
+
+    public LatencyStatistics(final String name) {
+        this(name, new Histogram());
+    }
+
+    public LatencyStatistics(final String name, final Histogram histogram) {
+        this.name = name;
+        this.histogram = histogram;
+    }
+
+    /**
+     * Records the outcome of a single exchange.
+     * @param elapsedNanos The time taken to process the exchange, in nanoseconds.
+     * @param failed Whether or not the exchange failed.
+     */
+    public void record(final long elapsedNanos, final boolean failed) {
+        histogram.record(elapsedNanos / 1000L);
+        if (failed) {
+            failures.incrementAndGet();
+        }
+    }
+
+    public Histogram getHistogram() {
+        return histogram;
+    }
+
+    public HistogramSnapshot snapshot() {
+        return histogram.snapshot();
+    }
+
+    @Override public String getName() {
+        return name;
+    }
+
+    @Override public long getExchangeCount() {
+        return histogram.getCount();
+    }
+
+    @Override public long getFailureCount() {
+        return failures.get();
+    }
+
+    @Override public double getMeanLatency() {
+        return snapshot().getMean();
+    }
+
+    @Override public long getMaxLatency() {
+        return snapshot().getMax();
+    }
+
+    @Override public long getLatencyP50() {
+        return snapshot().getValueAtPercentile(50.0);
+    }
+
+    @Override public long getLatencyP90() {
+        return snapshot().getValueAtPercentile(90.0);
+    }
+
+    @Override public long getLatencyP99() {
+        return snapshot().getValueAtPercentile(99.0);
+    }
+
+    @Override public long getLatencyP999() {
+        return snapshot().getValueAtPercentile(99.9);
+    }
+
+    @Override public long getLatencyP9999() {
+        return snapshot().getValueAtPercentile(99.99);
+    }
+
+    @Override public void reset() {
+        histogram.reset();
+        failures.set(0);
+    }
+
+    @Override public String toString() {
+        return String.format("%s[failures=%d, %s]", name, failures.get(), snapshot());
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.management.InstrumentationLifecycleStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static java.lang.String.format;
+
+/**
+ * JMX helpers for exporting axiom's own management beans alongside
+ * those camel registers for a {@link CamelContext}.
+ */
+public class ManagementSupport {
+
+    /**
+     * The JMX domain under which axiom management beans are registered.
+     */
+    public static final String DOMAIN = "org.axiom";
+
+    private static final Logger log = LoggerFactory.getLogger(ManagementSupport.class);
+
+    /**
+     * Determines whether the supplied context was configured with JMX
+     * instrumentation turned on (e.g. {@code useJmx="true"} in spring).
+     * @param context The context to check.
+     * @return {@code true} if camel is instrumenting this context, otherwise {@code false}.
+     */
+    public static boolean isJmxEnabled(final CamelContext context) {
+        return context instanceof DefaultCamelContext &&
+            ((DefaultCamelContext) context).getLifecycleStrategy()
+                instanceof InstrumentationLifecycleStrategy;
+    }
+
+    /**
+     * Gets the {@link MBeanServer} camel's instrumentation agent uses by default.
+     * @return The platform {@link MBeanServer}.
+     */
+    public static MBeanServer getMBeanServer() {
+        return ManagementFactory.getPlatformMBeanServer();
+    }
+
+    /**
+     * Creates an {@link ObjectName} in the axiom domain.
+     * @param context The name of the owning {@link CamelContext}.
+     * @param type The type of management bean.
+     * @param name The name of the bean, which will be quoted.
+     * @return A new {@link ObjectName}.
+     */
+    public static ObjectName objectName(final String context, final String type, final String name) {
+        try {
+            return new ObjectName(format("%s:context=%s,type=%s,name=%s",
+                DOMAIN, ObjectName.quote(String.valueOf(context)), type, ObjectName.quote(name)));
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e.getLocalizedMessage(), e);
+        }
+    }
+
+    /**
+     * Registers {@code bean} under {@code name}, replacing any existing
+     * registration. Failures are logged rather than thrown, as management
+     * is never allowed to break the services being managed.
+     * @param server The {@link MBeanServer} to register with.
+     * @param bean The management bean.
+     * @param name The {@link ObjectName} to register it under.
+     */
+    public static void register(final MBeanServer server, final Object bean, final ObjectName name) {
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(bean, name);
+            log.debug("Registered {} with the MBean server.", name);
+        } catch (Exception e) {
+            log.warn("Unable to register {}: {}", name, e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Unregisters the bean under {@code name}, if present.
+     * @param server The {@link MBeanServer} to unregister from.
+     * @param name The {@link ObjectName} to remove.
+     */
+    public static void unregister(final MBeanServer server, final ObjectName name) {
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            log.warn("Unable to unregister {}: {}", name, e.getLocalizedMessage());
+        }
+    }
+}
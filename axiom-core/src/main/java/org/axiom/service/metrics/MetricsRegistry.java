@@ -0,0 +1,405 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import org.apache.camel.CamelContext;
+import org.apache.commons.configuration.Configuration;
+import static org.apache.commons.lang.Validate.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.*;
+import java.io.Flushable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import static java.text.MessageFormat.format;
+
+/**
+ * A registry of named metrics ({@link StripedCounter}s, {@link Gauge}s,
+ * {@link Timer}s and {@link Histogram}s), shared by axiom components and
+ * ruby plugins via the host context's registry.
+ * <p>
+ * Callers should look a metric up once and hold on to it: recording against
+ * a metric never touches the registry, so the hot path is free of allocation
+ * and locking. Looking metrics up is safe from any thread.
+ * </p>
+ * <p>
+ * Once started, the registry exports itself as a single management bean whose
+ * attributes are the flattened {@link MetricsRegistry#snapshot()}, and (when
+ * {@code axiom.metrics.report.interval} is positive) periodically writes a
+ * snapshot to the uri given by {@code axiom.metrics.report.uri}. Flushing
+ * the registry writes one last snapshot immediately, so nothing recorded since
+ * the previous report is lost on shutdown.
+ * </p>
+ */
+public class MetricsRegistry implements DynamicMBean, Flushable {
+
+    private static final String METRICS_CONFIG_ROOT = "axiom.metrics.";
+    protected static final String REPORT_INTERVAL = format("{0}report.interval", METRICS_CONFIG_ROOT);
+    protected static final String REPORT_URI = format("{0}report.uri", METRICS_CONFIG_ROOT);
+
+    private static final String RESET_OPERATION = "reset";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ConcurrentMap<String, Object> metrics = new ConcurrentHashMap<String, Object>();
+
+    private CamelContext camelContext;
+    private long reportInterval;
+    private String reportUri;
+    private ScheduledExecutorService scheduler;
+    private MetricsReporter reporter;
+    private MBeanServer mbeanServer;
+    private ObjectName objectName;
+
+    /**
+     * Gets (or creates) the counter registered under {@code name}.
+     * @param name The name of the metric.
+     * @return A {@link StripedCounter}.
+     * @throws IllegalArgumentException if a different kind of metric is registered under {@code name}.
+     */
+    public StripedCounter counter(final String name) {
+        final StripedCounter existing = lookup(name, StripedCounter.class);
+        return existing != null ? existing : register(name, new StripedCounter());
+    }
+
+    /**
+     * Gets (or creates) the timer registered under {@code name}.
+     * @param name The name of the metric.
+     * @return A {@link Timer}.
+     * @throws IllegalArgumentException if a different kind of metric is registered under {@code name}.
+     */
+    public Timer timer(final String name) {
+        final Timer existing = lookup(name, Timer.class);
+        return existing != null ? existing : register(name, new Timer(name));
+    }
+
+    /**
+     * Gets (or creates) the histogram registered under {@code name}.
+     * @param name The name of the metric.
+     * @return A {@link Histogram}.
+     * @throws IllegalArgumentException if a different kind of metric is registered under {@code name}.
+     */
+    public Histogram histogram(final String name) {
+        final Histogram existing = lookup(name, Histogram.class);
+        return existing != null ? existing : register(name, new Histogram());
+    }
+
+    /**
+     * Registers a gauge under {@code name}, replacing any existing gauge.
+     * @param name The name of the metric.
+     * @param gauge The gauge to sample.
+     * @return The supplied {@code gauge}.
+     */
+    public Gauge gauge(final String name, final Gauge gauge) {
+        notNull(gauge, "Gauge cannot be null.");
+        lookup(name, Gauge.class);
+        metrics.put(name, gauge);
+        return gauge;
+    }
+
+    /**
+     * Registers an existing metric, such as the {@link LatencyStatistics} of a route.
+     * If a metric is already registered under {@code name}, that metric is returned instead.
+     * @param name The name of the metric.
+     * @param metric A {@link StripedCounter}, {@link Gauge}, {@link LatencyStatistics} or {@link Histogram}.
+     * @param <T> The type of metric.
+     * @return The registered metric.
+     */
+    @SuppressWarnings({"unchecked"})
+    public <T> T register(final String name, final T metric) {
+        notEmpty(name, "Metric name cannot be null or empty.");
+        notNull(metric, "Metric cannot be null.");
+        isTrue(metric instanceof StripedCounter || metric instanceof Gauge ||
+            metric instanceof LatencyStatistics || metric instanceof Histogram,
+            "Unsupported metric type: " + metric.getClass().getName());
+        final Object raced = metrics.putIfAbsent(name, metric);
+        if (raced == null) {
+            return metric;
+        }
+        checkType(name, raced, metric.getClass());
+        return (T) raced;
+    }
+
+    /**
+     * Removes the metric registered under {@code name}.
+     * @param name The name of the metric.
+     */
+    public void remove(final String name) {
+        metrics.remove(name);
+    }
+
+    /**
+     * Gets all the registered metrics.
+     * @return An unmodifiable view of the metrics, keyed by name.
+     */
+    public Map<String, Object> getMetrics() {
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    /**
+     * Takes a flattened snapshot of every metric. Counters and gauges map
+     * their name to their value, whilst timers and histograms contribute
+     * {@code <name>.count}, {@code .mean}, {@code .max} and percentile entries
+     * (timers are reported in microseconds, and also contribute {@code .failures}).
+     * @return A sorted map of metric values.
+     */
+    public SortedMap<String, Object> snapshot() {
+        final SortedMap<String, Object> values = new TreeMap<String, Object>();
+        for (final Map.Entry<String, Object> entry : metrics.entrySet()) {
+            final String name = entry.getKey();
+            final Object metric = entry.getValue();
+            if (metric instanceof StripedCounter) {
+                values.put(name, ((StripedCounter) metric).getCount());
+            } else if (metric instanceof Gauge) {
+                sample(name, (Gauge) metric, values);
+            } else if (metric instanceof LatencyStatistics) {
+                final LatencyStatistics stats = (LatencyStatistics) metric;
+                flatten(name, stats.snapshot(), values);
+                values.put(name + ".failures", stats.getFailureCount());
+            } else if (metric instanceof Histogram) {
+                flatten(name, ((Histogram) metric).snapshot(), values);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Resets every counter, timer and histogram.
+     */
+    public void reset() {
+        for (final Object metric : metrics.values()) {
+            if (metric instanceof StripedCounter) {
+                ((StripedCounter) metric).reset();
+            } else if (metric instanceof LatencyStatistics) {
+                ((LatencyStatistics) metric).reset();
+            } else if (metric instanceof Histogram) {
+                ((Histogram) metric).reset();
+            }
+        }
+    }
+
+    /**
+     * Exports the registry over JMX (if enabled for the host context)
+     * and starts periodic reporting, if configured.
+     */
+    public synchronized void start() {
+        if (camelContext != null && ManagementSupport.isJmxEnabled(camelContext)) {
+            mbeanServer = ManagementSupport.getMBeanServer();
+            objectName = ManagementSupport.objectName(camelContext.getName(), "metrics", "registry");
+            ManagementSupport.register(mbeanServer, this, objectName);
+        }
+        if (reportInterval > 0 && reportUri != null) {
+            reporter = MetricsReporter.forUri(reportUri, this, camelContext);
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override public Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "axiom-metrics-reporter");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            scheduler.scheduleAtFixedRate(reporter, reportInterval, reportInterval, TimeUnit.MILLISECONDS);
+            log.info("Reporting metrics to {} every {}ms.", reportUri, reportInterval);
+        }
+    }
+
+    /**
+     * Writes a snapshot straight away, if periodic reporting is configured.
+     */
+    @Override public synchronized void flush() {
+        if (reporter != null) {
+            reporter.run();
+        }
+    }
+
+    /**
+     * Stops reporting and removes the management bean.
+     */
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            reporter = null;
+        }
+        if (mbeanServer != null) {
+            ManagementSupport.unregister(mbeanServer, objectName);
+            mbeanServer = null;
+        }
+    }
+
+    public void setCamelContext(final CamelContext camelContext) {
+        this.camelContext = camelContext;
+    }
+
+    /**
+     * Applies the {@code axiom.metrics.*} settings from the supplied configuration.
+     * @param config The axiom configuration.
+     */
+    public void setConfiguration(final Configuration config) {
+        notNull(config, "Configuration cannot be null.");
+        setReportInterval(config.getLong(REPORT_INTERVAL, 0L));
+        setReportUri(config.getString(REPORT_URI, null));
+    }
+
+    /**
+     * Sets the interval between snapshots, in milliseconds; zero disables reporting.
+     * @param reportInterval The reporting interval.
+     */
+    public void setReportInterval(final long reportInterval) {
+        isTrue(reportInterval >= 0, "Report interval cannot be negative.");
+        this.reportInterval = reportInterval;
+    }
+
+    /**
+     * Sets where snapshots are written: either a {@code file:} path, to which
+     * a line is appended per snapshot, or a camel endpoint uri (e.g. {@code direct:metrics}).
+     * @param reportUri The uri to report to.
+     */
+    public void setReportUri(final String reportUri) {
+        this.reportUri = reportUri;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+        final Map<String, Object> values = snapshot();
+        if (!values.containsKey(attribute)) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return values.get(attribute);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public AttributeList getAttributes(final String[] attributes) {
+        final Map<String, Object> values = snapshot();
+        final AttributeList list = new AttributeList();
+        for (final String attribute : attributes) {
+            if (values.containsKey(attribute)) {
+                list.add(new Attribute(attribute, values.get(attribute)));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read only: " + attribute.getName());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public AttributeList setAttributes(final AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Object invoke(final String actionName, final Object[] params,
+        final String[] signature) throws ReflectionException {
+        if (RESET_OPERATION.equals(actionName)) {
+            reset();
+            return null;
+        }
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public MBeanInfo getMBeanInfo() {
+        final List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        for (final Map.Entry<String, Object> entry : snapshot().entrySet()) {
+            final Object value = entry.getValue();
+            attributes.add(new MBeanAttributeInfo(entry.getKey(),
+                value == null ? String.class.getName() : value.getClass().getName(),
+                entry.getKey(), true, false, false));
+        }
+        return new MBeanInfo(getClass().getName(), "Axiom metrics",
+            attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+            new MBeanConstructorInfo[0],
+            new MBeanOperationInfo[] {
+                new MBeanOperationInfo(RESET_OPERATION, "Resets all counters, timers and histograms.",
+                    new MBeanParameterInfo[0], "void", MBeanOperationInfo.ACTION)
+            },
+            new MBeanNotificationInfo[0]);
+    }
+
+    private <T> T lookup(final String name, final Class<T> type) {
+        final Object existing = metrics.get(name);
+        if (existing == null) {
+            return null;
+        }
+        checkType(name, existing, type);
+        return type.cast(existing);
+    }
+
+    private void checkType(final String name, final Object existing, final Class<?> type) {
+        if (!type.isInstance(existing)) {
+            throw new IllegalArgumentException(
+                format("Metric {0} is already registered as a {1}.",
+                    name, existing.getClass().getSimpleName()));
+        }
+    }
+
+    private void sample(final String name, final Gauge gauge, final Map<String, Object> values) {
+        try {
+            values.put(name, gauge.getValue());
+        } catch (RuntimeException e) {
+            log.debug("Gauge {} failed: {}", name, e.getLocalizedMessage());
+        }
+    }
+
+    private void flatten(final String name, final HistogramSnapshot snapshot,
+        final Map<String, Object> values) {
+        values.put(name + ".count", snapshot.getCount());
+        values.put(name + ".mean", snapshot.getMean());
+        values.put(name + ".max", snapshot.getMax());
+        for (final double percentile : HistogramSnapshot.REPORTED_PERCENTILES) {
+            values.put(name + ".p" + String.valueOf(percentile).replaceAll("\\.0$", ""),
+                snapshot.getValueAtPercentile(percentile));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import static org.apache.commons.lang.StringUtils.*;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.integration.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+
+/**
+ * Periodically writes a {@link MetricsRegistry#snapshot()} somewhere. Failures
+ * are logged and do not stop subsequent reports.
+ */
+public abstract class MetricsReporter implements Runnable {
+
+    private static final String FILE_SCHEME = "file:";
+
+    protected final Logger log = LoggerFactory.getLogger(getClass());
+    private final MetricsRegistry registry;
+
+    protected MetricsReporter(final MetricsRegistry registry) {
+        notNull(registry, "Metrics registry cannot be null.");
+        this.registry = registry;
+    }
+
+    /**
+     * Creates a reporter for the supplied uri. A {@code file:} uri appends one
+     * line per snapshot to the named file; any other uri is treated as a camel
+     * endpoint, to which the snapshot is sent as a {@link Map} body.
+     * @param uri The uri to report to.
+     * @param registry The registry to report on.
+     * @param context The context used to resolve endpoint uris.
+     * @return A new reporter.
+     */
+    public static MetricsReporter forUri(final String uri,
+        final MetricsRegistry registry, final CamelContext context) {
+        notEmpty(uri, "Report uri cannot be null or empty.");
+        if (startsWithIgnoreCase(uri, FILE_SCHEME)) {
+            return new FileReporter(registry, new File(substringAfter(uri, FILE_SCHEME)));
+        }
+        notNull(context, "Camel context cannot be null.");
+        return new ChannelReporter(registry, context, uri);
+    }
+
+    @Override public void run() {
+        try {
+            report(System.currentTimeMillis(), registry.snapshot());
+        } catch (Exception e) {
+            log.warn("Unable to report metrics: {}", e.getLocalizedMessage());
+        }
+    }
+
+    protected abstract void report(long timestamp, Map<String, Object> snapshot) throws Exception;
+
+    /**
+     * Appends {@code timestamp name=value name=value ...} lines to a file.
+     */
+    static class FileReporter extends MetricsReporter {
+
+        private final File file;
+
+        FileReporter(final MetricsRegistry registry, final File file) {
+            super(registry);
+            this.file = file;
+        }
+
+        @Override protected void report(final long timestamp,
+            final Map<String, Object> snapshot) throws IOException {
+            final StringBuilder line = new StringBuilder().append(timestamp);
+            for (final Map.Entry<String, Object> entry : snapshot.entrySet()) {
+                line.append(' ').append(entry.getKey()).append('=').append(entry.getValue());
+            }
+            line.append(Environment.NEWLINE);
+            final Writer writer = new FileWriter(file, true);
+            try {
+                writer.write(line.toString());
+            } finally {
+                writer.close();
+            }
+        }
+    }
+
+    /**
+     * Sends each snapshot to a camel endpoint.
+     */
+    static class ChannelReporter extends MetricsReporter {
+
+        private final ProducerTemplate<Exchange> producer;
+        private final String uri;
+
+        ChannelReporter(final MetricsRegistry registry, final CamelContext context, final String uri) {
+            super(registry);
+            this.producer = context.createProducerTemplate();
+            this.uri = uri;
+        }
+
+        @Override protected void report(final long timestamp, final Map<String, Object> snapshot) {
+            producer.sendBodyAndHeader(uri, snapshot, Environment.METRICS_TIMESTAMP, timestamp);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import java.util.Collections;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * The comparison of a single route between two runs (see {@link RunComparison}).
+ */
+public final class RouteComparison {
+
+    private final String name;
+    private final RunRecord.Route baseline;
+    private final RunRecord.Route candidate;
+    private final double percentile;
+    private final double baselineThroughput;
+    private final double candidateThroughput;
+    private final double ksStatistic;
+    private final double ksCriticalValue;
+    private final Set<RunComparison.Regression> regressions;
+
+    RouteComparison(final String name, final RunRecord.Route baseline, final RunRecord.Route candidate,
+        final double percentile, final double baselineThroughput, final double candidateThroughput,
+        final double ksStatistic, final double ksCriticalValue, final Set<RunComparison.Regression> regressions) {
+        this.name = name;
+        this.baseline = baseline;
+        this.candidate = candidate;
+        this.percentile = percentile;
+        this.baselineThroughput = baselineThroughput;
+        this.candidateThroughput = candidateThroughput;
+        this.ksStatistic = ksStatistic;
+        this.ksCriticalValue = ksCriticalValue;
+        this.regressions = Collections.unmodifiableSet(regressions);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the route as recorded in the baseline run.
+     * @return The route, or {@code null} if it is new in the candidate run.
+     */
+    public RunRecord.Route getBaseline() {
+        return baseline;
+    }
+
+    /**
+     * Gets the route as recorded in the candidate run.
+     * @return The route, or {@code null} if it is missing from the candidate run.
+     */
+    public RunRecord.Route getCandidate() {
+        return candidate;
+    }
+
+    public double getBaselineThroughput() {
+        return baselineThroughput;
+    }
+
+    public double getCandidateThroughput() {
+        return candidateThroughput;
+    }
+
+    /**
+     * Gets the Kolmogorov-Smirnov distance between the two latency distributions.
+     * @return The distance, or {@code NaN} if the route was not recorded in both runs.
+     */
+    public double getKsStatistic() {
+        return ksStatistic;
+    }
+
+    /**
+     * Gets the distance above which the latency distributions differ significantly.
+     * @return The critical value, or {@code NaN} if the route was not recorded in both runs.
+     */
+    public double getKsCriticalValue() {
+        return ksCriticalValue;
+    }
+
+    public Set<RunComparison.Regression> getRegressions() {
+        return regressions;
+    }
+
+    public boolean isRegressed() {
+        return !regressions.isEmpty();
+    }
+
+    @Override public String toString() {
+        final StringBuilder buffer = new StringBuilder(name);
+        buffer.append(isRegressed() ? " REGRESSED " + regressions : " ok");
+        if (baseline == null || candidate == null) {
+            buffer.append(baseline == null ? " (new route)" : " (missing from candidate)");
+            return buffer.toString();
+        }
+        final String label = "p" + String.valueOf(percentile).replaceAll("\\.0$", "");
+        buffer.append(format("%n  latency %s: %d -> %d us (KS D=%.4f, critical=%.4f)", label,
+            baseline.getLatency().getValueAtPercentile(percentile),
+            candidate.getLatency().getValueAtPercentile(percentile), ksStatistic, ksCriticalValue));
+        buffer.append(format("%n  throughput: %.2f -> %.2f/s", baselineThroughput, candidateThroughput));
+        buffer.append(format("%n  error rate: %.4f%% -> %.4f%% (%d -> %d failures)",
+            baseline.getErrorRate() * 100, candidate.getErrorRate() * 100,
+            baseline.getFailures(), candidate.getFailures()));
+        return buffer.toString();
+    }
+}
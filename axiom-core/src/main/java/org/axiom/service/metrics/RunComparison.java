@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import static org.apache.commons.lang.Validate.*;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compares two {@link RunRecord}s route by route and flags the routes whose
+ * performance has regressed between the baseline and the candidate run.
+ * <p>
+ * A latency regression requires both that the chosen percentile has grown by
+ * more than the latency tolerance and that the two distributions differ
+ * significantly according to a two sample Kolmogorov-Smirnov test, so that
+ * noise in the tail of a short run is not reported as a regression. Throughput
+ * (exchanges per second over the run) regresses when it falls by more than the
+ * throughput tolerance, and errors when the failure rate grows by more than the
+ * (absolute) error rate tolerance. A route that was recorded in the baseline but
+ * not in the candidate is always flagged.
+ * </p>
+ */
+public class RunComparison {
+
+    /**
+     * The ways in which a route can regress.
+     */
+    public enum Regression {
+        LATENCY, THROUGHPUT, ERRORS, MISSING
+    }
+
+    private double latencyTolerance = 0.10;
+    private double throughputTolerance = 0.10;
+    private double errorRateTolerance = 0.001;
+    private double significance = 0.05;
+    private double percentile = 99.0;
+
+    /**
+     * Sets the relative growth in the compared latency percentile that is tolerated.
+     * @param latencyTolerance The tolerance, e.g. {@code 0.1} for 10%.
+     */
+    public void setLatencyTolerance(final double latencyTolerance) {
+        isTrue(latencyTolerance >= 0, "Latency tolerance cannot be negative.");
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * Sets the relative drop in throughput that is tolerated.
+     * @param throughputTolerance The tolerance, e.g. {@code 0.1} for 10%.
+     */
+    public void setThroughputTolerance(final double throughputTolerance) {
+        isTrue(throughputTolerance >= 0, "Throughput tolerance cannot be negative.");
+        this.throughputTolerance = throughputTolerance;
+    }
+
+    /**
+     * Sets the absolute growth in failure rate that is tolerated.
+     * @param errorRateTolerance The tolerance, e.g. {@code 0.001} for 0.1 percentage points.
+     */
+    public void setErrorRateTolerance(final double errorRateTolerance) {
+        isTrue(errorRateTolerance >= 0, "Error rate tolerance cannot be negative.");
+        this.errorRateTolerance = errorRateTolerance;
+    }
+
+    /**
+     * Sets the significance level of the test comparing latency distributions.
+     * @param significance The level, in the range (0, 1).
+     */
+    public void setSignificance(final double significance) {
+        isTrue(significance > 0 && significance < 1, "Significance must be between 0 and 1.");
+        this.significance = significance;
+    }
+
+    /**
+     * Sets the latency percentile that is compared.
+     * @param percentile A percentile in the range [0, 100].
+     */
+    public void setPercentile(final double percentile) {
+        isTrue(percentile >= 0 && percentile <= 100, "Percentile must be between 0 and 100.");
+        this.percentile = percentile;
+    }
+
+    /**
+     * Compares every route recorded in either run.
+     * @param baseline The run to compare against.
+     * @param candidate The run being checked.
+     * @return The comparison of each route, in route order.
+     */
+    public ComparisonReport compare(final RunRecord baseline, final RunRecord candidate) {
+        notNull(baseline, "Baseline cannot be null.");
+        notNull(candidate, "Candidate cannot be null.");
+        final Set<String> names = new TreeSet<String>(baseline.getRoutes().keySet());
+        names.addAll(candidate.getRoutes().keySet());
+        final List<RouteComparison> routes = new ArrayList<RouteComparison>();
+        for (final String name : names) {
+            routes.add(compare(name, baseline, candidate));
+        }
+        return new ComparisonReport(baseline, candidate, percentile, routes);
+    }
+
+    private RouteComparison compare(final String name, final RunRecord baseline, final RunRecord candidate) {
+        final RunRecord.Route before = baseline.getRoute(name);
+        final RunRecord.Route after = candidate.getRoute(name);
+        final EnumSet<Regression> regressions = EnumSet.noneOf(Regression.class);
+        if (before == null || after == null) {
+            if (after == null) {
+                regressions.add(Regression.MISSING);
+            }
+            return new RouteComparison(name, before, after, percentile,
+                throughput(before, baseline), throughput(after, candidate), Double.NaN, Double.NaN, regressions);
+        }
+
+        final double distance = ksStatistic(before.getLatency(), after.getLatency());
+        final double criticalValue = ksCriticalValue(before.getCount(), after.getCount());
+        final long latencyBefore = before.getLatency().getValueAtPercentile(percentile);
+        final long latencyAfter = after.getLatency().getValueAtPercentile(percentile);
+        if (relativeChange(latencyBefore, latencyAfter) > latencyTolerance && distance > criticalValue) {
+            regressions.add(Regression.LATENCY);
+        }
+        final double throughputBefore = throughput(before, baseline);
+        final double throughputAfter = throughput(after, candidate);
+        if (throughputBefore > 0 && relativeChange(throughputBefore, throughputAfter) < -throughputTolerance) {
+            regressions.add(Regression.THROUGHPUT);
+        }
+        if (after.getErrorRate() - before.getErrorRate() > errorRateTolerance) {
+            regressions.add(Regression.ERRORS);
+        }
+        return new RouteComparison(name, before, after, percentile,
+            throughputBefore, throughputAfter, distance, criticalValue, regressions);
+    }
+
+    /**
+     * Calculates the two sample Kolmogorov-Smirnov statistic: the largest distance
+     * between the cumulative distributions, evaluated at every bucket recorded in either.
+     * @param first The first distribution.
+     * @param second The second distribution.
+     * @return The statistic (0 to 1), or zero if either distribution is empty.
+     */
+    static double ksStatistic(final HistogramSnapshot first, final HistogramSnapshot second) {
+        if (first.getCount() == 0 || second.getCount() == 0) {
+            return 0;
+        }
+        final Set<Long> bounds = new TreeSet<Long>();
+        for (final long bound : first.getBuckets()[0]) {
+            bounds.add(bound);
+        }
+        for (final long bound : second.getBuckets()[0]) {
+            bounds.add(bound);
+        }
+        double distance = 0;
+        for (final long bound : bounds) {
+            distance = Math.max(distance, Math.abs(
+                (double) first.getCountAtOrBelow(bound) / first.getCount() -
+                (double) second.getCountAtOrBelow(bound) / second.getCount()));
+        }
+        return distance;
+    }
+
+    /**
+     * Gets the (asymptotic) critical value of the Kolmogorov-Smirnov statistic for
+     * samples of the given sizes, at the configured significance level.
+     */
+    double ksCriticalValue(final long n, final long m) {
+        if (n == 0 || m == 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        return Math.sqrt(-0.5 * Math.log(significance / 2)) * Math.sqrt((double) (n + m) / ((double) n * m));
+    }
+
+    private static double throughput(final RunRecord.Route route, final RunRecord run) {
+        if (route == null || run.getDurationMillis() <= 0) {
+            return 0;
+        }
+        return route.getCount() * 1000.0 / run.getDurationMillis();
+    }
+
+    private static double relativeChange(final double before, final double after) {
+        if (before == 0) {
+            return after == 0 ? 0 : Double.POSITIVE_INFINITY;
+        }
+        return (after - before) / before;
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import static org.apache.commons.lang.Validate.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * The per-route latency distributions, exchange counts and failure counts of a
+ * single (e.g. nightly soak) run, as recorded by the {@link LatencyMonitor}.
+ * Records are written as a properties file holding every non-empty histogram
+ * bucket, so that two runs can later be compared in full (see {@link RunComparison}).
+ */
+public final class RunRecord {
+
+    private static final String PREFIX = "axiom.run.";
+    private static final String NAME = PREFIX + "name";
+    private static final String DURATION = PREFIX + "duration";
+    private static final String ROUTE = PREFIX + "route.";
+    private static final String FAILURES = ".failures";
+    private static final String LATENCY = ".latency";
+
+    private final String name;
+    private final long durationMillis;
+    private final SortedMap<String, Route> routes;
+
+    private RunRecord(final String name, final long durationMillis, final SortedMap<String, Route> routes) {
+        this.name = name;
+        this.durationMillis = durationMillis;
+        this.routes = Collections.unmodifiableSortedMap(routes);
+    }
+
+    /**
+     * Records the current state of the supplied route statistics.
+     * @param name The name of the run.
+     * @param durationMillis How long the run lasted.
+     * @param statistics The statistics of each route, keyed by route.
+     * @return A new record.
+     */
+    public static RunRecord capture(final String name, final long durationMillis,
+        final Map<String, LatencyStatistics> statistics) {
+        notNull(name, "Run name cannot be null.");
+        notNull(statistics, "Statistics cannot be null.");
+        final SortedMap<String, Route> routes = new TreeMap<String, Route>();
+        for (final Map.Entry<String, LatencyStatistics> entry : statistics.entrySet()) {
+            routes.put(entry.getKey(),
+                new Route(entry.getKey(), entry.getValue().snapshot(), entry.getValue().getFailureCount()));
+        }
+        return new RunRecord(name, durationMillis, routes);
+    }
+
+    /**
+     * Reads a record previously written with {@link RunRecord#write(File)}.
+     * @param file The record file.
+     * @return The record.
+     * @throws IOException if the file cannot be read, or is not a run record.
+     */
+    public static RunRecord read(final File file) throws IOException {
+        final Properties properties = new Properties();
+        final InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        if (!properties.containsKey(NAME) || !properties.containsKey(DURATION)) {
+            throw new IOException(file + " is not a run record.");
+        }
+        final SortedMap<String, Route> routes = new TreeMap<String, Route>();
+        for (final String key : properties.stringPropertyNames()) {
+            if (key.startsWith(ROUTE) && key.endsWith(LATENCY)) {
+                final String route = key.substring(ROUTE.length(), key.length() - LATENCY.length());
+                final long failures = parseLong(properties, ROUTE + route + FAILURES, "0");
+                routes.put(route, new Route(route, parseBuckets(properties.getProperty(key)), failures));
+            }
+        }
+        return new RunRecord(properties.getProperty(NAME), parseLong(properties, DURATION, null), routes);
+    }
+
+    /**
+     * Writes this record to a file, replacing any existing contents.
+     * @param file The file to write.
+     * @throws IOException if the file cannot be written.
+     */
+    public void write(final File file) throws IOException {
+        final Properties properties = new Properties();
+        properties.setProperty(NAME, name);
+        properties.setProperty(DURATION, String.valueOf(durationMillis));
+        for (final Route route : routes.values()) {
+            properties.setProperty(ROUTE + route.getName() + FAILURES, String.valueOf(route.getFailures()));
+            properties.setProperty(ROUTE + route.getName() + LATENCY, formatBuckets(route.getLatency()));
+        }
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out, "axiom run record");
+        } finally {
+            out.close();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * Gets every recorded route.
+     * @return The routes, keyed (and sorted) by route.
+     */
+    public SortedMap<String, Route> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * Gets a single route.
+     * @param route The input uri(s) of the route.
+     * @return The route, or {@code null} if it was not recorded.
+     */
+    public Route getRoute(final String route) {
+        return routes.get(route);
+    }
+
+    @Override public String toString() {
+        return String.format("%s (%dms, %d routes)", name, durationMillis, routes.size());
+    }
+
+    private static String formatBuckets(final HistogramSnapshot snapshot) {
+        final long[][] buckets = snapshot.getBuckets();
+        final StringBuilder buffer = new StringBuilder();
+        for (int i = 0; i < buckets[0].length; i++) {
+            if (buffer.length() > 0) {
+                buffer.append(',');
+            }
+            buffer.append(buckets[0][i]).append(':').append(buckets[1][i]);
+        }
+        return buffer.toString();
+    }
+
+    private static HistogramSnapshot parseBuckets(final String value) throws IOException {
+        final Histogram histogram = new Histogram();
+        for (final String bucket : value.split(",")) {
+            if (bucket.length() == 0) {
+                continue;
+            }
+            final int separator = bucket.indexOf(':');
+            try {
+                histogram.record(Long.parseLong(bucket.substring(0, separator)),
+                    Long.parseLong(bucket.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IOException("Invalid histogram bucket " + bucket + ".");
+            }
+        }
+        return histogram.snapshot();
+    }
+
+    private static long parseLong(final Properties properties, final String key,
+        final String defaultValue) throws IOException {
+        final String value = properties.getProperty(key, defaultValue);
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid value " + value + " for " + key + ".");
+        }
+    }
+
+    /**
+     * The recorded latency distribution and failure count of one route.
+     */
+    public static final class Route {
+
+        private final String name;
+        private final HistogramSnapshot latency;
+        private final long failures;
+
+        Route(final String name, final HistogramSnapshot latency, final long failures) {
+            this.name = name;
+            this.latency = latency;
+            this.failures = failures;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the latency of every exchange, in microseconds.
+         * @return The latency distribution.
+         */
+        public HistogramSnapshot getLatency() {
+            return latency;
+        }
+
+        public long getCount() {
+            return latency.getCount();
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        /**
+         * Gets the proportion of exchanges that failed.
+         * @return The failure rate (0 to 1).
+         */
+        public double getErrorRate() {
+            return latency.getCount() == 0 ? 0 : (double) failures / latency.getCount();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import org.apache.commons.configuration.Configuration;
+import static org.apache.commons.lang.StringUtils.*;
+import static org.apache.commons.lang.Validate.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.Flushable;
+import java.io.IOException;
+
+/**
+ * Writes a {@link RunRecord} of the routes monitored by a {@link LatencyMonitor}
+ * each time it is flushed, which the shutdown orchestrator does once the routes
+ * have drained. The run is taken to have started when the monitor was created or last reset.
+ */
+public class RunRecorder implements Flushable {
+
+    /**
+     * The property naming the file to write the run record to (no record is written if blank).
+     */
+    public static final String RUN_FILE = "axiom.metrics.run.file";
+
+    /**
+     * The property holding the name of the run (defaults to the name of the file).
+     */
+    public static final String RUN_NAME = "axiom.metrics.run.name";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final LatencyMonitor latencyMonitor;
+    private final File file;
+    private final String name;
+
+    public RunRecorder(final LatencyMonitor latencyMonitor, final File file, final String name) {
+        notNull(latencyMonitor, "Latency monitor cannot be null.");
+        notNull(file, "Run file cannot be null.");
+        notNull(name, "Run name cannot be null.");
+        this.latencyMonitor = latencyMonitor;
+        this.file = file;
+        this.name = name;
+    }
+
+    /**
+     * Creates a recorder if the supplied configuration asks for one.
+     * @param latencyMonitor The monitor whose routes are recorded.
+     * @param config The configuration to read {@link RunRecorder#RUN_FILE} and {@link RunRecorder#RUN_NAME} from.
+     * @return A new recorder, or {@code null} if no run file is configured.
+     */
+    public static RunRecorder fromConfiguration(final LatencyMonitor latencyMonitor, final Configuration config) {
+        final String path = config == null ? null : config.getString(RUN_FILE);
+        if (isBlank(path)) {
+            return null;
+        }
+        final File file = new File(path);
+        return new RunRecorder(latencyMonitor, file, config.getString(RUN_NAME, file.getName()));
+    }
+
+    @Override public void flush() throws IOException {
+        final RunRecord record = RunRecord.capture(name,
+            System.currentTimeMillis() - latencyMonitor.getStartedAt(), latencyMonitor.getRouteStatistics());
+        record.write(file);
+        log.info("Recorded run {} to {}.", record, file);
+    }
+
+    @Override public String toString() {
+        return "run record " + file;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import org.apache.camel.Exchange;
+import static org.apache.commons.lang.Validate.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends exchanges on a schedule using a fixed number of sender threads, measuring
+ * the latency of each one from the time it was <em>due</em> rather than from when a
+ * sender picked it up. When every sender is busy, dispatch blocks, and the exchanges
+ * held up in the meantime are charged for the wait; a stall therefore shows up in the
+ * latency instead of quietly stretching the schedule (i.e. the measurements are free
+ * of <em>coordinated omission</em>). The time spent inside the endpoint alone is
+ * recorded separately as the service time.
+ * <p>
+ * An instance is good for a single run: dispatch, {@link #awaitCompletion()}, then
+ * {@link #shutdown()}.
+ * </p>
+ */
+public class ScheduledSender {
+
+    /**
+     * Sends a single exchange.
+     */
+    public interface Send {
+
+        /**
+         * Sends the exchange.
+         * @return The completed exchange.
+         */
+        Exchange send();
+    }
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final int concurrency;
+    private final ExecutorService senders;
+    private final Semaphore permits;
+    private final Histogram latency = new Histogram();
+    private final Histogram serviceTime = new Histogram();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final long start = System.nanoTime();
+    private Histogram latencyHistogram;
+
+    /**
+     * Creates a sender.
+     * @param name Names the sender threads ({@code axiom-<name>-<n>}).
+     * @param concurrency The number of sender threads (i.e. the most exchanges in flight).
+     */
+    public ScheduledSender(final String name, final int concurrency) {
+        notEmpty(name, "Name cannot be null or empty.");
+        isTrue(concurrency > 0, "Concurrency must be greater than zero.");
+        this.concurrency = concurrency;
+        this.senders = Executors.newFixedThreadPool(concurrency, new SenderThreadFactory(name));
+        this.permits = new Semaphore(concurrency);
+    }
+
+    /**
+     * Parks the calling thread until the supplied time.
+     * @param due The time, as given by {@link System#nanoTime()}.
+     * @return {@code false} if the thread was interrupted before the time was reached.
+     */
+    public static boolean awaitDue(final long due) {
+        long remaining;
+        while ((remaining = due - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records latencies into the supplied histogram as well as this sender's own.
+     * @param latencyHistogram The histogram to record latencies (in microseconds) into.
+     */
+    public void setLatencyHistogram(final Histogram latencyHistogram) {
+        this.latencyHistogram = latencyHistogram;
+    }
+
+    /**
+     * Waits until the exchange is due and a sender is free, then hands it to that sender.
+     * @param due When the exchange was due to be sent, as given by {@link System#nanoTime()}.
+     * @param send Sends the exchange.
+     * @return {@code false} if the calling thread was interrupted before the exchange was due.
+     * @throws InterruptedException if interrupted whilst waiting for a free sender.
+     */
+    public boolean dispatch(final long due, final Send send) throws InterruptedException {
+        if (!awaitDue(due)) {
+            return false;
+        }
+        permits.acquire();
+        senders.execute(new Runnable() {
+            @Override public void run() {
+                try {
+                    send(due, send);
+                } finally {
+                    permits.release();
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Runs a task (such as a closed model user, which calls {@link #send} itself)
+     * on one of the sender threads, bypassing the dispatch permits.
+     * @param task The task to run.
+     */
+    public void execute(final Runnable task) {
+        senders.execute(task);
+    }
+
+    /**
+     * Sends an exchange on the calling thread and records the outcome.
+     * @param due When the exchange was due to be sent, as given by {@link System#nanoTime()}.
+     * @param send Sends the exchange.
+     */
+    public void send(final long due, final Send send) {
+        final long sentAt = System.nanoTime();
+        try {
+            final Exchange result = send.send();
+            if (result.isFailed()) {
+                failed.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            log.debug("Scheduled exchange failed.", e);
+            failed.incrementAndGet();
+        } finally {
+            final long completed = System.nanoTime();
+            final long micros = Math.max(0, (completed - due) / 1000);
+            latency.record(micros);
+            serviceTime.record((completed - sentAt) / 1000);
+            if (latencyHistogram != null) {
+                latencyHistogram.record(micros);
+            }
+            sent.incrementAndGet();
+        }
+    }
+
+    /**
+     * Waits until every dispatched exchange has completed.
+     * @throws InterruptedException if interrupted whilst waiting.
+     */
+    public void awaitCompletion() throws InterruptedException {
+        permits.acquire(concurrency);
+        permits.release(concurrency);
+    }
+
+    /**
+     * Stops accepting work and waits (for up to a minute) for the senders to finish.
+     * The interrupted status of the calling thread is preserved.
+     */
+    public void shutdown() {
+        senders.shutdown();
+        try {
+            senders.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the time this sender was created, as given by {@link System#nanoTime()}.
+     */
+    public long getStart() {
+        return start;
+    }
+
+    public long getSent() {
+        return sent.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * Gets the latencies, in microseconds, measured from when each exchange was due.
+     */
+    public HistogramSnapshot getLatency() {
+        return latency.snapshot();
+    }
+
+    /**
+     * Gets the time, in microseconds, each exchange spent inside the endpoint.
+     */
+    public HistogramSnapshot getServiceTime() {
+        return serviceTime.snapshot();
+    }
+
+    private static final class SenderThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger();
+
+        private SenderThreadFactory(final String name) {
+            this.name = name;
+        }
+
+        @Override public Thread newThread(final Runnable runnable) {
+            final Thread thread = new Thread(runnable, "axiom-" + name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
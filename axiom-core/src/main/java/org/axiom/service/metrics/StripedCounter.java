@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that spreads increments across several cells, chosen by the
+ * calling thread, so that threads on different cores rarely contend for
+ * (or invalidate) the same cache line. Reading the count sums the cells,
+ * which makes reads more expensive than writes; this is the right trade
+ * for counters that are bumped on every exchange and read occasionally.
+ * <p>
+ * Incrementing is lock-free and allocates nothing.
+ * </p>
+ */
+public class StripedCounter {
+
+    /**
+     * The distance, in longs, between cells. 16 longs keeps neighbouring
+     * cells two cache lines apart, which also defeats adjacent line prefetch.
+     */
+    private static final int PADDING = 16;
+    private static final int STRIPES =
+        stripesFor(Runtime.getRuntime().availableProcessors());
+
+    // the first PADDING slots are never used, keeping cell zero clear of the array header
+    private final AtomicLongArray cells = new AtomicLongArray((STRIPES + 1) * PADDING);
+
+    public void increment() {
+        add(1L);
+    }
+
+    public void decrement() {
+        add(-1L);
+    }
+
+    /**
+     * Adds {@code delta} to the count.
+     * @param delta The amount to add, which may be negative.
+     */
+    public void add(final long delta) {
+        cells.getAndAdd(cellFor(Thread.currentThread().getId()), delta);
+    }
+
+    /**
+     * Gets the current count. The result is exact once all writers are
+     * quiescent, and otherwise reflects some of the concurrent increments.
+     * @return The sum of all cells.
+     */
+    public long getCount() {
+        long sum = 0;
+        for (int i = PADDING; i < cells.length(); i += PADDING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    public void reset() {
+        for (int i = PADDING; i < cells.length(); i += PADDING) {
+            cells.set(i, 0L);
+        }
+    }
+
+    @Override public String toString() {
+        return String.valueOf(getCount());
+    }
+
+    private static int cellFor(final long threadId) {
+        int hash = (int) (threadId ^ (threadId >>> 32));
+        hash ^= hash >>> 16;
+        hash *= 0x45d9f3b;
+        hash ^= hash >>> 16;
+        return ((hash & (STRIPES - 1)) + 1) * PADDING;
+    }
+
+    private static int stripesFor(final int processors) {
+        int stripes = 1;
+        while (stripes < processors * 2) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+}
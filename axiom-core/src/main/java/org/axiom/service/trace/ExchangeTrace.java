@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.trace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.axiom.integration.Environment.NEWLINE;
+
+/**
+ * The full path taken by a single exchange, in the order
+ * each processing node was entered.
+ */
+public class ExchangeTrace {
+
+    private final String exchangeId;
+    private final String routeKey;
+    private final List<TraceEntry> entries = new ArrayList<TraceEntry>();
+    private final AtomicInteger size;
+    private volatile String correlationId;
+    private boolean evicted;
+
+    public ExchangeTrace(final String exchangeId, final String routeKey) {
+        this.exchangeId = exchangeId;
+        this.routeKey = routeKey;
+        this.size = new AtomicInteger(TraceEntry.FIXED_SIZE_ESTIMATE +
+            2 * (exchangeId.length() + routeKey.length()));
+    }
+
+    /**
+     * Gets the id of the exchange as it entered the first traced route.
+     */
+    public String getExchangeId() {
+        return exchangeId;
+    }
+
+    /**
+     * Gets the route through which the exchange first entered the traced context.
+     */
+    public String getRouteKey() {
+        return routeKey;
+    }
+
+    public String getCorrelationId() {
+        return correlationId;
+    }
+
+    void setCorrelationId(final String correlationId) {
+        this.correlationId = correlationId;
+    }
+
+    /**
+     * Gets a copy of the entries recorded so far.
+     * @return The trace entries, in the order they were recorded.
+     */
+    public List<TraceEntry> getEntries() {
+        synchronized (entries) {
+            return new ArrayList<TraceEntry>(entries);
+        }
+    }
+
+    /**
+     * Determines whether any step along the path failed.
+     */
+    public boolean isFailed() {
+        for (final TraceEntry entry : getEntries()) {
+            if (entry.isFailed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Appends an entry, unless the trace has already been evicted.
+     * @return The estimated size of the entry, or zero if it was not appended.
+     */
+    int append(final TraceEntry entry) {
+        final int entrySize = entry.estimateSize();
+        synchronized (entries) {
+            if (evicted) {
+                return 0;
+            }
+            entries.add(entry);
+            size.addAndGet(entrySize);
+        }
+        return entrySize;
+    }
+
+    /**
+     * Marks the trace as evicted, after which nothing more is appended to it.
+     * @return The estimated size of the trace at the point it was evicted.
+     */
+    int evict() {
+        synchronized (entries) {
+            evicted = true;
+            return size.get();
+        }
+    }
+
+    int estimateSize() {
+        return size.get();
+    }
+
+    @Override public String toString() {
+        final StringBuilder buffer = new StringBuilder("Trace[").append(exchangeId);
+        if (correlationId != null) {
+            buffer.append(", correlation=").append(correlationId);
+        }
+        buffer.append(']');
+        for (final TraceEntry entry : getEntries()) {
+            buffer.append(NEWLINE).append("  ").append(entry);
+        }
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.trace;
+
+import java.io.Serializable;
+
+import static java.lang.String.format;
+
+/**
+ * A single step in the path taken by an exchange: one visit
+ * to one processing node.
+ */
+public class TraceEntry implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * A rough estimate of the fixed cost (object headers, references
+     * and primitives) of holding one entry in memory.
+     */
+    static final int FIXED_SIZE_ESTIMATE = 96;
+
+    private final String routeKey;
+    private final String node;
+    private final long timestamp;
+    private final long elapsedNanos;
+    private final boolean failed;
+    private final String failure;
+    private final String detail;
+
+    public TraceEntry(final String routeKey, final String node, final long timestamp,
+        final long elapsedNanos, final boolean failed, final String failure, final String detail) {
+        this.routeKey = routeKey;
+        this.node = node;
+        this.timestamp = timestamp;
+        this.elapsedNanos = elapsedNanos;
+        this.failed = failed;
+        this.failure = failure;
+        this.detail = detail;
+    }
+
+    public String getRouteKey() {
+        return routeKey;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    /**
+     * Gets the wall clock time (in milliseconds) at which the exchange entered the node.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Gets a description of the exception or fault with which the node failed, if any.
+     */
+    public String getFailure() {
+        return failure;
+    }
+
+    /**
+     * Gets the headers and/or body of the exchange as it entered the node, subject
+     * to the formatting options of the tracer.
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    int estimateSize() {
+        return FIXED_SIZE_ESTIMATE + 2 * (length(node) + length(failure) + length(detail));
+    }
+
+    private static int length(final String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    @Override public String toString() {
+        return format("%s -> %s [%dus%s]%s", routeKey, node, elapsedNanos / 1000,
+            failed ? ", failed: " + failure : "", detail == null ? "" : " " + detail);
+    }
+}
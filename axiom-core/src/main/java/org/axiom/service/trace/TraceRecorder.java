@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.trace;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.apache.camel.model.ProcessorType;
+import org.apache.camel.processor.DelegateProcessor;
+import org.apache.camel.processor.interceptor.TraceFormatter;
+import org.apache.camel.processor.interceptor.Tracer;
+import org.apache.camel.spi.InterceptStrategy;
+import static org.apache.commons.lang.StringUtils.*;
+import static org.apache.commons.lang.Validate.*;
+import static org.axiom.integration.camel.RouteSupport.*;
+
+/**
+ * An {@link InterceptStrategy} that feeds a {@link TraceStore} from the same
+ * processing nodes, and subject to the same settings, as a camel {@link Tracer}.
+ * Nothing is recorded whilst the tracer is disabled; when it is enabled, the
+ * headers and body are captured only if the tracer's formatter is set to show them.
+ * <p>
+ * Camel copies an exchange as it moves through a pipeline, so the id of the
+ * exchange as it entered the first traced node is carried along in the
+ * {@code TRACE_ID_PROPERTY} property and used as the key into the store.
+ * </p>
+ */
+public class TraceRecorder implements InterceptStrategy {
+
+    /**
+     * The exchange property carrying the trace (original exchange) id.
+     */
+    public static final String TRACE_ID_PROPERTY = "axiom.trace.id";
+
+    /**
+     * The maximum number of characters of the message body to retain.
+     */
+    protected static final int MAX_BODY_LENGTH = 256;
+
+    private final Tracer tracer;
+    private final TraceStore store;
+
+    public TraceRecorder(final Tracer tracer, final TraceStore store) {
+        notNull(tracer, "Tracer cannot be null.");
+        notNull(store, "Trace store cannot be null.");
+        this.tracer = tracer;
+        this.store = store;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override public Processor wrapProcessorInInterceptors(final ProcessorType processorType,
+        final Processor target) throws Exception {
+        return new RecordingInterceptor(target,
+            describeRoute(findRoute(processorType)), describeNode(processorType));
+    }
+
+    public TraceStore getStore() {
+        return store;
+    }
+
+    private String describe(final Message message) {
+        final TraceFormatter formatter = tracer.getFormatter();
+        if (message == null || !(formatter.isShowHeaders() || formatter.isShowBody())) {
+            return null;
+        }
+        final StringBuilder buffer = new StringBuilder();
+        if (formatter.isShowHeaders()) {
+            buffer.append("headers=").append(message.getHeaders());
+        }
+        if (formatter.isShowBody()) {
+            if (buffer.length() > 0) {
+                buffer.append(", ");
+            }
+            buffer.append("body=").append(abbreviate(String.valueOf(message.getBody()), MAX_BODY_LENGTH));
+        }
+        return buffer.toString();
+    }
+
+    private class RecordingInterceptor extends DelegateProcessor {
+
+        private final String routeKey;
+        private final String node;
+
+        RecordingInterceptor(final Processor target, final String routeKey, final String node) {
+            super(target);
+            this.routeKey = routeKey;
+            this.node = node;
+        }
+
+        @Override public void process(final Exchange exchange) throws Exception {
+            if (!tracer.isEnabled()) {
+                processNext(exchange);
+                return;
+            }
+            Object traceId = exchange.getProperty(TRACE_ID_PROPERTY);
+            if (traceId == null) {
+                traceId = exchange.getExchangeId();
+                exchange.setProperty(TRACE_ID_PROPERTY, traceId);
+            }
+            final String detail = describe(exchange.getIn());
+            final long timestamp = System.currentTimeMillis();
+            final long start = System.nanoTime();
+            Throwable error = null;
+            try {
+                processNext(exchange);
+            } catch (Exception e) {
+                error = e;
+                throw e;
+            } finally {
+                final long elapsed = System.nanoTime() - start;
+                if (error == null) {
+                    error = exchange.getException();
+                }
+                final boolean failed = error != null || exchange.isFailed();
+                store.record(traceId.toString(), exchange, new TraceEntry(routeKey, node,
+                    timestamp, elapsed, failed, error == null ? null : String.valueOf(error), detail));
+            }
+        }
+
+        @Override public String toString() {
+            return "RecordingInterceptor[" + routeKey + "/" + node + "]";
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.trace;
+
+import org.apache.camel.Body;
+import org.apache.camel.Consume;
+import org.apache.camel.Exchange;
+import org.apache.camel.Header;
+import static org.apache.commons.lang.StringUtils.*;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.integration.Environment;
+import org.axiom.scenario.VerificationFailureException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded, in-memory store of {@link ExchangeTrace}s, indexed by exchange id,
+ * correlation header and route. Lookups against each index are constant time.
+ * When the estimated memory held by the store exceeds its budget, the oldest
+ * traces are evicted (from every index) until the store is back under budget.
+ * <p>
+ * Besides the java API, the store can be queried by sending an exchange to
+ * the {@code Environment.TRACE_QUERY_CHANNEL} endpoint, with the key to search for
+ * in the body and the index to search in the {@code trace-query} header
+ * (one of {@code exchange}, {@code correlation} or {@code route}).
+ * </p>
+ */
+public class TraceStore {
+
+    /**
+     * The default memory budget, in bytes.
+     */
+    public static final long DEFAULT_MEMORY_BUDGET = 16L * 1024L * 1024L;
+
+    /**
+     * The default name of the header used to correlate exchanges.
+     */
+    public static final String DEFAULT_CORRELATION_HEADER = "correlation-id";
+
+    /**
+     * Query type: look up a trace by exchange id.
+     */
+    public static final String BY_EXCHANGE = "exchange";
+
+    /**
+     * Query type: look up traces by correlation header.
+     */
+    public static final String BY_CORRELATION = "correlation";
+
+    /**
+     * Query type: look up traces by the route they entered through.
+     */
+    public static final String BY_ROUTE = "route";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ConcurrentMap<String, ExchangeTrace> byExchange =
+        new ConcurrentHashMap<String, ExchangeTrace>();
+    private final ConcurrentMap<String, Set<ExchangeTrace>> byCorrelation =
+        new ConcurrentHashMap<String, Set<ExchangeTrace>>();
+    private final ConcurrentMap<String, Set<ExchangeTrace>> byRoute =
+        new ConcurrentHashMap<String, Set<ExchangeTrace>>();
+    private final Queue<ExchangeTrace> evictionQueue = new ConcurrentLinkedQueue<ExchangeTrace>();
+    private final AtomicLong estimatedSize = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private volatile long memoryBudget = DEFAULT_MEMORY_BUDGET;
+    private volatile String correlationHeader = DEFAULT_CORRELATION_HEADER;
+
+    /**
+     * Records a visit to a processing node.
+     * @param exchangeId The id of the exchange being traced.
+     * @param exchange The exchange, from which the correlation header is taken.
+     * @param entry The trace entry to record.
+     */
+    public void record(final String exchangeId, final Exchange exchange, final TraceEntry entry) {
+        ExchangeTrace trace = byExchange.get(exchangeId);
+        if (trace == null) {
+            final ExchangeTrace created = new ExchangeTrace(exchangeId, entry.getRouteKey());
+            trace = byExchange.putIfAbsent(exchangeId, created);
+            if (trace == null) {
+                trace = created;
+                index(byRoute, created.getRouteKey(), created);
+                evictionQueue.add(created);
+                estimatedSize.addAndGet(created.estimateSize());
+            }
+        }
+        if (trace.getCorrelationId() == null) {
+            final Object correlation = exchange.getIn().getHeader(correlationHeader);
+            if (correlation != null) {
+                trace.setCorrelationId(correlation.toString());
+                index(byCorrelation, trace.getCorrelationId(), trace);
+            }
+        }
+        // an entry appended to a trace that is being evicted concurrently is dropped, and
+        // not counted, as the eviction has already subtracted everything the trace holds
+        if (estimatedSize.addAndGet(trace.append(entry)) > memoryBudget) {
+            evict();
+        }
+    }
+
+    /**
+     * Gets the trace for the exchange with the supplied id.
+     * @param exchangeId The id of the exchange.
+     * @return The trace, or {@code null} if it was never recorded or has been evicted.
+     */
+    public ExchangeTrace findByExchangeId(final String exchangeId) {
+        return byExchange.get(exchangeId);
+    }
+
+    /**
+     * Gets the traces for all exchanges carrying the supplied correlation header value.
+     * @param correlationId The correlation header value.
+     * @return The matching traces, oldest first.
+     */
+    public List<ExchangeTrace> findByCorrelationId(final String correlationId) {
+        return lookup(byCorrelation, correlationId);
+    }
+
+    /**
+     * Gets the traces for all exchanges that entered through the supplied route.
+     * @param routeKey The input uri(s) of the route.
+     * @return The matching traces, oldest first.
+     */
+    public List<ExchangeTrace> findByRoute(final String routeKey) {
+        return lookup(byRoute, routeKey);
+    }
+
+    /**
+     * Gets the trace for the exchange which failed verification, provided the
+     * failure's target is an {@link Exchange}.
+     * @param failure The verification failure.
+     * @return The trace, or {@code null} if it cannot be found.
+     */
+    public ExchangeTrace findByFailure(final VerificationFailureException failure) {
+        notNull(failure, "Verification failure cannot be null.");
+        final Exchange exchange = failure.getTarget(Exchange.class);
+        if (exchange == null) {
+            return null;
+        }
+        final Object traceId = exchange.getProperty(TraceRecorder.TRACE_ID_PROPERTY);
+        return findByExchangeId(traceId != null ? traceId.toString() : exchange.getExchangeId());
+    }
+
+    /**
+     * Callback used by the trace query channel.
+     * @param queryType The index to search, as per the {@code trace-query} header.
+     * @param key The key to look up.
+     * @return The matching traces.
+     */
+    @Consume(uri = Environment.TRACE_QUERY_CHANNEL)
+    public List<ExchangeTrace> query(@Header(name = Environment.TRACE_QUERY) final String queryType,
+        @Body final String key) {
+        log.debug("Querying traces by {} for {}.", queryType, key);
+        if (equalsIgnoreCase(BY_CORRELATION, queryType)) {
+            return findByCorrelationId(key);
+        } else if (equalsIgnoreCase(BY_ROUTE, queryType)) {
+            return findByRoute(key);
+        }
+        final ExchangeTrace trace = findByExchangeId(key);
+        return trace == null ?
+            Collections.<ExchangeTrace>emptyList() : Collections.singletonList(trace);
+    }
+
+    /**
+     * Removes every recorded trace.
+     */
+    public void clear() {
+        evictionLock.lock();
+        try {
+            ExchangeTrace trace;
+            while ((trace = evictionQueue.poll()) != null) {
+                remove(trace);
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size() {
+        return byExchange.size();
+    }
+
+    /**
+     * Gets the estimated number of bytes currently held by the store.
+     */
+    public long getEstimatedSize() {
+        return estimatedSize.get();
+    }
+
+    /**
+     * Gets the number of traces evicted to stay within the memory budget.
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    public void setMemoryBudget(final long memoryBudget) {
+        isTrue(memoryBudget > 0, "Memory budget must be positive.");
+        this.memoryBudget = memoryBudget;
+    }
+
+    public String getCorrelationHeader() {
+        return correlationHeader;
+    }
+
+    public void setCorrelationHeader(final String correlationHeader) {
+        notEmpty(correlationHeader, "Correlation header cannot be empty.");
+        this.correlationHeader = correlationHeader;
+    }
+
+    private void evict() {
+        // only one thread needs to do this - everyone else can get on with their work
+        if (!evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            final long target = memoryBudget - (memoryBudget / 10);
+            ExchangeTrace oldest;
+            while (estimatedSize.get() > target && (oldest = evictionQueue.poll()) != null) {
+                remove(oldest);
+                evictions.incrementAndGet();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private void remove(final ExchangeTrace trace) {
+        byExchange.remove(trace.getExchangeId(), trace);
+        unindex(byRoute, trace.getRouteKey(), trace);
+        if (trace.getCorrelationId() != null) {
+            unindex(byCorrelation, trace.getCorrelationId(), trace);
+        }
+        estimatedSize.addAndGet(-trace.evict());
+    }
+
+    private static void index(final ConcurrentMap<String, Set<ExchangeTrace>> index,
+        final String key, final ExchangeTrace trace) {
+        while (true) {
+            Set<ExchangeTrace> traces = index.get(key);
+            if (traces == null) {
+                final Set<ExchangeTrace> created = new LinkedHashSet<ExchangeTrace>();
+                traces = index.putIfAbsent(key, created);
+                if (traces == null) {
+                    traces = created;
+                }
+            }
+            synchronized (traces) {
+                // guards against the set being dropped by a concurrent unindex
+                if (index.get(key) == traces) {
+                    traces.add(trace);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void unindex(final ConcurrentMap<String, Set<ExchangeTrace>> index,
+        final String key, final ExchangeTrace trace) {
+        final Set<ExchangeTrace> traces = index.get(key);
+        if (traces != null) {
+            synchronized (traces) {
+                traces.remove(trace);
+                if (traces.isEmpty()) {
+                    index.remove(key, traces);
+                }
+            }
+        }
+    }
+
+    private static List<ExchangeTrace> lookup(final Map<String, Set<ExchangeTrace>> index,
+        final String key) {
+        final Set<ExchangeTrace> traces = key == null ? null : index.get(key);
+        if (traces == null) {
+            return Collections.emptyList();
+        }
+        synchronized (traces) {
+            return new ArrayList<ExchangeTrace>(traces);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.util;
+
+import static org.apache.commons.lang.Validate.*;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An immutable consistent hash ring. Each member is placed on the ring at a
+ * number of virtual points, derived from an md5 hash of its string form, so keys
+ * are spread evenly and adding or removing a member only moves the keys that
+ * member owns.
+ * @param <T> The type of the ring members.
+ */
+public final class ConsistentHashRing<T> {
+
+    /**
+     * The default number of virtual points per member.
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    private final List<T> members;
+    private final int[] points;
+    private final List<T> owners;
+
+    public ConsistentHashRing(final List<T> members) {
+        this(members, DEFAULT_VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(final List<T> members, final int virtualNodes) {
+        notEmpty(members, "Ring members cannot be empty.");
+        isTrue(virtualNodes > 0, "Virtual nodes must be positive.");
+        this.members = Collections.unmodifiableList(new ArrayList<T>(members));
+
+        final SortedMap<Integer, T> ring = new TreeMap<Integer, T>();
+        for (final T member : members) {
+            for (int v = 0; v < virtualNodes; v++) {
+                ring.put(pointFor(member + "#" + v), member);
+            }
+        }
+        points = new int[ring.size()];
+        owners = new ArrayList<T>(ring.size());
+        int i = 0;
+        for (final Map.Entry<Integer, T> point : ring.entrySet()) {
+            points[i++] = point.getKey();
+            owners.add(point.getValue());
+        }
+    }
+
+    /**
+     * Gets the member that owns the supplied key.
+     * @param key The key, which may be {@code null}.
+     * @return The owning member.
+     */
+    public T get(final Object key) {
+        final int hash = mix(key == null ? 0 : key.hashCode());
+        int low = 0;
+        int high = points.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (points[mid] < hash) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        // wrap around to the first point if we fell off the end of the ring
+        return owners.get(low == points.length ? 0 : low);
+    }
+
+    public List<T> getMembers() {
+        return members;
+    }
+
+    /**
+     * Spreads the bits of a key's hash code (the murmur3 finaliser), as
+     * many hash codes (small integers, short strings) cluster badly.
+     */
+    private static int mix(final int hashCode) {
+        int h = hashCode;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static int pointFor(final String label) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("MD5").digest(label.getBytes("UTF-8"));
+            return (digest[0] & 0xFF) << 24 | (digest[1] & 0xFF) << 16 |
+                (digest[2] & 0xFF) << 8 | (digest[3] & 0xFF);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e.getLocalizedMessage(), e);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e.getLocalizedMessage(), e);
+        }
+    }
+}
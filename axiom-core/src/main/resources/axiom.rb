@@ -49,6 +49,15 @@ module Kernel
     end
   end
 
+  def profiled stage
+    span = org.axiom.service.metrics.ConfigureProfiler.span(stage.to_s)
+    begin
+      return yield
+    ensure
+      span.stop
+    end
+  end
+
   def puts str
     str = "#{str}\n" unless str =~ /.*#{"\n"}$/
     $logger.debug str
@@ -49,14 +49,21 @@ module Axiom
         logger.debug "Signal header set to [#{sig}]."
         return unless [:start, :stop, :configure].include? sig
 
-        logging {
-          if sig.eql? :configure
-            @context.addRoutes in_channel.body
-            logger.debug "Configuration update handled."
-          else
-            @context.send sig
-          end
-        }
+        operation = org.axiom.service.metrics.ConfigureProfiler.begin(sig.to_s)
+        begin
+          logging {
+            if sig.eql? :configure
+              # camel builds and starts the new routes inside addRoutes
+              profiled('routes.add') { @context.addRoutes in_channel.body }
+              logger.debug "Configuration update handled."
+            else
+              profiled("context.#{sig}") { @context.send sig }
+            end
+          }
+          operation.succeeded
+        ensure
+          operation.end
+        end
       end
 
       
@@ -28,8 +28,10 @@
 require 'axiom/core/configuration'
 require 'axiom/core/functor'
 require 'axiom/core/processor'
+require 'axiom/core/service_levels'
 
 import org.apache.camel.builder.PredicateBuilder
+import org.axiom.integration.Environment
 
 module Axiom
   module Core
@@ -41,6 +43,7 @@ module Axiom
     class SimpleRouteBuilder < org.apache.camel.builder.RouteBuilder
       include Configuration
       include Functor
+      include ServiceLevels
 
       # TODO: pull add_headers out into a plugin
 
@@ -67,10 +70,34 @@ module Axiom
         }
       end
 
+      # gets the metrics registry shared via the host context
+      def metrics
+        @metrics ||= lookup Environment::METRICS_REGISTRY_ID
+      end
+
+      # gets (or registers) a named :counter, :timer or :histogram
+      # in the shared registry, or registers a :gauge which samples
+      # the supplied block, e.g. metric(:gauge, 'queue.depth') { queue.size }
+      def metric type, name, &block
+        logging {
+          return metrics.gauge(name, &block) if type.eql? :gauge
+          metrics.send type, name
+        }
+      end
+
+      # generates a processor which counts the exchanges passing
+      # through it, using the named counter in the shared registry
+      def counting name
+        counter = metric :counter, name
+        Processor.new { |exchange| counter.increment }
+      end
+
       # see the javadoc for org.apache.camel.RouteBuilder
       def configure
         logging {
-          instance_eval &self
+          result = instance_eval &self
+          bind_service_levels route_collection.routes unless service_levels.empty?
+          result
         }
       end
     end
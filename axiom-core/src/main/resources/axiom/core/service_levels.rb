@@ -0,0 +1,107 @@
+# Copyright (c) 2009, Tim Watson
+# All rights reserved.
+#
+# Redistribution and use in source and binary forms, with or without modification,
+# are permitted provided that the following conditions are met:
+#
+#     * Redistributions of source code must retain the above copyright notice,
+#       this list of conditions and the following disclaimer.
+#     * Redistributions in binary form must reproduce the above copyright notice,
+#       this list of conditions and the following disclaimer in the documentation
+#       and/or other materials provided with the distribution.
+#     * Neither the name of the author nor the names of its contributors
+#       may be used to endorse or promote products derived from this software
+#       without specific prior written permission.
+#
+# THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+# AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+# IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+# ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+# LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+# CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+# GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+# HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+# LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+# OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+#
+
+import java.util.ArrayList
+import org.axiom.integration.Environment
+import org.axiom.integration.camel.RouteSupport
+import org.axiom.scenario.ServiceLevel
+import org.axiom.scenario.SlaMonitor
+
+module Axiom
+  module Core
+
+    # declares latency and throughput requirements alongside the routes
+    # they apply to, which the shared SlaMonitor then checks whilst the
+    # routes run (failing the scenario if a window breaches them)
+    module ServiceLevels
+
+      UNITS = { 'ms' => 1, 's' => 1000, 'm' => 60 * 1000, 'h' => 60 * 60 * 1000 }
+
+      # expects the given latency percentile (:p50, :p99, :p999 etc) of each
+      # route to stay within a limit (in ms) over every window (defaulting
+      # to one minute), e.g. expect_latency :p99 => 50, :within => '1m'
+      def expect_latency options
+        key = options.keys.find { |k| k.to_s =~ /^p\d+$/ }
+        fail "A percentile (e.g. :p99) is required." if key.nil?
+        percentile = to_percentile key
+        limit_micros = (options[key] * 1000).to_i
+        window = to_millis(options[:within] || '1m')
+        service_levels << lambda { |route_key, histogram|
+          ServiceLevel.latency("#{route_key} #{key} latency", histogram, percentile, limit_micros, window)
+        }
+      end
+
+      # expects each route to handle at least :min exchanges per second
+      # over every window, e.g. expect_throughput :min => 2000, :within => '1m'
+      def expect_throughput options
+        fail "A minimum throughput (:min) is required." unless options.has_key? :min
+        rate = options[:min].to_f
+        window = to_millis(options[:within] || '1m')
+        service_levels << lambda { |route_key, histogram|
+          ServiceLevel.throughput("#{route_key} throughput", histogram, rate, window)
+        }
+      end
+
+      def service_levels
+        @service_levels ||= []
+      end
+
+      # binds the declared service levels to the latency statistics
+      # of each route, and hands them over to the shared monitor (in
+      # place of any bound when the route was last configured)
+      def bind_service_levels routes
+        return if service_levels.empty?
+        monitor = lookup Environment::SLA_MONITOR_ID
+        routes.each do |route|
+          route_key = RouteSupport.describeRoute route
+          histogram = SlaMonitor.routeLatency context, route_key
+          levels = ArrayList.new
+          service_levels.each { |factory| levels.add factory.call(route_key, histogram) }
+          monitor.bind route_key, levels
+        end
+      end
+
+      private
+
+      # :p99 => 99.0, :p999 => 99.9, :p50 => 50.0
+      def to_percentile key
+        digits = key.to_s[1..-1]
+        return 100.0 if digits.eql? '100'
+        "#{digits[0, 2]}.#{digits[2..-1]}".to_f
+      end
+
+      # 500 => 500, '500ms' => 500, '30s' => 30000, '1m' => 60000
+      def to_millis duration
+        return duration.to_i if duration.kind_of? Numeric
+        fail "Invalid duration #{duration}." unless duration.to_s =~ /^(\d+)\s*(ms|s|m|h)$/
+        $1.to_i * UNITS[$2]
+      end
+
+    end
+
+  end
+end
@@ -28,3 +28,5 @@
 require 'axiom/plugins/builder'
 require 'axiom/plugins/route_config'
 require 'axiom/plugins/validation/valid_schema'
+require 'axiom/plugins/recording'
+require 'axiom/plugins/load'
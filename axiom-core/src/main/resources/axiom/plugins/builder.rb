@@ -47,7 +47,7 @@ module Axiom
     def lookup_plugin name, plugin_id
       plugin(name) do |*args|
         fail_properties(args) unless args.size <= 1
-        thing = context.registry.lookup plugin_id
+        thing = profiled('plugin.lookup') { context.registry.lookup plugin_id }
         (args.first || {}).each do |k,v|
           property = "#{k}=".to_sym
           fail_property_assignment property, thing unless thing.respond_to? property
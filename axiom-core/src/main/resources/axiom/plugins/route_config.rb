@@ -43,7 +43,7 @@ plugin :route_config do |configurator|
     unless body.nil?
       logger.debug "Assigning configured routes for post processing."
       out_channel = exchange.getOut
-      out_channel.body = configurator.configure body
+      out_channel.body = profiled('script.evaluate') { configurator.configure body }
       out_channel.set_header Environment::SIGNAL, Environment::SIG_CONFIGURE
     end
   end
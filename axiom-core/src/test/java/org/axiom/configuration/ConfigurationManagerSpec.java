@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.configuration;
+
+import jdave.Block;
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.io.FileUtils;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+@RunWith(JDaveRunner.class)
+public class ConfigurationManagerSpec extends Specification<ConfigurationManager> {
+
+    public class WhenExternalPropertiesChange {
+
+        private File external;
+        private ConfigurationManager manager;
+        private final Set<String> changes = new HashSet<String>();
+
+        public ConfigurationManager create() throws IOException {
+            external = File.createTempFile("axiom-reload", ".properties");
+            FileUtils.writeStringToFile(external,
+                "axiom.test.overridden=first\naxiom.test.derived=${axiom.test.overridden}-value\n");
+            System.setProperty(ExternalConfigurationSourceFactory.AXIOM_CONFIGURATION_EXTERNALS,
+                external.getAbsolutePath());
+            manager = new ConfigurationManager(
+                new ExternalConfigurationSourceFactory("axiom.test.properties"));
+            manager.addListener(new ConfigurationChangeListener() {
+                @Override public void configurationChanged(final ConfigurationSnapshot previous,
+                    final ConfigurationSnapshot current, final Set<String> changedKeys) {
+                    changes.addAll(changedKeys);
+                }
+            });
+            return manager;
+        }
+
+        public void destroy() {
+            System.clearProperty(ExternalConfigurationSourceFactory.AXIOM_CONFIGURATION_EXTERNALS);
+            FileUtils.deleteQuietly(external);
+        }
+
+        public void itShouldHoldPreInterpolatedValues() {
+            specify(manager.getSnapshot().getString("axiom.test.derived"), should.equal("first-value"));
+            specify(manager.getConfiguration().getString("axiom.test.derived"), should.equal("first-value"));
+        }
+
+        public void itShouldSwapInANewSnapshotWhenAWatchedFileIsModified() throws IOException {
+            final ConfigurationSnapshot original = manager.getSnapshot();
+            FileUtils.writeStringToFile(external,
+                "axiom.test.overridden=second\naxiom.test.derived=${axiom.test.overridden}-value\n");
+            external.setLastModified(external.lastModified() + 2000L);
+
+            specify(manager.checkForChanges(), should.equal(true));
+            specify(manager.getSnapshot().getVersion(), should.equal(original.getVersion() + 1));
+            specify(manager.getConfiguration().getString("axiom.test.derived"), should.equal("second-value"));
+            specify(original.getString("axiom.test.derived"), should.equal("first-value"));
+        }
+
+        public void itShouldTellListenersWhichKeysChanged() throws IOException {
+            FileUtils.writeStringToFile(external,
+                "axiom.test.overridden=first\naxiom.test.derived=${axiom.test.overridden}-value\naxiom.test.added=true\n");
+            external.setLastModified(external.lastModified() + 2000L);
+            manager.checkForChanges();
+            specify(changes.size(), should.equal(1));
+            specify(changes.contains("axiom.test.added"), should.equal(true));
+        }
+
+        public void itShouldNotAllowTheConfigurationToBeModified() {
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    manager.getConfiguration().setProperty("axiom.test.overridden", "third");
+                }
+            }, should.raise(UnsupportedOperationException.class));
+        }
+    }
+
+    public class WhenConfigurationIsAddedToTheRegisteredComposite {
+
+        private ExternalConfigurationSourceFactory factory;
+        private Configuration registered;
+        private ConfigurationManager manager;
+
+        public ConfigurationManager create() {
+            factory = new ExternalConfigurationSourceFactory("axiom.test.properties");
+            registered = factory.createConfiguration();
+            return manager = new ConfigurationManager(factory, registered);
+        }
+
+        public void destroy() {
+            System.clearProperty("axiom.test.system.added");
+        }
+
+        public void itShouldSnapshotConfigurationsAddedAtRuntime() {
+            final BaseConfiguration added = new BaseConfiguration();
+            added.setProperty("axiom.test.runtime.port", "10001");
+            added.setProperty("axiom.test.runtime.uri", "localhost:${axiom.test.runtime.port}/in");
+            ((ObservableCompositeConfiguration) registered).addConfiguration(added);
+            specify(manager.getConfiguration().getString("axiom.test.runtime.uri"), should.equal("localhost:10001/in"));
+        }
+
+        public void itShouldSnapshotPropertiesSetAtRuntime() {
+            registered.setProperty("axiom.test.runtime.flag", "on");
+            specify(manager.getConfiguration().getString("axiom.test.runtime.flag"), should.equal("on"));
+        }
+
+        public void itShouldKeepRuntimeConfigurationsWhenFilesAreReloaded() {
+            final BaseConfiguration added = new BaseConfiguration();
+            added.setProperty("axiom.test.runtime.flag", "kept");
+            ((ObservableCompositeConfiguration) registered).addConfiguration(added);
+            manager.reload();
+            specify(manager.getConfiguration().getString("axiom.test.runtime.flag"), should.equal("kept"));
+        }
+
+        public void itShouldPickUpSystemPropertyChangesWhenCheckingForChanges() {
+            System.setProperty("axiom.test.system.added", "yes");
+            specify(manager.checkForChanges(), should.equal(true));
+            specify(manager.getConfiguration().getString("axiom.test.system.added"), should.equal("yes"));
+        }
+    }
+
+    public class WhenBindingTypedSettings {
+
+        private File external;
+        private ConfigurationManager manager;
+        private final ConfigurationBinding<Integer> limitBinding = new ConfigurationBinding<Integer>() {
+            @Override public Integer bind(final ConfigurationSnapshot snapshot) {
+                final SettingsReader reader = new SettingsReader(snapshot, "test");
+                final int limit = reader.getInt("axiom.test.limit", 10);
+                reader.validate();
+                return limit;
+            }
+        };
+
+        public ConfigurationManager create() throws IOException {
+            external = File.createTempFile("axiom-binding", ".properties");
+            FileUtils.writeStringToFile(external, "axiom.test.limit=5\n");
+            System.setProperty(ExternalConfigurationSourceFactory.AXIOM_CONFIGURATION_EXTERNALS,
+                external.getAbsolutePath());
+            manager = new ConfigurationManager(
+                new ExternalConfigurationSourceFactory("axiom.test.properties"));
+            return manager;
+        }
+
+        public void destroy() {
+            System.clearProperty(ExternalConfigurationSourceFactory.AXIOM_CONFIGURATION_EXTERNALS);
+            FileUtils.deleteQuietly(external);
+        }
+
+        public void itShouldBindTheCurrentValuesImmediately() {
+            final BoundSettings<Integer> limit = manager.bind(limitBinding);
+            specify(limit.get(), should.equal(5));
+            specify(limit.getVersion(), should.equal(manager.getSnapshot().getVersion()));
+        }
+
+        public void itShouldRebindWhenANewSnapshotIsApplied() throws IOException {
+            final BoundSettings<Integer> limit = manager.bind(limitBinding);
+            modify("axiom.test.limit=20\n");
+            specify(manager.checkForChanges(), should.equal(true));
+            specify(limit.get(), should.equal(20));
+        }
+
+        public void itShouldRejectASnapshotThatFailsToBind() throws IOException {
+            final BoundSettings<Integer> limit = manager.bind(limitBinding);
+            final ConfigurationSnapshot original = manager.getSnapshot();
+            modify("axiom.test.limit=lots\n");
+            specify(manager.checkForChanges(), should.equal(false));
+            specify(manager.getSnapshot(), should.equal(original));
+            specify(limit.get(), should.equal(5));
+        }
+
+        public void itShouldFailFastWhenTheCurrentConfigurationIsInvalid() throws IOException {
+            modify("axiom.test.limit=lots\n");
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    new ConfigurationManager(
+                        new ExternalConfigurationSourceFactory("axiom.test.properties")).bind(limitBinding);
+                }
+            }, should.raise(ConfigurationBindingException.class));
+        }
+
+        private void modify(final String contents) throws IOException {
+            FileUtils.writeStringToFile(external, contents);
+            external.setLastModified(external.lastModified() + 2000L);
+        }
+    }
+}
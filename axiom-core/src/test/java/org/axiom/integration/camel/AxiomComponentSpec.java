@@ -34,7 +34,9 @@ import jdave.Block;
 import jdave.Specification;
 import jdave.junit4.JDaveRunner;
 import org.apache.camel.CamelContext;
+import org.apache.camel.Endpoint;
 import org.axiom.integration.Environment;
+import org.axiom.service.LifecycleCoordinator;
 import org.axiom.service.ServiceSpecSupport;
 import org.junit.runner.RunWith;
 
@@ -151,5 +153,62 @@ public class AxiomComponentSpec extends Specification<AxiomComponent> {
 
             component.createEndpoint("axiom:ignored");
         }
+
+        public void itShouldReuseTheEndpointForARepeatedlyAddressedContext() throws Exception {
+            allowing(mockContext).getRegistry();
+            will(returnValue(mockRegistry));
+
+            one(mockRegistry).lookup("cachedContext", CamelContext.class);
+            will(returnValue(mockContext));
+
+            one(mockRegistry).lookup(Environment.DEFAULT_PROCESSOR, ContextProcessingNode.class);
+            will(returnValue(mockProcessor));
+
+            allowing(mockContext);
+            one(mockProcessor).setContext(mockContext);
+            checking(this);
+
+            final Endpoint first = component.createEndpoint("axiom:cachedContext");
+            specify(component.createEndpoint("axiom:cachedContext"), should.equal(first));
+        }
+
+        public void itShouldLookTheContextUpAgainOnceInvalidated() throws Exception {
+            allowing(mockContext).getRegistry();
+            will(returnValue(mockRegistry));
+
+            exactly(2).of(mockRegistry).lookup("cachedContext", CamelContext.class);
+            will(returnValue(mockContext));
+
+            exactly(2).of(mockRegistry).lookup(Environment.DEFAULT_PROCESSOR, ContextProcessingNode.class);
+            will(returnValue(mockProcessor));
+
+            allowing(mockContext);
+            allowing(mockProcessor);
+            checking(this);
+
+            component.createEndpoint("axiom:cachedContext");
+            component.invalidate("cachedContext");
+            component.createEndpoint("axiom:cachedContext");
+        }
+
+        public void itShouldRegisterTheNamedContextWithTheLifecycleCoordinator() throws Exception {
+            final LifecycleCoordinator coordinator = mock(mockery(), LifecycleCoordinator.class);
+            component.setLifecycleCoordinator(coordinator);
+            allowing(mockContext).getRegistry();
+            will(returnValue(mockRegistry));
+
+            allowing(mockRegistry).lookup("managedContext", CamelContext.class);
+            will(returnValue(mockContext));
+
+            allowing(mockRegistry).lookup(Environment.DEFAULT_PROCESSOR, ContextProcessingNode.class);
+            will(returnValue(mockProcessor));
+
+            one(coordinator).manage("managedContext", mockContext);
+            allowing(mockContext);
+            allowing(mockProcessor);
+            checking(this);
+
+            component.createEndpoint("axiom:managedContext");
+        }
     }
 }
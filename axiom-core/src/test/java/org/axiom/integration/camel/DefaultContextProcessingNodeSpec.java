@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.integration.camel;
+
+import jdave.Block;
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultExchange;
+import org.axiom.integration.Environment;
+import org.axiom.service.ServiceSpecSupport;
+import org.junit.runner.RunWith;
+
+@RunWith(JDaveRunner.class)
+public class DefaultContextProcessingNodeSpec extends Specification<DefaultContextProcessingNode> {
+
+    public class WhenProcessingControlSignals extends ServiceSpecSupport {
+
+        private DefaultContextProcessingNode node;
+
+        public DefaultContextProcessingNode create() {
+            prepareMocks(mockery());
+            node = new DefaultContextProcessingNode(mockContext);
+            return node;
+        }
+
+        public void itShouldStartTheTargetContext() throws Exception {
+            one(mockContext).start();
+            checking(this);
+            node.process(signal("start", null));
+        }
+
+        public void itShouldStopTheTargetContext() throws Exception {
+            one(mockContext).stop();
+            checking(this);
+            node.process(signal("stop", null));
+        }
+
+        public void itShouldAddTheRoutesCarriedByAConfigureSignal() throws Exception {
+            final RouteBuilder builder = new RouteBuilder() {
+                @Override public void configure() throws Exception {
+                }
+            };
+            one(mockContext).addRoutes(builder);
+            checking(this);
+            node.process(signal(Environment.SIG_CONFIGURE, builder));
+        }
+
+        public void itShouldIgnoreUnknownSignals() throws Exception {
+            never(mockContext);
+            checking(this);
+            node.process(signal("restart", null));
+            node.process(signal(null, null));
+        }
+
+        public void itShouldPukeIfAConfigureSignalHasNoRoutes() {
+            checking(this);
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    node.process(signal(Environment.SIG_CONFIGURE, "not a route builder"));
+                }
+            }, should.raise(IllegalArgumentException.class));
+        }
+
+        private Exchange signal(final String signal, final Object body) {
+            final Exchange exchange = new DefaultExchange((CamelContext) null);
+            exchange.getIn().setHeader(Environment.SIGNAL, signal);
+            exchange.getIn().setBody(body);
+            return exchange;
+        }
+    }
+}
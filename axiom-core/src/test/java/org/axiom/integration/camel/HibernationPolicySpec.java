@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.integration.camel;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.apache.camel.spi.InterceptStrategy;
+import org.axiom.integration.Environment;
+import org.axiom.service.ServiceSpecSupport;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+@RunWith(JDaveRunner.class)
+public class HibernationPolicySpec extends Specification<HibernationPolicy> {
+
+    public class WhenManagedContextsAreIdle extends ServiceSpecSupport {
+
+        private HibernationPolicy policy;
+        private ContextProcessingNode mockNode;
+        private ContextProcessingNode wrapped;
+
+        public HibernationPolicy create() {
+            prepareMocks(mockery());
+            mockNode = mock(mockery(), ContextProcessingNode.class);
+            policy = new HibernationPolicy();
+            policy.setIdleTimeout(1L);
+            return policy;
+        }
+
+        public void itShouldNotWrapNodesWhenDisabled() {
+            policy.setIdleTimeout(0L);
+            specify(policy.wrap(mockNode), should.equal(mockNode));
+        }
+
+        public void itShouldStopContextsOnceTheyHaveBeenIdle() throws Exception {
+            stubManagedContext();
+            one(mockContext).stop();
+            checking(this);
+
+            wrapped = policy.wrap(mockNode);
+            Thread.sleep(5L);
+            specify(policy.hibernateIdleContexts(), should.equal(1));
+            specify(policy.isHibernating(mockContext), should.equal(true));
+            specify(policy.getHibernatingCount(), should.equal(1));
+        }
+
+        public void itShouldRestartAHibernatingContextOnTheNextExchange() throws Exception {
+            final Exchange exchange = new DefaultExchange(mockContext);
+            exchange.getIn().setHeader(Environment.SIGNAL, "configure");
+            stubManagedContext();
+            one(mockContext).stop();
+            one(mockContext).start();
+            one(mockNode).process(exchange);
+            checking(this);
+
+            wrapped = policy.wrap(mockNode);
+            Thread.sleep(5L);
+            policy.hibernateIdleContexts();
+            wrapped.process(exchange);
+
+            specify(policy.isHibernating(mockContext), should.equal(false));
+            specify(policy.getHibernatingCount(), should.equal(0));
+            specify(policy.getRestartStatistics().getExchangeCount(), should.equal(1L));
+        }
+
+        public void itShouldNotStopAContextWithExchangesInFlight() throws Exception {
+            final CountDownLatch entered = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final CamelContext context = new DefaultCamelContext();
+            final HibernatingProcessingNode node = (HibernatingProcessingNode)
+                policy.wrap(new DefaultContextProcessingNode(context));
+            context.addRoutes(new RouteBuilder() {
+                @Override public void configure() throws Exception {
+                    from("direct:slow").process(new Processor() {
+                        @Override public void process(final Exchange exchange) throws Exception {
+                            entered.countDown();
+                            release.await(5, TimeUnit.SECONDS);
+                        }
+                    });
+                }
+            });
+            context.start();
+            try {
+                final ProducerTemplate<Exchange> producer = context.createProducerTemplate();
+                final Thread sender = new Thread() {
+                    @Override public void run() {
+                        producer.sendBody("direct:slow", "payload");
+                    }
+                };
+                sender.start();
+                entered.await(5, TimeUnit.SECONDS);
+                Thread.sleep(5L);
+
+                specify(node.getInflightCount() > 0, should.equal(true));
+                specify(policy.hibernateIdleContexts(), should.equal(0));
+
+                release.countDown();
+                sender.join(5000L);
+                Thread.sleep(5L);
+                specify(node.getInflightCount(), should.equal(0));
+                specify(policy.hibernateIdleContexts(), should.equal(1));
+            } finally {
+                release.countDown();
+                context.stop();
+            }
+        }
+
+        public void itShouldLeaveAnExplicitlyStoppedContextDown() throws Exception {
+            final DefaultCamelContext context = new DefaultCamelContext();
+            final ContextProcessingNode node = policy.wrap(new DefaultContextProcessingNode(context));
+            context.start();
+            try {
+                node.process(signal(context, "stop", null));
+                Thread.sleep(5L);
+                specify(policy.hibernateIdleContexts(), should.equal(0));
+                specify(policy.getHibernatingCount(), should.equal(0));
+
+                node.process(signal(context, "configure", new RouteBuilder() {
+                    @Override public void configure() throws Exception {
+                        from("direct:later").to("mock:later");
+                    }
+                }));
+                specify(context.isStarted(), should.equal(false));
+                specify(policy.getRestartStatistics().getExchangeCount(), should.equal(0L));
+            } finally {
+                context.stop();
+            }
+        }
+
+        private Exchange signal(final CamelContext context, final String signal, final Object body) {
+            final Exchange exchange = new DefaultExchange(context);
+            exchange.getIn().setHeader(Environment.SIGNAL, signal);
+            exchange.getIn().setBody(body);
+            return exchange;
+        }
+
+        private void stubManagedContext() {
+            allowing(mockNode).getContext();
+            will(returnValue(mockContext));
+            allowing(mockContext).getName();
+            allowing(mockContext).addInterceptStrategy(with(any(InterceptStrategy.class)));
+            allowing(mockContext).getRoutes();
+            will(returnValue(Collections.emptyList()));
+        }
+    }
+}
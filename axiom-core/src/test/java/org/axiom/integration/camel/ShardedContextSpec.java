@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.integration.camel;
+
+import jdave.Block;
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultExchange;
+import org.axiom.integration.Environment;
+import org.axiom.service.RouteLoader;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(JDaveRunner.class)
+public class ShardedContextSpec extends Specification<ShardedContext> {
+
+    public class WhenDistributingControlSignals {
+
+        private ShardedContext sharded;
+        private ShardedProcessingNode node;
+        private RecordingNode contextNode;
+        private final List<CamelContext> processedBy = new ArrayList<CamelContext>();
+
+        public ShardedContext create() {
+            sharded = new ShardedContext(4);
+            contextNode = new RecordingNode();
+            node = new ShardedProcessingNode(sharded, contextNode, recordingNodes(4));
+            return sharded;
+        }
+
+        public void itShouldCreateTheConfiguredNumberOfShards() {
+            specify(sharded.getShards().size(), should.equal(4));
+        }
+
+        public void itShouldSendKeyedSignalsToASingleShard() throws Exception {
+            node.process(signal("scenario-1"));
+            node.process(signal("scenario-1"));
+            specify(processedBy.size(), should.equal(2));
+            specify(processedBy.get(0), should.equal(sharded.shardFor("scenario-1")));
+            specify(processedBy.get(1), should.equal(processedBy.get(0)));
+        }
+
+        public void itShouldSendUnkeyedSignalsToTheLogicalContext() throws Exception {
+            node.process(signal(null));
+            specify(processedBy.size(), should.equal(1));
+            specify(processedBy.get(0), should.equal(sharded));
+        }
+
+        public void itShouldRetargetEveryNodeAtAnotherShardedContext() throws Exception {
+            final ShardedContext replacement = new ShardedContext(4);
+            node.setContext(replacement);
+            node.process(signal("scenario-1"));
+            node.process(signal(null));
+            specify(node.getContext(), should.equal(replacement));
+            specify(processedBy.get(0), should.equal(replacement.shardFor("scenario-1")));
+            specify(processedBy.get(1), should.equal(replacement));
+        }
+
+        public void itShouldRefuseToTargetAnythingButAShardedContext() {
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    node.setContext(new ShardedContext(2));
+                }
+            }, should.raise(IllegalArgumentException.class));
+        }
+
+        private List<ContextProcessingNode> recordingNodes(final int count) {
+            final List<ContextProcessingNode> nodes = new ArrayList<ContextProcessingNode>();
+            for (int i = 0; i < count; i++) {
+                nodes.add(new RecordingNode());
+            }
+            return nodes;
+        }
+
+        private Exchange signal(final String key) {
+            final Exchange exchange = new DefaultExchange(sharded);
+            exchange.getIn().setHeader(Environment.SIGNAL, "start");
+            if (key != null) {
+                exchange.getIn().setHeader(ShardedContext.DEFAULT_SHARD_HEADER, key);
+            }
+            return exchange;
+        }
+
+        private class RecordingNode implements ContextProcessingNode {
+
+            private CamelContext context;
+
+            @Override public void process(final Exchange exchange) {
+                processedBy.add(context);
+            }
+
+            @Override public void setContext(final CamelContext context) {
+                this.context = context;
+            }
+
+            @Override public CamelContext getContext() {
+                return context;
+            }
+        }
+    }
+
+    public class WhenDistributingDataExchanges {
+
+        private ShardedContext sharded;
+        private final List<CamelContext> processedBy =
+            Collections.synchronizedList(new ArrayList<CamelContext>());
+
+        public ShardedContext create() throws Exception {
+            sharded = new ShardedContext(3);
+            sharded.addShardRoutes(new RouteLoader() {
+                @Override public RouteBuilder load() {
+                    return new RecordingRoute();
+                }
+            });
+            sharded.addRoutes(new RouteBuilder() {
+                @Override public void configure() throws Exception {
+                    from("direct:in").to(ShardedContext.DISPATCH_URI);
+                }
+            });
+            sharded.start();
+            return sharded;
+        }
+
+        public void destroy() throws Exception {
+            sharded.stop();
+        }
+
+        public void itShouldDeliverKeyedExchangesToTheOwningShard() {
+            send("order-1");
+            send("order-1");
+            send("order-2");
+            specify(processedBy.size(), should.equal(3));
+            specify(processedBy.get(0), should.equal(sharded.shardFor("order-1")));
+            specify(processedBy.get(1), should.equal(sharded.shardFor("order-1")));
+            specify(processedBy.get(2), should.equal(sharded.shardFor("order-2")));
+        }
+
+        public void itShouldDeliverUnkeyedExchangesToExactlyOneShard() {
+            send(null);
+            specify(processedBy.size(), should.equal(1));
+            specify(sharded.getShards().contains(processedBy.get(0)), should.equal(true));
+        }
+
+        public void itShouldRequireANewRouteBuilderForEachShard() {
+            final RouteBuilder shared = new RecordingRoute();
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    new ShardedContext(2).addShardRoutes(new RouteLoader() {
+                        @Override public RouteBuilder load() {
+                            return shared;
+                        }
+                    });
+                }
+            }, should.raise(IllegalArgumentException.class));
+        }
+
+        @SuppressWarnings({"unchecked"})
+        private void send(final String key) {
+            final ProducerTemplate<Exchange> producer = sharded.createProducerTemplate();
+            final Exchange exchange = new DefaultExchange(sharded);
+            if (key != null) {
+                exchange.getIn().setHeader(ShardedContext.DEFAULT_SHARD_HEADER, key);
+            }
+            producer.send("direct:in", exchange);
+        }
+
+        private class RecordingRoute extends RouteBuilder {
+
+            @Override public void configure() throws Exception {
+                final CamelContext shard = getContext();
+                from(ShardedContext.DEFAULT_SHARD_URI).process(new Processor() {
+                    @Override public void process(final Exchange exchange) throws Exception {
+                        processedBy.add(shard);
+                    }
+                });
+            }
+        }
+    }
+}
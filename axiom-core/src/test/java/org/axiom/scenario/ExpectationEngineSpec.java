@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+@RunWith(JDaveRunner.class)
+public class ExpectationEngineSpec extends Specification<ExpectationEngine> {
+
+    public class WhenEvaluatingExpectations {
+
+        private ExpectationEngine engine;
+        private Exchange exchange;
+        private final CountDownLatch never = new CountDownLatch(1);
+        private final List<Expectation<Exchange>> expectations = new ArrayList<Expectation<Exchange>>();
+
+        public ExpectationEngine create() {
+            exchange = new DefaultExchange(new DefaultCamelContext());
+            engine = new ExpectationEngine(4);
+            expectations.add(new Expectation<Exchange>() {
+                @Override public void verify(final Exchange exchange) {}
+            });
+            expectations.add(new Expectation<Exchange>() {
+                @Override public void verify(final Exchange exchange) throws VerificationFailureException {
+                    throw new VerificationFailureException(exchange, "header missing");
+                }
+            });
+            expectations.add(new Expectation<Exchange>() {
+                @Override public void verify(final Exchange exchange) {
+                    throw new IllegalStateException("schema unavailable");
+                }
+            });
+            return engine;
+        }
+
+        public void destroy() {
+            never.countDown();
+            engine.shutdown();
+        }
+
+        public void itShouldReportEveryOutcomeWhenCollectingAll() {
+            final Verdict verdict = engine.evaluate(exchange, expectations, ExpectationEngine.Mode.COLLECT_ALL);
+            specify(verdict.isPassed(), should.equal(false));
+            specify(verdict.getResults().get(0).getStatus(), should.equal(Verdict.Status.PASSED));
+            specify(verdict.getResults().get(1).getStatus(), should.equal(Verdict.Status.FAILED));
+            specify(verdict.getResults().get(2).getStatus(), should.equal(Verdict.Status.ERROR));
+            specify(verdict.getFailures().get(0).getMessage(), should.equal("header missing"));
+        }
+
+        public void itShouldSkipUnfinishedExpectationsAfterTheFirstFailure() {
+            expectations.add(new Expectation<Exchange>() {
+                @Override public void verify(final Exchange exchange) {
+                    try {
+                        never.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            final Verdict verdict = engine.evaluate(exchange, expectations, ExpectationEngine.Mode.FAIL_FAST);
+            specify(verdict.isPassed(), should.equal(false));
+            specify(verdict.getResults().get(3).getStatus(), should.equal(Verdict.Status.SKIPPED));
+        }
+
+        public void itShouldPassWhenEveryExpectationIsMet() throws VerificationFailureException {
+            final Verdict verdict = engine.evaluate(exchange,
+                expectations.subList(0, 1), ExpectationEngine.Mode.FAIL_FAST);
+            specify(verdict.isPassed(), should.equal(true));
+            verdict.assertPassed();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import jdave.Block;
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.axiom.service.metrics.Histogram;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(JDaveRunner.class)
+public class LoadGeneratorSpec extends Specification<LoadGenerator> {
+
+    public class WhenGeneratingLoad {
+
+        private CamelContext context;
+        private LoadGenerator generator;
+        private final AtomicInteger received = new AtomicInteger();
+        private volatile int stallAt = -1;
+
+        public LoadGenerator create() throws Exception {
+            context = new DefaultCamelContext();
+            context.addRoutes(new RouteBuilder() {
+                @Override public void configure() throws Exception {
+                    errorHandler(noErrorHandler());
+                    from("direct:load").process(new Processor() {
+                        @Override public void process(final Exchange exchange) throws Exception {
+                            if (received.incrementAndGet() == stallAt) {
+                                Thread.sleep(300L);
+                            }
+                        }
+                    });
+                }
+            });
+            context.start();
+            generator = new LoadGenerator(context, "direct:load");
+            generator.setBody("payload");
+            return generator;
+        }
+
+        public void destroy() throws Exception {
+            context.stop();
+        }
+
+        public void itShouldSendTheRequestedNumberOfExchangesAtTheTargetRate() {
+            generator.setRate(1000);
+            generator.setCount(50);
+            final LoadReport report = generator.run();
+            specify(report.getSent(), should.equal(50L));
+            specify(report.getFailed(), should.equal(0L));
+            specify(received.get(), should.equal(50));
+            specify(report.getElapsedMillis() >= 45L, should.equal(true));
+        }
+
+        public void itShouldChargeAStallToTheExchangesThatQueuedBehindIt() {
+            stallAt = 3;
+            generator.setRate(100);
+            generator.setCount(30);
+            final LoadReport report = generator.run();
+            specify(report.getLatency().getValueAtPercentile(50.0) >= 50000L, should.equal(true));
+            specify(report.getServiceTime().getValueAtPercentile(50.0) < 50000L, should.equal(true));
+            specify(report.checkLatency(99.0, 100000L).isPassed(), should.equal(false));
+        }
+
+        public void itShouldStopAtTheDeadlineForPoissonArrivals() {
+            generator.setModel(LoadGenerator.Model.POISSON);
+            generator.setSeed(42L);
+            generator.setRate(500);
+            generator.setDuration(100L);
+            final LoadReport report = generator.run();
+            specify(report.getSent() > 0L, should.equal(true));
+            specify(report.getSent() < 200L, should.equal(true));
+        }
+
+        public void itShouldRunAFixedPopulationOfUsersInTheClosedModel() {
+            final Histogram latency = new Histogram();
+            generator.setModel(LoadGenerator.Model.CLOSED);
+            generator.setConcurrency(3);
+            generator.setCount(30);
+            generator.setLatencyHistogram(latency);
+            final LoadReport report = generator.run();
+            specify(report.getSent(), should.equal(30L));
+            specify(latency.getCount(), should.equal(30L));
+            specify(report.checkFailures(0).isPassed(), should.equal(true));
+        }
+
+        public void itShouldRequireACountOrDuration() {
+            generator.setRate(10);
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    generator.run();
+                }
+            }, should.raise(IllegalArgumentException.class));
+        }
+    }
+}
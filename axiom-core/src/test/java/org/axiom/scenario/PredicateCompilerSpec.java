@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import static org.axiom.scenario.ComparisonPredicate.*;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(JDaveRunner.class)
+public class PredicateCompilerSpec extends Specification<PredicateCompiler<Exchange>> {
+
+    public class WhenCompilingComparisonsOnSharedHeaders {
+
+        private int evaluations;
+        private Exchange exchange;
+        private CompiledExpectations<Exchange> compiled;
+        private final List<Expectation<Exchange>> expectations = new ArrayList<Expectation<Exchange>>();
+
+        public PredicateCompiler<Exchange> create() {
+            exchange = new DefaultExchange(new DefaultCamelContext());
+            exchange.getIn().setHeader("type", "order");
+            exchange.getIn().setHeader("size", "42");
+            final Expression<Exchange> type = header("type");
+            final Expression<Exchange> size = header("size");
+            expectations.add(new PredicateExpectation<Exchange>("is an order", isEqualTo(type, "order")));
+            expectations.add(new PredicateExpectation<Exchange>("is an invoice", isEqualTo(type, "invoice")));
+            expectations.add(new PredicateExpectation<Exchange>("is not a refund", isNotEqualTo(type, "refund")));
+            expectations.add(new PredicateExpectation<Exchange>("is large", isGreaterThan(size, 40)));
+            expectations.add(new PredicateExpectation<Exchange>("is exactly 42", isEqualTo(size, 42)));
+            expectations.add(new Expectation<Exchange>() {
+                @Override public void verify(final Exchange exchange) {}
+            });
+            final PredicateCompiler<Exchange> compiler = new PredicateCompiler<Exchange>();
+            compiled = compiler.compile(expectations);
+            return compiler;
+        }
+
+        public void itShouldEvaluateEachExpressionOncePerExchange() {
+            compiled.evaluate(exchange);
+            specify(compiled.getExpressionCount(), should.equal(2));
+            specify(evaluations, should.equal(2));
+        }
+
+        public void itShouldReachTheSameConclusionsAsTheIndividualPredicates() {
+            final Verdict verdict = compiled.evaluate(exchange);
+            specify(verdict.count(Verdict.Status.PASSED), should.equal(5));
+            specify(verdict.getResults().get(1).getStatus(), should.equal(Verdict.Status.FAILED));
+            specify(verdict.getFailures().get(0).getMessage(),
+                should.equal("is an invoice: expected header(type) == invoice but was order"));
+        }
+
+        public void itShouldNotShareDistinctExpressionsThatDescribeThemselvesAlike() {
+            final Expression<Exchange> first = header("type");
+            final Expression<Exchange> second = new Expression<Exchange>() {
+                @Override public Object evaluate(final Exchange exchange) {
+                    return "invoice";
+                }
+
+                @Override public String toString() {
+                    return "header(type)";
+                }
+            };
+            final List<Expectation<Exchange>> alike = new ArrayList<Expectation<Exchange>>();
+            alike.add(new PredicateExpectation<Exchange>("is an order", isEqualTo(first, "order")));
+            alike.add(new PredicateExpectation<Exchange>("is an invoice", isEqualTo(second, "invoice")));
+            final CompiledExpectations<Exchange> separate = new PredicateCompiler<Exchange>().compile(alike);
+
+            specify(separate.getExpressionCount(), should.equal(2));
+            specify(separate.evaluate(exchange).count(Verdict.Status.PASSED), should.equal(2));
+        }
+
+        public void itShouldShareExpressionsSuppliedUnderTheSameKey() {
+            final List<Expectation<Exchange>> keyed = new ArrayList<Expectation<Exchange>>();
+            keyed.add(new PredicateExpectation<Exchange>("is an order", new ComparisonPredicate<Exchange>(
+                "type", header("type"), ComparisonPredicate.Operator.EQUAL, "order")));
+            keyed.add(new PredicateExpectation<Exchange>("is not a refund", new ComparisonPredicate<Exchange>(
+                "type", header("type"), ComparisonPredicate.Operator.NOT_EQUAL, "refund")));
+            final CompiledExpectations<Exchange> shared = new PredicateCompiler<Exchange>().compile(keyed);
+
+            specify(shared.getExpressionCount(), should.equal(1));
+        }
+
+        private Expression<Exchange> header(final String name) {
+            return new Expression<Exchange>() {
+                @Override public Object evaluate(final Exchange exchange) {
+                    evaluations++;
+                    return exchange.getIn().getHeader(name);
+                }
+
+                @Override public String toString() {
+                    return "header(" + name + ")";
+                }
+            };
+        }
+    }
+}
@@ -45,6 +45,26 @@ public class PredicateExpectationSpec extends Specification<PredicateExpectation
             new PredicateExpectation<Exchange>(message, predicate).verify(dummy(Exchange.class));
         }
 
+        public void itShouldReturnTheSameFailureWithoutThrowingWhenCheckingAMismatch() {
+            final Exchange exchange = dummy(Exchange.class);
+            allowing(predicate).matches(exchange);
+            will(returnValue(false));
+            checking(this);
+
+            final VerificationResult result = expectation.check(exchange);
+            specify(result.isPassed(), should.equal(false));
+            specify(expectation.check(exchange), should.equal(result));
+        }
+
+        public void itShouldRaiseAStacklessFailureFromAFailedResult() {
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    VerificationResult.failed("mismatch").assertPassed(dummy(Exchange.class));
+                }
+            }, should.raise(VerificationFailureException.class));
+            specify(VerificationFailureException.stackless(null, "mismatch").getStackTrace().length, should.equal(0));
+        }
+
     }
 
 }
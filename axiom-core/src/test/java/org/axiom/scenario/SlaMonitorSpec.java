@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import jdave.Block;
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.axiom.service.metrics.Histogram;
+import org.axiom.service.metrics.LatencyMonitor;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+@RunWith(JDaveRunner.class)
+public class SlaMonitorSpec extends Specification<SlaMonitor> {
+
+    public class WhenCheckingServiceLevels {
+
+        private final Histogram latency = new Histogram();
+        private SlaMonitor monitor;
+
+        public SlaMonitor create() {
+            monitor = new SlaMonitor();
+            monitor.add(ServiceLevel.latency("orders p99 latency", latency, 99.0, 50000L, 1000L));
+            monitor.add(ServiceLevel.throughput("orders throughput", latency, 100, 1000L));
+            monitor.check(0L);
+            return monitor;
+        }
+
+        public void itShouldNotJudgeAWindowUntilItCloses() {
+            record(10, 900000L);
+            specify(monitor.check(500L).getResults().isEmpty(), should.equal(true));
+            specify(monitor.isPassed(), should.equal(true));
+        }
+
+        public void itShouldPassAWindowThatMeetsEveryServiceLevel() {
+            record(200, 1000L);
+            final Verdict verdict = monitor.check(1000L);
+            specify(verdict.count(Verdict.Status.PASSED), should.equal(2));
+            specify(monitor.isPassed(), should.equal(true));
+        }
+
+        public void itShouldFailWithTheObservedDistributionWhenAServiceLevelIsBreached() throws Exception {
+            record(190, 1000L);
+            record(10, 200000L);
+            final Verdict verdict = monitor.check(1000L);
+            specify(verdict.count(Verdict.Status.FAILED), should.equal(1));
+            specify(monitor.getBreachCount(), should.equal(1L));
+            final WindowReport report = monitor.getBreaches().get(0).getTarget(WindowReport.class);
+            specify(report.getSamples(), should.equal(200L));
+            specify(report.getDistribution().getCount(), should.equal(200L));
+            specify(report.getDistribution().getMax() >= 200000L, should.equal(true));
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    monitor.assertPassed();
+                }
+            }, should.raise(VerificationFailureException.class));
+        }
+
+        public void itShouldJudgeEachWindowOnlyOnWhatWasRecordedInIt() {
+            record(10, 200000L);
+            monitor.check(1000L);
+            record(200, 1000L);
+            final Verdict verdict = monitor.check(2000L);
+            specify(verdict.count(Verdict.Status.PASSED), should.equal(2));
+            specify(monitor.getBreachCount(), should.equal(2L));
+        }
+
+        private void record(final int count, final long micros) {
+            for (int i = 0; i < count; i++) {
+                latency.record(micros);
+            }
+        }
+    }
+
+    public class WhenBindingToARoute {
+
+        public SlaMonitor create() {
+            return new SlaMonitor();
+        }
+
+        public void itShouldShareTheLatencyStatisticsOfTheRoute() {
+            final DefaultCamelContext context = new DefaultCamelContext();
+            final LatencyMonitor latencyMonitor = new LatencyMonitor();
+            context.addInterceptStrategy(latencyMonitor);
+            specify(SlaMonitor.routeLatency(context, "direct:orders"),
+                should.equal(latencyMonitor.routeStatistics("direct:orders").getHistogram()));
+        }
+
+        public void itShouldInstallALatencyMonitorOnContextsWithoutOne() {
+            final DefaultCamelContext context = new DefaultCamelContext();
+            final Histogram histogram = SlaMonitor.routeLatency(context, "direct:orders");
+            specify(context.getInterceptStrategies().size(), should.equal(1));
+            specify(SlaMonitor.routeLatency(context, "direct:orders"), should.equal(histogram));
+            specify(context.getInterceptStrategies().size(), should.equal(1));
+        }
+
+        public void itShouldReplaceTheServiceLevelsOfARouteWhenItIsBoundAgain() {
+            final SlaMonitor monitor = new SlaMonitor();
+            final Histogram latency = new Histogram();
+            monitor.bind("direct:orders", Arrays.asList(
+                ServiceLevel.latency("orders p99 latency", latency, 99.0, 50000L, 1000L),
+                ServiceLevel.throughput("orders throughput", latency, 100, 1000L)));
+            final ServiceLevel replacement = ServiceLevel.latency("orders p99 latency", latency, 99.0, 20000L, 1000L);
+            monitor.bind("direct:orders", Arrays.asList(replacement));
+            monitor.bind("direct:refunds", Arrays.asList(
+                ServiceLevel.throughput("refunds throughput", latency, 10, 1000L)));
+            specify(monitor.getServiceLevels().size(), should.equal(2));
+            specify(monitor.getServiceLevels().get(0), should.equal(replacement));
+        }
+    }
+}
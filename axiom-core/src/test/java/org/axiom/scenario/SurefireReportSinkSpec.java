@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.camel.Exchange;
+import org.apache.commons.io.FileUtils;
+import org.junit.runner.RunWith;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+@RunWith(JDaveRunner.class)
+public class SurefireReportSinkSpec extends Specification<SurefireReportSink> {
+
+    private final Expectation<Exchange> expectation = new Expectation<Exchange>() {
+        @Override public void verify(final Exchange exchange) {
+        }
+
+        @Override public String toString() {
+            return "body is an order";
+        }
+    };
+
+    public class WhenStreamingResults {
+
+        private File file;
+        private SurefireReportSink sink;
+
+        public SurefireReportSink create() throws IOException {
+            file = File.createTempFile("TEST-axiom", ".xml");
+            sink = new SurefireReportSink(file, "soak");
+            return sink;
+        }
+
+        public void destroy() throws IOException {
+            sink.close();
+            FileUtils.deleteQuietly(file);
+        }
+
+        public void itShouldWriteAWellFormedReportOnEveryFlush() throws Exception {
+            sink.report(verdict(passed(), failed("no order id"), skipped()));
+            sink.flush();
+            Element suite = parse().getDocumentElement();
+            specify(suite.getAttribute("tests"), should.equal("3"));
+            specify(suite.getAttribute("failures"), should.equal("1"));
+            specify(suite.getAttribute("skipped"), should.equal("1"));
+            specify(suite.getElementsByTagName("testcase").getLength(), should.equal(3));
+
+            sink.report(verdict(passed()));
+            sink.flush();
+            suite = parse().getDocumentElement();
+            specify(suite.getAttribute("tests"), should.equal("4"));
+            specify(suite.getElementsByTagName("testcase").getLength(), should.equal(4));
+        }
+
+        public void itShouldRollUpRepeatedIdenticalFailures() throws Exception {
+            for (int i = 0; i < 100; i++) {
+                sink.report(verdict(failed("no order id")));
+            }
+            sink.report(verdict(failed("no customer")));
+            sink.close();
+            final Element suite = parse().getDocumentElement();
+            specify(suite.getAttribute("failures"), should.equal("101"));
+            specify(suite.getElementsByTagName("failure").getLength(), should.equal(2));
+            specify(sink.getRolledUp(), should.equal(99L));
+            specify(suite.getElementsByTagName("system-out").item(0).getTextContent()
+                .contains("no order id (repeated 99 more times)"), should.equal(true));
+        }
+
+        public void itShouldWriteResultsOutOnceTheBufferFills() throws Exception {
+            sink.setBufferSize(256);
+            final long empty = file.length();
+            for (int i = 0; i < 10; i++) {
+                sink.report(verdict(passed()));
+            }
+            specify(file.length() > empty, should.equal(true));
+        }
+
+        public void itShouldReceiveVerdictsFromTheEngine() throws Exception {
+            final ExpectationEngine engine = new ExpectationEngine(1);
+            engine.setReportSink(sink);
+            engine.evaluate((Exchange) null, Arrays.asList(expectation), ExpectationEngine.Mode.COLLECT_ALL);
+            engine.shutdown();
+            sink.flush();
+            specify(parse().getDocumentElement().getAttribute("tests"), should.equal("1"));
+        }
+
+        private Document parse() throws Exception {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+        }
+    }
+
+    private Verdict verdict(final Verdict.Result... results) {
+        return new Verdict(Arrays.asList(results), 1000L);
+    }
+
+    private Verdict.Result passed() {
+        return new Verdict.Result(expectation, Verdict.Status.PASSED, null, 1000L);
+    }
+
+    private Verdict.Result failed(final String message) {
+        return new Verdict.Result(expectation, Verdict.Status.FAILED,
+            VerificationFailureException.stackless(null, message), 1000L);
+    }
+
+    private Verdict.Result skipped() {
+        return new Verdict.Result(expectation, Verdict.Status.SKIPPED, null, 0L);
+    }
+}
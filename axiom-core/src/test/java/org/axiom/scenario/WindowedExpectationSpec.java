@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.scenario;
+
+import jdave.Block;
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.Predicate;
+import org.apache.camel.builder.ExpressionBuilder;
+import org.apache.camel.builder.PredicateBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.runner.RunWith;
+
+@RunWith(JDaveRunner.class)
+public class WindowedExpectationSpec extends Specification<WindowedExpectation<Exchange>> {
+
+    private static final long START = 1000000L;
+    private static final long MINUTE = 60000L;
+
+    private final DefaultCamelContext context = new DefaultCamelContext();
+    private final Expression<Exchange> latency = ExpressionBuilder.headerExpression("ack-millis");
+    private final Predicate<Exchange> rejected =
+        PredicateBuilder.isEqualTo(ExpressionBuilder.<Exchange>headerExpression("status"),
+            ExpressionBuilder.<Exchange>constantExpression("rejected"));
+
+    public class WhenCountingRejectionsPerMinute {
+
+        private WindowedExpectation<Exchange> expectation;
+
+        public WindowedExpectation<Exchange> create() {
+            return expectation = WindowedExpectation.atMost("rejections per minute", MINUTE, rejected, 5);
+        }
+
+        public void itShouldReportTheSixthRejectionImmediately() throws VerificationFailureException {
+            for (int i = 0; i < 5; i++) {
+                expectation.observe(exchange("rejected", 0), START + i);
+            }
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    expectation.observe(exchange("rejected", 0), START + 10);
+                }
+            }, should.raise(VerificationFailureException.class));
+        }
+
+        public void itShouldStartCountingAfreshInTheNextWindow() throws VerificationFailureException {
+            for (int i = 0; i < 5; i++) {
+                expectation.observe(exchange("rejected", 0), START + i);
+            }
+            for (int i = 0; i < 5; i++) {
+                expectation.observe(exchange("rejected", 0), START + MINUTE + i);
+            }
+            expectation.close();
+        }
+    }
+
+    public class WhenExpectingAMinimumNumberOfOrdersPerMinute {
+
+        private WindowedExpectation<Exchange> expectation;
+
+        public WindowedExpectation<Exchange> create() {
+            return expectation = WindowedExpectation.atLeast("orders per minute", MINUTE, null, 1);
+        }
+
+        public void itShouldReportTheWindowsInWhichNothingArrived() throws VerificationFailureException {
+            expectation.observe(exchange("accepted", 0), START);
+            WindowReport report = null;
+            try {
+                expectation.observe(exchange("accepted", 0), START + 3 * MINUTE);
+            } catch (VerificationFailureException e) {
+                report = e.getTarget(WindowReport.class);
+            }
+            specify(report, should.not().equal(null));
+            specify(report.getSamples(), should.equal(0L));
+            specify(report.getWindowStart(), should.equal(START + MINUTE));
+            specify(report.getWindowEnd(), should.equal(START + 3 * MINUTE));
+        }
+
+        public void itShouldReportTheWindowsAfterTrafficStoppedWhenClosed() throws VerificationFailureException {
+            expectation.observe(exchange("accepted", 0), START);
+            WindowReport report = null;
+            try {
+                expectation.close(START + 3 * MINUTE);
+            } catch (VerificationFailureException e) {
+                report = e.getTarget(WindowReport.class);
+            }
+            specify(report, should.not().equal(null));
+            specify(report.getSamples(), should.equal(0L));
+            specify(report.getWindowStart(), should.equal(START + MINUTE));
+            specify(report.getWindowEnd(), should.equal(START + 3 * MINUTE));
+        }
+
+        public void itShouldNotHoldAWindowCutShortByTheEndOfTheStreamToTheMinimum()
+            throws VerificationFailureException {
+            final WindowedExpectation<Exchange> twoPerMinute =
+                WindowedExpectation.atLeast("orders per minute", MINUTE, null, 2);
+            twoPerMinute.observe(exchange("accepted", 0), START);
+            twoPerMinute.close(START + MINUTE / 2);
+        }
+
+        public void itShouldNotReportConsecutiveWindowsThatEachSawTraffic() throws VerificationFailureException {
+            expectation.observe(exchange("accepted", 0), START);
+            expectation.observe(exchange("accepted", 0), START + MINUTE);
+            expectation.observe(exchange("accepted", 0), START + 2 * MINUTE);
+        }
+    }
+
+    public class WhenMeasuringLatencyPercentiles {
+
+        private WindowedExpectation<Exchange> expectation;
+
+        public WindowedExpectation<Exchange> create() {
+            return expectation = WindowedExpectation.percentile("acknowledgement latency", MINUTE, latency, 99.0, 200);
+        }
+
+        public void itShouldJudgeTheWindowOnceItHasPassed() throws VerificationFailureException {
+            for (int i = 0; i < 100; i++) {
+                expectation.observe(exchange("accepted", i < 95 ? 20 : 500), START + i);
+            }
+            WindowReport report = null;
+            try {
+                expectation.observe(exchange("accepted", 20), START + MINUTE);
+            } catch (VerificationFailureException e) {
+                report = e.getTarget(WindowReport.class);
+            }
+            specify(report, should.not().equal(null));
+            specify(report.getSamples(), should.equal(100L));
+            specify(report.getObserved(), should.equal(500.0));
+            specify(report.getWindowStart(), should.equal(START));
+        }
+
+        public void itShouldPassWhenTheLatencyIsWithinTheLimit() throws VerificationFailureException {
+            for (int i = 0; i < 100; i++) {
+                expectation.observe(exchange("accepted", 150), START + i);
+            }
+            expectation.close();
+        }
+    }
+
+    public class WhenMeasuringRatios {
+
+        private WindowedExpectation<Exchange> expectation;
+
+        public WindowedExpectation<Exchange> create() {
+            return expectation = WindowedExpectation.ratio("rejection ratio", MINUTE, rejected, 0.0, 0.01);
+        }
+
+        public void itShouldReportAWindowWithTooManyMatches() throws VerificationFailureException {
+            for (int i = 0; i < 10; i++) {
+                expectation.observe(exchange(i == 0 ? "rejected" : "accepted", 0), START + i);
+            }
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    expectation.close();
+                }
+            }, should.raise(VerificationFailureException.class));
+        }
+    }
+
+    private Exchange exchange(final String status, final long ackMillis) {
+        final Exchange exchange = new DefaultExchange(context);
+        exchange.getIn().setHeader("status", status);
+        exchange.getIn().setHeader("ack-millis", ackMillis);
+        return exchange;
+    }
+}
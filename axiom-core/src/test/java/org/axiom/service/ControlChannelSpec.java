@@ -302,6 +302,8 @@ public class ControlChannelSpec extends Specification<ControlChannel> {
         public void itShouldConfigureTheTracerBasedOnSuppliedProperties() {
             stubConfiguration(mockContext, mockRegistry, mockConfig);
             stubConfig(TraceBuilder.TRACE_ENABLED, false);
+            allowing(mockRegistry).lookup(with(any(String.class)), with(any(Class.class)));
+            will(returnValue(null));
             ignoring(mockTracer).setEnabled(with(any(Boolean.class)));
 
             one(mockTracer).isEnabled();
@@ -323,6 +325,8 @@ public class ControlChannelSpec extends Specification<ControlChannel> {
             stubConfiguration(mockContext, mockRegistry, mockConfig);
             shutdownChannel = mock(mockery(), ShutdownChannel.class);
             stubLookup(Environment.SHUTDOWN_CHANNEL_ID, shutdownChannel);
+            allowing(mockRegistry).lookup(with(any(String.class)), with(any(Class.class)));
+            will(returnValue(null));
             checking(this);
             return channel = new ControlChannel(mockContext,
                 mockTracer, mockConfig, shutdownChannel);
@@ -372,6 +376,8 @@ public class ControlChannelSpec extends Specification<ControlChannel> {
             stubRegistry();
             shutdownChannel = mock(mockery(), ShutdownChannel.class);
             //stubLookup(Environment.SHUTDOWN_CHANNEL_ID, shutdownChannel);
+            allowing(mockRegistry).lookup(with(any(String.class)), with(any(Class.class)));
+            will(returnValue(null));
             checking(this);
             return channel = new ControlChannel(mockContext,
                 mockTracer, mockConfig, shutdownChannel);
@@ -384,6 +390,23 @@ public class ControlChannelSpec extends Specification<ControlChannel> {
             channel.destroy();
         }
 
+        public void itShouldStopJustTheHostContextForTheShutdownOrchestrator() throws Exception {
+            one(mockContext).stop();
+            checking(this);
+
+            channel.destroyHost();
+        }
+
+        public void itShouldLeaveTheChannelAbleToDeliverSignals() throws Exception {
+            final ControlLane lane = channel.getControlLane();
+            allowing(mockContext).stop();
+            checking(this);
+
+            channel.destroy();
+            specify(lane.isShutdown(), should.equal(true));
+            specify(channel.getControlLane().isShutdown(), should.equal(false));
+        }
+
         public void itShouldWrapAnyUnderlyingExceptions() throws Exception {
             one(mockContext).stop();
             will(throwException(new AlreadyStoppedException()));
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service;
+
+import jdave.Block;
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.axiom.integration.Environment;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+
+@RunWith(JDaveRunner.class)
+public class ControlLaneSpec extends Specification<ControlLane> {
+
+    private final List<String> delivered = Collections.synchronizedList(new ArrayList<String>());
+
+    public class WhenDeliveringSignals {
+
+        private ControlLane lane;
+        private final CountDownLatch blocked = new CountDownLatch(1);
+
+        public ControlLane create() {
+            delivered.clear();
+            lane = new ControlLane();
+            return lane;
+        }
+
+        public void destroy() {
+            blocked.countDown();
+            lane.shutdown();
+        }
+
+        public void itShouldDeliverSignalsInOrder() throws Exception {
+            lane.submit("block", new Callable<Object>() {
+                @Override public Object call() throws Exception {
+                    blocked.await();
+                    return null;
+                }
+            });
+            final Future<String> first = lane.submit(Environment.SIG_CONFIGURE, new Delivery("configure-1"));
+            final Future<String> second = lane.submit(Environment.SIG_CONFIGURE, new Delivery("configure-2"));
+            blocked.countDown();
+            second.get();
+            specify(first.isDone(), should.equal(true));
+            specify(delivered, should.containInOrder("configure-1", "configure-2"));
+        }
+
+        public void itShouldLetTerminateOvertakeQueuedSignals() throws Exception {
+            lane.submit("block", new Callable<Object>() {
+                @Override public Object call() throws Exception {
+                    blocked.await();
+                    return null;
+                }
+            });
+            final Future<String> configure = lane.submit(Environment.SIG_CONFIGURE, new Delivery("configure"));
+            lane.submit(Environment.SIG_TERMINATE, new Delivery("terminate"));
+            blocked.countDown();
+            configure.get();
+            specify(delivered, should.containInOrder("terminate", "configure"));
+        }
+
+        public void itShouldRunSignalsSentFromTheLaneImmediately() {
+            final String result = lane.execute(Environment.SIG_CONFIGURE, new Callable<String>() {
+                @Override public String call() {
+                    return lane.execute(Environment.SIG_TERMINATE, new Delivery("nested"));
+                }
+            });
+            specify(result, should.equal("nested"));
+        }
+
+        public void itShouldRethrowFailuresToTheSender() {
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    lane.execute(Environment.SIG_CONFIGURE, new Callable<Object>() {
+                        @Override public Object call() {
+                            throw new IllegalStateException("bad routes");
+                        }
+                    });
+                }
+            }, should.raise(IllegalStateException.class));
+        }
+
+        public void itShouldRefuseSignalsOnceShutDown() {
+            lane.shutdown();
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    lane.execute(Environment.SIG_CONFIGURE, new Delivery("late"));
+                }
+            }, should.raise(LifecycleException.class));
+        }
+    }
+
+    private class Delivery implements Callable<String> {
+
+        private final String name;
+
+        Delivery(final String name) {
+            this.name = name;
+        }
+
+        @Override public String call() {
+            delivered.add(name);
+            return name;
+        }
+    }
+}
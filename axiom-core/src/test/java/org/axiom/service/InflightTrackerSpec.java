@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+@RunWith(JDaveRunner.class)
+public class InflightTrackerSpec extends Specification<InflightTracker> {
+
+    public class WhenDrainingARunningContext {
+
+        private CamelContext context;
+        private InflightTracker tracker;
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final AtomicReference<Exchange> completed = new AtomicReference<Exchange>();
+
+        public InflightTracker create() throws Exception {
+            context = new DefaultCamelContext();
+            tracker = new InflightTracker();
+            tracker.setCamelContext(context);
+            context.addRoutes(new RouteBuilder() {
+                @Override public void configure() throws Exception {
+                    errorHandler(noErrorHandler());
+                    from("direct:slow").process(new Processor() {
+                        @Override public void process(final Exchange exchange) throws Exception {
+                            entered.countDown();
+                            release.await(5, TimeUnit.SECONDS);
+                        }
+                    }).to("mock:done");
+                    from("direct:hop").process(new Processor() {
+                        @Override public void process(final Exchange exchange) throws Exception {
+                            entered.countDown();
+                            release.await(5, TimeUnit.SECONDS);
+                        }
+                    }).to("direct:next");
+                    from("direct:next").to("mock:done");
+                }
+            });
+            context.start();
+            return tracker;
+        }
+
+        public void destroy() throws Exception {
+            release.countDown();
+            context.stop();
+        }
+
+        public void itShouldWaitForInflightExchangesToComplete() throws Exception {
+            final Thread sender = sendInBackground();
+            entered.await(5, TimeUnit.SECONDS);
+            specify(tracker.getInflightCount(), should.equal(1L));
+            new Thread() {
+                @Override public void run() {
+                    try {
+                        Thread.sleep(100L);
+                    } catch (InterruptedException ignored) {
+                    }
+                    release.countDown();
+                }
+            }.start();
+
+            final DrainReport report = tracker.drain(5000L);
+            sender.join(5000L);
+            specify(report.getDrained(), should.equal(1L));
+            specify(report.getAbandoned(), should.equal(0L));
+            specify(tracker.getInflightCount(), should.equal(0L));
+        }
+
+        public void itShouldLetInflightExchangesCrossIntoAnotherRouteWhilstDraining() throws Exception {
+            final Thread sender = sendInBackground("direct:hop");
+            entered.await(5, TimeUnit.SECONDS);
+            tracker.beginDrain();
+            release.countDown();
+
+            final DrainReport report = tracker.drain(5000L);
+            sender.join(5000L);
+            specify(completed.get().getException(), should.equal(null));
+            specify(report.getAbandoned(), should.equal(0L));
+            specify(tracker.getRejectedCount(), should.equal(0L));
+        }
+
+        public void itShouldAcceptExchangesAgainOnceReset() {
+            tracker.beginDrain();
+            tracker.reset();
+            specify(tracker.isDraining(), should.equal(false));
+            release.countDown();
+            final ProducerTemplate<Exchange> producer = context.createProducerTemplate();
+            final Exchange exchange = producer.send("direct:slow", new Processor() {
+                @Override public void process(final Exchange exchange) {
+                    exchange.getIn().setBody("later");
+                }
+            });
+            specify(exchange.getException(), should.equal(null));
+        }
+
+        public void itShouldReportExchangesAbandonedAtTheDeadline() throws Exception {
+            sendInBackground();
+            entered.await(5, TimeUnit.SECONDS);
+            final DrainReport report = tracker.drain(50L);
+            specify(report.getDrained(), should.equal(0L));
+            specify(report.getAbandoned(), should.equal(1L));
+        }
+
+        public void itShouldStillReportWhenInterruptedWhilstDraining() throws Exception {
+            sendInBackground();
+            entered.await(5, TimeUnit.SECONDS);
+            Thread.currentThread().interrupt();
+            final DrainReport report = tracker.drain(5000L);
+            specify(Thread.interrupted(), should.equal(true));
+            specify(report.getDrained(), should.equal(0L));
+            specify(report.getAbandoned(), should.equal(1L));
+        }
+
+        public void itShouldRejectNewExchangesOnceDraining() {
+            tracker.beginDrain();
+            final ProducerTemplate<Exchange> producer = context.createProducerTemplate();
+            final Exchange exchange = producer.send("direct:slow", new Processor() {
+                @Override public void process(final Exchange exchange) {
+                    exchange.getIn().setBody("late");
+                }
+            });
+            specify(exchange.getException() instanceof RejectedExecutionException, should.equal(true));
+            specify(tracker.getRejectedCount(), should.equal(1L));
+        }
+
+        private Thread sendInBackground() {
+            return sendInBackground("direct:slow");
+        }
+
+        private Thread sendInBackground(final String uri) {
+            final ProducerTemplate<Exchange> producer = context.createProducerTemplate();
+            final Thread sender = new Thread() {
+                @Override public void run() {
+                    completed.set(producer.send(uri, new Processor() {
+                        @Override public void process(final Exchange exchange) {
+                            exchange.getIn().setBody("payload");
+                        }
+                    }));
+                }
+            };
+            sender.start();
+            return sender;
+        }
+    }
+}
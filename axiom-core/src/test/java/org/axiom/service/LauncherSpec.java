@@ -4,9 +4,12 @@ import jdave.Specification;
 import jdave.junit4.JDaveRunner;
 import static org.apache.commons.collections.CollectionUtils.*;
 import org.apache.commons.collections.Transformer;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
 import org.apache.commons.io.FileUtils;
 import static org.apache.commons.io.FilenameUtils.*;
 import org.axiom.integration.Environment;
+import org.axiom.integration.EnvironmentSettings;
 import static org.axiom.integration.Environment.*;
 import org.axiom.integration.camel.RouteConfigurationScriptEvaluator;
 import org.junit.runner.RunWith;
@@ -85,6 +88,13 @@ public class LauncherSpec extends Specification<Launcher> {
             stubConfig(Environment.SCRIPT_REPOSITORY_URI, conf);
             stubConfig(Environment.ENDORSED_PLUGINS,
                 concat(concat(Environment.AXIOM_HOME, ".axiom"), "plugins"));
+
+            final Configuration settings = new BaseConfiguration();
+            settings.setProperty(Environment.AXIOM_HOME, concat(Environment.TMPDIR, ".axiom"));
+            settings.setProperty(Environment.SCRIPT_REPOSITORY_URI, conf);
+            settings.setProperty(Environment.SCRIPT_FILE_EXTENSIONS, "rb");
+            allowing(mockChannel).getEnvironmentSettings();
+            will(returnValue(EnvironmentSettings.from(settings)));
         }
 
         private String prepConfDirectory() throws IOException {
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service;
+
+import jdave.Block;
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.axiom.integration.Environment;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+@RunWith(JDaveRunner.class)
+public class LifecycleCoordinatorSpec extends Specification<LifecycleCoordinator> {
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+    public class WhenCoordinatingDependentContexts {
+
+        private LifecycleCoordinator coordinator;
+
+        public LifecycleCoordinator create() {
+            events.clear();
+            coordinator = new LifecycleCoordinator();
+            coordinator.setPoolSize(4);
+            coordinator.register("db", new RecordingContext("db", false));
+            coordinator.register("left", new RecordingContext("left", false), "db");
+            coordinator.register("right", new RecordingContext("right", false), "db");
+            coordinator.register("web", new RecordingContext("web", false), "left", "right");
+            return coordinator;
+        }
+
+        public void itShouldStartDependenciesFirst() {
+            coordinator.startAll();
+            specify(events.get(0), should.equal("start db"));
+            specify(events.get(3), should.equal("start web"));
+        }
+
+        public void itShouldStopDependentsFirst() {
+            coordinator.startAll();
+            events.clear();
+            coordinator.stopAll();
+            specify(events.get(0), should.equal("stop web"));
+            specify(events.get(3), should.equal("stop db"));
+        }
+
+        public void itShouldReportTimingsForEveryContext() {
+            coordinator.startAll();
+            specify(coordinator.getStartTimings().keySet(),
+                should.containAll("db", "left", "right", "web"));
+        }
+
+        public void itShouldPukeIfTheDependenciesAreCyclic() {
+            coordinator.register("db", new RecordingContext("db", false), "web");
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    coordinator.startAll();
+                }
+            }, should.raise(LifecycleException.class));
+            specify(events.isEmpty(), should.equal(true));
+        }
+
+        public void itShouldNotStartDependentsOfAFailedContext() {
+            coordinator.register("db", new RecordingContext("db", true));
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    coordinator.startAll();
+                }
+            }, should.raise(LifecycleException.class));
+            specify(events, should.containExactly("start db"));
+        }
+    }
+
+    public class WhenRegisteringManagedContextsAsTheyAreCreated {
+
+        private LifecycleCoordinator coordinator;
+
+        public LifecycleCoordinator create() {
+            events.clear();
+            final Configuration config = new BaseConfiguration();
+            config.setProperty(LifecycleCoordinator.DEPENDENCIES_PREFIX + ".web", "db");
+            coordinator = new LifecycleCoordinator();
+            coordinator.setConfiguration(config);
+            coordinator.postProcessAfterInitialization(new RecordingContext("web", false), "web");
+            coordinator.postProcessAfterInitialization(new RecordingContext("db", false), "db");
+            coordinator.postProcessAfterInitialization(
+                new RecordingContext("host", false), Environment.HOST_CONTEXT);
+            coordinator.postProcessAfterInitialization(new Object(), "not-a-context");
+            return coordinator;
+        }
+
+        public void itShouldStartThemInTheDeclaredOrder() {
+            coordinator.startAll();
+            specify(events, should.containInOrder("start db", "start web"));
+        }
+
+        public void itShouldLeaveTheHostContextToTheControlChannel() {
+            coordinator.startAll();
+            specify(events.contains("start host"), should.equal(false));
+        }
+    }
+
+    private class RecordingContext extends DefaultCamelContext {
+
+        private final String label;
+        private final boolean failToStart;
+
+        RecordingContext(final String label, final boolean failToStart) {
+            this.label = label;
+            this.failToStart = failToStart;
+        }
+
+        @Override public void start() throws Exception {
+            events.add("start " + label);
+            if (failToStart) {
+                throw new IllegalStateException(label + " failed to start");
+            }
+        }
+
+        @Override public void stop() throws Exception {
+            events.add("stop " + label);
+        }
+    }
+}
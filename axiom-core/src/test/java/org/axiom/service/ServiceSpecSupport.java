@@ -72,7 +72,7 @@ public class ServiceSpecSupport extends SpecSupport {
         mockery.checking(new SpecSupport() {{
             stubConfiguration(mockContext, mockRegistry, mockConfig);
             allowing(mockRegistry).lookup(with(any(String.class)), with(any(Class.class)));
-            will(returnValue(mockConfig));
+            will(returnValue(null));
             justIgnore(mockRegistry, mockConfig, mockTracer);
 
             allowing(mockContext).addInterceptStrategy((InterceptStrategy) with(anything()));
@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service;
+
+import jdave.Block;
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.junit.runner.RunWith;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+@RunWith(JDaveRunner.class)
+public class ShutdownOrchestratorSpec extends Specification<ShutdownOrchestrator> {
+
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+    public class WhenRunningPhases {
+
+        private ShutdownOrchestrator orchestrator;
+        private final CountDownLatch never = new CountDownLatch(1);
+
+        public ShutdownOrchestrator create() {
+            events.clear();
+            orchestrator = new ShutdownOrchestrator();
+            orchestrator.addListener(new RecordingListener());
+            orchestrator.addPhase("first", 1000, new RecordingPhase("first"));
+            orchestrator.addPhase("stuck", 50, new ShutdownPhase() {
+                @Override public void run(final long timeout) throws Exception {
+                    never.await();
+                }
+            });
+            orchestrator.addPhase("broken", 1000, new ShutdownPhase() {
+                @Override public void run(final long timeout) {
+                    throw new LifecycleException("broken");
+                }
+            });
+            orchestrator.addPhase("skipped", 0, new RecordingPhase("skipped"));
+            orchestrator.addPhase("last", 1000, new RecordingPhase("last"));
+            return orchestrator;
+        }
+
+        public void itShouldRunPhasesInOrderAndCarryOnPastFailures() {
+            orchestrator.shutdown();
+            specify(events, should.containInOrder(
+                "started first", "run first", "completed first=COMPLETED",
+                "started stuck", "completed stuck=TIMED_OUT",
+                "started broken", "completed broken=FAILED",
+                "started skipped", "completed skipped=SKIPPED",
+                "started last", "run last", "completed last=COMPLETED",
+                "finished"));
+        }
+
+        public void itShouldReportTheOutcomeOfEachPhase() {
+            final ShutdownReport report = orchestrator.shutdown();
+            specify(report.isComplete(), should.equal(false));
+            specify(report.getPhase("stuck").getOutcome(), should.equal(ShutdownReport.Outcome.TIMED_OUT));
+            specify(report.getPhase("broken").getCause().getMessage(), should.equal("broken"));
+            specify(report.getPhase("skipped").getOutcome(), should.equal(ShutdownReport.Outcome.SKIPPED));
+        }
+
+        public void itShouldNotWaitBeyondAPhaseDeadline() {
+            final ShutdownReport report = orchestrator.shutdown();
+            specify(report.getPhase("stuck").getElapsedMillis() < 1000, should.equal(true));
+        }
+
+        public void itShouldOnlyShutDownOnce() {
+            final ShutdownReport report = orchestrator.shutdown();
+            events.clear();
+            specify(orchestrator.shutdown(), should.equal(report));
+            specify(events.isEmpty(), should.equal(true));
+        }
+    }
+
+    public class WhenFlushing {
+
+        private ShutdownOrchestrator orchestrator;
+
+        public ShutdownOrchestrator create() {
+            events.clear();
+            orchestrator = new ShutdownOrchestrator();
+            orchestrator.addFlushable(new Flushable() {
+                @Override public void flush() throws IOException {
+                    throw new IOException("disk full");
+                }
+            });
+            orchestrator.addFlushable(new Flushable() {
+                @Override public void flush() {
+                    events.add("flushed");
+                }
+            });
+            return orchestrator;
+        }
+
+        public void itShouldFlushEverySinkEvenIfOneFails() {
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    orchestrator.flush();
+                }
+            }, should.raise(IOException.class));
+            specify(events, should.containExactly("flushed"));
+        }
+    }
+
+    public class WhenDraining {
+
+        public ShutdownOrchestrator create() {
+            return new ShutdownOrchestrator();
+        }
+
+        public void itShouldLeaveTimeToReportBeforeThePhaseDeadline() {
+            specify(ShutdownOrchestrator.drainBudget(10000L), should.equal(9750L));
+            specify(ShutdownOrchestrator.drainBudget(1000L), should.equal(900L));
+            specify(ShutdownOrchestrator.drainBudget(1L), should.equal(1L));
+        }
+    }
+
+    private class RecordingPhase implements ShutdownPhase {
+
+        private final String name;
+
+        RecordingPhase(final String name) {
+            this.name = name;
+        }
+
+        @Override public void run(final long timeout) {
+            events.add("run " + name);
+        }
+    }
+
+    private class RecordingListener implements ShutdownListener {
+
+        @Override public void phaseStarted(final String phase, final long timeout) {
+            events.add("started " + phase);
+        }
+
+        @Override public void phaseCompleted(final ShutdownReport.PhaseResult result) {
+            events.add("completed " + result.getName() + "=" + result.getOutcome());
+        }
+
+        @Override public void shutdownCompleted(final ShutdownReport report) {
+            events.add("finished");
+        }
+    }
+}
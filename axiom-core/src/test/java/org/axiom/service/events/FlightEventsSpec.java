@@ -0,0 +1,107 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.events;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(JDaveRunner.class)
+public class FlightEventsSpec extends Specification<EventSink> {
+
+    public class WhenNothingIsRecording {
+
+        public EventSink create() {
+            FlightEvents.setSink(FlightEvents.DISABLED);
+            return FlightEvents.getSink();
+        }
+
+        public void itShouldHandOutTheDisabledProbe() {
+            specify(FlightEvents.begin(EventKind.CONTEXT_START, "host"),
+                should.equal(EventProbe.DISABLED));
+        }
+
+        public void itShouldNotBeginInstantaneousEvents() {
+            final RecordingSink sink = new RecordingSink(false);
+            FlightEvents.setSink(sink);
+            FlightEvents.emit(EventKind.CONTROL_SIGNAL, "start", null);
+            specify(sink.events.isEmpty(), should.equal(true));
+        }
+    }
+
+    public class WhenRecording {
+
+        private RecordingSink sink;
+
+        public EventSink create() {
+            FlightEvents.setSink(sink = new RecordingSink(true));
+            return sink;
+        }
+
+        public void destroy() {
+            FlightEvents.setSink(FlightEvents.DISABLED);
+        }
+
+        public void itShouldCommitEventsWithTheirOutcome() {
+            FlightEvents.begin(EventKind.SCRIPT_EVALUATION, "bootstrap.rb").commit("done", true);
+            specify(sink.events.size(), should.equal(1));
+            specify(sink.events.get(0), should.equal("SCRIPT_EVALUATION:bootstrap.rb:done:true"));
+        }
+
+        public void itShouldCommitInstantaneousEventsImmediately() {
+            FlightEvents.emit(EventKind.SHUTDOWN_PHASE, "signal", "terminate");
+            specify(sink.events.get(0), should.equal("SHUTDOWN_PHASE:signal:terminate:false"));
+        }
+    }
+
+    private static class RecordingSink implements EventSink {
+
+        private final boolean enabled;
+        private final List<String> events = new ArrayList<String>();
+
+        RecordingSink(final boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        @Override public boolean isEnabled(final EventKind kind) {
+            return enabled;
+        }
+
+        @Override public EventProbe begin(final EventKind kind, final String subject) {
+            return new EventProbe() {
+                @Override public void commit(final String detail, final boolean failed) {
+                    events.add(kind + ":" + subject + ":" + detail + ":" + failed);
+                }
+            };
+        }
+    }
+}
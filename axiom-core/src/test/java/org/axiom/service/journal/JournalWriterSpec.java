@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.journal;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.commons.io.FileUtils;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@RunWith(JDaveRunner.class)
+public class JournalWriterSpec extends Specification<JournalWriter> {
+
+    public class WhenRecordingExchanges {
+
+        private File file;
+        private JournalWriter writer;
+
+        public JournalWriter create() throws IOException {
+            file = File.createTempFile("axiom-journal", ".journal");
+            file.delete();
+            writer = new JournalWriter(file);
+            return writer;
+        }
+
+        public void destroy() throws IOException {
+            writer.close();
+            FileUtils.deleteQuietly(file);
+        }
+
+        public void itShouldReadBackBodiesHeadersAndOffsets() throws IOException {
+            final Map<String, Object> headers = new LinkedHashMap<String, Object>();
+            headers.put("name", "first");
+            headers.put("count", 42L);
+            headers.put("size", 7);
+            headers.put("flag", true);
+            headers.put("ratio", 0.5);
+            headers.put("missing", null);
+            writer.append("<order id='1'/>", headers, 1000000L);
+            writer.append(new byte[] { 1, 2, 3 }, null, 3500000L);
+            writer.close();
+
+            final JournalReader reader = new JournalReader(file);
+            final JournalEntry first = reader.next();
+            specify(first.getOffsetMicros(), should.equal(0L));
+            specify(first.getBody(), should.equal("<order id='1'/>"));
+            specify(first.getHeaders(), should.equal(headers));
+
+            final JournalEntry second = reader.next();
+            specify(second.getOffsetMicros(), should.equal(2500L));
+            specify(Arrays.equals((byte[]) second.getBody(), new byte[] { 1, 2, 3 }), should.equal(true));
+            specify(second.getHeaders().isEmpty(), should.equal(true));
+            specify(reader.next(), should.equal(null));
+            reader.close();
+        }
+
+        public void itShouldAppendToAnExistingJournal() throws IOException {
+            writer.append("one", null, 0L);
+            writer.close();
+            writer = new JournalWriter(file);
+            writer.append("two", null, 0L);
+            writer.close();
+
+            final JournalReader reader = new JournalReader(file);
+            specify(reader.next().getBody(), should.equal("one"));
+            specify(reader.next().getBody(), should.equal("two"));
+            specify(reader.next(), should.equal(null));
+            reader.close();
+        }
+
+        public void itShouldStopCleanlyAtAPartiallyWrittenRecord() throws IOException {
+            writer.append("complete", new HashMap<String, Object>(), 0L);
+            writer.append("torn", new HashMap<String, Object>(), 10000L);
+            writer.close();
+            final RandomAccessFile raw = new RandomAccessFile(file, "rw");
+            raw.setLength(raw.length() - 3);
+            raw.close();
+
+            final JournalReader reader = new JournalReader(file);
+            specify(reader.next().getBody(), should.equal("complete"));
+            specify(reader.next(), should.equal(null));
+            reader.close();
+        }
+
+        public void itShouldCountAppendedExchanges() throws IOException {
+            writer.append("a", null, 0L);
+            writer.append("b", null, 1L);
+            specify(writer.getCount(), should.equal(2L));
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.journal;
+
+import jdave.Block;
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.commons.io.FileUtils;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+@RunWith(JDaveRunner.class)
+public class ReplayerSpec extends Specification<Replayer> {
+
+    public class WhenReplayingAJournal {
+
+        private File file;
+        private CamelContext context;
+        private Replayer replayer;
+        private final List<String> received = new CopyOnWriteArrayList<String>();
+
+        public Replayer create() throws Exception {
+            file = File.createTempFile("axiom-replay", ".journal");
+            file.delete();
+            final JournalWriter writer = new JournalWriter(file);
+            for (int i = 0; i < 20; i++) {
+                writer.append("message-" + i, Collections.<String, Object>singletonMap("seq", i), i * 5000000L);
+            }
+            writer.close();
+
+            context = new DefaultCamelContext();
+            context.addRoutes(new RouteBuilder() {
+                @Override public void configure() throws Exception {
+                    errorHandler(noErrorHandler());
+                    from("direct:replayed").process(new Processor() {
+                        @Override public void process(final Exchange exchange) throws Exception {
+                            if (Integer.valueOf(7).equals(exchange.getIn().getHeader("seq"))) {
+                                throw new IllegalStateException("rejected");
+                            }
+                            received.add(exchange.getIn().getBody(String.class));
+                        }
+                    });
+                }
+            });
+            context.start();
+            replayer = new Replayer(context, "direct:replayed");
+            return replayer;
+        }
+
+        public void destroy() throws Exception {
+            context.stop();
+            FileUtils.deleteQuietly(file);
+        }
+
+        public void itShouldSendEveryRecordedExchange() throws Exception {
+            replayer.setSpeed(Replayer.MAX_SPEED);
+            replayer.setConcurrency(4);
+            final ReplayReport report = replayer.replay(file);
+            specify(report.getSent(), should.equal(20L));
+            specify(report.getFailed(), should.equal(1L));
+            specify(received.size(), should.equal(19));
+            specify(received.contains("message-19"), should.equal(true));
+            specify(report.getLatency().getCount(), should.equal(20L));
+        }
+
+        public void itShouldHonourTheRecordedPaceScaledBySpeed() throws Exception {
+            replayer.setSpeed(2.0);
+            final ReplayReport report = replayer.replay(file);
+            specify(report.getSent(), should.equal(20L));
+            specify(report.getElapsedMillis() >= 45L, should.equal(true));
+        }
+
+        public void itShouldRejectANonPositiveSpeed() {
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    replayer.setSpeed(0);
+                }
+            }, should.raise(IllegalArgumentException.class));
+        }
+    }
+}
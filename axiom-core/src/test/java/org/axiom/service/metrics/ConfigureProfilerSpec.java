@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.junit.runner.RunWith;
+
+@RunWith(JDaveRunner.class)
+public class ConfigureProfilerSpec extends Specification<ConfigureBreakdown> {
+
+    public class WhenProfilingAConfigureOperation {
+
+        public ConfigureBreakdown create() {
+            ConfigureProfiler.setCapacity(2);
+            final ConfigureProfiler.Operation operation = ConfigureProfiler.begin("configure");
+            try {
+                ConfigureProfiler.span("script.read").stop();
+                ConfigureProfiler.span("script.evaluate").stop();
+                ConfigureProfiler.span("script.evaluate").stop();
+                operation.succeeded();
+            } finally {
+                operation.end();
+            }
+            return operation.getBreakdown();
+        }
+
+        public void itShouldRecordEachStageInOrder() {
+            specify(context.getStageTimings().keySet().toArray(),
+                should.containInOrder("script.read", "script.evaluate"));
+        }
+
+        public void itShouldRetainCompletedOperationsNewestFirst() {
+            final ConfigureProfiler.Operation next = ConfigureProfiler.begin("start");
+            next.end();
+            specify(ConfigureProfiler.getRecentBreakdowns().size(), should.equal(2));
+            specify(ConfigureProfiler.getRecentBreakdowns().get(0).getLabel(), should.equal("start"));
+            specify(ConfigureProfiler.getRecentBreakdowns().get(0).isFailed(), should.equal(true));
+            specify(ConfigureProfiler.getRecentBreakdowns().get(1), should.equal(context));
+        }
+
+        public void itShouldAttributeNestedOperationsToTheOuterOne() {
+            final ConfigureProfiler.Operation outer = ConfigureProfiler.begin("load");
+            final ConfigureProfiler.Operation inner = ConfigureProfiler.begin("configure");
+            ConfigureProfiler.span("routes.add").stop();
+            inner.end();
+            outer.end();
+            specify(inner.getBreakdown(), should.equal(null));
+            specify(outer.getBreakdown().getStageTimings().containsKey("routes.add"), should.equal(true));
+        }
+
+        public void itShouldAttributeStagesOnAnotherThreadToTheAttachedOperation() throws Exception {
+            final ConfigureProfiler.Operation operation = ConfigureProfiler.begin("configure");
+            final ConfigureBreakdown captured = ConfigureProfiler.capture();
+            final Thread lane = new Thread(new Runnable() {
+                @Override public void run() {
+                    final ConfigureBreakdown previous = ConfigureProfiler.attach(captured);
+                    try {
+                        final ConfigureProfiler.Operation nested = ConfigureProfiler.begin("signal");
+                        ConfigureProfiler.span("context.start").stop();
+                        nested.end();
+                    } finally {
+                        ConfigureProfiler.attach(previous);
+                    }
+                }
+            });
+            lane.start();
+            lane.join();
+            operation.end();
+            specify(operation.getBreakdown().getStageTimings().containsKey("context.start"), should.equal(true));
+            specify(ConfigureProfiler.getRecentBreakdowns().get(0), should.equal(operation.getBreakdown()));
+            specify(ConfigureProfiler.getRecentBreakdowns().get(1), should.equal(context));
+        }
+
+        public void itShouldIgnoreSpansOutsideAnOperation() {
+            ConfigureProfiler.span("plugin.lookup").stop();
+            specify(ConfigureProfiler.getRecentBreakdowns().size(), should.equal(1));
+        }
+    }
+}
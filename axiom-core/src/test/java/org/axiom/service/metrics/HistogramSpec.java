@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import jdave.Block;
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.junit.runner.RunWith;
+
+@RunWith(JDaveRunner.class)
+public class HistogramSpec extends Specification<Histogram> {
+
+    public class WhenRecordingValues {
+
+        private Histogram histogram;
+
+        public Histogram create() {
+            return histogram = new Histogram(3600L * 1000L * 1000L, 3);
+        }
+
+        public void itShouldCountEveryRecordedValue() {
+            for (int i = 1; i <= 1000; i++) {
+                histogram.record(i);
+            }
+            specify(histogram.getCount(), should.equal(1000l));
+            specify(histogram.snapshot().getCount(), should.equal(1000l));
+        }
+
+        public void itShouldReportPercentilesWithinTheConfiguredPrecision() {
+            for (int i = 1; i <= 100000; i++) {
+                histogram.record(i);
+            }
+            final HistogramSnapshot snapshot = histogram.snapshot();
+            specify(withinOneTenthOfAPercent(snapshot.getValueAtPercentile(50.0), 50000), should.equal(true));
+            specify(withinOneTenthOfAPercent(snapshot.getValueAtPercentile(99.0), 99000), should.equal(true));
+            specify(withinOneTenthOfAPercent(snapshot.getValueAtPercentile(99.99), 99990), should.equal(true));
+            specify(snapshot.getMax(), should.equal(100000l));
+        }
+
+        public void itShouldClampValuesAboveTheHighestTrackableValue() {
+            histogram.record(Long.MAX_VALUE);
+            specify(histogram.snapshot().getMax(),
+                should.equal(histogram.getHighestTrackableValue()));
+        }
+
+        public void itShouldRecordNegativeValuesAsZero() {
+            histogram.record(-10);
+            specify(histogram.snapshot().getValueAtPercentile(100.0), should.equal(0l));
+        }
+
+        public void itShouldDeriveIntervalStatisticsFromSuccessiveSnapshots() {
+            histogram.record(10);
+            final HistogramSnapshot before = histogram.snapshot();
+            histogram.record(1000);
+            histogram.record(1000);
+            final HistogramSnapshot interval = histogram.snapshot().minus(before);
+            specify(interval.getCount(), should.equal(2l));
+            specify(interval.getValueAtPercentile(1.0), should.equal(1000l));
+        }
+
+        public void itShouldCountValuesAtOrBelowAThreshold() {
+            for (int i = 1; i <= 100; i++) {
+                histogram.record(i);
+            }
+            specify(histogram.snapshot().getCountAtOrBelow(50), should.equal(50l));
+        }
+
+        public void itShouldForgetEverythingOnReset() {
+            histogram.record(42);
+            histogram.reset();
+            specify(histogram.getCount(), should.equal(0l));
+            specify(histogram.snapshot().getValueAtPercentile(50.0), should.equal(0l));
+        }
+
+        public void itShouldPukeIfThePrecisionIsOutOfRange() {
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    new Histogram(1000, 6);
+                }
+            }, should.raise(IllegalArgumentException.class));
+        }
+
+        private boolean withinOneTenthOfAPercent(final long actual, final long expected) {
+            return Math.abs(actual - expected) <= expected / 1000;
+        }
+    }
+}
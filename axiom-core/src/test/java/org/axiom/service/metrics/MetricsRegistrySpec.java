@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import jdave.Block;
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.junit.runner.RunWith;
+
+import java.util.Map;
+
+@RunWith(JDaveRunner.class)
+public class MetricsRegistrySpec extends Specification<MetricsRegistry> {
+
+    public class WhenRegisteringMetrics {
+
+        private MetricsRegistry registry;
+
+        public MetricsRegistry create() {
+            return registry = new MetricsRegistry();
+        }
+
+        public void itShouldHandOutTheSameMetricForTheSameName() {
+            specify(registry.counter("orders"), should.equal(registry.counter("orders")));
+            specify(registry.timer("latency"), should.equal(registry.timer("latency")));
+        }
+
+        public void itShouldPukeIfANameIsReusedForADifferentKindOfMetric() {
+            registry.counter("orders");
+            specify(new Block() {
+                @Override public void run() throws Throwable {
+                    registry.histogram("orders");
+                }
+            }, should.raise(IllegalArgumentException.class));
+        }
+
+        public void itShouldSumCountsAcrossThreads() throws InterruptedException {
+            final StripedCounter counter = registry.counter("orders");
+            final Thread[] threads = new Thread[8];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread() {
+                    @Override public void run() {
+                        for (int n = 0; n < 10000; n++) {
+                            counter.increment();
+                        }
+                    }
+                };
+                threads[i].start();
+            }
+            for (final Thread thread : threads) {
+                thread.join();
+            }
+            specify(counter.getCount(), should.equal(80000l));
+        }
+
+        public void itShouldFlattenEveryMetricIntoTheSnapshot() {
+            registry.counter("orders").add(3);
+            registry.gauge("depth", new Gauge() {
+                @Override public Object getValue() {
+                    return 7;
+                }
+            });
+            registry.timer("latency").update(2000000L);
+            final Map<String, Object> snapshot = registry.snapshot();
+            specify(snapshot.get("orders"), should.equal(3l));
+            specify(snapshot.get("depth"), should.equal(7));
+            specify(snapshot.get("latency.count"), should.equal(1l));
+            specify(snapshot.get("latency.failures"), should.equal(0l));
+            specify(snapshot.containsKey("latency.p99"), should.equal(true));
+        }
+
+        public void itShouldExposeTheSnapshotAsManagementAttributes() throws Exception {
+            registry.counter("orders").increment();
+            specify(registry.getAttribute("orders"), should.equal(1l));
+            specify(registry.getMBeanInfo().getAttributes().length, should.equal(1));
+        }
+    }
+}
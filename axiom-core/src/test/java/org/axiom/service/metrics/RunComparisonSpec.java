@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.metrics;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.commons.io.FileUtils;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(JDaveRunner.class)
+public class RunComparisonSpec extends Specification<RunComparison> {
+
+    public class WhenComparingTwoRuns {
+
+        private RunComparison comparison;
+
+        public RunComparison create() {
+            return comparison = new RunComparison();
+        }
+
+        public void itShouldNotFlagIdenticalRuns() {
+            final RunRecord run = run("baseline", 10000, route("direct:in", 1000, 1000, 0));
+            specify(comparison.compare(run, run).hasRegressions(), should.equal(false));
+        }
+
+        public void itShouldFlagASignificantIncreaseInTailLatency() {
+            final ComparisonReport report = comparison.compare(
+                run("baseline", 10000, route("direct:in", 1000, 1000, 0)),
+                run("candidate", 10000, route("direct:in", 1000, 1500, 0)));
+            specify(report.getRoute("direct:in").getRegressions().contains(RunComparison.Regression.LATENCY),
+                should.equal(true));
+            specify(report.hasRegressions(), should.equal(true));
+        }
+
+        public void itShouldNotFlagATailChangeThatIsNotSignificant() {
+            final LatencyStatistics before = route("direct:in", 1000, 1000, 0);
+            final LatencyStatistics after = route("direct:in", 1000, 1000, 0);
+            after.record(50000L * 1000L, false);
+            comparison.setPercentile(100.0);
+            final RouteComparison route = comparison.compare(
+                run("baseline", 10000, before), run("candidate", 10000, after)).getRoute("direct:in");
+            specify(route.getKsStatistic() < route.getKsCriticalValue(), should.equal(true));
+            specify(route.isRegressed(), should.equal(false));
+        }
+
+        public void itShouldFlagADropInThroughput() {
+            final ComparisonReport report = comparison.compare(
+                run("baseline", 10000, route("direct:in", 1000, 1000, 0)),
+                run("candidate", 20000, route("direct:in", 1000, 1000, 0)));
+            specify(report.getRoute("direct:in").getRegressions().contains(RunComparison.Regression.THROUGHPUT),
+                should.equal(true));
+        }
+
+        public void itShouldFlagAnIncreaseInTheErrorRate() {
+            final ComparisonReport report = comparison.compare(
+                run("baseline", 10000, route("direct:in", 1000, 1000, 0)),
+                run("candidate", 10000, route("direct:in", 1000, 1000, 20)));
+            specify(report.getRoute("direct:in").getRegressions().contains(RunComparison.Regression.ERRORS),
+                should.equal(true));
+        }
+
+        public void itShouldFlagRoutesMissingFromTheCandidateButNotNewOnes() {
+            final ComparisonReport report = comparison.compare(
+                run("baseline", 10000, route("direct:old", 100, 1000, 0)),
+                run("candidate", 10000, route("direct:new", 100, 1000, 0)));
+            specify(report.getRoute("direct:old").getRegressions().contains(RunComparison.Regression.MISSING),
+                should.equal(true));
+            specify(report.getRoute("direct:new").isRegressed(), should.equal(false));
+        }
+    }
+
+    public class WhenWritingARunRecord {
+
+        private File file;
+
+        public RunComparison create() throws IOException {
+            file = File.createTempFile("axiom-run", ".properties");
+            return new RunComparison();
+        }
+
+        public void destroy() {
+            FileUtils.deleteQuietly(file);
+        }
+
+        public void itShouldReadBackTheSameDistributionsAndCounts() throws IOException {
+            final RunRecord written = run("nightly", 60000, route("direct:in?x=1", 500, 2000, 3));
+            written.write(file);
+            final RunRecord read = RunRecord.read(file);
+            specify(read.getName(), should.equal("nightly"));
+            specify(read.getDurationMillis(), should.equal(60000l));
+            final RunRecord.Route route = read.getRoute("direct:in?x=1");
+            specify(route.getCount(), should.equal(500l));
+            specify(route.getFailures(), should.equal(3l));
+            specify(route.getLatency().getValueAtPercentile(99.0),
+                should.equal(written.getRoute("direct:in?x=1").getLatency().getValueAtPercentile(99.0)));
+            specify(RunComparison.ksStatistic(route.getLatency(),
+                written.getRoute("direct:in?x=1").getLatency()), should.equal(0.0));
+        }
+    }
+
+    private static RunRecord run(final String name, final long duration, final LatencyStatistics... routes) {
+        final Map<String, LatencyStatistics> statistics = new HashMap<String, LatencyStatistics>();
+        for (final LatencyStatistics route : routes) {
+            statistics.put(route.getName(), route);
+        }
+        return RunRecord.capture(name, duration, statistics);
+    }
+
+    private static LatencyStatistics route(final String name, final int count,
+        final long maxMicros, final int failures) {
+        final LatencyStatistics statistics = new LatencyStatistics(name);
+        for (int i = 1; i <= count; i++) {
+            statistics.record(i * maxMicros / count * 1000L, i <= failures);
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.service.trace;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.axiom.SpecSupport;
+import org.axiom.scenario.VerificationFailureException;
+import org.junit.runner.RunWith;
+
+@RunWith(JDaveRunner.class)
+public class TraceStoreSpec extends Specification<TraceStore> {
+
+    public class WhenRecordingExchangeTraces extends SpecSupport {
+
+        private TraceStore store;
+
+        public TraceStore create() {
+            return store = new TraceStore();
+        }
+
+        public void itShouldFindTracesByExchangeId() {
+            final Exchange exchange = newExchange(null);
+            store.record("ex-1", exchange, entry("direct:in", "To(mock:out)"));
+            store.record("ex-1", exchange, entry("direct:in", "Process(p)"));
+
+            specify(store.findByExchangeId("ex-1").getEntries().size(), should.equal(2));
+            specify(store.findByExchangeId("ex-2"), should.equal(null));
+        }
+
+        public void itShouldIndexTracesByCorrelationHeader() {
+            store.record("ex-1", newExchange("order-1"), entry("direct:in", "To(mock:out)"));
+            store.record("ex-2", newExchange("order-1"), entry("direct:in", "To(mock:out)"));
+            store.record("ex-3", newExchange("order-2"), entry("direct:in", "To(mock:out)"));
+
+            specify(store.findByCorrelationId("order-1").size(), should.equal(2));
+            specify(store.findByCorrelationId("order-2").size(), should.equal(1));
+        }
+
+        public void itShouldIndexTracesByTheRouteTheyEnteredThrough() {
+            store.record("ex-1", newExchange(null), entry("direct:a", "To(direct:b)"));
+            store.record("ex-1", newExchange(null), entry("direct:b", "To(mock:out)"));
+            store.record("ex-2", newExchange(null), entry("direct:b", "To(mock:out)"));
+
+            specify(store.findByRoute("direct:a").size(), should.equal(1));
+            specify(store.findByRoute("direct:b").size(), should.equal(1));
+        }
+
+        public void itShouldEvictTheOldestTracesWhenTheMemoryBudgetIsExceeded() {
+            store.setMemoryBudget(4096);
+            for (int i = 0; i < 100; i++) {
+                store.record("ex-" + i, newExchange("c-" + i), entry("direct:in", "To(mock:out)"));
+            }
+            specify(store.getEstimatedSize() <= 4096, should.equal(true));
+            specify(store.getEvictionCount() > 0, should.equal(true));
+            specify(store.findByExchangeId("ex-0"), should.equal(null));
+            specify(store.findByCorrelationId("c-0").isEmpty(), should.equal(true));
+            specify(store.findByExchangeId("ex-99"), should.not().equal(null));
+        }
+
+        public void itShouldNotCountEntriesAppendedToATraceAfterItWasEvicted() {
+            store.record("ex-1", newExchange(null), entry("direct:in", "To(mock:out)"));
+            final ExchangeTrace evicted = store.findByExchangeId("ex-1");
+            store.clear();
+
+            specify(evicted.append(entry("direct:in", "Process(p)")), should.equal(0));
+            specify(evicted.getEntries().size(), should.equal(1));
+            specify(store.getEstimatedSize(), should.equal(0L));
+        }
+
+        public void itShouldAnswerQueriesSentOverTheQueryChannel() {
+            store.record("ex-1", newExchange("order-1"), entry("direct:in", "To(mock:out)"));
+
+            specify(store.query(TraceStore.BY_EXCHANGE, "ex-1").size(), should.equal(1));
+            specify(store.query(TraceStore.BY_CORRELATION, "order-1").size(), should.equal(1));
+            specify(store.query(TraceStore.BY_ROUTE, "direct:in").size(), should.equal(1));
+            specify(store.query(TraceStore.BY_EXCHANGE, "no-such-exchange").isEmpty(), should.equal(true));
+        }
+
+        public void itShouldLocateTheTraceForAFailedExpectation() {
+            final Exchange exchange = newExchange(null);
+            exchange.setProperty(TraceRecorder.TRACE_ID_PROPERTY, "ex-1");
+            store.record("ex-1", exchange, entry("direct:in", "To(mock:out)"));
+
+            specify(store.findByFailure(new VerificationFailureException(exchange)),
+                should.equal(store.findByExchangeId("ex-1")));
+        }
+
+        private Exchange newExchange(final String correlationId) {
+            final Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+            if (correlationId != null) {
+                exchange.getIn().setHeader(TraceStore.DEFAULT_CORRELATION_HEADER, correlationId);
+            }
+            return exchange;
+        }
+
+        private TraceEntry entry(final String route, final String node) {
+            return new TraceEntry(route, node, System.currentTimeMillis(), 1000, false, null, null);
+        }
+    }
+}
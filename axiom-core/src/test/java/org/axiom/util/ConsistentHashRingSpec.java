@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.util;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+@RunWith(JDaveRunner.class)
+public class ConsistentHashRingSpec extends Specification<ConsistentHashRing<String>> {
+
+    private static final int KEYS = 10000;
+
+    public class WhenDistributingKeys {
+
+        private ConsistentHashRing<String> ring;
+
+        public ConsistentHashRing<String> create() {
+            ring = new ConsistentHashRing<String>(Arrays.asList("a", "b", "c", "d"));
+            return ring;
+        }
+
+        public void itShouldAlwaysMapAKeyToTheSameMember() {
+            specify(ring.get("scenario-42"), should.equal(ring.get("scenario-42")));
+            specify(ring.get(null), should.equal(ring.get(null)));
+        }
+
+        public void itShouldSpreadKeysAcrossAllMembers() {
+            final Map<String, Integer> counts = new HashMap<String, Integer>();
+            for (int i = 0; i < KEYS; i++) {
+                final String member = ring.get("key-" + i);
+                counts.put(member, counts.containsKey(member) ? counts.get(member) + 1 : 1);
+            }
+            specify(counts.size(), should.equal(4));
+            for (final int count : counts.values()) {
+                specify(count > KEYS / 8, should.equal(true));
+            }
+        }
+
+        public void itShouldOnlyMoveTheKeysOwnedByARemovedMember() {
+            final ConsistentHashRing<String> smaller =
+                new ConsistentHashRing<String>(Arrays.asList("a", "b", "c"));
+            for (int i = 0; i < KEYS; i++) {
+                final String key = "key-" + i;
+                if (!"d".equals(ring.get(key))) {
+                    specify(smaller.get(key), should.equal(ring.get(key)));
+                }
+            }
+        }
+    }
+}
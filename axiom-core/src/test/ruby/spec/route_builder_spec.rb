@@ -101,3 +101,68 @@ describe Axiom::Core::SimpleRouteBuilder,
   end
 
 end
+
+describe Axiom::Core::SimpleRouteBuilder,
+  "when registering metrics with the DSL wrapper methods" do
+
+  before(:each) do
+    @registry = org.axiom.service.metrics.MetricsRegistry.new
+    @builder = Axiom::Core::SimpleRouteBuilder.new{}
+    @builder.stubs(:lookup).with(org.axiom.integration.Environment::METRICS_REGISTRY_ID).returns(@registry)
+  end
+
+  it "should register named metrics in the shared registry" do
+    @builder.metric(:counter, 'orders.received').should == @registry.counter('orders.received')
+    @builder.metric(:timer, 'orders.latency').should == @registry.timer('orders.latency')
+  end
+
+  it "should register gauges which sample the supplied block" do
+    @builder.metric(:gauge, 'queue.depth') { 42 }
+    @registry.snapshot['queue.depth'].should == 42
+  end
+
+  it "should generate a processor which counts each exchange" do
+    processor = @builder.counting('orders.seen')
+    2.times { processor.process(org.apache.camel.Exchange.new) }
+    @registry.counter('orders.seen').count.should == 2
+  end
+
+end
+
+describe Axiom::Core::SimpleRouteBuilder,
+  "when declaring service levels with the DSL wrapper methods" do
+
+  before(:each) do
+    @monitor = org.axiom.scenario.SlaMonitor.new
+    @context = org.apache.camel.impl.DefaultCamelContext.new
+    @context.add_intercept_strategy org.axiom.service.metrics.LatencyMonitor.new
+    @builder = Axiom::Core::SimpleRouteBuilder.new do
+      expect_latency :p99 => 50, :within => '30s'
+      expect_throughput :min => 2000
+    end
+    @builder.context = @context
+    @builder.stubs(:lookup).with(org.axiom.integration.Environment::SLA_MONITOR_ID).returns(@monitor)
+  end
+
+  it "should hand a service level per route to the shared monitor" do
+    @builder.bind_service_levels [org.apache.camel.model.RouteType.new('direct:sla')]
+    levels = @monitor.service_levels
+    levels.size.should == 2
+    levels.first.description.should == 'direct:sla p99 latency'
+    levels.first.window_millis.should == 30000
+    levels.last.window_millis.should == 60000
+  end
+
+  it "should puke if no percentile is given for a latency expectation" do
+    lambda do
+      Axiom::Core::SimpleRouteBuilder.new{}.expect_latency :within => '1m'
+    end.should raise_error
+  end
+
+  it "should puke if a window cannot be parsed" do
+    lambda do
+      Axiom::Core::SimpleRouteBuilder.new{}.expect_throughput :min => 10, :within => 'a while'
+    end.should raise_error
+  end
+
+end
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.systest;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.axiom.integration.Environment;
+import org.axiom.integration.camel.ContextFactory;
+import org.axiom.integration.camel.ContextProcessingNode;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares control message throughput of the java and jruby processing nodes.
+ * Each message is a {@code start} signal for an already started context, so
+ * the figures reflect the cost of the control path itself. The java node exists
+ * to take jruby off the control path, so it is expected to be the faster of the two;
+ * the timings are logged for comparison rather than asserted upon, as a single GC
+ * pause or a different JIT warm-up order is enough to reverse them.
+ */
+@RunWith(JDaveRunner.class)
+public class ControlPathThroughputSpec extends Specification<CamelContext> {
+
+    private static final int WARMUP_MESSAGES = 2000;
+    private static final int MEASURED_MESSAGES = 20000;
+
+    public class WhenSendingControlSignals {
+
+        private final Logger log = LoggerFactory.getLogger(getClass());
+        private CamelContext host;
+        private DefaultCamelContext target;
+
+        public CamelContext create() throws Exception {
+            host = new ContextFactory().create();
+            target = new DefaultCamelContext();
+            target.start();
+            return host;
+        }
+
+        public void destroy() throws Exception {
+            target.stop();
+            host.stop();
+        }
+
+        public void itShouldReportControlSignalThroughputAgainstTheScriptedProcessingNode() throws Exception {
+            final double scripted = measure(Environment.SCRIPTED_PROCESSOR);
+            final double java = measure(Environment.DEFAULT_PROCESSOR);
+            log.info(String.format("java/scripted control throughput: %.2fx.", java / scripted));
+            specify(target.isStarted(), should.equal(true));
+        }
+
+        private double measure(final String processorId) throws Exception {
+            final ContextProcessingNode node =
+                host.getRegistry().lookup(processorId, ContextProcessingNode.class);
+            node.setContext(target);
+            final Exchange exchange = new DefaultExchange(host);
+            exchange.getIn().setHeader(Environment.SIGNAL, "start");
+
+            for (int i = 0; i < WARMUP_MESSAGES; i++) {
+                node.process(exchange);
+            }
+            final long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_MESSAGES; i++) {
+                node.process(exchange);
+            }
+            final long elapsed = System.nanoTime() - start;
+            final double rate = MEASURED_MESSAGES / (elapsed / 1e9);
+            log.info(String.format("%s: %d control messages in %.1fms (%.0f msg/s, %.2fus/msg).",
+                processorId, MEASURED_MESSAGES, elapsed / 1e6, rate,
+                elapsed / 1e3 / MEASURED_MESSAGES));
+            return rate;
+        }
+    }
+}
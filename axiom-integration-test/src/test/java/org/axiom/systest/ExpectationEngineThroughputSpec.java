@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.systest;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.axiom.scenario.Expectation;
+import org.axiom.scenario.ExpectationEngine;
+import org.axiom.scenario.Verdict;
+import org.axiom.scenario.VerificationFailureException;
+import org.junit.runner.RunWith;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares evaluating a batch of expectations one at a time on the calling
+ * thread with evaluating them concurrently on an {@link ExpectationEngine}.
+ * Each expectation burns a fixed amount of cpu, standing in for a schema check,
+ * so given more than one processor the engine is expected to come out ahead.
+ * The throughput of each is logged for comparison rather than asserted upon, as
+ * timings on a shared build agent are too noisy to gate the build.
+ */
+@RunWith(JDaveRunner.class)
+public class ExpectationEngineThroughputSpec extends Specification<ExpectationEngine> {
+
+    private static final int EXPECTATIONS_PER_EXCHANGE = 32;
+    private static final int WORK_PER_EXPECTATION = 20000;
+    private static final int WARMUP_EXCHANGES = 200;
+    private static final int MEASURED_EXCHANGES = 2000;
+
+    public class WhenVerifyingExchanges {
+
+        private final Logger log = LoggerFactory.getLogger(getClass());
+        private final List<Expectation<Exchange>> expectations = new ArrayList<Expectation<Exchange>>();
+        private ExpectationEngine engine;
+        private Exchange exchange;
+
+        public ExpectationEngine create() {
+            engine = new ExpectationEngine();
+            exchange = new DefaultExchange(new DefaultCamelContext());
+            exchange.getIn().setBody("payload");
+            for (int i = 0; i < EXPECTATIONS_PER_EXCHANGE; i++) {
+                expectations.add(new Expectation<Exchange>() {
+                    @Override public void verify(final Exchange exchange) throws VerificationFailureException {
+                        if (work(exchange) == 0) {
+                            throw new VerificationFailureException(exchange, "unreachable");
+                        }
+                    }
+                });
+            }
+            return engine;
+        }
+
+        public void destroy() {
+            engine.shutdown();
+        }
+
+        public void itShouldReportThroughputAgainstSequentialEvaluationOfCpuBoundExpectations() throws Exception {
+            final double sequential = measure(false);
+            final double concurrent = measure(true);
+            log.info(String.format("engine/sequential throughput: %.2fx on %d processors.",
+                concurrent / sequential, Runtime.getRuntime().availableProcessors()));
+
+            final Verdict verdict = engine.evaluate(exchange, expectations, ExpectationEngine.Mode.COLLECT_ALL);
+            specify(verdict.count(Verdict.Status.PASSED), should.equal(EXPECTATIONS_PER_EXCHANGE));
+        }
+
+        private double measure(final boolean concurrent) throws Exception {
+            for (int i = 0; i < WARMUP_EXCHANGES; i++) {
+                verify(concurrent);
+            }
+            final long start = System.nanoTime();
+            for (int i = 0; i < MEASURED_EXCHANGES; i++) {
+                verify(concurrent);
+            }
+            final long elapsed = System.nanoTime() - start;
+            final double rate = MEASURED_EXCHANGES / (elapsed / 1e9);
+            log.info(String.format("%s: %d exchanges x %d expectations in %.1fms (%.0f exchanges/s).",
+                concurrent ? "engine" : "sequential", MEASURED_EXCHANGES, EXPECTATIONS_PER_EXCHANGE,
+                elapsed / 1e6, rate));
+            return rate;
+        }
+
+        private void verify(final boolean concurrent) throws VerificationFailureException {
+            if (concurrent) {
+                final Verdict verdict = engine.evaluate(exchange, expectations, ExpectationEngine.Mode.FAIL_FAST);
+                verdict.assertPassed();
+            } else {
+                for (final Expectation<Exchange> expectation : expectations) {
+                    expectation.verify(exchange);
+                }
+            }
+        }
+    }
+
+    private static int work(final Exchange exchange) {
+        int hash = exchange.getIn().getBody(String.class).hashCode();
+        for (int i = 0; i < WORK_PER_EXPECTATION; i++) {
+            hash = hash * 31 + i;
+        }
+        return hash | 1;
+    }
+}
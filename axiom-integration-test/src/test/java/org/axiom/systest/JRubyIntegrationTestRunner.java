@@ -51,6 +51,7 @@ public class JRubyIntegrationTestRunner extends Specification<CamelContext> {
         private CamelContext camel;
         private String rootSpecPath;
         private ScriptingEnvironment jruby;
+        private PartitionedSpecRunner partitionedRunner;
         private final Logger log = LoggerFactory.getLogger(getClass());
 
         public CamelContext create() throws IOException {
@@ -62,10 +63,15 @@ public class JRubyIntegrationTestRunner extends Specification<CamelContext> {
             final String integrationTestPath =
                 new File(pathToSpecs).getParentFile().getAbsolutePath();
             rootSpecPath = integrationTestPath + "/**/*.rb";
+            System.setProperty("axiom.integration.test.source.path", integrationTestPath);
+            if (Integer.getInteger(PartitionedSpecRunner.PARTITIONS, 1) > 1) {
+                partitionedRunner = PartitionedSpecRunner.fromSystemProperties(
+                    new File(integrationTestPath), readSpecRunner());
+                return null;
+            }
             camel = new ContextFactory().create();
             jruby = camel.getRegistry().lookup(
                 Environment.SCRIPTING_ENVIRONMENT, ScriptingEnvironment.class);
-            System.setProperty("axiom.integration.test.source.path", integrationTestPath);
             jruby.evaluateScriptFragment(format("$axiom_testdir = '%s'", integrationTestPath));
             jruby.evaluateScriptFragment(
                 "$LOAD_PATH.unshift " + "File.expand_path(['"
@@ -73,14 +79,14 @@ public class JRubyIntegrationTestRunner extends Specification<CamelContext> {
             return camel;
         }
 
-        public void executeRSpecTestsUsingEmbeddedJRubyRuntime() throws IOException {
-            final String specRunner = FileUtils.readFileToString(
-                new File(
-                    getClass().getClassLoader()
-                        .getResource("spec_runner.rb")
-                        .getPath().replaceAll("file:", "")
-                )
-            );
+        public void executeRSpecTestsUsingEmbeddedJRubyRuntime() throws Exception {
+            if (partitionedRunner != null) {
+                final PartitionedSpecRunner.Result result = partitionedRunner.run();
+                log.info("Verifying partitioned RSpec results.");
+                specify(result.isPassed(), equal(true));
+                return;
+            }
+            final String specRunner = readSpecRunner();
             Object o = jruby.evaluateScriptFragment(specRunner);
             if (o == null) {
                 log.warn("RSpec run returned null.");
@@ -91,6 +97,16 @@ public class JRubyIntegrationTestRunner extends Specification<CamelContext> {
             specify(result, equal(true));
         }
 
+        private String readSpecRunner() throws IOException {
+            return FileUtils.readFileToString(
+                new File(
+                    getClass().getClassLoader()
+                        .getResource("spec_runner.rb")
+                        .getPath().replaceAll("file:", "")
+                )
+            );
+        }
+
     }
 
 }
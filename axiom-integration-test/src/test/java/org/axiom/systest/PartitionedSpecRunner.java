@@ -0,0 +1,408 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.systest;
+
+import org.apache.camel.CamelContext;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.filefilter.SuffixFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import static org.apache.commons.lang.Validate.*;
+import org.axiom.integration.Environment;
+import org.axiom.integration.camel.ContextFactory;
+import org.axiom.service.ScriptingEnvironment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import static java.lang.String.format;
+
+/**
+ * Runs the ruby integration specs concurrently, split across a number of partitions.
+ * <p>
+ * Each partition gets its own host context (and therefore its own jruby runtime),
+ * and the spec files are balanced across partitions using their historical durations
+ * (see {@link SpecTimings}). Partition {@code n} is told to shift every configured
+ * port by {@code n * portStride} and to keep its data in its own directories (see
+ * {@code isolate_partition!} in {@code spec_helper.rb}), so that partitions do not
+ * contend for {@code jetty:} endpoints or files. The nested rspec output of each
+ * partition is written to its own file and logged, in partition order, once every
+ * partition has finished.
+ * </p>
+ */
+public class PartitionedSpecRunner {
+
+    /**
+     * The system property holding the number of partitions (1 runs the specs serially).
+     */
+    public static final String PARTITIONS = "axiom.integration.test.partitions";
+
+    /**
+     * The system property holding the distance between the ports of adjacent partitions.
+     */
+    public static final String PORT_STRIDE = "axiom.integration.test.port.stride";
+
+    /**
+     * The system property naming the file in which spec durations are kept between runs.
+     */
+    public static final String TIMINGS_FILE = "axiom.integration.test.timings";
+
+    /**
+     * The system property naming the directory to which each partition's output is written.
+     */
+    public static final String OUTPUT_DIRECTORY = "axiom.integration.test.output";
+
+    private static final String SPEC_SUFFIX = "_spec.rb";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final File specDirectory;
+    private final String specRunner;
+    private final int partitions;
+    private int portStride = 100;
+    private File timingsFile = new File(System.getProperty("user.home"), ".axiom/integration-spec-timings.properties");
+    private File outputDirectory = new File("target/spec-partitions");
+
+    /**
+     * Creates a runner.
+     * @param specDirectory The directory searched (recursively) for {@code *_spec.rb} files.
+     * @param specRunner The source of the ruby script that runs the specs in a single runtime.
+     * @param partitions The number of partitions to run concurrently.
+     */
+    public PartitionedSpecRunner(final File specDirectory, final String specRunner, final int partitions) {
+        notNull(specDirectory, "Spec directory cannot be null.");
+        notNull(specRunner, "Spec runner cannot be null.");
+        isTrue(partitions > 0, "Partition count must be positive.");
+        this.specDirectory = specDirectory.getAbsoluteFile();
+        this.specRunner = specRunner;
+        this.partitions = partitions;
+    }
+
+    /**
+     * Creates a runner configured from the {@link PartitionedSpecRunner#PARTITIONS},
+     * {@link PartitionedSpecRunner#PORT_STRIDE}, {@link PartitionedSpecRunner#TIMINGS_FILE}
+     * and {@link PartitionedSpecRunner#OUTPUT_DIRECTORY} system properties.
+     */
+    public static PartitionedSpecRunner fromSystemProperties(final File specDirectory, final String specRunner) {
+        final PartitionedSpecRunner runner = new PartitionedSpecRunner(
+            specDirectory, specRunner, Integer.getInteger(PARTITIONS, 1));
+        runner.setPortStride(Integer.getInteger(PORT_STRIDE, runner.portStride));
+        if (System.getProperty(TIMINGS_FILE) != null) {
+            runner.setTimingsFile(new File(System.getProperty(TIMINGS_FILE)));
+        }
+        if (System.getProperty(OUTPUT_DIRECTORY) != null) {
+            runner.setOutputDirectory(new File(System.getProperty(OUTPUT_DIRECTORY)));
+        }
+        return runner;
+    }
+
+    public void setPortStride(final int portStride) {
+        isTrue(portStride >= 0, "Port stride cannot be negative.");
+        this.portStride = portStride;
+    }
+
+    public void setTimingsFile(final File timingsFile) {
+        notNull(timingsFile, "Timings file cannot be null.");
+        this.timingsFile = timingsFile;
+    }
+
+    public void setOutputDirectory(final File outputDirectory) {
+        notNull(outputDirectory, "Output directory cannot be null.");
+        this.outputDirectory = outputDirectory;
+    }
+
+    /**
+     * Runs every spec file and waits for all partitions to finish.
+     * @return The merged results of every partition.
+     * @throws IOException if the timings or partition output cannot be read or written.
+     * @throws InterruptedException if interrupted whilst waiting for the partitions.
+     */
+    public Result run() throws IOException, InterruptedException {
+        Environment.ensureDirectory(outputDirectory);
+        final SpecTimings timings = SpecTimings.load(timingsFile);
+        final List<List<String>> plan = new SpecPartitioner(partitions).partition(findSpecs(), timings);
+        final List<Partition> running = new ArrayList<Partition>();
+        for (int index = 0; index < plan.size(); index++) {
+            if (!plan.get(index).isEmpty()) {
+                running.add(new Partition(index, plan.get(index)));
+            }
+        }
+        log.info("Running {} spec files in {} partitions.", count(plan), running.size());
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.max(running.size(), 1),
+            new ThreadFactory() {
+                private int next;
+                @Override public synchronized Thread newThread(final Runnable runnable) {
+                    final Thread thread = new Thread(runnable, "axiom-spec-partition-" + next++);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        final List<PartitionResult> results = new ArrayList<PartitionResult>();
+        try {
+            final List<Future<PartitionResult>> futures = new ArrayList<Future<PartitionResult>>();
+            for (final Partition partition : running) {
+                futures.add(executor.submit(partition));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results.add(futures.get(i).get());
+                } catch (ExecutionException e) {
+                    results.add(new PartitionResult(running.get(i).index,
+                        running.get(i).specs, false, 0, e.getCause()));
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        for (final Partition partition : running) {
+            readTimings(partition, timings);
+            final File output = partition.outputFile();
+            if (output.isFile()) {
+                log.info("Partition {} output:{}{}", new Object[] {
+                    partition.index, Environment.NEWLINE, FileUtils.readFileToString(output) });
+            }
+        }
+        timings.store(timingsFile);
+        final Result result = new Result(results);
+        log.info("{}", result);
+        return result;
+    }
+
+    private List<String> findSpecs() {
+        final List<String> specs = new ArrayList<String>();
+        @SuppressWarnings("unchecked")
+        final Collection<File> files = FileUtils.listFiles(specDirectory,
+            new SuffixFileFilter(SPEC_SUFFIX), TrueFileFilter.INSTANCE);
+        for (final File file : files) {
+            specs.add(relativePath(file));
+        }
+        Collections.sort(specs);
+        return specs;
+    }
+
+    private void readTimings(final Partition partition, final SpecTimings timings) throws IOException {
+        final File file = partition.timingsFile();
+        if (!file.isFile()) {
+            return;
+        }
+        final Properties properties = new Properties();
+        final InputStream in = FileUtils.openInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        for (final String path : properties.stringPropertyNames()) {
+            try {
+                timings.record(relativePath(new File(path)), Double.parseDouble(properties.getProperty(path)));
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring invalid timing {} for {}.", properties.getProperty(path), path);
+            }
+        }
+    }
+
+    private String relativePath(final File file) {
+        final String root = specDirectory.getPath() + File.separator;
+        final String path = file.getAbsolutePath();
+        return path.startsWith(root) ? path.substring(root.length()) : path;
+    }
+
+    private static int count(final List<List<String>> plan) {
+        int total = 0;
+        for (final List<String> specs : plan) {
+            total += specs.size();
+        }
+        return total;
+    }
+
+    private static String rubyString(final String value) {
+        return "'" + value.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+
+    private class Partition implements Callable<PartitionResult> {
+
+        private final int index;
+        private final List<String> specs;
+
+        Partition(final int index, final List<String> specs) {
+            this.index = index;
+            this.specs = specs;
+        }
+
+        File outputFile() {
+            return new File(outputDirectory, format("partition-%d.txt", index));
+        }
+
+        File timingsFile() {
+            return new File(outputDirectory, format("partition-%d.timings", index));
+        }
+
+        @Override public PartitionResult call() throws Exception {
+            FileUtils.deleteQuietly(outputFile());
+            FileUtils.deleteQuietly(timingsFile());
+            final long started = System.currentTimeMillis();
+            final CamelContext camel;
+            // the host contexts are built one at a time, as spring and camel register
+            // shared (JMX) state whilst starting up; the specs themselves run concurrently
+            synchronized (PartitionedSpecRunner.class) {
+                camel = new ContextFactory().create();
+            }
+            try {
+                final ScriptingEnvironment jruby = camel.getRegistry().lookup(
+                    Environment.SCRIPTING_ENVIRONMENT, ScriptingEnvironment.class);
+                final StringBuilder files = new StringBuilder();
+                for (final String spec : specs) {
+                    if (files.length() > 0) {
+                        files.append(", ");
+                    }
+                    files.append(rubyString(new File(specDirectory, spec).getAbsolutePath()));
+                }
+                jruby.evaluateScriptFragment(format("$axiom_testdir = %s", rubyString(specDirectory.getPath())));
+                jruby.evaluateScriptFragment(
+                    "$LOAD_PATH.unshift " + "File.expand_path([" + rubyString(specDirectory.getPath())
+                        + ", '..', 'rspec', 'lib'].join(File::Separator))");
+                jruby.evaluateScriptFragment(format("$axiom_partition = %d", index));
+                jruby.evaluateScriptFragment(format("$axiom_port_offset = %d", index * portStride));
+                jruby.evaluateScriptFragment(format("$axiom_spec_files = [%s]", files));
+                jruby.evaluateScriptFragment(
+                    format("$axiom_spec_output = %s", rubyString(outputFile().getAbsolutePath())));
+                jruby.evaluateScriptFragment(
+                    format("$axiom_spec_timings = %s", rubyString(timingsFile().getAbsolutePath())));
+                log.info("Partition {} running {}.", index, specs);
+                final Object passed = jruby.evaluateScriptFragment(specRunner);
+                return new PartitionResult(index, specs, Boolean.TRUE.equals(passed),
+                    System.currentTimeMillis() - started, null);
+            } finally {
+                camel.stop();
+            }
+        }
+    }
+
+    /**
+     * The outcome of a single partition.
+     */
+    public static final class PartitionResult {
+
+        private final int index;
+        private final List<String> specs;
+        private final boolean passed;
+        private final long elapsedMillis;
+        private final Throwable failure;
+
+        PartitionResult(final int index, final List<String> specs, final boolean passed,
+            final long elapsedMillis, final Throwable failure) {
+            this.index = index;
+            this.specs = Collections.unmodifiableList(specs);
+            this.passed = passed;
+            this.elapsedMillis = elapsedMillis;
+            this.failure = failure;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public List<String> getSpecs() {
+            return specs;
+        }
+
+        public boolean isPassed() {
+            return passed;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /**
+         * Gets the exception that stopped the partition from running.
+         * @return The exception, or {@code null} if the specs ran (whether or not they passed).
+         */
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        @Override public String toString() {
+            return format("partition %d: %s in %dms (%d specs)%s", index, passed ? "passed" : "FAILED",
+                elapsedMillis, specs.size(), failure == null ? "" : " - " + failure);
+        }
+    }
+
+    /**
+     * The merged outcome of every partition.
+     */
+    public static final class Result {
+
+        private final List<PartitionResult> partitions;
+
+        Result(final List<PartitionResult> partitions) {
+            this.partitions = Collections.unmodifiableList(partitions);
+        }
+
+        public List<PartitionResult> getPartitions() {
+            return partitions;
+        }
+
+        /**
+         * Whether every partition ran and all of its specs passed.
+         * @return {@code true} if the whole suite passed.
+         */
+        public boolean isPassed() {
+            for (final PartitionResult partition : partitions) {
+                if (!partition.isPassed()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override public String toString() {
+            final StringBuilder buffer = new StringBuilder("Integration specs ")
+                .append(isPassed() ? "passed." : "FAILED.");
+            for (final PartitionResult partition : partitions) {
+                buffer.append(Environment.NEWLINE).append("  ").append(partition);
+            }
+            return buffer.toString();
+        }
+    }
+}
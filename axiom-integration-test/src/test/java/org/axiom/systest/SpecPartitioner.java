@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.systest;
+
+import static org.apache.commons.lang.Validate.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Splits spec files into partitions of (roughly) equal expected duration, by
+ * assigning the longest running files first, each to the partition with the
+ * least work assigned so far.
+ */
+public class SpecPartitioner {
+
+    private final int partitions;
+
+    public SpecPartitioner(final int partitions) {
+        isTrue(partitions > 0, "Partition count must be positive.");
+        this.partitions = partitions;
+    }
+
+    /**
+     * Partitions the supplied spec files.
+     * @param specs The relative paths of the spec files.
+     * @param timings The historical durations used to balance the partitions.
+     * @return Exactly {@code partitions} lists of spec files, some of which may be empty.
+     */
+    public List<List<String>> partition(final Collection<String> specs, final SpecTimings timings) {
+        notNull(specs, "Specs cannot be null.");
+        notNull(timings, "Timings cannot be null.");
+        final List<String> ordered = new ArrayList<String>(specs);
+        Collections.sort(ordered, new Comparator<String>() {
+            @Override public int compare(final String first, final String second) {
+                final int byDuration = Double.compare(timings.estimate(second), timings.estimate(first));
+                return byDuration != 0 ? byDuration : first.compareTo(second);
+            }
+        });
+
+        final List<List<String>> result = new ArrayList<List<String>>(partitions);
+        final double[] loads = new double[partitions];
+        for (int i = 0; i < partitions; i++) {
+            result.add(new ArrayList<String>());
+        }
+        for (final String spec : ordered) {
+            int lightest = 0;
+            for (int i = 1; i < partitions; i++) {
+                if (loads[i] < loads[lightest]) {
+                    lightest = i;
+                }
+            }
+            result.get(lightest).add(spec);
+            loads[lightest] += timings.estimate(spec);
+        }
+        return result;
+    }
+}
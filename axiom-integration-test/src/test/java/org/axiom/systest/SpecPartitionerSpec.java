@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.systest;
+
+import jdave.Specification;
+import jdave.junit4.JDaveRunner;
+import org.apache.commons.io.FileUtils;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(JDaveRunner.class)
+public class SpecPartitionerSpec extends Specification<SpecPartitioner> {
+
+    public class WhenPartitioningSpecFiles {
+
+        private SpecTimings timings;
+
+        public SpecPartitioner create() {
+            timings = new SpecTimings();
+            return new SpecPartitioner(2);
+        }
+
+        public void itShouldBalanceThePartitionsByHistoricalDuration() {
+            timings.record("slow_spec.rb", 50);
+            timings.record("medium_spec.rb", 40);
+            timings.record("quick_spec.rb", 30);
+            timings.record("quicker_spec.rb", 20);
+            final List<List<String>> partitions = new SpecPartitioner(2).partition(
+                Arrays.asList("quick_spec.rb", "slow_spec.rb", "quicker_spec.rb", "medium_spec.rb"), timings);
+            specify(partitions.get(0), should.equal(Arrays.asList("slow_spec.rb", "quicker_spec.rb")));
+            specify(partitions.get(1), should.equal(Arrays.asList("medium_spec.rb", "quick_spec.rb")));
+        }
+
+        public void itShouldExpectUnknownSpecsToTakeTheAverageTime() {
+            timings.record("slow_spec.rb", 30);
+            timings.record("quick_spec.rb", 10);
+            specify(timings.estimate("new_spec.rb"), should.equal(20.0));
+        }
+
+        public void itShouldLeaveSurplusPartitionsEmpty() {
+            final List<List<String>> partitions =
+                new SpecPartitioner(3).partition(Arrays.asList("only_spec.rb"), timings);
+            specify(partitions.size(), should.equal(3));
+            specify(partitions.get(0), should.equal(Arrays.asList("only_spec.rb")));
+            specify(partitions.get(2).isEmpty(), should.equal(true));
+        }
+    }
+
+    public class WhenStoringTimings {
+
+        private File file;
+
+        public SpecPartitioner create() throws IOException {
+            file = File.createTempFile("axiom-timings", ".properties");
+            return new SpecPartitioner(1);
+        }
+
+        public void destroy() {
+            FileUtils.deleteQuietly(file);
+        }
+
+        public void itShouldAverageNewDurationsWithTheirHistory() throws IOException {
+            final SpecTimings timings = new SpecTimings();
+            timings.record("http_routing_spec.rb", 10);
+            timings.store(file);
+            final SpecTimings loaded = SpecTimings.load(file);
+            loaded.record("http_routing_spec.rb", 20);
+            specify(loaded.estimate("http_routing_spec.rb"), should.equal(15.0));
+        }
+
+        public void itShouldStartEmptyWhenNoTimingsHaveBeenStored() throws IOException {
+            specify(SpecTimings.load(new File(file.getPath() + ".missing")).contains("any_spec.rb"),
+                should.equal(false));
+        }
+    }
+}
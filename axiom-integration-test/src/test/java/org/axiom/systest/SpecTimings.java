@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom.systest;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * The historical duration (in seconds) of each ruby spec file, keyed by the path
+ * of the file relative to the spec directory. Each new observation is averaged
+ * (exponentially) with the previous one, so a single slow run does not skew
+ * future partitioning too far.
+ */
+public class SpecTimings {
+
+    private static final double DEFAULT_ESTIMATE = 1.0;
+    private static final double WEIGHT = 0.5;
+
+    private final Map<String, Double> durations = new TreeMap<String, Double>();
+
+    /**
+     * Loads previously stored timings.
+     * @param file The timings file.
+     * @return The timings, which are empty if the file does not exist.
+     * @throws IOException if the file cannot be read.
+     */
+    public static SpecTimings load(final File file) throws IOException {
+        final SpecTimings timings = new SpecTimings();
+        if (file == null || !file.isFile()) {
+            return timings;
+        }
+        final Properties properties = new Properties();
+        final InputStream in = new FileInputStream(file);
+        try {
+            properties.load(in);
+        } finally {
+            in.close();
+        }
+        for (final String spec : properties.stringPropertyNames()) {
+            try {
+                timings.durations.put(spec, Double.valueOf(properties.getProperty(spec)));
+            } catch (NumberFormatException e) {
+                // ignore the entry: it will be re-recorded on the next run
+            }
+        }
+        return timings;
+    }
+
+    /**
+     * Gets the expected duration of a spec file: its recorded duration if
+     * it has been run before, otherwise the mean of all recorded durations.
+     * @param spec The relative path of the spec file.
+     * @return The estimated duration, in seconds.
+     */
+    public double estimate(final String spec) {
+        final Double duration = durations.get(spec);
+        if (duration != null) {
+            return duration;
+        }
+        if (durations.isEmpty()) {
+            return DEFAULT_ESTIMATE;
+        }
+        double total = 0;
+        for (final double known : durations.values()) {
+            total += known;
+        }
+        return total / durations.size();
+    }
+
+    /**
+     * Records how long a spec file took to run.
+     * @param spec The relative path of the spec file.
+     * @param seconds The time taken.
+     */
+    public void record(final String spec, final double seconds) {
+        final Double previous = durations.get(spec);
+        durations.put(spec, previous == null ? seconds : WEIGHT * seconds + (1 - WEIGHT) * previous);
+    }
+
+    public boolean contains(final String spec) {
+        return durations.containsKey(spec);
+    }
+
+    /**
+     * Stores the timings, replacing the contents of the file.
+     * @param file The timings file.
+     * @throws IOException if the file cannot be written.
+     */
+    public void store(final File file) throws IOException {
+        final File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Unable to create " + parent + ".");
+        }
+        final Properties properties = new Properties();
+        for (final Map.Entry<String, Double> entry : durations.entrySet()) {
+            properties.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            properties.store(out, "axiom integration spec timings (seconds)");
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -51,6 +51,7 @@ describe "proxying and validating inter-system communications over http" do
 
   include FileUtils
   include HTTPSpecSupport
+  include PartitionSupport
   include Axiom::Core::Configuration
 
   def inbound_uri
@@ -67,12 +68,13 @@ describe "proxying and validating inter-system communications over http" do
     conf = ExternalConfigurationSourceFactory.get_registered_configuration(@camel)
     config_path = File.join($axiom_testdir, 'http.routing.properties')
     logger.debug("Loading properties from #{config_path}.")
-    conf.add_configuration(PropertiesConfiguration.new config_path)
+    conf.add_configuration(isolate_partition!(PropertiesConfiguration.new(config_path)))
     self.setProperties conf
 
     #TODO: copy the xsd somewhere we can read
     source_xsd = File.join($axiom_testdir, 'http.request.xsd')
     target_xsd = config >> 'http.test.data.schema.file'
+    mkdir_p File.dirname(target_xsd)
     cp source_xsd, target_xsd, :verbose => true
 
     @logfile = File.join *[:dir, :file].collect { |x| config >> "http.test.data.#{x}" }
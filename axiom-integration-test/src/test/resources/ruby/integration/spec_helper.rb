@@ -53,6 +53,29 @@ module HTTPTestListener
 
 end
 
+module PartitionSupport
+
+  # When running in a partition (see PartitionedSpecRunner), shifts every '.port'
+  # setting by this partition's port offset and moves every '.dir' setting into a
+  # partition specific sub-directory, so that concurrently running partitions do
+  # not contend for the same endpoints or files.
+  def isolate_partition! configuration
+    return configuration if $axiom_partition.nil?
+    keys = []
+    iterator = configuration.get_keys
+    keys << iterator.next while iterator.has_next
+    keys.each do |key|
+      if key =~ /\.port\z/
+        configuration.set_property key, (configuration.get_int(key) + $axiom_port_offset.to_i).to_s
+      elsif key =~ /\.dir\z/
+        configuration.set_property key, File.join(configuration.get_string(key), "partition-#{$axiom_partition}")
+      end
+    end
+    configuration
+  end
+
+end
+
 module HTTPSpecSupport
   include HTTPTestListener
 
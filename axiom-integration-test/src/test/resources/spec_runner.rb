@@ -3,10 +3,49 @@ require 'java'
 require 'axiom'
 require 'spec'
 
-spec_dir = File.join Dir.pwd, 'src/test/resources/ruby/integration'
-options = ::Spec::Runner::OptionParser.parse([spec_dir, '-f', "n"], STDERR, STDOUT)
+require 'spec/runner/formatter/base_formatter'
 
-$logger.info "Running RSpec in #{spec_dir}"
+module Axiom
+  # Records how long the example groups of each spec file took to run, as
+  # file=seconds lines, so that partitioned runs can be balanced by duration.
+  class SpecTimingFormatter < ::Spec::Runner::Formatter::BaseFormatter
+
+    def initialize options, where
+      super
+      @timings = Hash.new(0.0)
+    end
+
+    def add_example_group example_group
+      finish_example_group
+      super
+      @started = Time.now
+    end
+
+    def start_dump
+      finish_example_group
+      File.open(@where, 'w') do |out|
+        @timings.each { |file, seconds| out.puts "#{file}=#{seconds}" }
+      end
+    end
+
+    private
+
+    def finish_example_group
+      return if @example_group.nil? || @example_group.spec_path.nil?
+      @timings[@example_group.spec_path.sub(/:\d+.*\z/, '')] += Time.now - @started
+      @example_group = nil
+    end
+
+  end
+end
+
+# a partitioned run (see PartitionedSpecRunner) supplies its own spec files and output locations
+spec_files = $axiom_spec_files || [File.join(Dir.pwd, 'src/test/resources/ruby/integration')]
+args = spec_files + ['-f', $axiom_spec_output ? "n:#{$axiom_spec_output}" : 'n']
+args += ['-f', "Axiom::SpecTimingFormatter:#{$axiom_spec_timings}"] if $axiom_spec_timings
+options = ::Spec::Runner::OptionParser.parse(args, STDERR, STDOUT)
+
+$logger.info "Running RSpec in #{spec_files.join(', ')}"
 
 def run_specs options
   $0 = 'spec_runner.rb'
@@ -36,6 +36,7 @@ import org.apache.commons.lang.Validate;
 import org.axiom.integration.camel.ContextFactory;
 import org.axiom.service.ControlChannel;
 import org.axiom.service.Launcher;
+import org.axiom.service.ShutdownOrchestrator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,6 +54,7 @@ public class HostService {
     private static final String TERMINATION_TIMEOUT = "termination-timeout";
     private static final HelpFormatter HELP_FORMATTER = new HelpFormatter();
     private static ControlChannel controlChannel;
+    private static ShutdownOrchestrator orchestrator;
 
     public static void main(final String... argv) throws ClassNotFoundException {
         final CommandLine cli = cli(argv);
@@ -68,21 +70,28 @@ public class HostService {
 
         try {
             controlChannel = new Launcher().launch(camel);
+            orchestrator = ShutdownOrchestrator.forChannel(controlChannel);
             if (cli.hasOption(WAIT_TIME)) {
                 final String opt = cli.getOptionValue(WAIT_TIME);
                 final Long timeout = Long.parseLong(opt);
                 logger.info("{} idle (timeout={}seconds).",
                     HostService.class.getCanonicalName(), timeout);
-                controlChannel.waitShutdown(timeout * 1000);
+                if (controlChannel.awaitShutdownSignal(timeout * 1000)) {
+                    orchestrator.shutdown();
+                }
             } else {
                 logger.info("{} idle (timeout=infinite).",
                     HostService.class.getCanonicalName());
-                controlChannel.waitShutdown();
+                controlChannel.awaitShutdownSignal();
+                orchestrator.shutdown();
             }
         } catch (ExitStatusInterceptedException e) {
-            if (e.getExitStatus() != 0 && cli.hasOption(TERMINATION_TIMEOUT)) {
-                final Long timeout = Long.getLong(cli.getOptionValue(TERMINATION_TIMEOUT));
-                controlChannel.sendShutdownSignalAndWait(timeout * 1000);
+            if (e.getExitStatus() != 0 && orchestrator != null && cli.hasOption(TERMINATION_TIMEOUT)) {
+                final Long timeout = Long.parseLong(cli.getOptionValue(TERMINATION_TIMEOUT));
+                controlChannel.sendShutdownSignal();
+                if (controlChannel.awaitShutdownSignal(timeout * 1000)) {
+                    orchestrator.shutdown();
+                }
             }
             System.setSecurityManager(originalSecurityManager);
             System.exit(e.getExitStatus());
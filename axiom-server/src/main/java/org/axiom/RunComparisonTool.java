@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2009, Tim Watson
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification,
+ * are permitted provided that the following conditions are met:
+ *
+ *     * Redistributions of source code must retain the above copyright notice,
+ *       this list of conditions and the following disclaimer.
+ *     * Redistributions in binary form must reproduce the above copyright notice,
+ *       this list of conditions and the following disclaimer in the documentation
+ *       and/or other materials provided with the distribution.
+ *     * Neither the name of the author nor the names of its contributors
+ *       may be used to endorse or promote products derived from this software
+ *       without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE
+ * GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ * LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY
+ * OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.axiom;
+
+import org.apache.commons.cli.*;
+import org.apache.commons.io.FileUtils;
+import org.axiom.service.metrics.ComparisonReport;
+import org.axiom.service.metrics.RunComparison;
+import org.axiom.service.metrics.RunRecord;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Compares two run records (see {@code axiom.metrics.run.file}) and prints the
+ * comparison, exiting with status 2 if any route has regressed so that the tool
+ * can be used to gate a build. Usage errors and unreadable records exit with 1.
+ */
+public class RunComparisonTool {
+
+    private static final String LATENCY_TOLERANCE = "latency-tolerance";
+    private static final String THROUGHPUT_TOLERANCE = "throughput-tolerance";
+    private static final String ERROR_TOLERANCE = "error-tolerance";
+    private static final String SIGNIFICANCE = "significance";
+    private static final String PERCENTILE = "percentile";
+    private static final String OUTPUT = "output";
+    private static final String USAGE =
+        RunComparisonTool.class.getCanonicalName() + " [options] BASELINE CANDIDATE";
+    private static final HelpFormatter HELP_FORMATTER = new HelpFormatter();
+
+    public static void main(final String... argv) {
+        System.exit(run(argv));
+    }
+
+    private static int run(final String[] argv) {
+        final Options options = options();
+        final CommandLine cli;
+        final RunComparison comparison = new RunComparison();
+        try {
+            cli = new PosixParser().parse(options, argv);
+            if (cli.getArgs().length != 2) {
+                throw new ParseException("Expected a baseline and a candidate run record.");
+            }
+            if (cli.hasOption(LATENCY_TOLERANCE)) {
+                comparison.setLatencyTolerance(parse(cli, LATENCY_TOLERANCE));
+            }
+            if (cli.hasOption(THROUGHPUT_TOLERANCE)) {
+                comparison.setThroughputTolerance(parse(cli, THROUGHPUT_TOLERANCE));
+            }
+            if (cli.hasOption(ERROR_TOLERANCE)) {
+                comparison.setErrorRateTolerance(parse(cli, ERROR_TOLERANCE));
+            }
+            if (cli.hasOption(SIGNIFICANCE)) {
+                comparison.setSignificance(parse(cli, SIGNIFICANCE));
+            }
+            if (cli.hasOption(PERCENTILE)) {
+                comparison.setPercentile(parse(cli, PERCENTILE));
+            }
+        } catch (ParseException e) {
+            System.out.println(e.getLocalizedMessage());
+            HELP_FORMATTER.printHelp(USAGE, options);
+            return 1;
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getLocalizedMessage());
+            HELP_FORMATTER.printHelp(USAGE, options);
+            return 1;
+        }
+
+        try {
+            final ComparisonReport report = comparison.compare(
+                RunRecord.read(new File(cli.getArgs()[0])), RunRecord.read(new File(cli.getArgs()[1])));
+            System.out.println(report);
+            if (cli.hasOption(OUTPUT)) {
+                FileUtils.writeStringToFile(new File(cli.getOptionValue(OUTPUT)), report.toString());
+            }
+            return report.hasRegressions() ? 2 : 0;
+        } catch (IOException e) {
+            System.out.println(e.getLocalizedMessage());
+            return 1;
+        }
+    }
+
+    private static double parse(final CommandLine cli, final String option) throws ParseException {
+        final String value = cli.getOptionValue(option);
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw new ParseException("Invalid value " + value + " for --" + option + ".");
+        }
+    }
+
+    @SuppressWarnings({"AccessStaticViaInstance"})
+    private static Options options() {
+        final Options options = new Options();
+        options.addOption(option(LATENCY_TOLERANCE, "FRACTION",
+            "Tolerated relative increase in the compared latency percentile (default 0.1)."));
+        options.addOption(option(THROUGHPUT_TOLERANCE, "FRACTION",
+            "Tolerated relative drop in throughput (default 0.1)."));
+        options.addOption(option(ERROR_TOLERANCE, "FRACTION",
+            "Tolerated absolute increase in the failure rate (default 0.001)."));
+        options.addOption(option(SIGNIFICANCE, "ALPHA",
+            "Significance level of the latency distribution test (default 0.05)."));
+        options.addOption(option(PERCENTILE, "PERCENTILE",
+            "The latency percentile to compare (default 99)."));
+        options.addOption(option(OUTPUT, "FILE",
+            "Also write the report to a file."));
+        return options;
+    }
+
+    @SuppressWarnings({"AccessStaticViaInstance"})
+    private static Option option(final String name, final String argName, final String description) {
+        return OptionBuilder
+            .withLongOpt(name)
+            .withDescription(description)
+            .hasArg()
+            .withArgName(argName)
+            .isRequired(false)
+            .create();
+    }
+}